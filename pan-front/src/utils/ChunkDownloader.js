@@ -492,6 +492,7 @@ class ChunkDownloader {
                 responseType: 'blob',
                 showLoading: false,
                 showError: false,
+                throwError: true,
                 timeout: 30000 // 30秒超时
             });
             
@@ -508,9 +509,12 @@ class ChunkDownloader {
             
         } catch (error) {
             // 增强错误信息
-            const enhancedError = new Error(`Failed to download chunk ${chunkIndex}: ${error.message}`);
+            const enhancedError = new Error(`Failed to download chunk ${chunkIndex}: ${error.message || error.msg}`);
             enhancedError.originalError = error;
             enhancedError.chunkIndex = chunkIndex;
+            // 服务端下载排队已满时返回503和Retry-After，按服务端要求的时间退避
+            enhancedError.status = error.status;
+            enhancedError.retryAfter = error.retryAfter;
             enhancedError.isNetworkError = this._isNetworkError(error);
             
             throw enhancedError;
@@ -96,7 +96,17 @@ instance.interceptors.response.use(
         if (error.config.showLoading && loading) {
             loading.close(); // 关闭加载动画
         }
-        return Promise.reject({ showError: true, msg: "网络异常" })
+        // 服务端限流时带上状态码和Retry-After，供分片下载退避重试
+        const response = error.response;
+        if (response && response.status == 503) {
+            return Promise.reject({
+                showError: error.config.showError !== false,
+                msg: "服务器繁忙，请稍后重试",
+                status: response.status,
+                retryAfter: parseInt(response.headers["retry-after"]) || 0
+            })
+        }
+        return Promise.reject({ showError: true, msg: "网络异常", status: response ? response.status : 0 })
     }
 );
 
@@ -111,6 +121,7 @@ instance.interceptors.response.use(
  * @param {Function} config.uploadProgressCallback - 上传进度回调
  * @param {Function} config.errorCallback - 错误回调
  * @param {boolean} config.showError - 是否显示错误消息
+ * @param {boolean} config.throwError - 失败时抛出错误而不是返回null
  * @returns {Promise} 请求结果
  */
 const request = (config) => {
@@ -154,6 +165,9 @@ const request = (config) => {
         if (error.showError) {
             Message.error(error.msg); // 显示错误消息
         }
+        if (config.throwError) {
+            throw error;
+        }
         return null; // 返回null表示请求失败
     });
 };
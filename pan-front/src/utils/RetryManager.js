@@ -135,7 +135,11 @@ class RetryManager {
                 }
                 
                 // 计算重试延迟
-                const delay = this._calculateDelay(attempt - 1, config, errorType);
+                let delay = this._calculateDelay(attempt - 1, config, errorType);
+                // 服务端返回Retry-After时至少等待指定的秒数
+                if (error.retryAfter > 0) {
+                    delay = Math.max(delay, error.retryAfter * 1000);
+                }
                 
                 // 触发重试回调
                 if (this.onRetry) {
@@ -49,15 +49,81 @@ CREATE TABLE `file_info` (
   `status` tinyint(1) DEFAULT NULL COMMENT '0:转码中 1转码失败 2:转码成功',
   `recovery_time` datetime DEFAULT NULL COMMENT '回收站时间',
   `del_flag` tinyint(1) DEFAULT '2' COMMENT '删除标记 0:删除  1:回收站  2:正常',
+  `tree_path` varchar(700) DEFAULT NULL COMMENT '目录路径，从根目录到自身的文件ID，如/A/B/，每层11个字符，最多63层',
+  `folder_size` bigint(20) NOT NULL DEFAULT '0' COMMENT '目录下所有正常文件的大小',
+  `folder_file_count` int(11) NOT NULL DEFAULT '0' COMMENT '目录下所有正常文件的数量',
+  `using_file_name` varchar(200) GENERATED ALWAYS AS (IF(`del_flag` = 2, `file_name`, NULL)) VIRTUAL COMMENT '正常文件的名称，用于同目录重名校验',
+  `ref_user_id` varchar(10) DEFAULT NULL COMMENT '挂载目录引用的来源用户ID',
+  `ref_file_id` varchar(10) DEFAULT NULL COMMENT '挂载目录引用的来源目录ID，为空表示普通文件',
   PRIMARY KEY (`file_id`,`user_id`),
+  UNIQUE KEY `uk_user_pid_using_name` (`user_id`,`file_pid`,`using_file_name`),
   KEY `idx_create_time` (`create_time`),
   KEY `idx_user_id` (`user_id`),
   KEY `idx_md5` (`file_md5`) USING BTREE,
   KEY `idx_file_pid` (`file_pid`),
-  KEY `idx_del_flag` (`del_flag`),
-  KEY `idx_recovery_time` (`recovery_time`)
+  KEY `idx_del_flag_user_id` (`del_flag`,`user_id`),
+  KEY `idx_recovery_time` (`recovery_time`),
+  KEY `idx_user_tree_path` (`user_id`,`tree_path`),
+  KEY `idx_user_pid_update_time` (`user_id`,`file_pid`,`last_update_time`),
+  KEY `idx_last_update_time` (`last_update_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件信息';
 
+-- ----------------------------
+-- 已有数据升级：增加tree_path并按file_pid回填（MySQL 8）
+-- ----------------------------
+-- ALTER TABLE `file_info` ADD COLUMN `tree_path` varchar(700) DEFAULT NULL COMMENT '目录路径，从根目录到自身的文件ID，如/A/B/',
+--   ADD KEY `idx_user_tree_path` (`user_id`,`tree_path`);
+-- UPDATE `file_info` f JOIN (
+--   WITH RECURSIVE t (file_id, user_id, tree_path) AS (
+--     SELECT file_id, user_id, CAST(CONCAT('/', file_id, '/') AS CHAR(700)) FROM file_info WHERE file_pid = '0'
+--     UNION ALL
+--     SELECT c.file_id, c.user_id, CONCAT(t.tree_path, c.file_id, '/') FROM file_info c JOIN t ON c.file_pid = t.file_id AND c.user_id = t.user_id
+--   ) SELECT * FROM t
+-- ) p ON f.file_id = p.file_id AND f.user_id = p.user_id
+-- SET f.tree_path = p.tree_path;
+
+-- ----------------------------
+-- 已有数据升级：游标分页按排序时间和主键定位，二级索引末尾自带主键
+-- ----------------------------
+-- ALTER TABLE `file_info` ADD KEY `idx_user_pid_update_time` (`user_id`,`file_pid`,`last_update_time`),
+--   ADD KEY `idx_last_update_time` (`last_update_time`);
+
+-- ----------------------------
+-- 已有数据升级：目录汇总，按目录路径统计子树下的正常文件（需先回填tree_path）
+-- ----------------------------
+-- ALTER TABLE `file_info` ADD COLUMN `folder_size` bigint(20) NOT NULL DEFAULT '0' COMMENT '目录下所有正常文件的大小',
+--   ADD COLUMN `folder_file_count` int(11) NOT NULL DEFAULT '0' COMMENT '目录下所有正常文件的数量';
+-- UPDATE `file_info` d JOIN (
+--   SELECT p.file_id, p.user_id, IFNULL(SUM(c.file_size), 0) folder_size, COUNT(c.file_id) folder_file_count
+--   FROM file_info p JOIN file_info c ON c.user_id = p.user_id AND c.tree_path LIKE CONCAT(p.tree_path, '_%')
+--     AND c.folder_type = 0 AND c.del_flag = 2
+--   WHERE p.folder_type = 1 GROUP BY p.file_id, p.user_id
+-- ) s ON d.file_id = s.file_id AND d.user_id = s.user_id
+-- SET d.folder_size = s.folder_size, d.folder_file_count = s.folder_file_count;
+
+-- ----------------------------
+-- 已有数据升级：同一目录下正常文件名称唯一，回收站和已删除的文件不受限制（MySQL 8）
+-- 先把已经重名的文件改名，再增加生成列和唯一索引
+-- ----------------------------
+-- UPDATE `file_info` f JOIN (
+--   SELECT file_id, user_id, ROW_NUMBER() OVER (PARTITION BY user_id, file_pid, file_name ORDER BY create_time, file_id) rn
+--   FROM file_info WHERE del_flag = 2
+-- ) d ON f.file_id = d.file_id AND f.user_id = d.user_id AND d.rn > 1
+-- SET f.file_name = CONCAT(f.file_name, '_', f.file_id);
+-- ALTER TABLE `file_info` ADD COLUMN `using_file_name` varchar(200) GENERATED ALWAYS AS (IF(`del_flag` = 2, `file_name`, NULL)) VIRTUAL COMMENT '正常文件的名称，用于同目录重名校验',
+--   ADD UNIQUE KEY `uk_user_pid_using_name` (`user_id`,`file_pid`,`using_file_name`);
+
+-- ----------------------------
+-- 已有数据升级：回收站过期清理按(user_id, file_id)游标分批读取，二级索引末尾自带主键
+-- ----------------------------
+-- ALTER TABLE `file_info` DROP KEY `idx_del_flag`, ADD KEY `idx_del_flag_user_id` (`del_flag`,`user_id`);
+
+-- ----------------------------
+-- 已有数据升级：保存分享的目录改为挂载来源目录，修改时才复制
+-- ----------------------------
+-- ALTER TABLE `file_info` ADD COLUMN `ref_user_id` varchar(10) DEFAULT NULL COMMENT '挂载目录引用的来源用户ID',
+--   ADD COLUMN `ref_file_id` varchar(10) DEFAULT NULL COMMENT '挂载目录引用的来源目录ID，为空表示普通文件';
+
 -- ----------------------------
 -- Table structure for file_share
 -- ----------------------------
@@ -99,4 +165,113 @@ CREATE TABLE `user_info` (
   UNIQUE KEY `key_qq_open_id` (`qq_open_id`) USING BTREE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='用户信息';
 
+-- ----------------------------
+-- Table structure for file_shard_route
+-- ----------------------------
+DROP TABLE IF EXISTS `file_shard_route`;
+CREATE TABLE `file_shard_route` (
+  `user_id` varchar(10) NOT NULL COMMENT '用户ID',
+  `shard_no` int(11) NOT NULL COMMENT '文件分表序号',
+  `status` tinyint(1) NOT NULL DEFAULT '0' COMMENT '0:正常 1:迁移中',
+  `update_time` datetime DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='文件分表路由，没有记录的用户按user_id哈希';
+
+-- 开启文件分表（file.shard.count大于1）时按分表数创建file_info_0 ~ file_info_{n-1}，结构与file_info相同：
+-- CREATE TABLE `file_info_0` LIKE `file_info`;
+-- CREATE TABLE `file_info_1` LIKE `file_info`;
+-- 已有数据按user_id的哈希（与Java的String.hashCode一致）分到各分表后再开启，
+-- 也可以先写入file_shard_route把已有用户固定在一个分表，之后通过管理员接口逐个迁移
+-- 写文件表的事务会对该用户的路由记录加锁，迁移时据此等待未提交的写事务，数据库需使用默认的可重复读隔离级别
+
+-- ----------------------------
+-- Table structure for file_info_archive
+-- ----------------------------
+DROP TABLE IF EXISTS `file_info_archive`;
+CREATE TABLE `file_info_archive` (
+  `file_id` varchar(10) NOT NULL COMMENT '文件ID',
+  `user_id` varchar(10) NOT NULL COMMENT '用户ID',
+  `file_md5` varchar(32) DEFAULT NULL COMMENT 'md5值',
+  `file_pid` varchar(10) DEFAULT NULL COMMENT '父级ID',
+  `file_size` bigint(20) DEFAULT NULL COMMENT '文件大小',
+  `file_name` varchar(200) DEFAULT NULL COMMENT '文件名称',
+  `file_cover` varchar(100) DEFAULT NULL COMMENT '封面',
+  `file_path` varchar(100) DEFAULT NULL COMMENT '物理文件路径',
+  `create_time` datetime DEFAULT NULL COMMENT '创建时间',
+  `last_update_time` datetime DEFAULT NULL COMMENT '彻底删除时间',
+  `folder_type` tinyint(1) DEFAULT NULL COMMENT '0:文件 1:目录',
+  `file_category` tinyint(1) DEFAULT NULL COMMENT '1:视频 2:音频  3:图片 4:文档 5:其他',
+  `file_type` tinyint(1) DEFAULT NULL COMMENT ' 1:视频 2:音频  3:图片 4:pdf 5:doc 6:excel 7:txt 8:code 9:zip 10:其他',
+  `tree_path` varchar(700) DEFAULT NULL COMMENT '删除时的目录路径',
+  `ref_user_id` varchar(10) DEFAULT NULL COMMENT '挂载目录引用的来源用户ID',
+  `ref_file_id` varchar(10) DEFAULT NULL COMMENT '挂载目录引用的来源目录ID',
+  `archive_time` datetime NOT NULL COMMENT '归档时间',
+  PRIMARY KEY (`file_id`,`user_id`),
+  KEY `idx_md5` (`file_md5`),
+  KEY `idx_archive_time` (`archive_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='彻底删除超过保留期的文件信息归档，保留md5和物理文件路径供回收物理文件时核对';
+-- 彻底删除时记录last_update_time，升级前已彻底删除的文件按原来的最后更新时间计算保留期
+
+-- ----------------------------
+-- Table structure for file_md5_index
+-- ----------------------------
+DROP TABLE IF EXISTS `file_md5_index`;
+CREATE TABLE `file_md5_index` (
+  `file_md5` varchar(32) NOT NULL COMMENT 'md5值',
+  `file_path` varchar(100) NOT NULL COMMENT '物理文件路径',
+  `file_size` bigint(20) DEFAULT NULL COMMENT '文件大小',
+  `file_cover` varchar(100) DEFAULT NULL COMMENT '封面',
+  `file_category` tinyint(1) DEFAULT NULL COMMENT '1:视频 2:音频  3:图片 4:文档 5:其他',
+  `file_type` tinyint(1) DEFAULT NULL COMMENT ' 1:视频 2:音频  3:图片 4:pdf 5:doc 6:excel 7:txt 8:code 9:zip 10:其他',
+  `file_fingerprint` varchar(32) DEFAULT NULL COMMENT '抽样指纹，文件头、中、尾各64KB的md5',
+  `create_time` datetime DEFAULT NULL COMMENT '创建时间',
+  PRIMARY KEY (`file_md5`),
+  KEY `idx_size_fingerprint` (`file_size`,`file_fingerprint`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='秒传索引，md5到已转码成功的物理文件';
+
+-- 已有数据升级时从文件表生成秒传索引：
+-- INSERT IGNORE INTO `file_md5_index` (file_md5, file_path, file_size, file_cover, file_category, file_type, create_time)
+-- SELECT file_md5, file_path, file_size, file_cover, file_category, file_type, create_time FROM `file_info`
+-- WHERE folder_type = 0 AND status = 2 AND file_md5 IS NOT NULL AND file_path IS NOT NULL;
+-- 已建秒传索引表的升级时增加抽样指纹，已有记录的指纹由定时任务读取物理文件补齐：
+-- ALTER TABLE `file_md5_index` ADD COLUMN `file_fingerprint` varchar(32) DEFAULT NULL COMMENT '抽样指纹，文件头、中、尾各64KB的md5' AFTER `file_type`,
+--   ADD KEY `idx_size_fingerprint` (`file_size`,`file_fingerprint`);
+
+-- ----------------------------
+-- Table structure for file_copy_task
+-- ----------------------------
+DROP TABLE IF EXISTS `file_copy_task`;
+CREATE TABLE `file_copy_task` (
+  `task_id` varchar(20) NOT NULL COMMENT '任务ID',
+  `user_id` varchar(10) NOT NULL COMMENT '保存到的用户ID',
+  `source_user_id` varchar(10) NOT NULL COMMENT '来源用户ID',
+  `target_folder_id` varchar(10) NOT NULL COMMENT '保存到的目录ID',
+  `mount_file_id` varchar(10) DEFAULT NULL COMMENT '复制挂载目录时为挂载目录ID，复制出的文件ID由其和来源文件ID生成',
+  `status` tinyint(1) NOT NULL DEFAULT '0' COMMENT '0:复制中 1:完成 2:失败',
+  `total_count` int(11) NOT NULL DEFAULT '0' COMMENT '预计复制的文件数，按目录汇总估算',
+  `copy_count` int(11) NOT NULL DEFAULT '0' COMMENT '已复制的文件数',
+  `folder_seq` int(11) NOT NULL DEFAULT '0' COMMENT '正在复制的目录序号',
+  `last_file_id` varchar(10) DEFAULT NULL COMMENT '正在复制的目录中最后复制的来源文件ID',
+  `version` int(11) NOT NULL DEFAULT '0' COMMENT '每复制一批加一，防止两个节点同时执行',
+  `error_msg` varchar(200) DEFAULT NULL COMMENT '失败原因',
+  `create_time` datetime DEFAULT NULL COMMENT '创建时间',
+  `last_update_time` datetime DEFAULT NULL COMMENT '最后更新时间',
+  PRIMARY KEY (`task_id`),
+  KEY `idx_user_id` (`user_id`),
+  KEY `idx_status_update_time` (`status`,`last_update_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='后台复制任务，修改文件较多的挂载目录时分批复制';
+
+-- ----------------------------
+-- Table structure for file_copy_folder
+-- ----------------------------
+DROP TABLE IF EXISTS `file_copy_folder`;
+CREATE TABLE `file_copy_folder` (
+  `task_id` varchar(20) NOT NULL COMMENT '任务ID',
+  `folder_seq` int(11) NOT NULL COMMENT '目录序号，按层依次复制',
+  `source_file_id` varchar(10) NOT NULL COMMENT '来源目录ID',
+  `new_file_id` varchar(10) NOT NULL COMMENT '复制后的目录ID',
+  `new_tree_path` varchar(700) NOT NULL COMMENT '复制后的目录路径',
+  PRIMARY KEY (`task_id`,`folder_seq`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='后台复制任务待复制下级文件的目录';
+
 INSERT INTO `user_info` VALUES ('3178033358', '测试账号', 'test@qq.com', null, null, '47ec2dd791e31e2ef2076caf64ed9b3d', null, '2023-04-28 13:54:01', '1', '238302835', '10737418240');
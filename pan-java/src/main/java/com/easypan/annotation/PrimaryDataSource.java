@@ -0,0 +1,12 @@
+package com.easypan.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 方法中的查询都走主库，用于刚写入就要读取、不在请求中的异步任务和定时任务
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface PrimaryDataSource {
+}
@@ -0,0 +1,22 @@
+package com.easypan.aspect;
+
+import com.easypan.entity.config.ReadWriteRoutingDataSource;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+@Component("dataSourceAspect")
+@Aspect
+public class DataSourceAspect {
+
+    @Around("@annotation(com.easypan.annotation.PrimaryDataSource)")
+    public Object usePrimary(ProceedingJoinPoint point) throws Throwable {
+        ReadWriteRoutingDataSource.enterPrimary();
+        try {
+            return point.proceed();
+        } finally {
+            ReadWriteRoutingDataSource.exitPrimary();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.ReadWriteRoutingDataSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.*;
+import org.springframework.stereotype.Component;
+
+import java.util.Properties;
+
+/**
+ * 写语句走主库，并记录当前会话的写操作，之后的读请求在一段时间内也走主库
+ */
+@Component("dataSourceRoutingInterceptor")
+@Intercepts({@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})})
+public class DataSourceRoutingInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        ReadWriteRoutingDataSource.markWrite();
+        ReadWriteRoutingDataSource.enterPrimary();
+        try {
+            return invocation.proceed();
+        } finally {
+            ReadWriteRoutingDataSource.exitPrimary();
+        }
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+}
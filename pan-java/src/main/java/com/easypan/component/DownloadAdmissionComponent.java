@@ -0,0 +1,162 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 下载准入控制
+ * 按文件所在磁盘卷限制同时传输的下载数，超出的请求排队等待，
+ * 排队已满或等待超时的请求由调用方返回503和Retry-After，避免热门分享把磁盘随机读打满
+ */
+@Component("downloadAdmissionComponent")
+public class DownloadAdmissionComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadAdmissionComponent.class);
+
+    private static final String DEFAULT_VOLUME = "default";
+
+    @Resource
+    private AppConfig appConfig;
+
+    /**
+     * 目录到磁盘卷的映射，文件按月份目录存放，数量有限
+     */
+    private final Map<String, String> volumeCache = new ConcurrentHashMap<>();
+
+    private final Map<String, Volume> volumes = new ConcurrentHashMap<>();
+
+    /**
+     * 申请下载许可，传输结束后必须调用Permit.release
+     *
+     * @param filePath 下载文件的完整路径
+     * @return 排队已满或等待超时返回null
+     */
+    public Permit tryAcquire(String filePath) {
+        Volume volume = volumes.computeIfAbsent(getVolumeName(filePath), Volume::new);
+        volume.requestCount.incrementAndGet();
+        if (volume.semaphore.tryAcquire()) {
+            return new Permit(volume);
+        }
+        if (volume.waiting.incrementAndGet() > appConfig.getDownloadAdmissionMaxQueue()) {
+            volume.waiting.decrementAndGet();
+            volume.rejectCount.incrementAndGet();
+            return null;
+        }
+        volume.queuedCount.incrementAndGet();
+        try {
+            if (volume.semaphore.tryAcquire(appConfig.getDownloadAdmissionQueueTimeout(), TimeUnit.MILLISECONDS)) {
+                return new Permit(volume);
+            }
+            volume.rejectCount.incrementAndGet();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            volume.rejectCount.incrementAndGet();
+            return null;
+        } finally {
+            volume.waiting.decrementAndGet();
+        }
+    }
+
+    public Integer getRetryAfter() {
+        return appConfig.getDownloadAdmissionRetryAfter();
+    }
+
+    /**
+     * 各磁盘卷的下载排队情况
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Volume volume : volumes.values()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("maxConcurrent", volume.maxConcurrent);
+            item.put("active", volume.maxConcurrent - volume.semaphore.availablePermits());
+            item.put("waiting", volume.waiting.get());
+            item.put("requestCount", volume.requestCount.get());
+            item.put("queuedCount", volume.queuedCount.get());
+            item.put("rejectCount", volume.rejectCount.get());
+            metrics.put(volume.name, item);
+        }
+        return metrics;
+    }
+
+    private String getVolumeName(String filePath) {
+        String dir = new File(filePath).getParent();
+        if (dir == null) {
+            return DEFAULT_VOLUME;
+        }
+        String volumeName = volumeCache.get(dir);
+        if (volumeName != null) {
+            return volumeName;
+        }
+        try {
+            FileStore fileStore = Files.getFileStore(new File(dir).toPath());
+            volumeName = fileStore.toString();
+        } catch (IOException e) {
+            // 目录不存在等情况不缓存，后续读文件时再处理
+            logger.warn("获取文件所在磁盘卷失败: {}", dir);
+            return DEFAULT_VOLUME;
+        }
+        volumeCache.put(dir, volumeName);
+        return volumeName;
+    }
+
+    private class Volume {
+
+        private final String name;
+
+        private final int maxConcurrent;
+
+        private final Semaphore semaphore;
+
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        private final AtomicLong requestCount = new AtomicLong();
+
+        private final AtomicLong queuedCount = new AtomicLong();
+
+        private final AtomicLong rejectCount = new AtomicLong();
+
+        Volume(String name) {
+            this.name = name;
+            this.maxConcurrent = appConfig.getDownloadAdmissionMaxConcurrent();
+            this.semaphore = new Semaphore(maxConcurrent, true);
+        }
+    }
+
+    /**
+     * 下载许可，重复释放无影响
+     */
+    public static class Permit {
+
+        private final Volume volume;
+
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(Volume volume) {
+            this.volume = volume;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                volume.semaphore.release();
+            }
+        }
+    }
+}
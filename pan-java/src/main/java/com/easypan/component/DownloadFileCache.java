@@ -0,0 +1,253 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.DownloadFileDto;
+import com.easypan.utils.StringTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 下载码本地缓存
+ * 以下载码为key缓存解析后的文件路径、文件大小和共享的只读FileChannel，
+ * 同一下载任务的分片请求不再重复查询Redis和stat文件。
+ * 缓存的是加载结果的future，查询Redis和打开文件在map之外进行，同一下载码并发请求只加载一次
+ */
+@Component("downloadFileCache")
+public class DownloadFileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadFileCache.class);
+
+    @Resource
+    private RedisComponent redisComponent;
+
+    @Resource
+    private AppConfig appConfig;
+
+    private final Map<String, CompletableFuture<Entry>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 获取下载文件，使用完后必须调用release
+     *
+     * @param code 下载码
+     * @return 下载码无效、路径不合法或文件不存在时返回null
+     */
+    public Entry acquire(String code) {
+        if (StringTools.isEmpty(code)) {
+            return null;
+        }
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (cache.size() >= Constants.DOWNLOAD_CACHE_MAX_SIZE && !cache.containsKey(code)) {
+                // 缓存已满，不缓存本次下载，由调用方release时关闭
+                return load(code, now);
+            }
+            CompletableFuture<Entry> created = new CompletableFuture<>();
+            CompletableFuture<Entry> future = cache.computeIfAbsent(code, key -> created);
+            Entry entry = future == created ? complete(code, created, now) : join(future);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expireTime > now && entry.retain()) {
+                return entry;
+            }
+            // 取到的缓存已过期或刚好被清理，重新加载
+            if (cache.remove(code, future)) {
+                entry.invalidate();
+            }
+        }
+    }
+
+    public void release(Entry entry) {
+        if (entry != null) {
+            entry.release();
+        }
+    }
+
+    /**
+     * 下载码用完或失效时主动清除
+     */
+    public void evict(String code) {
+        CompletableFuture<Entry> future = cache.remove(code);
+        if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+            // 还在加载的由加载线程发现已被清除后释放
+            Entry entry = future.join();
+            if (entry != null) {
+                entry.invalidate();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelay = 1000 * 10)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, CompletableFuture<Entry>> item : cache.entrySet()) {
+            CompletableFuture<Entry> future = item.getValue();
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                continue;
+            }
+            Entry entry = future.join();
+            if (entry != null && entry.expireTime <= now && cache.remove(item.getKey(), future)) {
+                entry.invalidate();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (String code : cache.keySet()) {
+            evict(code);
+        }
+    }
+
+    /**
+     * 由放入future的线程加载，加载失败或下载码无效时不缓存
+     */
+    private Entry complete(String code, CompletableFuture<Entry> future, long now) {
+        Entry entry;
+        try {
+            entry = load(code, now);
+        } catch (RuntimeException e) {
+            cache.remove(code, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+        if (entry == null) {
+            cache.remove(code, future);
+        }
+        future.complete(entry);
+        if (entry != null && cache.get(code) != future) {
+            // 加载期间已被清除，释放缓存自身的引用
+            entry.invalidate();
+        }
+        return entry;
+    }
+
+    private static Entry join(CompletableFuture<Entry> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Entry load(String code, long now) {
+        DownloadFileDto downloadFileDto = redisComponent.getDownloadCode(code);
+        if (downloadFileDto == null) {
+            return null;
+        }
+        String filePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + downloadFileDto.getFilePath();
+        if (!StringTools.pathIsOk(filePath)) {
+            logger.error("文件路径不合法: {}", filePath);
+            return null;
+        }
+        File file = new File(filePath);
+        if (!file.exists() || file.isDirectory()) {
+            return null;
+        }
+        try {
+            FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            return new Entry(downloadFileDto, filePath, fileChannel.size(), fileChannel,
+                    now + Constants.DOWNLOAD_CACHE_EXPIRES_SECONDS * 1000L);
+        } catch (IOException e) {
+            logger.error("打开下载文件失败: {}", filePath, e);
+            return null;
+        }
+    }
+
+    /**
+     * 缓存的下载文件，通过引用计数保证分片读取过程中FileChannel不会被关闭
+     */
+    public static class Entry {
+
+        private final DownloadFileDto downloadFileDto;
+
+        private final String filePath;
+
+        private final long fileSize;
+
+        private final FileChannel fileChannel;
+
+        private final long expireTime;
+
+        /**
+         * 创建者持有一个引用，放入缓存时即为缓存自身的引用
+         */
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        private final AtomicBoolean invalidated = new AtomicBoolean(false);
+
+        Entry(DownloadFileDto downloadFileDto, String filePath, long fileSize, FileChannel fileChannel, long expireTime) {
+            this.downloadFileDto = downloadFileDto;
+            this.filePath = filePath;
+            this.fileSize = fileSize;
+            this.fileChannel = fileChannel;
+            this.expireTime = expireTime;
+        }
+
+        private boolean retain() {
+            while (true) {
+                int count = refCount.get();
+                if (count <= 0) {
+                    return false;
+                }
+                if (refCount.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private void release() {
+            if (refCount.decrementAndGet() == 0) {
+                try {
+                    fileChannel.close();
+                } catch (IOException e) {
+                    logger.error("关闭下载文件失败: {}", filePath, e);
+                }
+            }
+        }
+
+        /**
+         * 释放创建者持有的引用，只执行一次
+         */
+        private void invalidate() {
+            if (invalidated.compareAndSet(false, true)) {
+                release();
+            }
+        }
+
+        public DownloadFileDto getDownloadFileDto() {
+            return downloadFileDto;
+        }
+
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public FileChannel getFileChannel() {
+            return fileChannel;
+        }
+    }
+}
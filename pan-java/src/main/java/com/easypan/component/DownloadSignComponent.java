@@ -0,0 +1,155 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.dto.DownloadFileDto;
+import com.easypan.entity.enums.FileFolderTypeEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.service.FileInfoService;
+import com.easypan.utils.StringTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * 签名下载码
+ * 下载码中携带文件ID、用户ID和过期时间，并用HMAC-SHA256签名，任意节点都可以在本地校验，不需要再访问Redis。
+ * 文件路径和文件名在校验后按文件ID从服务端查询，不信任下载码中的路径
+ */
+@Component("downloadSignComponent")
+public class DownloadSignComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(DownloadSignComponent.class);
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * 签名下载码中载荷与签名的分隔符，Redis下载码只包含字母数字，以此区分两种下载码
+     */
+    private static final String SIGN_SEPARATOR = ".";
+
+    private static final String PAYLOAD_SEPARATOR = "\n";
+
+    /**
+     * 曾经随配置文件发布过的密钥，不能使用
+     */
+    private static final String PUBLISHED_SECRET = "easypan_download_sign_secret";
+
+    private static final int MIN_SECRET_LENGTH = 16;
+
+    @Resource
+    private AppConfig appConfig;
+
+    /**
+     * 文件服务依赖Redis组件，延迟注入避免循环依赖
+     */
+    @Resource
+    @Lazy
+    private FileInfoService fileInfoService;
+
+    private final ThreadLocal<Mac> macHolder = new ThreadLocal<>();
+
+    /**
+     * 启用签名下载码时必须通过环境变量配置密钥，否则启动失败
+     */
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        String secret = appConfig.getDownloadSignSecret();
+        if (StringTools.isEmpty(secret) || PUBLISHED_SECRET.equals(secret) || secret.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("已启用签名下载码，请通过环境变量EASYPAN_DOWNLOAD_SIGN_SECRET配置至少" + MIN_SECRET_LENGTH
+                    + "位的随机密钥，或设置download.sign.enable=false");
+        }
+    }
+
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(appConfig.getDownloadSignEnable());
+    }
+
+    public boolean isSignedCode(String code) {
+        return code != null && code.contains(SIGN_SEPARATOR);
+    }
+
+    /**
+     * 生成签名下载码
+     *
+     * @param fileId 文件ID
+     * @param userId 用户ID
+     * @return 下载码
+     */
+    public String sign(String fileId, String userId) {
+        long expireTime = System.currentTimeMillis() / 1000 + appConfig.getDownloadSignExpire();
+        String payload = expireTime + PAYLOAD_SEPARATOR + userId + PAYLOAD_SEPARATOR + fileId;
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payloadBytes) + SIGN_SEPARATOR + encoder.encodeToString(hmac(payloadBytes));
+    }
+
+    /**
+     * 校验签名下载码
+     *
+     * @param code 下载码
+     * @return 下载信息，签名不正确、已过期或文件不存在返回null
+     */
+    public DownloadFileDto verify(String code) {
+        if (!isEnabled() || !isSignedCode(code) || StringTools.isEmpty(appConfig.getDownloadSignSecret())) {
+            return null;
+        }
+        int index = code.indexOf(SIGN_SEPARATOR);
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payloadBytes = decoder.decode(code.substring(0, index));
+            byte[] sign = decoder.decode(code.substring(index + 1));
+            if (!MessageDigest.isEqual(sign, hmac(payloadBytes))) {
+                logger.warn("下载码签名不正确: {}", code);
+                return null;
+            }
+            String[] items = new String(payloadBytes, StandardCharsets.UTF_8).split(PAYLOAD_SEPARATOR, 3);
+            if (items.length != 3) {
+                return null;
+            }
+            if (Long.parseLong(items[0]) < System.currentTimeMillis() / 1000) {
+                return null;
+            }
+            FileInfo fileInfo = fileInfoService.getFileInfoByFileIdAndUserId(items[2], items[1]);
+            if (fileInfo == null || FileFolderTypeEnums.FOLDER.getType().equals(fileInfo.getFolderType())
+                    || StringTools.isEmpty(fileInfo.getFilePath()) || !StringTools.pathIsOk(fileInfo.getFilePath())) {
+                return null;
+            }
+            DownloadFileDto downloadFileDto = new DownloadFileDto();
+            downloadFileDto.setDownloadCode(code);
+            downloadFileDto.setFileId(fileInfo.getFileId());
+            downloadFileDto.setFilePath(fileInfo.getFilePath());
+            downloadFileDto.setFileName(fileInfo.getFileName());
+            return downloadFileDto;
+        } catch (IllegalArgumentException e) {
+            logger.warn("下载码格式不正确: {}", code);
+            return null;
+        }
+    }
+
+    private byte[] hmac(byte[] data) {
+        Mac mac = macHolder.get();
+        try {
+            if (mac == null) {
+                mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(new SecretKeySpec(appConfig.getDownloadSignSecret().getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+                macHolder.set(mac);
+            }
+            return mac.doFinal(data);
+        } catch (Exception e) {
+            macHolder.remove();
+            throw new IllegalStateException("下载码签名失败", e);
+        }
+    }
+}
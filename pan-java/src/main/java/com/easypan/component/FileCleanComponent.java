@@ -0,0 +1,170 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.enums.FileDelFlagEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.service.FileInfoService;
+import com.easypan.utils.StringTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 回收站过期文件清理
+ * 按user_id哈希分成多个分区，节点抢到分区锁后按(user_id, file_id)游标分批读取过期文件，每批按用户彻底删除，
+ * 各节点同时执行时分区不会重复处理；按配置的速率限制每秒清理的文件数
+ */
+@Component("fileCleanComponent")
+public class FileCleanComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileCleanComponent.class);
+
+    @Resource
+    private AppConfig appConfig;
+
+    @Resource
+    private RedisUtils<Object> redisUtils;
+
+    @Resource
+    private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
+
+    @Resource
+    private FileShardComponent fileShardComponent;
+
+    @Resource
+    private FileInfoService fileInfoService;
+
+    private final AtomicLong runCount = new AtomicLong();
+
+    private final AtomicLong partitionCount = new AtomicLong();
+
+    private final AtomicLong lockSkipCount = new AtomicLong();
+
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private final AtomicLong cleanFileCount = new AtomicLong();
+
+    private final AtomicLong failUserCount = new AtomicLong();
+
+    private volatile Map<String, Object> lastResult = new LinkedHashMap<>();
+
+    /**
+     * 依次尝试每个分区，已被其他节点处理的分区跳过
+     */
+    public void cleanExpired() {
+        long startTime = System.currentTimeMillis();
+        long startCount = cleanFileCount.get();
+        int partitions = getPartitionCount();
+        int cleanPartitions = 0;
+        //各节点从不同的分区开始，减少抢锁
+        int offset = new Random().nextInt(partitions);
+        for (int i = 0; i < partitions; i++) {
+            int partition = (offset + i) % partitions;
+            String lockKey = Constants.REDIS_KEY_FILE_CLEAN_LOCK + partition;
+            String token = StringTools.getRandomString(Constants.LENGTH_15);
+            if (!redisUtils.setnx(lockKey, token, Constants.FILE_CLEAN_LOCK_EXPIRES)) {
+                lockSkipCount.incrementAndGet();
+                continue;
+            }
+            try {
+                cleanPartition(partition, partitions, lockKey, token);
+                cleanPartitions++;
+                partitionCount.incrementAndGet();
+            } catch (Exception e) {
+                logger.error("清理回收站过期文件失败,partition:{}", partition, e);
+            } finally {
+                redisUtils.unlock(lockKey, token);
+            }
+        }
+        runCount.incrementAndGet();
+        long cleanCount = cleanFileCount.get() - startCount;
+        long costMillis = System.currentTimeMillis() - startTime;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("partitionCount", cleanPartitions);
+        result.put("cleanFileCount", cleanCount);
+        result.put("filesPerSecond", costMillis == 0 ? cleanCount : cleanCount * 1000 / costMillis);
+        result.put("finishTime", System.currentTimeMillis());
+        result.put("costMillis", costMillis);
+        lastResult = result;
+        if (cleanCount > 0) {
+            logger.info("清理回收站过期文件完成,分区数:{},文件数:{},耗时:{}ms", cleanPartitions, cleanCount, costMillis);
+        }
+    }
+
+    private void cleanPartition(int partition, int partitions, String lockKey, String token) {
+        int rate = appConfig.getFileCleanRate() == null ? 0 : appConfig.getFileCleanRate();
+        long startTime = System.currentTimeMillis();
+        long cleanCount = 0;
+        String lastUserId = null;
+        String lastFileId = null;
+        while (true) {
+            String cursorUserId = lastUserId;
+            String cursorFileId = lastFileId;
+            List<FileInfo> batch = fileShardComponent.selectAllShards(() -> fileInfoMapper.selectExpiredRecycleBatch(FileDelFlagEnums.RECYCLE.getFlag(),
+                    partitions, partition, cursorUserId, cursorFileId, Constants.FILE_CLEAN_BATCH_SIZE), FileShardComponent.USER_FILE_ID_ORDER, Constants.FILE_CLEAN_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return;
+            }
+            FileInfo last = batch.get(batch.size() - 1);
+            lastUserId = last.getUserId();
+            lastFileId = last.getFileId();
+            Map<String, List<String>> userFileMap = batch.stream().collect(Collectors.groupingBy(FileInfo::getUserId, LinkedHashMap::new,
+                    Collectors.mapping(FileInfo::getFileId, Collectors.toList())));
+            for (Map.Entry<String, List<String>> entry : userFileMap.entrySet()) {
+                try {
+                    fileInfoService.delFileBatch(entry.getKey(), String.join(",", entry.getValue()), false);
+                    cleanFileCount.addAndGet(entry.getValue().size());
+                } catch (Exception e) {
+                    //游标已经越过这些文件，下次执行时重试
+                    failUserCount.incrementAndGet();
+                    logger.error("清理用户回收站过期文件失败,userId:{}", entry.getKey(), e);
+                }
+            }
+            batchCount.incrementAndGet();
+            cleanCount += batch.size();
+            if (batch.size() < Constants.FILE_CLEAN_BATCH_SIZE) {
+                return;
+            }
+            if (!redisUtils.renewLock(lockKey, token, Constants.FILE_CLEAN_LOCK_EXPIRES)) {
+                logger.warn("回收站清理分区锁已失效，停止处理,partition:{}", partition);
+                return;
+            }
+            if (rate > 0) {
+                long waitMillis = cleanCount * 1000 / rate - (System.currentTimeMillis() - startTime);
+                if (waitMillis > 0) {
+                    try {
+                        Thread.sleep(waitMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private int getPartitionCount() {
+        Integer partitions = appConfig.getFileCleanPartitionCount();
+        return partitions == null || partitions < 1 ? 1 : partitions;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("runCount", runCount.get());
+        metrics.put("partitionCount", partitionCount.get());
+        metrics.put("lockSkipCount", lockSkipCount.get());
+        metrics.put("batchCount", batchCount.get());
+        metrics.put("cleanFileCount", cleanFileCount.get());
+        metrics.put("failUserCount", failUserCount.get());
+        metrics.put("lastResult", lastResult);
+        return metrics;
+    }
+}
@@ -0,0 +1,275 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.utils.ByteBufferPool;
+import com.easypan.utils.StringTools;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 文本文件压缩传输
+ * 按Accept-Encoding协商gzip/deflate，访问较多的文件在磁盘上缓存gzip版本，
+ * 带Range的请求不压缩，由调用方按原文件返回。
+ * 只压缩白名单中的文本后缀，.ts 同时是视频切片的后缀，不在白名单中
+ */
+@Component("fileCompressComponent")
+public class FileCompressComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileCompressComponent.class);
+
+    private static final String ENCODING_GZIP = "gzip";
+
+    private static final String ENCODING_DEFLATE = "deflate";
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * 压缩传输的文本文件后缀
+     */
+    private static final Set<String> TEXT_SUFFIXES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            ".txt", ".log", ".csv", ".md", ".json", ".xml", ".html", ".css", ".scss", ".js", ".jsx", ".vue", ".sql",
+            ".java", ".c", ".h", ".cc", ".cpp", ".hpp", ".hxx", ".cxx", ".cs")));
+
+    private static final int MAX_HIT_RECORDS = 10000;
+
+    @Resource
+    private AppConfig appConfig;
+
+    private final Map<String, AtomicInteger> hitCounts = new ConcurrentHashMap<>();
+
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "file-compress");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 按协商的编码压缩输出文件
+     *
+     * @param request  HTTP请求
+     * @param response HTTP响应
+     * @param filePath 文件完整路径
+     * @return 已压缩输出返回true，不需要压缩时返回false，由调用方按原文件输出
+     */
+    public boolean writeCompressed(HttpServletRequest request, HttpServletResponse response, String filePath) {
+        if (!appConfig.getCompressEnable() || !StringTools.pathIsOk(filePath) || !isCompressible(filePath)) {
+            return false;
+        }
+        response.setHeader("Vary", "Accept-Encoding");
+        String encoding = negotiate(request);
+        if (encoding == null) {
+            return false;
+        }
+        File file = new File(filePath);
+        if (!file.exists() || file.isDirectory() || file.length() < Constants.COMPRESS_MIN_SIZE) {
+            return false;
+        }
+        try {
+            if (ENCODING_GZIP.equals(encoding)) {
+                File cacheFile = getCacheFile(filePath);
+                if (cacheFile != null && cacheFile.exists() && cacheFile.lastModified() >= file.lastModified()) {
+                    //修改时间作为最后访问时间，清理时先删除最久没有访问的
+                    cacheFile.setLastModified(System.currentTimeMillis());
+                    response.setHeader("Content-Encoding", ENCODING_GZIP);
+                    response.setContentLengthLong(cacheFile.length());
+                    try (InputStream in = new FileInputStream(cacheFile)) {
+                        copy(in, response.getOutputStream());
+                    }
+                    return true;
+                }
+                if (cacheFile != null) {
+                    recordHit(file, cacheFile);
+                }
+            }
+            response.setHeader("Content-Encoding", encoding);
+            try (InputStream in = new FileInputStream(file);
+                 DeflaterOutputStream out = ENCODING_GZIP.equals(encoding)
+                         ? new GZIPOutputStream(response.getOutputStream(), ByteBufferPool.BUFFER_SIZE)
+                         : new DeflaterOutputStream(response.getOutputStream())) {
+                copy(in, out);
+                out.finish();
+            }
+        } catch (IOException e) {
+            logger.error("压缩输出文件失败: {}", filePath, e);
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * 清理压缩版本：超过有效期没有访问的、原文件已删除或已修改的删除，剩余的总大小超过上限时从最久没有访问的开始删除
+     */
+    public void cleanCache() {
+        File cacheFolder = new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_COMPRESS);
+        if (!cacheFolder.exists()) {
+            return;
+        }
+        String fileFolder = new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE).getPath();
+        long expireTime = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(Constants.COMPRESS_CACHE_EXPIRES_DAYS);
+        List<File> cacheList = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(cacheFolder.toPath())) {
+            paths.map(Path::toFile).filter(File::isFile).forEach(cacheFile -> {
+                String relativePath = cacheFile.getPath().substring(cacheFolder.getPath().length());
+                File file = new File(fileFolder + StringUtils.removeEnd(relativePath, GZIP_SUFFIX));
+                //压缩中的临时文件按有效期清理
+                boolean temp = !relativePath.endsWith(GZIP_SUFFIX);
+                if (cacheFile.lastModified() < expireTime || !temp && (!file.exists() || file.lastModified() > cacheFile.lastModified())) {
+                    cacheFile.delete();
+                } else if (!temp) {
+                    cacheList.add(cacheFile);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("清理压缩文件失败", e);
+            return;
+        }
+        long totalSize = cacheList.stream().mapToLong(File::length).sum();
+        if (totalSize <= Constants.COMPRESS_CACHE_TOTAL_SIZE) {
+            return;
+        }
+        cacheList.sort(Comparator.comparingLong(File::lastModified));
+        for (File cacheFile : cacheList) {
+            if (totalSize <= Constants.COMPRESS_CACHE_TOTAL_SIZE) {
+                break;
+            }
+            long length = cacheFile.length();
+            if (cacheFile.delete()) {
+                totalSize -= length;
+            }
+        }
+    }
+
+    private boolean isCompressible(String filePath) {
+        return TEXT_SUFFIXES.contains(StringTools.getFileSuffix(filePath).toLowerCase());
+    }
+
+    /**
+     * 带Range的请求不压缩，否则优先gzip
+     */
+    private String negotiate(HttpServletRequest request) {
+        if (request.getHeader("Range") != null) {
+            return null;
+        }
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (StringTools.isEmpty(acceptEncoding)) {
+            return null;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        for (String item : acceptEncoding.toLowerCase().split(",")) {
+            String[] values = item.trim().split(";");
+            boolean accept = true;
+            if (values.length > 1 && values[1].trim().startsWith("q=")) {
+                try {
+                    accept = Double.parseDouble(values[1].trim().substring(2)) > 0;
+                } catch (NumberFormatException e) {
+                    accept = false;
+                }
+            }
+            String name = values[0].trim();
+            if (ENCODING_GZIP.equals(name) || "*".equals(name)) {
+                gzip = gzip || accept;
+            } else if (ENCODING_DEFLATE.equals(name)) {
+                deflate = deflate || accept;
+            }
+        }
+        return gzip ? ENCODING_GZIP : (deflate ? ENCODING_DEFLATE : null);
+    }
+
+    /**
+     * 压缩版本放在compress目录下，与file目录下的相对路径保持一致
+     */
+    private File getCacheFile(String filePath) {
+        String fileFolder = new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE).getPath();
+        String path = new File(filePath).getPath();
+        if (!path.startsWith(fileFolder + File.separator)) {
+            return null;
+        }
+        return new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_COMPRESS + path.substring(fileFolder.length() + 1) + GZIP_SUFFIX);
+    }
+
+    private void recordHit(File file, File cacheFile) {
+        if (file.length() > Constants.COMPRESS_CACHE_MAX_SIZE) {
+            return;
+        }
+        if (hitCounts.size() >= MAX_HIT_RECORDS) {
+            hitCounts.clear();
+        }
+        int hits = hitCounts.computeIfAbsent(file.getPath(), key -> new AtomicInteger()).incrementAndGet();
+        if (hits < Constants.COMPRESS_CACHE_HITS || !building.add(file.getPath())) {
+            return;
+        }
+        try {
+            executorService.execute(() -> {
+                try {
+                    buildCacheFile(file, cacheFile);
+                    hitCounts.remove(file.getPath());
+                } finally {
+                    building.remove(file.getPath());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            building.remove(file.getPath());
+        }
+    }
+
+    private void buildCacheFile(File file, File cacheFile) {
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        try {
+            if (!cacheFile.getParentFile().exists()) {
+                cacheFile.getParentFile().mkdirs();
+            }
+            try (InputStream in = new FileInputStream(file);
+                 GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(tempFile), ByteBufferPool.BUFFER_SIZE)) {
+                copy(in, out);
+            }
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error("生成压缩文件失败: {}", file.getPath(), e);
+            tempFile.delete();
+        }
+    }
+
+    private void copy(InputStream in, OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBufferPool.heap().acquire();
+        try {
+            byte[] bytes = buffer.array();
+            int len;
+            while ((len = in.read(bytes)) != -1) {
+                out.write(bytes, 0, len);
+            }
+            out.flush();
+        } finally {
+            ByteBufferPool.heap().release(buffer);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.enums.FileFolderTypeEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.po.FileMd5Index;
+import com.easypan.mappers.FileMd5IndexMapper;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 秒传索引
+ * md5到已转码成功的物理文件单独建表，按主键查询；前面用redis中的布隆过滤器挡住没有上传过的文件，这部分请求不查数据库。
+ * 布隆过滤器重建完成前直接查索引表；物理文件不存在的索引在查询时删除。
+ * 大文件先按大小和抽样指纹预查，一定没有上传过的文件不用等前端算完整个文件的md5
+ */
+@Component("fileDedupComponent")
+public class FileDedupComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileDedupComponent.class);
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    /**
+     * 返回-1：过滤器未就绪，0：一定不存在，1：可能存在
+     */
+    private static final RedisScript<Long> BLOOM_CHECK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[2]) == 0 then\n" +
+                    "    return -1\n" +
+                    "end\n" +
+                    "for i = 1, #ARGV do\n" +
+                    "    if redis.call('getbit', KEYS[1], ARGV[i]) == 0 then\n" +
+                    "        return 0\n" +
+                    "    end\n" +
+                    "end\n" +
+                    "return 1", Long.class);
+
+    private static final RedisScript<Long> BLOOM_ADD_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #ARGV do\n" +
+                    "    redis.call('setbit', KEYS[1], ARGV[i], 1)\n" +
+                    "end\n" +
+                    "return #ARGV", Long.class);
+
+    @Resource
+    private RedisUtils<Object> redisUtils;
+
+    @Resource
+    private FileMd5IndexMapper fileMd5IndexMapper;
+
+    @Resource
+    private AppConfig appConfig;
+
+    private final AtomicLong bloomRejectCount = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong falsePositiveCount = new AtomicLong();
+
+    private final AtomicLong staleCount = new AtomicLong();
+
+    private final AtomicLong fingerprintNewCount = new AtomicLong();
+
+    private final AtomicLong fingerprintMaybeCount = new AtomicLong();
+
+    /**
+     * 查询可以秒传的文件，返回的文件信息只有物理文件相关的字段
+     */
+    public FileInfo findFile(String fileMd5) {
+        if (fileMd5 == null || fileMd5.isEmpty()) {
+            return null;
+        }
+        if (!bloomMightContain(fileMd5)) {
+            bloomRejectCount.incrementAndGet();
+            return null;
+        }
+        FileMd5Index index = fileMd5IndexMapper.selectByFileMd5(fileMd5);
+        if (index == null) {
+            falsePositiveCount.incrementAndGet();
+            return null;
+        }
+        if (!new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + index.getFilePath()).exists()) {
+            staleCount.incrementAndGet();
+            remove(fileMd5, index.getFilePath());
+            return null;
+        }
+        hitCount.incrementAndGet();
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFileMd5(fileMd5);
+        fileInfo.setFilePath(index.getFilePath());
+        fileInfo.setFileSize(index.getFileSize());
+        fileInfo.setFileCover(index.getFileCover());
+        fileInfo.setFileCategory(index.getFileCategory());
+        fileInfo.setFileType(index.getFileType());
+        fileInfo.setFolderType(FileFolderTypeEnums.FILE.getType());
+        return fileInfo;
+    }
+
+    /**
+     * 按文件大小和抽样指纹预查，返回false时一定没有可以秒传的文件，返回true时需要完整的md5再确认
+     */
+    public boolean mightExist(Long fileSize, String fingerprint) {
+        String fingerprintKey = getFingerprintKey(fileSize, fingerprint);
+        boolean exist = bloomMightContain(fingerprintKey) && fileMd5IndexMapper.selectCountByFingerprint(fileSize, fingerprint.toLowerCase()) > 0;
+        if (exist) {
+            fingerprintMaybeCount.incrementAndGet();
+        } else {
+            fingerprintNewCount.incrementAndGet();
+        }
+        return exist;
+    }
+
+    /**
+     * 文件转码成功后登记，同一个md5保留最先登记的物理文件
+     */
+    public void register(FileInfo fileInfo) {
+        if (fileInfo.getFileMd5() == null || fileInfo.getFilePath() == null) {
+            return;
+        }
+        String fingerprint = null;
+        try {
+            fingerprint = computeFingerprint(new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + fileInfo.getFilePath()));
+        } catch (IOException e) {
+            logger.error("计算抽样指纹失败,filePath:{}", fileInfo.getFilePath(), e);
+        }
+        FileMd5Index index = new FileMd5Index();
+        index.setFileMd5(fileInfo.getFileMd5());
+        index.setFilePath(fileInfo.getFilePath());
+        index.setFileSize(fileInfo.getFileSize());
+        index.setFileCover(fileInfo.getFileCover());
+        index.setFileCategory(fileInfo.getFileCategory());
+        index.setFileType(fileInfo.getFileType());
+        index.setFileFingerprint(fingerprint);
+        index.setCreateTime(new Date());
+        fileMd5IndexMapper.insertIgnore(index);
+        try {
+            bloomAdd(Collections.singletonList(index));
+        } catch (Exception e) {
+            // 布隆过滤器中缺少时只是少一次秒传，下次重建时补上
+            logger.error("写入秒传布隆过滤器失败,md5:{}", fileInfo.getFileMd5(), e);
+        }
+    }
+
+    /**
+     * 物理文件删除时移除索引，布隆过滤器不能删除，之后的查询会落到索引表上
+     */
+    public void remove(String fileMd5, String filePath) {
+        fileMd5IndexMapper.deleteByFileMd5(fileMd5, filePath);
+    }
+
+    /**
+     * 布隆过滤器不存在时（首次部署、redis数据丢失）从索引表重建，重建完成前的查询直接查索引表
+     */
+    public void rebuildBloomIfAbsent() {
+        if (redisUtils.get(Constants.REDIS_KEY_FILE_MD5_BLOOM_READY) != null) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        int count = 0;
+        String lastMd5 = null;
+        while (true) {
+            List<FileMd5Index> indexList = fileMd5IndexMapper.selectBatch(lastMd5, REBUILD_BATCH_SIZE);
+            if (indexList.isEmpty()) {
+                break;
+            }
+            bloomAdd(indexList);
+            count += indexList.size();
+            lastMd5 = indexList.get(indexList.size() - 1).getFileMd5();
+            if (indexList.size() < REBUILD_BATCH_SIZE) {
+                break;
+            }
+        }
+        redisUtils.set(Constants.REDIS_KEY_FILE_MD5_BLOOM_READY, System.currentTimeMillis());
+        logger.info("秒传布隆过滤器重建完成,md5数量:{},耗时:{}ms", count, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 补齐没有抽样指纹的索引（升级前登记的文件），物理文件不存在的删除
+     */
+    public void fillFingerprint() {
+        int count = 0;
+        String lastMd5 = null;
+        while (true) {
+            List<FileMd5Index> indexList = fileMd5IndexMapper.selectBatchWithoutFingerprint(lastMd5, REBUILD_BATCH_SIZE);
+            if (indexList.isEmpty()) {
+                break;
+            }
+            List<FileMd5Index> filledList = new ArrayList<>();
+            for (FileMd5Index index : indexList) {
+                File file = new File(appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + index.getFilePath());
+                if (!file.exists()) {
+                    remove(index.getFileMd5(), index.getFilePath());
+                    continue;
+                }
+                try {
+                    index.setFileFingerprint(computeFingerprint(file));
+                } catch (IOException e) {
+                    logger.error("计算抽样指纹失败,filePath:{}", index.getFilePath(), e);
+                    continue;
+                }
+                fileMd5IndexMapper.updateFingerprint(index.getFileMd5(), index.getFileFingerprint());
+                filledList.add(index);
+            }
+            if (!filledList.isEmpty()) {
+                bloomAdd(filledList);
+            }
+            count += filledList.size();
+            lastMd5 = indexList.get(indexList.size() - 1).getFileMd5();
+            if (indexList.size() < REBUILD_BATCH_SIZE) {
+                break;
+            }
+        }
+        if (count > 0) {
+            logger.info("补齐秒传索引抽样指纹,数量:{}", count);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("bloomRejectCount", bloomRejectCount.get());
+        metrics.put("hitCount", hitCount.get());
+        metrics.put("falsePositiveCount", falsePositiveCount.get());
+        metrics.put("staleCount", staleCount.get());
+        metrics.put("fingerprintNewCount", fingerprintNewCount.get());
+        metrics.put("fingerprintMaybeCount", fingerprintMaybeCount.get());
+        return metrics;
+    }
+
+    /**
+     * 抽样指纹：文件不大于三段时整个文件的md5，否则头、中、尾各取一段拼接后的md5，中间段从(大小-段长)/2开始
+     */
+    public static String computeFingerprint(File file) throws IOException {
+        MessageDigest digest = DigestUtils.getMd5Digest();
+        long sampleSize = Constants.FILE_FINGERPRINT_SAMPLE_SIZE;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            long fileSize = randomAccessFile.length();
+            long[] offsets = fileSize <= sampleSize * 3 ? new long[]{0} : new long[]{0, (fileSize - sampleSize) / 2, fileSize - sampleSize};
+            long length = fileSize <= sampleSize * 3 ? fileSize : sampleSize;
+            byte[] buffer = new byte[(int) length];
+            for (long offset : offsets) {
+                randomAccessFile.seek(offset);
+                randomAccessFile.readFully(buffer);
+                digest.update(buffer);
+            }
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private boolean bloomMightContain(String key) {
+        Long mightContain;
+        try {
+            mightContain = redisUtils.execute(BLOOM_CHECK_SCRIPT,
+                    Arrays.asList(Constants.REDIS_KEY_FILE_MD5_BLOOM, Constants.REDIS_KEY_FILE_MD5_BLOOM_READY), getBitOffsets(key));
+        } catch (Exception e) {
+            logger.warn("读取秒传布隆过滤器失败,key:{}", key, e);
+            return true;
+        }
+        return mightContain == null || mightContain != 0;
+    }
+
+    /**
+     * md5和抽样指纹都放进同一个布隆过滤器
+     */
+    private void bloomAdd(List<FileMd5Index> indexList) {
+        List<Object> offsets = new ArrayList<>();
+        for (FileMd5Index index : indexList) {
+            offsets.addAll(Arrays.asList(getBitOffsets(index.getFileMd5())));
+            if (index.getFileFingerprint() != null) {
+                offsets.addAll(Arrays.asList(getBitOffsets(getFingerprintKey(index.getFileSize(), index.getFileFingerprint()))));
+            }
+        }
+        redisUtils.execute(BLOOM_ADD_SCRIPT, Collections.singletonList(Constants.REDIS_KEY_FILE_MD5_BLOOM), offsets.toArray());
+    }
+
+    private static String getFingerprintKey(Long fileSize, String fingerprint) {
+        return fileSize + ":" + fingerprint.toLowerCase();
+    }
+
+    /**
+     * md5本身是均匀的哈希值，前后各取64位做双重哈希得到每一位的偏移
+     */
+    static Object[] getBitOffsets(String fileMd5) {
+        String hex = fileMd5.toLowerCase();
+        if (!hex.matches("[0-9a-f]{32}")) {
+            hex = DigestUtils.md5Hex(fileMd5);
+        }
+        long hash1 = Long.parseUnsignedLong(hex.substring(0, 16), 16);
+        long hash2 = Long.parseUnsignedLong(hex.substring(16), 16);
+        Object[] offsets = new Object[Constants.FILE_MD5_BLOOM_HASHES];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = Math.floorMod(hash1 + i * hash2, Constants.FILE_MD5_BLOOM_BITS);
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,249 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.ReadWriteRoutingDataSource;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.utils.CopyTools;
+import com.easypan.utils.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 文件信息缓存，按（fileId，userId）缓存单条文件记录
+ * 本地缓存时间较短，redis缓存一小时；按用户批量修改时递增该用户的版本号，旧版本的缓存自然失效。
+ * 失效消息通过redis发布到所有节点，事务中不读写缓存，事务提交后再删除一次
+ */
+@Component("fileInfoCacheComponent")
+public class FileInfoCacheComponent implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileInfoCacheComponent.class);
+
+    /**
+     * 全部用户共用的版本号
+     */
+    private static final String ALL = "all";
+
+    private static final String MESSAGE_FILE = "f";
+
+    private static final String MESSAGE_USER = "u";
+
+    private static final String MESSAGE_SEPARATOR = ":";
+
+    @Resource
+    private RedisUtils<Object> redisUtils;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final Map<String, LocalEntry> localCache = new ConcurrentHashMap<>();
+
+    /**
+     * 本地缓存的版本号，超过本地缓存时间后重新从redis读取
+     */
+    private final Map<String, LocalEntry> localGen = new ConcurrentHashMap<>();
+
+    private final AtomicLong localHitCount = new AtomicLong();
+
+    private final AtomicLong redisHitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(Constants.REDIS_CHANNEL_FILE_INFO_EVICT));
+    }
+
+    /**
+     * 查询文件信息，返回的是缓存的副本，调用方可以修改
+     *
+     * @param loader 缓存中没有时从数据库查询
+     */
+    public FileInfo get(String fileId, String userId, Supplier<FileInfo> loader) {
+        if (fileId == null || userId == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loader.get();
+        }
+        String localKey = userId + MESSAGE_SEPARATOR + fileId;
+        String gen;
+        try {
+            gen = getGen(userId) + "." + getGen(ALL);
+        } catch (Exception e) {
+            logger.warn("读取文件缓存版本号失败,userId:{}", userId, e);
+            return loader.get();
+        }
+        long now = System.currentTimeMillis();
+        LocalEntry entry = localCache.get(localKey);
+        if (entry != null && entry.expireTime > now && gen.equals(entry.gen)) {
+            localHitCount.incrementAndGet();
+            return copy((FileInfo) entry.value);
+        }
+        String redisKey = Constants.REDIS_KEY_FILE_INFO + userId + MESSAGE_SEPARATOR + gen + MESSAGE_SEPARATOR + fileId;
+        FileInfo fileInfo = null;
+        try {
+            Object value = redisUtils.get(redisKey);
+            if (value instanceof String) {
+                fileInfo = JsonUtils.convertJson2Obj((String) value, FileInfo.class);
+            }
+        } catch (Exception e) {
+            logger.warn("读取文件缓存失败,key:{}", redisKey, e);
+        }
+        if (fileInfo != null) {
+            redisHitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+            // 缓存从主库加载，避免把从库延迟的旧数据写入缓存
+            fileInfo = ReadWriteRoutingDataSource.usePrimary(loader);
+            if (fileInfo == null) {
+                return null;
+            }
+            redisUtils.setex(redisKey, JsonUtils.convertObj2Json(fileInfo), Constants.REDIS_KEY_EXPIRES_ONE_HOUR);
+        }
+        putLocal(localKey, new LocalEntry(copy(fileInfo), gen, now + Constants.FILE_INFO_LOCAL_CACHE_EXPIRES));
+        return fileInfo;
+    }
+
+    /**
+     * 删除单个文件的缓存，事务中修改时提交后再删除一次
+     */
+    public void evict(String fileId, String userId) {
+        doEvict(fileId, userId);
+        afterCommit(() -> doEvict(fileId, userId));
+    }
+
+    /**
+     * 用户的文件批量修改，递增该用户的版本号
+     */
+    public void evictUser(String userId) {
+        doEvictUser(userId);
+        afterCommit(() -> doEvictUser(userId));
+    }
+
+    /**
+     * 无法确定修改了哪些用户的文件时，所有缓存失效
+     */
+    public void evictAll() {
+        evictUser(ALL);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisUtils.deserialize(message.getBody());
+        if (!(body instanceof String)) {
+            return;
+        }
+        String[] values = ((String) body).split(MESSAGE_SEPARATOR);
+        if (values.length != 3) {
+            return;
+        }
+        if (MESSAGE_FILE.equals(values[0])) {
+            localCache.remove(values[1] + MESSAGE_SEPARATOR + values[2]);
+        } else if (MESSAGE_USER.equals(values[0])) {
+            localGen.put(values[1], new LocalEntry(values[2], null, System.currentTimeMillis() + Constants.FILE_INFO_LOCAL_CACHE_EXPIRES));
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("localSize", localCache.size());
+        metrics.put("localHitCount", localHitCount.get());
+        metrics.put("redisHitCount", redisHitCount.get());
+        metrics.put("missCount", missCount.get());
+        metrics.put("evictCount", evictCount.get());
+        return metrics;
+    }
+
+    private void doEvict(String fileId, String userId) {
+        evictCount.incrementAndGet();
+        localCache.remove(userId + MESSAGE_SEPARATOR + fileId);
+        try {
+            redisUtils.delete(Constants.REDIS_KEY_FILE_INFO + userId + MESSAGE_SEPARATOR + getGen(userId) + "." + getGen(ALL)
+                    + MESSAGE_SEPARATOR + fileId);
+            redisUtils.publish(Constants.REDIS_CHANNEL_FILE_INFO_EVICT, MESSAGE_FILE + MESSAGE_SEPARATOR + userId + MESSAGE_SEPARATOR + fileId);
+        } catch (Exception e) {
+            logger.error("删除文件缓存失败,userId:{},fileId:{}", userId, fileId, e);
+        }
+    }
+
+    private void doEvictUser(String userId) {
+        evictCount.incrementAndGet();
+        try {
+            Long gen = redisUtils.incr(Constants.REDIS_KEY_FILE_INFO_GEN + userId);
+            localGen.put(userId, new LocalEntry(String.valueOf(gen), null, System.currentTimeMillis() + Constants.FILE_INFO_LOCAL_CACHE_EXPIRES));
+            redisUtils.publish(Constants.REDIS_CHANNEL_FILE_INFO_EVICT, MESSAGE_USER + MESSAGE_SEPARATOR + userId + MESSAGE_SEPARATOR + gen);
+        } catch (Exception e) {
+            // 版本号无法递增时至少清掉本节点的缓存
+            localGen.remove(userId);
+            localCache.clear();
+            logger.error("递增文件缓存版本号失败,userId:{}", userId, e);
+        }
+    }
+
+    private String getGen(String userId) {
+        LocalEntry entry = localGen.get(userId);
+        long now = System.currentTimeMillis();
+        if (entry != null && entry.expireTime > now) {
+            return (String) entry.value;
+        }
+        Object value = redisUtils.get(Constants.REDIS_KEY_FILE_INFO_GEN + userId);
+        String gen = value == null ? "0" : String.valueOf(value);
+        if (localGen.size() >= Constants.FILE_INFO_LOCAL_CACHE_MAX_SIZE) {
+            localGen.clear();
+        }
+        localGen.put(userId, new LocalEntry(gen, null, now + Constants.FILE_INFO_LOCAL_CACHE_EXPIRES));
+        return gen;
+    }
+
+    private void putLocal(String localKey, LocalEntry entry) {
+        if (localCache.size() >= Constants.FILE_INFO_LOCAL_CACHE_MAX_SIZE) {
+            localCache.clear();
+        }
+        localCache.put(localKey, entry);
+    }
+
+    private static FileInfo copy(FileInfo fileInfo) {
+        return CopyTools.copy(fileInfo, FileInfo.class);
+    }
+
+    private static void afterCommit(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                runnable.run();
+            }
+        });
+    }
+
+    private static class LocalEntry {
+
+        private final Object value;
+
+        private final String gen;
+
+        private final long expireTime;
+
+        LocalEntry(Object value, String gen, long expireTime) {
+            this.value = value;
+            this.gen = gen;
+            this.expireTime = expireTime;
+        }
+    }
+}
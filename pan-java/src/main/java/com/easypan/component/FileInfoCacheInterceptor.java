@@ -0,0 +1,97 @@
+package com.easypan.component;
+
+import com.easypan.entity.po.FileInfo;
+import com.easypan.mappers.FileInfoMapper;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.*;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 文件表写操作后删除文件信息缓存
+ * 单条记录和按列表逐条修改的按（fileId，userId）删除，按用户批量修改的递增该用户的缓存版本号，确定不了用户的全部失效
+ */
+@Component("fileInfoCacheInterceptor")
+@Intercepts({@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})})
+public class FileInfoCacheInterceptor implements Interceptor {
+
+    private static final String NAMESPACE = FileInfoMapper.class.getName() + ".";
+
+    @Resource
+    private FileInfoCacheComponent fileInfoCacheComponent;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+        if (mappedStatement.getId().startsWith(NAMESPACE)) {
+            evict(mappedStatement, invocation.getArgs()[1]);
+        }
+        return result;
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+
+    private void evict(MappedStatement mappedStatement, Object parameter) {
+        if (!(parameter instanceof Map)) {
+            fileInfoCacheComponent.evictAll();
+            return;
+        }
+        Map<?, ?> paramMap = (Map<?, ?>) parameter;
+        // 新插入的记录不会在缓存中
+        boolean insert = SqlCommandType.INSERT == mappedStatement.getSqlCommandType()
+                && !mappedStatement.getId().endsWith("OrUpdate") && !mappedStatement.getId().endsWith("OrUpdateBatch");
+        Object userId = paramMap.containsKey("userId") ? paramMap.get("userId") : null;
+        Object fileId = paramMap.containsKey("fileId") ? paramMap.get("fileId") : null;
+        // 按列表逐条修改的，列表中没有用户ID时取语句的用户ID
+        Object list = paramMap.containsKey("list") ? paramMap.get("list")
+                : paramMap.containsKey("rollupList") ? paramMap.get("rollupList") : null;
+        if (list instanceof Collection) {
+            if (!insert) {
+                for (Object item : (Collection<?>) list) {
+                    evictBean(item, userId);
+                }
+            }
+            return;
+        }
+        if (userId != null && fileId != null) {
+            fileInfoCacheComponent.evict(fileId.toString(), userId.toString());
+        } else if (userId != null) {
+            fileInfoCacheComponent.evictUser(userId.toString());
+        } else if (paramMap.containsKey("bean") && paramMap.size() <= 2) {
+            if (!insert) {
+                evictBean(paramMap.get("bean"), null);
+            }
+        } else {
+            fileInfoCacheComponent.evictAll();
+        }
+    }
+
+    /**
+     * 按记录删除，记录中没有用户ID时用defaultUserId，都确定不了时按用户或全部失效
+     */
+    private void evictBean(Object bean, Object defaultUserId) {
+        FileInfo fileInfo = bean instanceof FileInfo ? (FileInfo) bean : null;
+        Object userId = fileInfo != null && fileInfo.getUserId() != null ? fileInfo.getUserId() : defaultUserId;
+        if (fileInfo != null && fileInfo.getFileId() != null && userId != null) {
+            fileInfoCacheComponent.evict(fileInfo.getFileId(), userId.toString());
+        } else if (userId != null) {
+            fileInfoCacheComponent.evictUser(userId.toString());
+        } else {
+            fileInfoCacheComponent.evictAll();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.easypan.component;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import com.easypan.entity.config.ReadWriteRoutingDataSource;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.entity.vo.PaginationResultVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 目录列表缓存
+ * 按（用户，父目录，分类，删除标记，排序，分页）缓存整页结果，缓存key中带上目录的版本号。
+ * 目录下的文件有变化时递增目录路径上所有目录的版本号（上级目录列表中的目录大小也变了），旧版本的缓存自然过期；
+ * 不限父目录的列表（分类、回收站、分享根目录）使用用户的版本号，用户任何文件变化都会递增
+ */
+@Component("fileListCacheComponent")
+public class FileListCacheComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileListCacheComponent.class);
+
+    private static final String ALL = "all";
+
+    /**
+     * 子树批量修改删除标记时递增，所有目录列表失效
+     */
+    private static final String TREE = "tree";
+
+    private static final RedisScript<Long> INCR_VERSION_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do\n" +
+                    "    redis.call('incr', KEYS[i])\n" +
+                    "    redis.call('expire', KEYS[i], ARGV[1])\n" +
+                    "end\n" +
+                    "return #KEYS", Long.class);
+
+    private static final Set<String> LIST_CACHE_FIELDS = new HashSet<>(Arrays.asList("userId", "filePid", "fileId", "fileCategory", "delFlag"));
+
+    private static final List<Field> FILTER_FIELDS = ListCountComponent.getFilterFields(FileInfoQuery.class, LIST_CACHE_FIELDS);
+
+    @Resource
+    private RedisUtils<Object> redisUtils;
+
+    private final Map<String, EndpointStat> endpointStats = new ConcurrentHashMap<>();
+
+    /**
+     * 获取文件列表，有其他查询条件的不走缓存
+     *
+     * @param endpoint 接口名称，用于统计命中率
+     * @param query    查询条件
+     * @param loader   缓存中没有时从数据库查询
+     */
+    public PaginationResultVO<FileInfo> getList(String endpoint, FileInfoQuery query, Supplier<PaginationResultVO<FileInfo>> loader) {
+        EndpointStat stat = endpointStats.computeIfAbsent(endpoint, key -> new EndpointStat());
+        if (query.getUserId() == null || query.getDelFlag() == null || ListCountComponent.hasFilter(query, FILTER_FIELDS)) {
+            stat.bypassCount.incrementAndGet();
+            return loader.get();
+        }
+        String cacheKey;
+        try {
+            cacheKey = getCacheKey(query);
+            Object value = redisUtils.get(cacheKey);
+            if (value instanceof String) {
+                stat.hitCount.incrementAndGet();
+                return JSON.parseObject((String) value, new TypeReference<PaginationResultVO<FileInfo>>() {
+                });
+            }
+        } catch (Exception e) {
+            logger.warn("读取文件列表缓存失败,userId:{}", query.getUserId(), e);
+            stat.bypassCount.incrementAndGet();
+            return loader.get();
+        }
+        stat.missCount.incrementAndGet();
+        // 缓存从主库加载，避免把从库延迟的旧数据写入缓存
+        PaginationResultVO<FileInfo> result = ReadWriteRoutingDataSource.usePrimary(loader);
+        redisUtils.setex(cacheKey, JSON.toJSONString(result), Constants.REDIS_KEY_EXPIRES_FIVE_MIN);
+        return result;
+    }
+
+    public FileListChange fileListChange(String userId) {
+        return new FileListChange(userId);
+    }
+
+    /**
+     * 各接口的缓存命中情况
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Map.Entry<String, EndpointStat> entry : endpointStats.entrySet()) {
+            EndpointStat stat = entry.getValue();
+            long hit = stat.hitCount.get();
+            long miss = stat.missCount.get();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("hitCount", hit);
+            item.put("missCount", miss);
+            item.put("bypassCount", stat.bypassCount.get());
+            item.put("hitRate", hit + miss == 0 ? 0 : (double) hit / (hit + miss));
+            metrics.put(entry.getKey(), item);
+        }
+        return metrics;
+    }
+
+    private String getCacheKey(FileInfoQuery query) {
+        String userId = query.getUserId();
+        String scope;
+        List<Object> versions;
+        if (query.getFilePid() != null) {
+            scope = query.getFilePid();
+            versions = redisUtils.multiGet(Arrays.asList(getVersionKey(userId, query.getFilePid()), getVersionKey(userId, TREE)));
+        } else {
+            scope = query.getFileId() == null ? ALL : ALL + "," + query.getFileId();
+            versions = redisUtils.multiGet(Collections.singletonList(getVersionKey(userId, ALL)));
+        }
+        StringBuilder version = new StringBuilder();
+        for (Object item : versions) {
+            version.append(item == null ? "0" : item).append(".");
+        }
+        return Constants.REDIS_KEY_FILE_LIST + userId + ":" + scope + ":" + version + ":" + query.getFileCategory() + ":" + query.getDelFlag()
+                + ":" + query.getOrderBy() + ":" + (query.getCursor() != null ? query.getCursor() + ":" + query.getQueryTotal() : query.getPageNo())
+                + ":" + query.getPageSize();
+    }
+
+    private static String getVersionKey(String userId, String folderId) {
+        return Constants.REDIS_KEY_FILE_LIST_VERSION + userId + ":" + folderId;
+    }
+
+    private void incrVersion(List<String> keys) {
+        // 版本号保留时间比列表缓存长，过期后从0开始也不会和旧的列表缓存冲突
+        redisUtils.execute(INCR_VERSION_SCRIPT, keys, Constants.REDIS_KEY_EXPIRES_DAY);
+    }
+
+    /**
+     * 一次操作中变化的目录，提交时一次递增版本号，事务中提交后执行
+     */
+    public class FileListChange {
+
+        private final String userId;
+
+        private final Set<String> folderIds = new LinkedHashSet<>();
+
+        private FileListChange(String userId) {
+            this.userId = userId;
+            folderIds.add(ALL);
+        }
+
+        /**
+         * 文件所在目录的目录路径，路径上的目录和根目录都失效
+         */
+        public FileListChange addPath(String folderTreePath) {
+            folderIds.add(Constants.ZERO_STR);
+            if (folderTreePath == null) {
+                // 路径未知时所有目录失效
+                folderIds.add(TREE);
+                return this;
+            }
+            for (String folderId : folderTreePath.split(Constants.TREE_PATH_SEPARATOR)) {
+                if (!folderId.isEmpty()) {
+                    folderIds.add(folderId);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 子树中的文件批量变化
+         */
+        public FileListChange addTree() {
+            folderIds.add(TREE);
+            return this;
+        }
+
+        public void submit() {
+            List<String> keys = new ArrayList<>();
+            for (String folderId : folderIds) {
+                keys.add(getVersionKey(userId, folderId));
+            }
+            incrVersion(keys);
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                return;
+            }
+            // 事务提交前读到旧数据写入的缓存，提交后再递增一次
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    incrVersion(keys);
+                }
+            });
+        }
+    }
+
+    private static class EndpointStat {
+
+        private final AtomicLong hitCount = new AtomicLong();
+
+        private final AtomicLong missCount = new AtomicLong();
+
+        private final AtomicLong bypassCount = new AtomicLong();
+    }
+}
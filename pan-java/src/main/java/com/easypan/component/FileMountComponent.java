@@ -0,0 +1,204 @@
+package com.easypan.component;
+
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.enums.FileDelFlagEnums;
+import com.easypan.entity.enums.FileFolderTypeEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.utils.CopyTools;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 挂载目录
+ * 保存分享的目录只插入一条引用来源目录的挂载记录，打开时读取来源目录当前的下级文件，保存者修改时才复制为自己的文件。
+ * 来源用户的修改不复制挂载目录，保存者看到的是来源目录的最新内容，来源目录删除后挂载目录为空。
+ * 挂载目录下的文件ID为 挂载目录ID-来源文件ID，进入下一层挂载目录时再追加，如 M-N-F；
+ * 复制出的文件ID由挂载目录ID和来源文件ID生成，复制前拿到的ID复制后仍能找到对应的文件
+ */
+@Component("fileMountComponent")
+public class FileMountComponent {
+
+    private static final String ID_CHARS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    @Resource
+    private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
+
+    /**
+     * 是否是挂载目录下的文件ID
+     */
+    public static boolean isVirtualId(String fileId) {
+        return fileId != null && fileId.contains(Constants.MOUNT_ID_SEPARATOR);
+    }
+
+    public static boolean isMount(FileInfo fileInfo) {
+        return fileInfo != null && fileInfo.getRefFileId() != null;
+    }
+
+    /**
+     * 文件ID中用户自己的文件ID，挂载目录下的文件为挂载目录ID
+     */
+    public static String getMountFileId(String fileId) {
+        int index = fileId.indexOf(Constants.MOUNT_ID_SEPARATOR);
+        return index < 0 ? fileId : fileId.substring(0, index);
+    }
+
+    /**
+     * 复制挂载目录时来源文件复制出的文件ID
+     */
+    public static String getMaterializedId(String mountFileId, String sourceFileId) {
+        byte[] digest = DigestUtils.md5((mountFileId + Constants.MOUNT_ID_SEPARATOR + sourceFileId).getBytes(StandardCharsets.UTF_8));
+        long value = ByteBuffer.wrap(digest).getLong() & Long.MAX_VALUE;
+        StringBuilder fileId = new StringBuilder();
+        for (int i = 0; i < Constants.LENGTH_10; i++) {
+            fileId.append(ID_CHARS.charAt((int) (value % ID_CHARS.length())));
+            value /= ID_CHARS.length();
+        }
+        return fileId.toString();
+    }
+
+    /**
+     * 挂载目录下的文件ID去掉第一层挂载，第一层挂载目录已复制时为复制出的文件ID
+     */
+    public static String getMaterializedId(String fileId) {
+        String[] segments = fileId.split(Constants.MOUNT_ID_SEPARATOR, 3);
+        String materializedId = getMaterializedId(segments[0], segments[1]);
+        return segments.length == 3 ? materializedId + Constants.MOUNT_ID_SEPARATOR + segments[2] : materializedId;
+    }
+
+    /**
+     * 挂载目录引用的来源目录，来源是挂载目录时继续向下，每次都读取来源目录的当前记录。
+     * 只有来源目录已删除（不存在、不是正常状态或不再是目录）时返回null，内容变化不影响
+     */
+    public FileInfo getSource(FileInfo mount) {
+        FileInfo current = mount;
+        for (int depth = 0; depth < Constants.MOUNT_MAX_DEPTH && isMount(current); depth++) {
+            current = fileInfoMapper.selectByFileIdAndUserId(current.getRefFileId(), current.getRefUserId());
+            if (current == null || !FileDelFlagEnums.USING.getFlag().equals(current.getDelFlag())
+                    || !FileFolderTypeEnums.FOLDER.getType().equals(current.getFolderType())) {
+                return null;
+            }
+        }
+        return isMount(current) ? null : current;
+    }
+
+    /**
+     * 解析用户看到的文件，挂载目录下的文件返回来源文件改为用户视角的ID，已经复制的部分按复制出的ID查询
+     *
+     * @return 文件不存在或不在挂载的来源目录下时返回null
+     */
+    public MountNode resolve(String userId, String fileId) {
+        String id = fileId;
+        FileInfo row;
+        while (true) {
+            row = fileInfoMapper.selectByFileIdAndUserId(getMountFileId(id), userId);
+            if (row == null) {
+                return null;
+            }
+            if (!isVirtualId(id) || isMount(row)) {
+                break;
+            }
+            id = getMaterializedId(id);
+        }
+        if (!isMount(row)) {
+            return new MountNode(row, null, null, null, null);
+        }
+        FileInfo source = getSource(row);
+        if (!isVirtualId(id)) {
+            return source == null ? new MountNode(row, null, null, null, null)
+                    : new MountNode(row, null, source.getUserId(), source.getFileId(), id);
+        }
+        if (source == null) {
+            return null;
+        }
+        //中间的每一层都是挂载目录，每一层都必须在上一层的来源目录下
+        String[] segments = id.split(Constants.MOUNT_ID_SEPARATOR);
+        String prefix = segments[0];
+        FileInfo current = null;
+        for (int i = 1; i < segments.length; i++) {
+            current = fileInfoMapper.selectByFileIdAndUserId(segments[i], source.getUserId());
+            if (current == null || !FileDelFlagEnums.USING.getFlag().equals(current.getDelFlag()) || current.getTreePath() == null
+                    || current.getFileId().equals(source.getFileId())
+                    || !current.getTreePath().contains(Constants.TREE_PATH_SEPARATOR + source.getFileId() + Constants.TREE_PATH_SEPARATOR)) {
+                return null;
+            }
+            if (i < segments.length - 1) {
+                source = getSource(current);
+                if (source == null) {
+                    return null;
+                }
+                prefix = prefix + Constants.MOUNT_ID_SEPARATOR + segments[i];
+            }
+        }
+        String viewPid = current.getFilePid().equals(source.getFileId()) ? prefix : prefix + Constants.MOUNT_ID_SEPARATOR + current.getFilePid();
+        FileInfo childSource = isMount(current) ? getSource(current) : current;
+        FileInfo view = toView(CopyTools.copy(current, FileInfo.class), userId, id, viewPid);
+        if (childSource == null || !FileFolderTypeEnums.FOLDER.getType().equals(current.getFolderType())) {
+            return new MountNode(view, current, null, null, null);
+        }
+        return new MountNode(view, current, childSource.getUserId(), childSource.getFileId(), isMount(current) ? id : prefix);
+    }
+
+    /**
+     * 来源文件改为用户看到的文件，挂载链对用户不可见
+     */
+    public static FileInfo toView(FileInfo source, String userId, String viewId, String viewPid) {
+        source.setFileId(viewId);
+        source.setFilePid(viewPid);
+        source.setUserId(userId);
+        source.setTreePath(null);
+        source.setRefUserId(null);
+        source.setRefFileId(null);
+        return source;
+    }
+
+    /**
+     * 解析结果，source为挂载目录下的文件对应的来源文件，
+     * sourceFolderId不为空时目录的下级文件为来源目录的下级文件，ID为 childIdPrefix-来源文件ID
+     */
+    public static class MountNode {
+
+        private final FileInfo fileInfo;
+
+        private final FileInfo source;
+
+        private final String sourceUserId;
+
+        private final String sourceFolderId;
+
+        private final String childIdPrefix;
+
+        MountNode(FileInfo fileInfo, FileInfo source, String sourceUserId, String sourceFolderId, String childIdPrefix) {
+            this.fileInfo = fileInfo;
+            this.source = source;
+            this.sourceUserId = sourceUserId;
+            this.sourceFolderId = sourceFolderId;
+            this.childIdPrefix = childIdPrefix;
+        }
+
+        public FileInfo getFileInfo() {
+            return fileInfo;
+        }
+
+        public FileInfo getSource() {
+            return source;
+        }
+
+        public String getSourceUserId() {
+            return sourceUserId;
+        }
+
+        public String getSourceFolderId() {
+            return sourceFolderId;
+        }
+
+        public String getChildIdPrefix() {
+            return childIdPrefix;
+        }
+    }
+}
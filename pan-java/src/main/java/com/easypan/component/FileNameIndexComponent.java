@@ -0,0 +1,540 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.ReadWriteRoutingDataSource;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.FileNameIndexMessage;
+import com.easypan.entity.enums.FileDelFlagEnums;
+import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.exception.BusinessException;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.utils.JsonUtils;
+import com.easypan.utils.StringTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件名索引
+ * 按用户在内存中建立文件名二元组到文件的倒排索引，支持子串、前缀和扩展名搜索，结果按匹配程度排序。
+ * 用户第一次搜索时从数据库加载，修改文件名的操作提交后递增用户的版本号并通过redis发布增量，
+ * 各节点本地版本号连续时增量更新，否则丢弃该用户的索引，下次搜索时重新加载
+ */
+@Component("fileNameIndexComponent")
+public class FileNameIndexComponent implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileNameIndexComponent.class);
+
+    /**
+     * 一次变化超过这个数量时不发增量，直接让索引失效
+     */
+    private static final int MAX_CHANGE_SIZE = 200;
+
+    private static final String CURSOR_SEPARATOR = "_";
+
+    /**
+     * 匹配位置前是这些字符时算作单词开头
+     */
+    private static final String WORD_SEPARATORS = " _-.()[]（）【】";
+
+    @Resource
+    private RedisUtils<Object> redisUtils;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Resource
+    private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
+
+    /**
+     * 按访问顺序排列，文件总数超过上限时淘汰最久没有搜索的用户
+     */
+    private final LinkedHashMap<String, UserIndex> indexes = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong searchCount = new AtomicLong();
+
+    private final AtomicLong loadCount = new AtomicLong();
+
+    private final AtomicLong deltaCount = new AtomicLong();
+
+    private final AtomicLong dropCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(Constants.REDIS_CHANNEL_FILE_NAME_INDEX));
+    }
+
+    /**
+     * 按文件名搜索用户的正常文件，fileNameFuzzy为子串（fileNamePrefix为true时为前缀），fileNameExt为扩展名，
+     * 同时按父级目录、分类、文件类型过滤；有游标时从游标之后取，否则跳过offset条
+     *
+     * @return 索引不可用时返回null，由调用方查询数据库
+     */
+    public SearchResult search(FileInfoQuery query, int offset, int limit) {
+        UserIndex index;
+        try {
+            index = getIndex(query.getUserId());
+        } catch (Exception e) {
+            logger.warn("加载文件名索引失败,userId:{}", query.getUserId(), e);
+            return null;
+        }
+        searchCount.incrementAndGet();
+        return index.search(query, offset, limit);
+    }
+
+    public FileNameChange fileNameChange(String userId) {
+        return new FileNameChange(userId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisUtils.deserialize(message.getBody());
+        if (!(body instanceof String)) {
+            return;
+        }
+        FileNameIndexMessage indexMessage = JsonUtils.convertJson2Obj((String) body, FileNameIndexMessage.class);
+        UserIndex index;
+        synchronized (indexes) {
+            index = indexes.get(indexMessage.getUserId());
+        }
+        if (index == null) {
+            return;
+        }
+        synchronized (index) {
+            if (!Boolean.TRUE.equals(indexMessage.getReset()) && indexMessage.getGen() != null && index.gen == indexMessage.getGen() - 1) {
+                for (String fileId : indexMessage.getRemoveList()) {
+                    index.remove(fileId);
+                }
+                for (FileInfo fileInfo : indexMessage.getPutList()) {
+                    index.put(fileInfo);
+                }
+                index.gen = indexMessage.getGen();
+                deltaCount.incrementAndGet();
+                return;
+            }
+        }
+        drop(indexMessage.getUserId(), index);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (indexes) {
+            metrics.put("userCount", indexes.size());
+            metrics.put("docCount", indexes.values().stream().mapToInt(UserIndex::size).sum());
+        }
+        metrics.put("searchCount", searchCount.get());
+        metrics.put("loadCount", loadCount.get());
+        metrics.put("deltaCount", deltaCount.get());
+        metrics.put("dropCount", dropCount.get());
+        return metrics;
+    }
+
+    private UserIndex getIndex(String userId) {
+        long gen = getGen(userId);
+        UserIndex index;
+        synchronized (indexes) {
+            index = indexes.get(userId);
+        }
+        if (index != null && index.gen == gen) {
+            return index;
+        }
+        long startTime = System.currentTimeMillis();
+        UserIndex newIndex = new UserIndex(gen);
+        // 先读版本号再从主库加载，加载期间的变化会让版本号对不上，下次搜索时重新加载
+        ReadWriteRoutingDataSource.usePrimary(() -> {
+            fileInfoMapper.selectFileNameIndex(userId, FileDelFlagEnums.USING.getFlag(), context -> newIndex.put(context.getResultObject()));
+            return null;
+        });
+        loadCount.incrementAndGet();
+        logger.info("加载文件名索引,userId:{},文件数:{},耗时:{}ms", userId, newIndex.size(), System.currentTimeMillis() - startTime);
+        synchronized (indexes) {
+            indexes.put(userId, newIndex);
+            int total = indexes.values().stream().mapToInt(UserIndex::size).sum();
+            Iterator<Map.Entry<String, UserIndex>> iterator = indexes.entrySet().iterator();
+            while (total > Constants.FILE_NAME_INDEX_MAX_DOCS && iterator.hasNext()) {
+                Map.Entry<String, UserIndex> entry = iterator.next();
+                if (entry.getValue() == newIndex) {
+                    continue;
+                }
+                total -= entry.getValue().size();
+                iterator.remove();
+            }
+        }
+        return newIndex;
+    }
+
+    private long getGen(String userId) {
+        Object value = redisUtils.get(Constants.REDIS_KEY_FILE_NAME_INDEX_GEN + userId);
+        return value == null ? 0L : Long.parseLong(String.valueOf(value));
+    }
+
+    private void drop(String userId, UserIndex index) {
+        synchronized (indexes) {
+            if (indexes.get(userId) == index) {
+                indexes.remove(userId);
+                dropCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 一次操作中文件名、父级目录或删除标记有变化的文件，事务提交后发布
+     */
+    public class FileNameChange {
+
+        private final FileNameIndexMessage message = new FileNameIndexMessage();
+
+        private FileNameChange(String userId) {
+            message.setUserId(userId);
+        }
+
+        /**
+         * 新增或修改的正常文件，需要fileId、fileName、filePid、fileCategory、folderType
+         */
+        public FileNameChange put(FileInfo fileInfo) {
+            FileInfo item = new FileInfo();
+            item.setFileId(fileInfo.getFileId());
+            item.setFileName(fileInfo.getFileName());
+            item.setFilePid(fileInfo.getFilePid());
+            item.setFileCategory(fileInfo.getFileCategory());
+            item.setFolderType(fileInfo.getFolderType());
+            message.getPutList().add(item);
+            return this;
+        }
+
+        public FileNameChange remove(String fileId) {
+            message.getRemoveList().add(fileId);
+            return this;
+        }
+
+        /**
+         * 子树批量变化，无法逐个列出时整个用户的索引失效
+         */
+        public FileNameChange reset() {
+            message.setReset(true);
+            return this;
+        }
+
+        public void submit() {
+            if (!Boolean.TRUE.equals(message.getReset()) && message.getPutList().isEmpty() && message.getRemoveList().isEmpty()) {
+                return;
+            }
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                publish();
+                return;
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish();
+                }
+            });
+        }
+
+        private void publish() {
+            try {
+                message.setGen(redisUtils.incr(Constants.REDIS_KEY_FILE_NAME_INDEX_GEN + message.getUserId()));
+                if (message.getPutList().size() + message.getRemoveList().size() > MAX_CHANGE_SIZE) {
+                    message.setReset(true);
+                    message.getPutList().clear();
+                    message.getRemoveList().clear();
+                }
+                redisUtils.publish(Constants.REDIS_CHANNEL_FILE_NAME_INDEX, JsonUtils.convertObj2Json(message));
+            } catch (Exception e) {
+                // 版本号递增失败时其他节点可能用旧索引，至少清掉本节点的
+                logger.error("发布文件名索引变化失败,userId:{}", message.getUserId(), e);
+                synchronized (indexes) {
+                    indexes.remove(message.getUserId());
+                }
+            }
+        }
+    }
+
+    /**
+     * 搜索结果，fileIdList为当前页按排序的文件ID
+     */
+    public static class SearchResult {
+
+        private final int totalCount;
+
+        private final List<String> fileIdList;
+
+        private final String nextCursor;
+
+        SearchResult(int totalCount, List<String> fileIdList, String nextCursor) {
+            this.totalCount = totalCount;
+            this.fileIdList = fileIdList;
+            this.nextCursor = nextCursor;
+        }
+
+        public int getTotalCount() {
+            return totalCount;
+        }
+
+        public List<String> getFileIdList() {
+            return fileIdList;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * 单个用户的索引，文件编号为加入顺序，删除和改名时旧编号置空，置空的过多时重新编号
+     */
+    static class UserIndex {
+
+        private long gen;
+
+        private final List<Doc> docs = new ArrayList<>();
+
+        private final Map<String, Integer> docIdMap = new HashMap<>();
+
+        private final Map<String, IntList> postings = new HashMap<>();
+
+        UserIndex(long gen) {
+            this.gen = gen;
+        }
+
+        synchronized int size() {
+            return docIdMap.size();
+        }
+
+        synchronized void put(FileInfo fileInfo) {
+            if (fileInfo.getFileId() == null || fileInfo.getFileName() == null) {
+                return;
+            }
+            remove(fileInfo.getFileId());
+            Doc doc = new Doc(fileInfo.getFileId(), fileInfo.getFileName().toLowerCase(), fileInfo.getFilePid(), fileInfo.getFileCategory(),
+                    fileInfo.getFolderType());
+            int docId = docs.size();
+            docs.add(doc);
+            docIdMap.put(doc.fileId, docId);
+            for (String gram : getGrams(doc.name)) {
+                postings.computeIfAbsent(gram, key -> new IntList()).add(docId);
+            }
+        }
+
+        synchronized void remove(String fileId) {
+            Integer docId = docIdMap.remove(fileId);
+            if (docId == null) {
+                return;
+            }
+            docs.set(docId, null);
+            if (docs.size() > 1024 && docs.size() > docIdMap.size() * 2) {
+                compact();
+            }
+        }
+
+        synchronized SearchResult search(FileInfoQuery query, int offset, int limit) {
+            String keyword = query.getFileNameFuzzy() == null ? "" : query.getFileNameFuzzy().toLowerCase();
+            boolean prefix = Boolean.TRUE.equals(query.getFileNamePrefix());
+            String ext = StringTools.isEmpty(query.getFileNameExt()) ? null : "." + query.getFileNameExt().toLowerCase();
+            List<Hit> hits = new ArrayList<>();
+            IntList candidates = null;
+            if (keyword.length() >= 2) {
+                for (String gram : getGrams(keyword)) {
+                    IntList list = postings.get(gram);
+                    if (list == null) {
+                        return new SearchResult(0, new ArrayList<>(), null);
+                    }
+                    if (candidates == null || list.size < candidates.size) {
+                        candidates = list;
+                    }
+                }
+            }
+            int count = candidates == null ? docs.size() : candidates.size;
+            for (int i = 0; i < count; i++) {
+                Doc doc = docs.get(candidates == null ? i : candidates.values[i]);
+                if (doc == null || !matchFilter(doc, query, ext)) {
+                    continue;
+                }
+                int position = doc.name.indexOf(keyword);
+                if (position < 0 || prefix && position != 0) {
+                    continue;
+                }
+                hits.add(new Hit(getScore(doc.name, keyword, position), doc));
+            }
+            hits.sort(Hit::compareTo);
+            int start = Math.min(offset, hits.size());
+            Hit cursorHit = parseCursor(query.getCursor());
+            if (cursorHit != null) {
+                start = 0;
+                while (start < hits.size() && hits.get(start).compareTo(cursorHit) <= 0) {
+                    start++;
+                }
+            }
+            int end = Math.min(start + limit, hits.size());
+            List<String> fileIdList = new ArrayList<>();
+            for (int i = start; i < end; i++) {
+                fileIdList.add(hits.get(i).doc.fileId);
+            }
+            String nextCursor = end < hits.size() ? hits.get(end - 1).toCursor() : null;
+            return new SearchResult(hits.size(), fileIdList, nextCursor);
+        }
+
+        private void compact() {
+            List<Doc> aliveDocs = new ArrayList<>(docIdMap.size());
+            for (Doc doc : docs) {
+                if (doc != null) {
+                    aliveDocs.add(doc);
+                }
+            }
+            docs.clear();
+            docIdMap.clear();
+            postings.clear();
+            for (Doc doc : aliveDocs) {
+                int docId = docs.size();
+                docs.add(doc);
+                docIdMap.put(doc.fileId, docId);
+                for (String gram : getGrams(doc.name)) {
+                    postings.computeIfAbsent(gram, key -> new IntList()).add(docId);
+                }
+            }
+        }
+
+        private static boolean matchFilter(Doc doc, FileInfoQuery query, String ext) {
+            if (query.getFilePid() != null && !query.getFilePid().equals(doc.filePid)) {
+                return false;
+            }
+            if (query.getFileCategory() != null && !query.getFileCategory().equals(doc.fileCategory)) {
+                return false;
+            }
+            if (query.getFolderType() != null && !query.getFolderType().equals(doc.folderType)) {
+                return false;
+            }
+            return ext == null || doc.name.endsWith(ext);
+        }
+
+        /**
+         * 3：全名或去掉扩展名后完全相同 2：开头匹配 1：单词开头匹配 0：其他位置匹配
+         */
+        private static int getScore(String name, String keyword, int position) {
+            if (keyword.isEmpty()) {
+                return 0;
+            }
+            int dotIndex = name.lastIndexOf('.');
+            if (name.equals(keyword) || dotIndex > 0 && name.substring(0, dotIndex).equals(keyword)) {
+                return 3;
+            }
+            if (position == 0) {
+                return 2;
+            }
+            return WORD_SEPARATORS.indexOf(name.charAt(position - 1)) >= 0 ? 1 : 0;
+        }
+
+        private static Set<String> getGrams(String name) {
+            Set<String> grams = new HashSet<>();
+            for (int i = 0; i + 2 <= name.length(); i++) {
+                grams.add(name.substring(i, i + 2));
+            }
+            return grams;
+        }
+
+        /**
+         * 游标为上一页最后一条的 分数_名称长度_文件ID
+         */
+        private static Hit parseCursor(String cursor) {
+            if (StringTools.isEmpty(cursor)) {
+                return null;
+            }
+            String[] items = cursor.split(CURSOR_SEPARATOR, 3);
+            if (items.length != 3) {
+                throw new BusinessException(ResponseCodeEnum.CODE_600);
+            }
+            try {
+                return new Hit(Integer.parseInt(items[0]), new Doc(items[2], null, null, null, null), Integer.parseInt(items[1]));
+            } catch (NumberFormatException e) {
+                throw new BusinessException(ResponseCodeEnum.CODE_600);
+            }
+        }
+    }
+
+    private static class Doc {
+
+        private final String fileId;
+
+        private final String name;
+
+        private final String filePid;
+
+        private final Integer fileCategory;
+
+        private final Integer folderType;
+
+        Doc(String fileId, String name, String filePid, Integer fileCategory, Integer folderType) {
+            this.fileId = fileId;
+            this.name = name;
+            this.filePid = filePid;
+            this.fileCategory = fileCategory;
+            this.folderType = folderType;
+        }
+    }
+
+    /**
+     * 按分数倒序、名称长度、文件ID排序
+     */
+    private static class Hit implements Comparable<Hit> {
+
+        private final int score;
+
+        private final Doc doc;
+
+        private final int length;
+
+        Hit(int score, Doc doc) {
+            this(score, doc, doc.name.length());
+        }
+
+        Hit(int score, Doc doc, int length) {
+            this.score = score;
+            this.doc = doc;
+            this.length = length;
+        }
+
+        @Override
+        public int compareTo(Hit other) {
+            if (score != other.score) {
+                return Integer.compare(other.score, score);
+            }
+            if (length != other.length) {
+                return Integer.compare(length, other.length);
+            }
+            return doc.fileId.compareTo(other.doc.fileId);
+        }
+
+        String toCursor() {
+            return score + CURSOR_SEPARATOR + length + CURSOR_SEPARATOR + doc.fileId;
+        }
+    }
+
+    /**
+     * 倒排列表，文件编号递增加入
+     */
+    private static class IntList {
+
+        private int[] values = new int[4];
+
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
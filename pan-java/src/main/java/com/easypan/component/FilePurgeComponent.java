@@ -0,0 +1,161 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.enums.FileDelFlagEnums;
+import com.easypan.entity.enums.FileFolderTypeEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.service.FileInfoService;
+import com.easypan.utils.StringTools;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 彻底删除的文件归档
+ * 彻底删除超过保留期的文件按(user_id, file_id)游标分批复制到归档表后从文件表删除，或直接删除，同一时间只有一个节点执行。
+ * 物理文件按md5被多个用户的文件共用，并由秒传索引引用，这里不删除物理文件，归档表保留md5和物理文件路径供回收时核对
+ */
+@Component("filePurgeComponent")
+public class FilePurgeComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilePurgeComponent.class);
+
+    @Resource
+    private AppConfig appConfig;
+
+    @Resource
+    private RedisUtils<Object> redisUtils;
+
+    @Resource
+    private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
+
+    @Resource
+    private FileShardComponent fileShardComponent;
+
+    @Resource
+    private FileInfoService fileInfoService;
+
+    private final AtomicLong runCount = new AtomicLong();
+
+    private final AtomicLong lockSkipCount = new AtomicLong();
+
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private final AtomicLong purgeRowCount = new AtomicLong();
+
+    private final AtomicLong purgeFileSize = new AtomicLong();
+
+    private final AtomicLong failUserCount = new AtomicLong();
+
+    private volatile Map<String, Object> lastResult = new LinkedHashMap<>();
+
+    public void purgeDeleted() {
+        Integer retentionDays = appConfig.getFilePurgeRetentionDays();
+        if (retentionDays == null || retentionDays <= 0) {
+            return;
+        }
+        String token = StringTools.getRandomString(Constants.LENGTH_15);
+        if (!redisUtils.setnx(Constants.REDIS_KEY_FILE_PURGE_LOCK, token, Constants.FILE_CLEAN_LOCK_EXPIRES)) {
+            lockSkipCount.incrementAndGet();
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        long startRowCount = purgeRowCount.get();
+        long startFileSize = purgeFileSize.get();
+        try {
+            purge(retentionDays, token);
+        } finally {
+            redisUtils.unlock(Constants.REDIS_KEY_FILE_PURGE_LOCK, token);
+        }
+        runCount.incrementAndGet();
+        long rowCount = purgeRowCount.get() - startRowCount;
+        long fileSize = purgeFileSize.get() - startFileSize;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("purgeRowCount", rowCount);
+        result.put("purgeFileSize", fileSize);
+        result.put("finishTime", System.currentTimeMillis());
+        result.put("costMillis", System.currentTimeMillis() - startTime);
+        lastResult = result;
+        if (rowCount > 0) {
+            logger.info("归档彻底删除的文件完成,条数:{},文件大小:{}", rowCount, fileSize);
+        }
+    }
+
+    private void purge(int retentionDays, String token) {
+        boolean archive = !Boolean.FALSE.equals(appConfig.getFilePurgeArchive());
+        int rate = appConfig.getFileCleanRate() == null ? 0 : appConfig.getFileCleanRate();
+        long startTime = System.currentTimeMillis();
+        long readCount = 0;
+        String lastUserId = null;
+        String lastFileId = null;
+        while (true) {
+            String cursorUserId = lastUserId;
+            String cursorFileId = lastFileId;
+            List<FileInfo> batch = fileShardComponent.selectAllShards(() -> fileInfoMapper.selectPurgeBatch(FileDelFlagEnums.DEL_REAL.getFlag(),
+                    retentionDays, cursorUserId, cursorFileId, Constants.FILE_PURGE_BATCH_SIZE), FileShardComponent.USER_FILE_ID_ORDER, Constants.FILE_PURGE_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return;
+            }
+            FileInfo last = batch.get(batch.size() - 1);
+            lastUserId = last.getUserId();
+            lastFileId = last.getFileId();
+            Map<String, List<FileInfo>> userFileMap = batch.stream().collect(Collectors.groupingBy(FileInfo::getUserId, LinkedHashMap::new, Collectors.toList()));
+            for (Map.Entry<String, List<FileInfo>> entry : userFileMap.entrySet()) {
+                List<String> fileIdList = entry.getValue().stream().map(FileInfo::getFileId).collect(Collectors.toList());
+                try {
+                    Integer count = fileInfoService.purgeFileBatch(entry.getKey(), fileIdList, archive);
+                    purgeRowCount.addAndGet(count == null ? 0 : count);
+                    //目录和挂载目录的大小是汇总，不重复统计
+                    purgeFileSize.addAndGet(entry.getValue().stream()
+                            .filter(item -> FileFolderTypeEnums.FILE.getType().equals(item.getFolderType()) && !FileMountComponent.isMount(item))
+                            .mapToLong(item -> item.getFileSize() == null ? 0L : item.getFileSize()).sum());
+                } catch (Exception e) {
+                    failUserCount.incrementAndGet();
+                    logger.error("归档用户彻底删除的文件失败,userId:{}", entry.getKey(), e);
+                }
+            }
+            batchCount.incrementAndGet();
+            readCount += batch.size();
+            if (batch.size() < Constants.FILE_PURGE_BATCH_SIZE) {
+                return;
+            }
+            if (!redisUtils.renewLock(Constants.REDIS_KEY_FILE_PURGE_LOCK, token, Constants.FILE_CLEAN_LOCK_EXPIRES)) {
+                logger.warn("归档彻底删除的文件的锁已失效，停止处理");
+                return;
+            }
+            if (rate > 0) {
+                long waitMillis = readCount * 1000 / rate - (System.currentTimeMillis() - startTime);
+                if (waitMillis > 0) {
+                    try {
+                        Thread.sleep(waitMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("runCount", runCount.get());
+        metrics.put("lockSkipCount", lockSkipCount.get());
+        metrics.put("batchCount", batchCount.get());
+        metrics.put("purgeRowCount", purgeRowCount.get());
+        metrics.put("purgeFileSize", purgeFileSize.get());
+        metrics.put("failUserCount", failUserCount.get());
+        metrics.put("lastResult", lastResult);
+        return metrics;
+    }
+}
@@ -0,0 +1,350 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.po.FileShardRoute;
+import com.easypan.exception.BusinessException;
+import com.easypan.mappers.FileShardMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * 文件表分表
+ * 按user_id哈希分到file_info_0 ~ file_info_{n-1}，迁移过的用户以file_shard_route中的记录为准。
+ * 同一个库中分表，事务不受影响；没有user_id的查询由调用方在所有分表上执行后合并。
+ * 事务中写文件表前对该用户的路由记录加共享锁（没有记录时为间隙锁，依赖可重复读隔离级别），
+ * 迁移标记路由时要等这些事务提交，之后的写事务读到迁移中的路由直接失败
+ */
+@Component("fileShardComponent")
+public class FileShardComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileShardComponent.class);
+
+    private static final String TABLE_NAME = "file_info";
+
+    private static final Pattern TABLE_PATTERN = Pattern.compile("\\b" + TABLE_NAME + "\\b");
+
+    private static final Integer ROUTE_STATUS_NORMAL = 0;
+
+    private static final Integer ROUTE_STATUS_MIGRATING = 1;
+
+    /**
+     * 按order by user_id, file_id游标读取时的合并顺序，与数据库不区分大小写的排序规则一致
+     */
+    public static final Comparator<FileInfo> USER_FILE_ID_ORDER = Comparator.comparing(FileInfo::getUserId, String.CASE_INSENSITIVE_ORDER)
+            .thenComparing(FileInfo::getFileId, String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * 在所有分表上执行时当前的分表
+     */
+    private static final ThreadLocal<Integer> FORCE_SHARD = new ThreadLocal<>();
+
+    @Resource
+    private AppConfig appConfig;
+
+    /**
+     * 分表拦截器在SqlSessionFactory创建时加载，延迟注入避免循环依赖
+     */
+    @Resource
+    @Lazy
+    private FileShardMapper fileShardMapper;
+
+    private final Map<String, RouteEntry> routeCache = new ConcurrentHashMap<>();
+
+    /**
+     * 当前事务中已经锁定路由的用户
+     */
+    private final Object lockedUsersKey = new Object();
+
+    private final Set<String> migratingUsers = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "file-shard-migrate");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public boolean isEnabled() {
+        return getShardCount() > 1;
+    }
+
+    public int getShardCount() {
+        Integer shardCount = appConfig.getFileShardCount();
+        return shardCount == null || shardCount < 1 ? 1 : shardCount;
+    }
+
+    /**
+     * 用户文件所在的分表
+     */
+    public int getShard(String userId) {
+        return getRoute(userId).shardNo;
+    }
+
+    public String getTableName(int shard) {
+        return TABLE_NAME + "_" + shard;
+    }
+
+    /**
+     * 语句中的file_info替换为分表名
+     */
+    public String rewriteSql(String sql, int shard) {
+        return TABLE_PATTERN.matcher(sql).replaceAll(getTableName(shard));
+    }
+
+    public static Integer getForceShard() {
+        return FORCE_SHARD.get();
+    }
+
+    /**
+     * 迁移中的用户不能修改文件
+     */
+    public void checkWritable(String userId) {
+        if (getRoute(userId).migrating) {
+            throw new BusinessException("文件正在迁移，请稍后再试");
+        }
+    }
+
+    /**
+     * 事务中写文件表前锁定用户的路由记录直到事务结束，并以锁定时读到的路由为准
+     * 迁移中的用户不能修改文件，不在事务中时只按缓存的路由检查
+     */
+    @SuppressWarnings("unchecked")
+    public void lockWritable(String userId) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive() || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            checkWritable(userId);
+            return;
+        }
+        Set<String> lockedUsers = (Set<String>) TransactionSynchronizationManager.getResource(lockedUsersKey);
+        if (lockedUsers == null) {
+            lockedUsers = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(lockedUsersKey, lockedUsers);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(lockedUsersKey);
+                }
+            });
+        }
+        if (lockedUsers.contains(userId)) {
+            return;
+        }
+        RouteEntry entry = toRouteEntry(userId, fileShardMapper.selectRouteForShare(userId), System.currentTimeMillis());
+        putRoute(userId, entry);
+        if (entry.migrating) {
+            throw new BusinessException("文件正在迁移，请稍后再试");
+        }
+        lockedUsers.add(userId);
+    }
+
+    /**
+     * 在所有分表上查询后合并，未分表时直接查询
+     */
+    public <T> List<T> selectAllShards(Supplier<List<T>> supplier) {
+        if (!isEnabled()) {
+            return supplier.get();
+        }
+        List<T> result = new ArrayList<>();
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            result.addAll(onShard(shard, supplier));
+        }
+        return result;
+    }
+
+    /**
+     * 在所有分表上按同一个游标各读取一批，合并排序后取前limit条，排序与语句中的order by一致
+     */
+    public <T> List<T> selectAllShards(Supplier<List<T>> supplier, Comparator<T> comparator, int limit) {
+        List<T> list = selectAllShards(supplier);
+        if (!isEnabled()) {
+            return list;
+        }
+        list.sort(comparator);
+        return list.size() > limit ? new ArrayList<>(list.subList(0, limit)) : list;
+    }
+
+    public Integer countAllShards(Supplier<Integer> supplier) {
+        if (!isEnabled()) {
+            return supplier.get();
+        }
+        int count = 0;
+        for (int shard = 0; shard < getShardCount(); shard++) {
+            Integer shardCount = onShard(shard, supplier);
+            count += shardCount == null ? 0 : shardCount;
+        }
+        return count;
+    }
+
+    private <T> T onShard(int shard, Supplier<T> supplier) {
+        Integer oldShard = FORCE_SHARD.get();
+        FORCE_SHARD.set(shard);
+        try {
+            return supplier.get();
+        } finally {
+            if (oldShard == null) {
+                FORCE_SHARD.remove();
+            } else {
+                FORCE_SHARD.set(oldShard);
+            }
+        }
+    }
+
+    /**
+     * 在后台迁移用户到目标分表，迁移状态通过getMigrateStatus查询
+     *
+     * @return 迁移任务信息
+     */
+    public Map<String, Object> migrateUser(String userId, int targetShard) {
+        if (!isEnabled() || targetShard < 0 || targetShard >= getShardCount()) {
+            throw new BusinessException("目标分表不存在");
+        }
+        Map<String, Object> result = getMigrateStatus(userId);
+        if (Boolean.TRUE.equals(result.get("migrating")) || !migratingUsers.add(userId)) {
+            throw new BusinessException("该用户正在迁移");
+        }
+        result.put("targetShard", targetShard);
+        try {
+            executorService.execute(() -> {
+                try {
+                    migrate(userId, targetShard);
+                } catch (Exception e) {
+                    logger.error("迁移用户文件分表失败,userId:{},targetShard:{}", userId, targetShard, e);
+                } finally {
+                    migratingUsers.remove(userId);
+                }
+            });
+        } catch (RuntimeException e) {
+            migratingUsers.remove(userId);
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * 用户当前的分表和是否正在迁移，直接读取路由记录
+     */
+    public Map<String, Object> getMigrateStatus(String userId) {
+        RouteEntry entry = toRouteEntry(userId, fileShardMapper.selectRouteByUserId(userId), System.currentTimeMillis());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("userId", userId);
+        result.put("shardNo", entry.shardNo);
+        result.put("migrating", entry.migrating || migratingUsers.contains(userId));
+        return result;
+    }
+
+    /**
+     * 在线迁移用户到目标分表
+     * 先标记迁移中，标记时等已经锁定路由的写事务提交，再等所有节点的路由缓存过期，期间只能读不能写；
+     * 复制数据并核对条数后切换路由，等路由缓存过期后再次核对原分表的条数，没有变化才删除原分表中的数据
+     *
+     * @return 迁移的文件数
+     */
+    Integer migrate(String userId, int targetShard) {
+        int sourceShard = getShard(userId);
+        if (sourceShard == targetShard) {
+            return 0;
+        }
+        String sourceTable = getTableName(sourceShard);
+        String targetTable = getTableName(targetShard);
+        Integer targetCount;
+        saveRoute(userId, sourceShard, ROUTE_STATUS_MIGRATING);
+        try {
+            waitRouteExpire();
+            //清理之前失败的迁移留下的数据
+            fileShardMapper.deleteUserFile(targetTable, userId);
+            fileShardMapper.copyUserFile(sourceTable, targetTable, userId);
+            Integer sourceCount = fileShardMapper.countUserFile(sourceTable, userId);
+            targetCount = fileShardMapper.countUserFile(targetTable, userId);
+            if (!Objects.equals(sourceCount, targetCount)) {
+                throw new BusinessException("迁移后文件数量不一致");
+            }
+            saveRoute(userId, targetShard, ROUTE_STATUS_NORMAL);
+        } catch (RuntimeException e) {
+            saveRoute(userId, sourceShard, ROUTE_STATUS_NORMAL);
+            fileShardMapper.deleteUserFile(targetTable, userId);
+            throw e;
+        }
+        waitRouteExpire();
+        Integer sourceCount = fileShardMapper.countUserFile(sourceTable, userId);
+        if (!Objects.equals(sourceCount, targetCount)) {
+            //切换路由后仍有写入落到原分表，保留原分表数据人工核对
+            logger.error("迁移用户文件分表后原分表数量变化，保留原分表数据,userId:{},{}->{},复制:{},现在:{}", userId, sourceShard, targetShard,
+                    targetCount, sourceCount);
+            return targetCount;
+        }
+        fileShardMapper.deleteUserFile(sourceTable, userId);
+        logger.info("迁移用户文件分表完成,userId:{},{}->{},文件数:{}", userId, sourceShard, targetShard, targetCount);
+        return targetCount;
+    }
+
+    private void saveRoute(String userId, int shard, Integer status) {
+        FileShardRoute route = new FileShardRoute();
+        route.setUserId(userId);
+        route.setShardNo(shard);
+        route.setStatus(status);
+        route.setUpdateTime(new Date());
+        fileShardMapper.insertOrUpdateRoute(route);
+        routeCache.remove(userId);
+    }
+
+    private void waitRouteExpire() {
+        try {
+            Thread.sleep(Constants.FILE_SHARD_ROUTE_EXPIRES * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException("迁移被中断");
+        }
+    }
+
+    private RouteEntry getRoute(String userId) {
+        long now = System.currentTimeMillis();
+        RouteEntry entry = routeCache.get(userId);
+        if (entry != null && entry.expireTime > now) {
+            return entry;
+        }
+        entry = toRouteEntry(userId, fileShardMapper.selectRouteByUserId(userId), now);
+        putRoute(userId, entry);
+        return entry;
+    }
+
+    private RouteEntry toRouteEntry(String userId, FileShardRoute route, long now) {
+        if (route == null || route.getShardNo() == null || route.getShardNo() >= getShardCount()) {
+            return new RouteEntry(Math.floorMod(userId.hashCode(), getShardCount()), false, now + Constants.FILE_SHARD_ROUTE_EXPIRES);
+        }
+        return new RouteEntry(route.getShardNo(), ROUTE_STATUS_MIGRATING.equals(route.getStatus()), now + Constants.FILE_SHARD_ROUTE_EXPIRES);
+    }
+
+    private void putRoute(String userId, RouteEntry entry) {
+        if (routeCache.size() >= Constants.FILE_INFO_LOCAL_CACHE_MAX_SIZE) {
+            routeCache.clear();
+        }
+        routeCache.put(userId, entry);
+    }
+
+    private static class RouteEntry {
+
+        private final int shardNo;
+
+        private final boolean migrating;
+
+        private final long expireTime;
+
+        RouteEntry(int shardNo, boolean migrating, long expireTime) {
+            this.shardNo = shardNo;
+            this.migrating = migrating;
+            this.expireTime = expireTime;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.easypan.component;
+
+import com.easypan.entity.po.FileInfo;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.mappers.FileShareMapper;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 文件表语句按user_id改写到对应的分表
+ * 参数中没有user_id的语句必须由调用方指定在哪个分表上执行，分享列表关联文件表时没有user_id关联不到文件，走0号分表即可。
+ * 写语句执行前锁定该用户的路由，迁移时不会漏掉还没提交的写事务
+ */
+@Component("fileShardInterceptor")
+@Intercepts({@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})})
+public class FileShardInterceptor implements Interceptor {
+
+    private static final String FILE_INFO_NAMESPACE = FileInfoMapper.class.getName() + ".";
+
+    private static final String FILE_SHARE_NAMESPACE = FileShareMapper.class.getName() + ".";
+
+    private static final String TABLE_NAME = "file_info";
+
+    @Resource
+    private FileShardComponent fileShardComponent;
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!fileShardComponent.isEnabled()) {
+            return invocation.proceed();
+        }
+        if (invocation.getTarget() instanceof Executor && "update".equals(invocation.getMethod().getName())) {
+            MappedStatement mappedStatement = (MappedStatement) invocation.getArgs()[0];
+            if (FileShardComponent.getForceShard() == null && mappedStatement.getId().startsWith(FILE_INFO_NAMESPACE)) {
+                String userId = getUserId(invocation.getArgs()[1]);
+                if (userId != null) {
+                    fileShardComponent.lockWritable(userId);
+                }
+            }
+            return invocation.proceed();
+        }
+        if (invocation.getTarget() instanceof Executor) {
+            // 一级缓存的key是改写前的语句，依次查询各分表时不能命中上一个分表的结果
+            if (FileShardComponent.getForceShard() != null) {
+                ((Executor) invocation.getTarget()).clearLocalCache();
+            }
+            return invocation.proceed();
+        }
+        MetaObject metaObject = SystemMetaObject.forObject(invocation.getTarget());
+        MappedStatement mappedStatement = (MappedStatement) metaObject.getValue("delegate.mappedStatement");
+        String statementId = mappedStatement.getId();
+        String sql = (String) metaObject.getValue("delegate.boundSql.sql");
+        if (!sql.contains(TABLE_NAME) || !(statementId.startsWith(FILE_INFO_NAMESPACE) || statementId.startsWith(FILE_SHARE_NAMESPACE))) {
+            return invocation.proceed();
+        }
+        Integer shard = FileShardComponent.getForceShard();
+        if (shard == null) {
+            String userId = getUserId(metaObject.getValue("delegate.boundSql.parameterObject"));
+            if (userId != null) {
+                if (SqlCommandType.SELECT != mappedStatement.getSqlCommandType()) {
+                    fileShardComponent.checkWritable(userId);
+                }
+                shard = fileShardComponent.getShard(userId);
+            } else if (statementId.startsWith(FILE_SHARE_NAMESPACE)) {
+                shard = 0;
+            } else {
+                throw new IllegalStateException("文件表语句没有user_id，需要在所有分表上执行:" + statementId);
+            }
+        }
+        metaObject.setValue("delegate.boundSql.sql", fileShardComponent.rewriteSql(sql, shard));
+        return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+
+    private String getUserId(Object parameter) {
+        if (!(parameter instanceof Map)) {
+            return null;
+        }
+        Map<?, ?> paramMap = (Map<?, ?>) parameter;
+        if (paramMap.containsKey("userId") && paramMap.get("userId") != null) {
+            return paramMap.get("userId").toString();
+        }
+        if (paramMap.containsKey("query") && paramMap.get("query") != null) {
+            // 文件查询和分享查询都有userId条件
+            return (String) SystemMetaObject.forObject(paramMap.get("query")).getValue("userId");
+        }
+        if (paramMap.containsKey("bean") && paramMap.get("bean") instanceof FileInfo) {
+            return ((FileInfo) paramMap.get("bean")).getUserId();
+        }
+        if (paramMap.containsKey("list")) {
+            return getListUserId((Collection<?>) paramMap.get("list"));
+        }
+        return null;
+    }
+
+    /**
+     * 批量写入的记录必须属于同一个分表
+     */
+    private String getListUserId(Collection<?> list) {
+        String userId = null;
+        Integer shard = null;
+        for (Object item : list) {
+            if (!(item instanceof FileInfo) || ((FileInfo) item).getUserId() == null) {
+                return null;
+            }
+            String itemUserId = ((FileInfo) item).getUserId();
+            int itemShard = fileShardComponent.getShard(itemUserId);
+            if (shard != null && shard != itemShard) {
+                throw new IllegalStateException("批量写入的文件不在同一个分表");
+            }
+            userId = itemUserId;
+            shard = itemShard;
+        }
+        return userId;
+    }
+}
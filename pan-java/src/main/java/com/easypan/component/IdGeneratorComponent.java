@@ -0,0 +1,233 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按时间递增的ID
+ * 10ms时间片(37位) + 节点号(6位) + 时间片内序号(8位)，共51位，定长10位0-9a-z编码，
+ * 字符串顺序与生成顺序一致，数据库不区分大小写的排序规则下也不会与其他ID相同。
+ * 同一时间片内序号用完时借用下一个时间片，时钟回拨时沿上一个ID继续递增，都不需要等待。
+ * 配置了id.node时直接使用，由部署保证各节点不同，启动不依赖redis；未配置时从redis租用未被占用的节点号并定时续期，
+ * 此时redis不可用则启动失败。定时在redis中记录已经使用到的时间片，重启后从记录之后开始，重启前后的时钟回拨也不会生成重复的ID，
+ * 配置了id.node时记录和读取失败只打印日志
+ */
+@Component("idGeneratorComponent")
+public class IdGeneratorComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorComponent.class);
+
+    private static final char[] ID_CHARS = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    public static final int ID_LENGTH = 10;
+
+    /**
+     * 2024-01-01 00:00:00 UTC，37位10ms时间片可用到2067年
+     */
+    private static final long EPOCH = 1704067200000L;
+
+    private static final long TICK_MILLIS = 10;
+
+    private static final int NODE_BITS = 6;
+
+    private static final int SEQ_BITS = 8;
+
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final long SEQ_MASK = (1L << SEQ_BITS) - 1;
+
+    /**
+     * 续期时多记录一个租约时间的时间片，覆盖两次续期之间生成的ID
+     */
+    private static final long LEASE_TICKS = TimeUnit.SECONDS.toMillis(Constants.ID_NODE_LEASE_SECONDS) / TICK_MILLIS;
+
+    @Resource
+    private AppConfig appConfig;
+
+    @Resource
+    private RedisUtils<Object> redisUtils;
+
+    private volatile long node;
+
+    /**
+     * 租用节点号时的持有者标识，不通过Spring创建时为空
+     */
+    private String leaseToken;
+
+    /**
+     * 节点号是否从redis租用，配置了id.node时不租用
+     */
+    private volatile boolean leased;
+
+    /**
+     * 上一个ID的时间片和序号，时间片 << SEQ_BITS | 序号
+     */
+    private final AtomicLong lastState = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        Integer idNode = appConfig.getIdNode();
+        leaseToken = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+        if (idNode != null && idNode >= 0) {
+            setNode(idNode);
+            try {
+                restoreLastTick();
+            } catch (Exception e) {
+                logger.warn("读取节点号{}记录的时间片失败，从当前时间开始", idNode, e);
+            }
+            return;
+        }
+        try {
+            idNode = leaseNode();
+            logger.info("未配置id.node，从redis租用节点号:{}", idNode);
+            setNode(idNode);
+            leased = true;
+            restoreLastTick();
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("从redis租用ID节点号失败，请检查redis或配置id.node", e);
+        }
+    }
+
+    /**
+     * 按递增的序号轮流尝试，租用第一个未被占用的节点号
+     */
+    private int leaseNode() {
+        for (int i = 0; i <= MAX_NODE; i++) {
+            int candidate = (int) Math.floorMod(redisUtils.incr(Constants.REDIS_KEY_ID_NODE_SEQ), (long) MAX_NODE + 1);
+            if (redisUtils.setnx(getNodeKey(candidate), leaseToken, Constants.ID_NODE_LEASE_SECONDS)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("节点号0-" + MAX_NODE + "都已被占用");
+    }
+
+    /**
+     * 从该节点号记录的时间片之后开始，重启前时钟比现在快时也不会与之前的ID相同
+     */
+    private void restoreLastTick() {
+        Object value = redisUtils.get(getTickKey(node));
+        if (!(value instanceof Number)) {
+            return;
+        }
+        long savedTick = ((Number) value).longValue();
+        if (savedTick >= currentTick()) {
+            logger.warn("节点号{}记录的时间片晚于当前时间，从记录的时间片之后开始:{}", node, savedTick);
+        }
+        lastState.accumulateAndGet((savedTick + 1) << SEQ_BITS, Math::max);
+    }
+
+    /**
+     * 续期节点号的租约并记录已经使用到的时间片，租约丢失且已被其他节点占用时重新租用
+     */
+    @Scheduled(fixedDelay = 1000 * 10)
+    public void renew() {
+        if (leaseToken == null) {
+            return;
+        }
+        try {
+            long currentNode = node;
+            if (leased && !redisUtils.renewLock(getNodeKey(currentNode), leaseToken, Constants.ID_NODE_LEASE_SECONDS)
+                    && !redisUtils.setnx(getNodeKey(currentNode), leaseToken, Constants.ID_NODE_LEASE_SECONDS)) {
+                saveLastTick(currentNode, 0);
+                int newNode = leaseNode();
+                logger.error("节点号{}的租约已被其他节点占用，改用节点号:{}", currentNode, newNode);
+                setNode(newNode);
+                restoreLastTick();
+            }
+            saveLastTick(node, LEASE_TICKS);
+        } catch (Exception e) {
+            logger.error("续期ID节点号{}失败", node, e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (leaseToken == null) {
+            return;
+        }
+        try {
+            saveLastTick(node, 0);
+            if (leased) {
+                redisUtils.unlock(getNodeKey(node), leaseToken);
+            }
+        } catch (Exception e) {
+            logger.error("释放ID节点号{}失败", node, e);
+        }
+    }
+
+    private void saveLastTick(long node, long margin) {
+        long lastTick = Math.max(lastState.get() >>> SEQ_BITS, currentTick());
+        redisUtils.set(getTickKey(node), lastTick + margin);
+    }
+
+    private static long currentTick() {
+        return (System.currentTimeMillis() - EPOCH) / TICK_MILLIS;
+    }
+
+    private static String getNodeKey(long node) {
+        return Constants.REDIS_KEY_ID_NODE + node;
+    }
+
+    private static String getTickKey(long node) {
+        return Constants.REDIS_KEY_ID_TICK + node;
+    }
+
+    /**
+     * 不通过Spring创建时指定节点号
+     */
+    public void setNode(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("id.node超出范围0-" + MAX_NODE + ":" + node);
+        }
+        this.node = node;
+    }
+
+    public String nextId() {
+        long tick = currentTick();
+        long state;
+        long next;
+        do {
+            state = lastState.get();
+            next = Math.max(state + 1, tick << SEQ_BITS);
+        } while (!lastState.compareAndSet(state, next));
+        long value = (next >>> SEQ_BITS) << (NODE_BITS + SEQ_BITS) | node << SEQ_BITS | (next & SEQ_MASK);
+        return encode(value);
+    }
+
+    /**
+     * 定长编码，高位在前
+     */
+    static String encode(long value) {
+        char[] chars = new char[ID_LENGTH];
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            chars[i] = ID_CHARS[(int) (value % ID_CHARS.length)];
+            value /= ID_CHARS.length;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * ID中的生成时间（毫秒），精确到时间片
+     */
+    public static long getTimestamp(String id) {
+        long value = 0;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            value = value * ID_CHARS.length + Character.digit(id.charAt(i), ID_CHARS.length);
+        }
+        return (value >>> (NODE_BITS + SEQ_BITS)) * TICK_MILLIS + EPOCH;
+    }
+}
@@ -0,0 +1,241 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.ReadWriteRoutingDataSource;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.entity.query.FileShareQuery;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 列表总数缓存
+ * 文件按（用户，父目录，分类，删除标记）计数，分享按用户计数，保存在redis中。
+ * 写操作只对已缓存的计数做增减，事务提交后执行；计数一小时过期，过期后重新从数据库统计，修正可能的偏差。
+ * 文件计数的key中带上用户的版本号，管理员查看的所有用户的计数带上全局版本号；子树批量修改时下级文件的目录和分类无法逐个列出，
+ * 递增该用户和全局的版本号，旧版本的计数全部失效
+ */
+@Component("listCountComponent")
+public class ListCountComponent {
+
+    private static final String ALL = "all";
+
+    /**
+     * 只对已存在的计数做增减，不存在的计数等查询时再从数据库统计
+     */
+    private static final RedisScript<Long> INCR_VERSION_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do\n" +
+                    "    redis.call('incr', KEYS[i])\n" +
+                    "    redis.call('expire', KEYS[i], ARGV[1])\n" +
+                    "end\n" +
+                    "return #KEYS", Long.class);
+
+    private static final RedisScript<Long> INCR_IF_EXISTS_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do\n" +
+                    "    if redis.call('exists', KEYS[i]) == 1 then\n" +
+                    "        redis.call('incrby', KEYS[i], ARGV[i])\n" +
+                    "    end\n" +
+                    "end\n" +
+                    "return #KEYS", Long.class);
+
+    /**
+     * 文件计数的维度，查询条件中除这些字段外还有其他条件时不走缓存
+     */
+    private static final Set<String> FILE_COUNT_FIELDS = new HashSet<>(Arrays.asList("userId", "filePid", "fileCategory", "delFlag", "queryNickName"));
+
+    private static final Set<String> SHARE_COUNT_FIELDS = new HashSet<>(Arrays.asList("userId", "queryFileName"));
+
+    private static final List<Field> FILE_FILTER_FIELDS = getFilterFields(FileInfoQuery.class, FILE_COUNT_FIELDS);
+
+    private static final List<Field> SHARE_FILTER_FIELDS = getFilterFields(FileShareQuery.class, SHARE_COUNT_FIELDS);
+
+    @Resource
+    private RedisUtils<Object> redisUtils;
+
+    /**
+     * 获取文件列表的总数
+     *
+     * @param query  查询条件
+     * @param loader 缓存中没有时从数据库统计
+     */
+    public Integer getFileCount(FileInfoQuery query, Supplier<Integer> loader) {
+        if (query.getDelFlag() == null || hasFilter(query, FILE_FILTER_FIELDS)) {
+            return loader.get();
+        }
+        String user = query.getUserId() == null ? ALL : query.getUserId();
+        Object version = redisUtils.get(getVersionKey(user));
+        return getCount(getFileCountKey(user, version, query.getFilePid(), query.getFileCategory(), query.getDelFlag()), loader);
+    }
+
+    /**
+     * 获取分享列表的总数
+     */
+    public Integer getShareCount(FileShareQuery query, Supplier<Integer> loader) {
+        if (query.getUserId() == null || hasFilter(query, SHARE_FILTER_FIELDS)) {
+            return loader.get();
+        }
+        return getCount(Constants.REDIS_KEY_SHARE_COUNT + query.getUserId(), loader);
+    }
+
+    public FileCountChange fileCountChange() {
+        return new FileCountChange();
+    }
+
+    public void changeShareCount(String userId, int delta) {
+        Map<String, Long> deltaMap = new LinkedHashMap<>();
+        deltaMap.put(Constants.REDIS_KEY_SHARE_COUNT + userId, (long) delta);
+        submit(deltaMap);
+    }
+
+    private Integer getCount(String key, Supplier<Integer> loader) {
+        Object value = redisUtils.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        Integer count = ReadWriteRoutingDataSource.usePrimary(loader);
+        redisUtils.setex(key, count, Constants.REDIS_KEY_EXPIRES_ONE_HOUR);
+        return count;
+    }
+
+    private static String getFileCountKey(String user, Object version, String filePid, Integer fileCategory, Integer delFlag) {
+        return Constants.REDIS_KEY_FILE_COUNT + user + ":" + (version == null ? "0" : version) + ":" + (filePid == null ? ALL : filePid) + ":"
+                + (fileCategory == null ? ALL : fileCategory) + ":" + delFlag;
+    }
+
+    private static String getVersionKey(String user) {
+        return Constants.REDIS_KEY_FILE_COUNT_VERSION + user;
+    }
+
+    private void submit(Map<String, Long> deltaMap) {
+        deltaMap.values().removeIf(delta -> delta == 0);
+        if (deltaMap.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(deltaMap.keySet());
+        Object[] args = deltaMap.values().toArray();
+        afterCommit(() -> redisUtils.execute(INCR_IF_EXISTS_SCRIPT, keys, args));
+    }
+
+    private static void afterCommit(Runnable runnable) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            runnable.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                runnable.run();
+            }
+        });
+    }
+
+    static boolean hasFilter(Object query, List<Field> filterFields) {
+        try {
+            for (Field field : filterFields) {
+                Object value = field.get(query);
+                if (value == null || "".equals(value) || value instanceof Object[] && ((Object[]) value).length == 0) {
+                    continue;
+                }
+                return true;
+            }
+            return false;
+        } catch (IllegalAccessException e) {
+            return true;
+        }
+    }
+
+    static List<Field> getFilterFields(Class<?> queryClass, Set<String> countFields) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : queryClass.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || countFields.contains(field.getName())) {
+                continue;
+            }
+            field.setAccessible(true);
+            fields.add(field);
+        }
+        return fields;
+    }
+
+    /**
+     * 一次操作中的文件计数变化，同一个计数的增减先合并，提交时一次执行
+     */
+    public class FileCountChange {
+
+        /**
+         * 用户 -> (父目录, 分类, 删除标记) -> 变化量，提交时再加上版本号
+         */
+        private final Map<String, Map<List<Object>, Long>> deltaMap = new LinkedHashMap<>();
+
+        private final Set<String> treeUsers = new LinkedHashSet<>();
+
+        /**
+         * 文件所在的列表计数加delta，包含不限父目录、不限分类和管理员查看的所有用户的列表
+         */
+        public FileCountChange add(String userId, String filePid, Integer fileCategory, Integer delFlag, int delta) {
+            for (String user : new String[]{userId, ALL}) {
+                for (String pid : new String[]{filePid, null}) {
+                    add(user, Arrays.asList(pid, null, delFlag), delta);
+                    if (fileCategory != null) {
+                        add(user, Arrays.asList(pid, fileCategory, delFlag), delta);
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 用户的子树批量修改，下级目录、分类和管理员查看的计数都无法逐个修改，该用户和全局的计数全部失效
+         */
+        public FileCountChange addTree(String userId) {
+            treeUsers.add(userId);
+            treeUsers.add(ALL);
+            return this;
+        }
+
+        private void add(String user, List<Object> dimension, long delta) {
+            deltaMap.computeIfAbsent(user, key -> new LinkedHashMap<>()).merge(dimension, delta, Long::sum);
+        }
+
+        public void submit() {
+            deltaMap.keySet().removeAll(treeUsers);
+            deltaMap.values().forEach(item -> item.values().removeIf(delta -> delta == 0));
+            deltaMap.values().removeIf(Map::isEmpty);
+            if (deltaMap.isEmpty() && treeUsers.isEmpty()) {
+                return;
+            }
+            afterCommit(() -> {
+                if (!treeUsers.isEmpty()) {
+                    // 版本号保留时间比计数长，过期后从0开始也不会和旧的计数冲突
+                    redisUtils.execute(INCR_VERSION_SCRIPT, treeUsers.stream().map(ListCountComponent::getVersionKey).collect(Collectors.toList()),
+                            Constants.REDIS_KEY_EXPIRES_DAY);
+                }
+                if (deltaMap.isEmpty()) {
+                    return;
+                }
+                List<String> users = new ArrayList<>(deltaMap.keySet());
+                List<Object> versions = redisUtils.multiGet(users.stream().map(ListCountComponent::getVersionKey).collect(Collectors.toList()));
+                List<String> keys = new ArrayList<>();
+                List<Object> args = new ArrayList<>();
+                for (int i = 0; i < users.size(); i++) {
+                    Object version = versions == null ? null : versions.get(i);
+                    for (Map.Entry<List<Object>, Long> entry : deltaMap.get(users.get(i)).entrySet()) {
+                        List<Object> dimension = entry.getKey();
+                        keys.add(getFileCountKey(users.get(i), version, (String) dimension.get(0), (Integer) dimension.get(1),
+                                (Integer) dimension.get(2)));
+                        args.add(entry.getValue());
+                    }
+                }
+                redisUtils.execute(INCR_IF_EXISTS_SCRIPT, keys, args.toArray());
+            });
+        }
+    }
+}
@@ -4,11 +4,8 @@ import com.easypan.entity.constants.Constants;
 import com.easypan.entity.dto.DownloadFileDto;
 import com.easypan.entity.dto.SysSettingsDto;
 import com.easypan.entity.dto.UserSpaceDto;
-import com.easypan.entity.po.FileInfo;
 import com.easypan.entity.po.UserInfo;
-import com.easypan.entity.query.FileInfoQuery;
 import com.easypan.entity.query.UserInfoQuery;
-import com.easypan.mappers.FileInfoMapper;
 import com.easypan.mappers.UserInfoMapper;
 import org.springframework.stereotype.Component;
 
@@ -24,7 +21,7 @@ public class RedisComponent {
     private UserInfoMapper<UserInfo, UserInfoQuery> userInfoMapper;
 
     @Resource
-    private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
+    private DownloadSignComponent downloadSignComponent;
 
     /**
      * 获取系统设置
@@ -53,7 +50,16 @@ public class RedisComponent {
         redisUtils.setex(Constants.REDIS_KEY_DOWNLOAD + code, downloadFileDto, Constants.REDIS_KEY_EXPIRES_FIVE_MIN);
     }
 
+    /**
+     * 获取下载信息，签名下载码在本地校验，不访问Redis
+     *
+     * @param code
+     * @return
+     */
     public DownloadFileDto getDownloadCode(String code) {
+        if (downloadSignComponent.isSignedCode(code)) {
+            return downloadSignComponent.verify(code);
+        }
         return (DownloadFileDto) redisUtils.get(Constants.REDIS_KEY_DOWNLOAD + code);
     }
 
@@ -68,7 +74,7 @@ public class RedisComponent {
     /*
     *
     * 从redis缓存中使用键（前缀+id）获取对应的用户空间就信息，
-    * 当redis缓存中没有对应用户口空间信息，创建新的UserSpaceDto，从MySQL数据库中获取用户空间信息
+    * 当redis缓存中没有对应用户口空间信息，创建新的UserSpaceDto，从user_info中读取已使用空间和总空间
     * ，并保存到redis缓存中，设置过期日期是1天。
     * 返回用户空间信息
     * */
@@ -76,9 +82,14 @@ public class RedisComponent {
         UserSpaceDto spaceDto = (UserSpaceDto) redisUtils.get(Constants.REDIS_KEY_USER_SPACE_USE + userId);
         if (null == spaceDto) {
             spaceDto = new UserSpaceDto();
-            Long useSpace = this.fileInfoMapper.selectUseSpace(userId);
-            spaceDto.setUseSpace(useSpace);
-            spaceDto.setTotalSpace(getSysSettingsDto().getUserInitUseSpace() * Constants.MB);
+            UserInfo userInfo = this.userInfoMapper.selectByUserId(userId);
+            if (userInfo == null) {
+                spaceDto.setUseSpace(0L);
+                spaceDto.setTotalSpace(getSysSettingsDto().getUserInitUseSpace() * Constants.MB);
+            } else {
+                spaceDto.setUseSpace(userInfo.getUseSpace() == null ? 0L : userInfo.getUseSpace());
+                spaceDto.setTotalSpace(userInfo.getTotalSpace());
+            }
             redisUtils.setex(Constants.REDIS_KEY_USER_SPACE_USE + userId, spaceDto, Constants.REDIS_KEY_EXPIRES_DAY);
         }
         return spaceDto;
@@ -95,10 +106,8 @@ public class RedisComponent {
 
     public UserSpaceDto resetUserSpaceUse(String userId) {
         UserSpaceDto spaceDto = new UserSpaceDto();
-        Long useSpace = this.fileInfoMapper.selectUseSpace(userId);
-        spaceDto.setUseSpace(useSpace);
-
         UserInfo userInfo = this.userInfoMapper.selectByUserId(userId);
+        spaceDto.setUseSpace(userInfo.getUseSpace() == null ? 0L : userInfo.getUseSpace());
         spaceDto.setTotalSpace(userInfo.getTotalSpace());
         redisUtils.setex(Constants.REDIS_KEY_USER_SPACE_USE + userId, spaceDto, Constants.REDIS_KEY_EXPIRES_DAY);
         return spaceDto;
@@ -3,11 +3,15 @@ package com.easypan.component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
 import javax.annotation.Resource;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 @Component("redisUtils")
@@ -18,6 +22,24 @@ public class RedisUtils<V> {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisUtils.class);
 
+    /**
+     * 锁仍是自己持有时续期
+     */
+    private static final RedisScript<Long> LOCK_RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then\n" +
+                    "    return redis.call('expire', KEYS[1], ARGV[2])\n" +
+                    "end\n" +
+                    "return 0", Long.class);
+
+    /**
+     * 锁仍是自己持有时释放
+     */
+    private static final RedisScript<Long> LOCK_RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then\n" +
+                    "    return redis.call('del', KEYS[1])\n" +
+                    "end\n" +
+                    "return 0", Long.class);
+
     /**
      * 删除缓存
      *
@@ -37,6 +59,13 @@ public class RedisUtils<V> {
         return key == null ? null : redisTemplate.opsForValue().get(key);
     }
 
+    /**
+     * 批量获取，不存在的key对应null
+     */
+    public List<V> multiGet(List<String> keys) {
+        return redisTemplate.opsForValue().multiGet(keys);
+    }
+
     /**
      * 普通缓存放入
      *
@@ -75,4 +104,76 @@ public class RedisUtils<V> {
             return false;
         }
     }
+
+    /**
+     * 不存在时放入并设置时间，用于加锁
+     *
+     * @param key   键
+     * @param value 值
+     * @param time  时间(秒)
+     * @return true放入成功 false已存在或失败
+     */
+    public boolean setnx(String key, V value, long time) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, time, TimeUnit.SECONDS));
+        } catch (Exception e) {
+            logger.error("设置redisKey:{},value:{}失败", key, value);
+            return false;
+        }
+    }
+
+    /**
+     * 执行lua脚本
+     *
+     * @param script 脚本
+     * @param keys   脚本中的KEYS
+     * @param args   脚本中的ARGV
+     * @return 失败返回null
+     */
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        try {
+            return redisTemplate.execute(script, keys, args);
+        } catch (Exception e) {
+            logger.error("执行redis脚本失败,keys:{}", keys, e);
+            return null;
+        }
+    }
+
+    /**
+     * 锁仍由token持有时续期
+     *
+     * @return false锁已过期或被其他节点持有
+     */
+    public boolean renewLock(String key, V token, long time) {
+        Long result = execute(LOCK_RENEW_SCRIPT, Collections.singletonList(key), token, time);
+        return result != null && result > 0;
+    }
+
+    /**
+     * 锁仍由token持有时释放
+     */
+    public void unlock(String key, V token) {
+        execute(LOCK_RELEASE_SCRIPT, Collections.singletonList(key), token);
+    }
+
+    /**
+     * 递增计数，不存在时从0开始
+     */
+    public Long incr(String key) {
+        return redisTemplate.opsForValue().increment(key);
+    }
+
+    /**
+     * 发布消息
+     */
+    public void publish(String channel, V message) {
+        redisTemplate.convertAndSend(channel, message);
+    }
+
+    /**
+     * 按value的序列化方式解析订阅收到的消息
+     */
+    public V deserialize(byte[] body) {
+        return (V) redisTemplate.getValueSerializer().deserialize(body);
+    }
 }
@@ -0,0 +1,109 @@
+package com.easypan.component;
+
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.UserProfileDto;
+import com.easypan.entity.po.UserInfo;
+import com.easypan.entity.query.UserInfoQuery;
+import com.easypan.mappers.UserInfoMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 用户昵称和头像缓存
+ * 一批用户先从redis一次批量读取，缺少的再用一条in查询从数据库读取并写回缓存，缓存一天，修改用户信息时删除
+ */
+@Component("userProfileCacheComponent")
+public class UserProfileCacheComponent {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileCacheComponent.class);
+
+    @Resource
+    private RedisUtils<Object> redisUtils;
+
+    @Resource
+    private UserInfoMapper<UserInfo, UserInfoQuery> userInfoMapper;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong loadCount = new AtomicLong();
+
+    private final AtomicLong evictCount = new AtomicLong();
+
+    public UserProfileDto getProfile(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        return getProfileMap(Collections.singletonList(userId)).get(userId);
+    }
+
+    /**
+     * 批量查询，不存在的用户不在返回结果中
+     */
+    public Map<String, UserProfileDto> getProfileMap(Collection<String> userIds) {
+        List<String> userIdList = userIds.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        Map<String, UserProfileDto> profileMap = new HashMap<>();
+        if (userIdList.isEmpty()) {
+            return profileMap;
+        }
+        List<Object> values = null;
+        try {
+            values = redisUtils.multiGet(userIdList.stream().map(UserProfileCacheComponent::getKey).collect(Collectors.toList()));
+        } catch (Exception e) {
+            logger.warn("读取用户信息缓存失败", e);
+        }
+        List<String> missList = new ArrayList<>();
+        for (int i = 0; i < userIdList.size(); i++) {
+            Object value = values == null ? null : values.get(i);
+            if (value instanceof UserProfileDto) {
+                profileMap.put(userIdList.get(i), (UserProfileDto) value);
+            } else {
+                missList.add(userIdList.get(i));
+            }
+        }
+        hitCount.addAndGet(profileMap.size());
+        if (missList.isEmpty()) {
+            return profileMap;
+        }
+        missCount.addAndGet(missList.size());
+        loadCount.incrementAndGet();
+        for (UserInfo userInfo : userInfoMapper.selectProfileList(missList)) {
+            UserProfileDto profile = new UserProfileDto();
+            profile.setUserId(userInfo.getUserId());
+            profile.setNickName(userInfo.getNickName());
+            profile.setAvatar(userInfo.getQqAvatar());
+            profileMap.put(profile.getUserId(), profile);
+            try {
+                redisUtils.setex(getKey(profile.getUserId()), profile, Constants.REDIS_KEY_EXPIRES_DAY);
+            } catch (Exception e) {
+                logger.warn("写入用户信息缓存失败,userId:{}", profile.getUserId(), e);
+            }
+        }
+        return profileMap;
+    }
+
+    public void evict(String userId) {
+        evictCount.incrementAndGet();
+        redisUtils.delete(getKey(userId));
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hitCount", hitCount.get());
+        metrics.put("missCount", missCount.get());
+        metrics.put("loadCount", loadCount.get());
+        metrics.put("evictCount", evictCount.get());
+        return metrics;
+    }
+
+    private static String getKey(String userId) {
+        return Constants.REDIS_KEY_USER_PROFILE + userId;
+    }
+}
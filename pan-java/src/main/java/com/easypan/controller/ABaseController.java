@@ -6,6 +6,7 @@ import com.easypan.entity.dto.SessionWebUserDto;
 import com.easypan.entity.enums.ResponseCodeEnum;
 import com.easypan.entity.vo.PaginationResultVO;
 import com.easypan.entity.vo.ResponseVO;
+import com.easypan.utils.ByteBufferPool;
 import com.easypan.utils.CopyTools;
 import com.easypan.utils.StringTools;
 import org.slf4j.Logger;
@@ -16,6 +17,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Date;
 
 
@@ -64,13 +66,15 @@ public class ABaseController {
         }
         OutputStream out = null;
         FileInputStream in = null;
+        ByteBuffer byteBuffer = null;
         try {
             File file = new File(filePath);
             if (!file.exists()) {
                 return;
             }
             in = new FileInputStream(file);
-            byte[] byteData = new byte[1024];
+            byteBuffer = ByteBufferPool.heap().acquire();
+            byte[] byteData = byteBuffer.array();
             out = response.getOutputStream();
             int len = 0;
             while ((len = in.read(byteData)) != -1) {
@@ -80,6 +84,7 @@ public class ABaseController {
         } catch (Exception e) {
             logger.error("读取文件异常", e);
         } finally {
+            ByteBufferPool.heap().release(byteBuffer);
             if (out != null) {
                 try {
                     out.close();
@@ -102,6 +107,7 @@ public class ABaseController {
         if (!file.exists()) {
             return;
         }
+        ByteBuffer byteBuffer = null;
         try (ServletOutputStream out = response.getOutputStream();) {
 
             RandomAccessFile randomFile = new RandomAccessFile(file, "r");//只读模式
@@ -122,7 +128,8 @@ public class ABaseController {
                 requestSize = Integer.MAX_VALUE;
             }
 
-            byte[] buffer = new byte[4096];
+            byteBuffer = ByteBufferPool.heap().acquire();
+            byte[] buffer = byteBuffer.array();
             response.setHeader("Accept-Ranges", "bytes");
             response.setHeader("Last-Modified", new Date().toString());
             //第一次请求只返回content length来让客户端请求多次实际数据
@@ -168,6 +175,8 @@ public class ABaseController {
             randomFile.close();
         } catch (Exception e) {
             logger.error("读取视频信息失败", e);
+        } finally {
+            ByteBufferPool.heap().release(byteBuffer);
         }
     }
 }
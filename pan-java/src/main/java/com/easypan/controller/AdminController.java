@@ -2,6 +2,7 @@ package com.easypan.controller;
 
 import com.easypan.annotation.GlobalInterceptor;
 import com.easypan.annotation.VerifyParam;
+import com.easypan.component.FileShardComponent;
 import com.easypan.component.RedisComponent;
 import com.easypan.entity.dto.SysSettingsDto;
 import com.easypan.entity.enums.FileDelFlagEnums;
@@ -33,6 +34,9 @@ public class AdminController extends CommonFileController {
     @Resource
     private FileInfoService fileInfoService;
 
+    @Resource
+    private FileShardComponent fileShardComponent;
+
     @RequestMapping("/getSysSettings")
     @GlobalInterceptor(checkParams = true, checkAdmin = true)
     public ResponseVO getSysSettings() {
@@ -79,6 +83,24 @@ public class AdminController extends CommonFileController {
         return getSuccessResponseVO(null);
     }
 
+    /**
+     * 在后台迁移用户文件到指定分表，迁移期间该用户只能读不能写
+     */
+    @RequestMapping("/migrateFileShard")
+    @GlobalInterceptor(checkParams = true, checkAdmin = true)
+    public ResponseVO migrateFileShard(@VerifyParam(required = true) String userId, @VerifyParam(required = true) Integer shardNo) {
+        return getSuccessResponseVO(fileShardComponent.migrateUser(userId, shardNo));
+    }
+
+    /**
+     * 查询用户文件所在的分表和是否正在迁移
+     */
+    @RequestMapping("/getFileShardStatus")
+    @GlobalInterceptor(checkParams = true, checkAdmin = true)
+    public ResponseVO getFileShardStatus(@VerifyParam(required = true) String userId) {
+        return getSuccessResponseVO(fileShardComponent.getMigrateStatus(userId));
+    }
+
     /**
      * 查询所有文件
      *
@@ -137,7 +159,6 @@ public class AdminController extends CommonFileController {
     @GlobalInterceptor(checkLogin = false, checkParams = true)
     public void download(HttpServletRequest request, HttpServletResponse response,
                          @PathVariable("code") @VerifyParam(required = true) String code) throws Exception {
-        fileInfoService.downloadFile(request, response, code);
         super.download(request, response, code);
     }
 
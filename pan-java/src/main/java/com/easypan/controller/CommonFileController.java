@@ -1,5 +1,11 @@
 package com.easypan.controller;
 
+import com.easypan.component.DownloadAdmissionComponent;
+import com.easypan.component.DownloadFileCache;
+import com.easypan.component.DownloadSignComponent;
+import com.easypan.component.FileCompressComponent;
+import com.easypan.component.FileListCacheComponent;
+import com.easypan.component.FileMountComponent;
 import com.easypan.component.RedisComponent;
 import com.easypan.entity.config.AppConfig;
 import com.easypan.entity.constants.Constants;
@@ -12,6 +18,7 @@ import com.easypan.entity.vo.FolderVO;
 import com.easypan.entity.vo.ResponseVO;
 import com.easypan.exception.BusinessException;
 import com.easypan.service.FileInfoService;
+import com.easypan.utils.ByteBufferPool;
 import com.easypan.utils.CopyTools;
 import com.easypan.utils.StringTools;
 import org.apache.commons.lang3.StringUtils;
@@ -23,7 +30,16 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +55,11 @@ public class CommonFileController extends ABaseController {
 
     private static final Logger logger = LoggerFactory.getLogger(CommonFileController.class);
 
+    /**
+     * 视频切片的文件名，上传者的文件ID_序号.ts
+     */
+    private static final Pattern TS_FILE_NAME_PATTERN = Pattern.compile("[0-9A-Za-z]+_\\d+\\.ts");
+
     /**
      * 文件信息服务
      */
@@ -57,6 +78,36 @@ public class CommonFileController extends ABaseController {
     @Resource
     private RedisComponent redisComponent;
 
+    /**
+     * 签名下载码组件
+     */
+    @Resource
+    private DownloadSignComponent downloadSignComponent;
+
+    /**
+     * 下载码本地缓存
+     */
+    @Resource
+    private DownloadFileCache downloadFileCache;
+
+    /**
+     * 下载准入控制
+     */
+    @Resource
+    private DownloadAdmissionComponent downloadAdmissionComponent;
+
+    /**
+     * 文本文件压缩传输
+     */
+    @Resource
+    private FileCompressComponent fileCompressComponent;
+
+    /**
+     * 目录列表缓存
+     */
+    @Resource
+    protected FileListCacheComponent fileListCacheComponent;
+
     /**
      * 获取文件夹信息
      * 根据路径和用户ID获取文件夹的详细信息
@@ -76,6 +127,19 @@ public class CommonFileController extends ABaseController {
         String orderBy = "field(file_id,\"" + StringUtils.join(pathArray, "\",\"") + "\")";
         infoQuery.setOrderBy(orderBy);
         List<FileInfo> fileInfoList = fileInfoService.findListByParam(infoQuery);
+        // 挂载目录下的目录逐个解析，按路径顺序合并
+        if (Arrays.stream(pathArray).anyMatch(FileMountComponent::isVirtualId)) {
+            Map<String, FileInfo> fileInfoMap = fileInfoList.stream()
+                    .collect(Collectors.toMap(FileInfo::getFileId, Function.identity(), (data1, data2) -> data2));
+            fileInfoList = new ArrayList<>();
+            for (String fileId : pathArray) {
+                FileInfo fileInfo = FileMountComponent.isVirtualId(fileId) ? fileInfoService.getFileInfoByFileIdAndUserId(fileId, userId)
+                        : fileInfoMap.get(fileId);
+                if (fileInfo != null) {
+                    fileInfoList.add(fileInfo);
+                }
+            }
+        }
         return getSuccessResponseVO(CopyTools.copyList(fileInfoList, FolderVO.class));
     }
 
@@ -119,12 +183,28 @@ public class CommonFileController extends ABaseController {
             @RequestParam String userId) {
         String filePath = null;
         FileTypeEnums fileTypeEnums = null;
+        // 视频的索引和切片不压缩
+        boolean video = fileId.endsWith(".ts");
         // 处理视频.ts片段文件
-        if (fileId.endsWith(".ts")) {
+        if (video) {
             String[] tsAarray = fileId.split("_");
             String realFileId = tsAarray[0];
-            // 根据原文件的id查询出一个文件集合
-            FileInfo fileInfo = fileInfoService.getFileInfoByFileIdAndUserId(realFileId, userId);
+            String tsName = fileId;
+            FileInfo fileInfo;
+            if (FileMountComponent.isVirtualId(realFileId)) {
+                // 挂载目录下的视频，索引中的切片名前加了用户看到的文件ID，按ID解析出来源视频
+                tsName = fileId.substring(realFileId.length() + 1);
+                if (tsAarray.length < 2 || !TS_FILE_NAME_PATTERN.matcher(tsName).matches()) {
+                    return;
+                }
+                fileInfo = fileInfoService.getFileInfoByFileIdAndUserId(realFileId, userId);
+                if (fileInfo == null) {
+                    return;
+                }
+            } else {
+                // 根据原文件的id查询出一个文件集合
+                fileInfo = fileInfoService.getFileInfoByFileIdAndUserId(realFileId, userId);
+            }
             if (fileInfo == null) {
                 // 分享的视频，ts路径记录的是原视频的id,这里通过id直接取出原视频
                 FileInfoQuery fileInfoQuery = new FileInfoQuery();
@@ -145,7 +225,7 @@ public class CommonFileController extends ABaseController {
                 }
             }
             String fileName = fileInfo.getFilePath();
-            fileName = StringTools.getFileNameNoSuffix(fileName) + "/" + fileId;
+            fileName = StringTools.getFileNameNoSuffix(fileName) + "/" + tsName;
             filePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + fileName;
         } else {
             // 处理普通文件
@@ -158,10 +238,15 @@ public class CommonFileController extends ABaseController {
             }
             // 视频文件读取.m3u8文件
             if (FileCategoryEnums.VIDEO.getCategory().equals(fileInfo.getFileCategory())) {
+                video = true;
                 // 重新设置文件路径
                 String fileNameNoSuffix = StringTools.getFileNameNoSuffix(fileInfo.getFilePath());
                 filePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + fileNameNoSuffix + "/"
                         + Constants.M3U8_NAME;
+                if (FileMountComponent.isVirtualId(fileId)) {
+                    writeMountM3u8(response, filePath, fileId);
+                    return;
+                }
             } else {
                 filePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + fileInfo.getFilePath();
             }
@@ -173,12 +258,38 @@ public class CommonFileController extends ABaseController {
         // 根据文件类型选择不同的读取方式
         if (fileTypeEnums == FileTypeEnums.MUSIC) {
             readFile(request, response, filePath);
-        } else {
+        } else if (video || !fileCompressComponent.writeCompressed(request, response, filePath)) {
             readFile(response, filePath);
         }
 
     }
 
+    /**
+     * 挂载目录下的视频，索引中的切片名前加上用户看到的文件ID，
+     * 请求切片时按该ID解析出来源视频，不需要查询用户的所有挂载目录
+     */
+    private void writeMountM3u8(HttpServletResponse response, String filePath, String fileId) {
+        File file = new File(filePath);
+        if (!file.exists()) {
+            return;
+        }
+        StringBuilder m3u8 = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#") && line.endsWith(".ts")) {
+                    line = fileId + "_" + line;
+                }
+                m3u8.append(line).append("\n");
+            }
+            OutputStream out = response.getOutputStream();
+            out.write(m3u8.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            logger.error("读取视频索引异常", e);
+        }
+    }
+
     /**
      * 创建文件下载链接
      * 为指定文件生成临时下载码，用于安全下载
@@ -191,7 +302,8 @@ public class CommonFileController extends ABaseController {
 
     /*
     *
-    * 生成随机下载码，生成downloadFileDto对象保存下载信息数据，存储下载信息并存储到Redis中*/
+    * 启用签名时生成携带文件ID、用户ID、过期时间和HMAC的签名下载码，任意节点本地校验；
+    * 否则生成随机下载码，生成downloadFileDto对象保存下载信息数据，存储下载信息并存储到Redis中（可撤销）*/
     @PostMapping("/createDownloadUrl")
     @ResponseBody
     protected ResponseVO createDownloadUrl(@RequestParam String fileId, @RequestParam String userId) {
@@ -202,13 +314,20 @@ public class CommonFileController extends ABaseController {
         if (FileFolderTypeEnums.FOLDER.getType().equals(fileInfo.getFolderType())) {
             throw new BusinessException(ResponseCodeEnum.CODE_600);
         }
-        // 生成随机下载码
-        String code = StringTools.getRandomString(Constants.LENGTH_50);
         DownloadFileDto downloadFileDto = new DownloadFileDto();
-        downloadFileDto.setDownloadCode(code);
+        downloadFileDto.setFileId(fileId);
         downloadFileDto.setFilePath(fileInfo.getFilePath());
         downloadFileDto.setFileName(fileInfo.getFileName());
 
+        // 签名下载码，无需写入Redis
+        if (downloadSignComponent.isEnabled()) {
+            return getSuccessResponseVO(downloadSignComponent.sign(fileId, userId));
+        }
+
+        // 生成随机下载码
+        String code = StringTools.getRandomString(Constants.LENGTH_50);
+        downloadFileDto.setDownloadCode(code);
+
         // 将下载信息保存到Redis中
         redisComponent.saveDownloadCode(code, downloadFileDto);
 
@@ -232,63 +351,80 @@ public class CommonFileController extends ABaseController {
             @PathVariable String code,
             @RequestParam Integer chunkIndex,
             @RequestParam(required = false) Integer chunkSize) throws Exception {
-        // 从Redis中获取下载信息
-        DownloadFileDto downloadFileDto = redisComponent.getDownloadCode(code);
-        if (null == downloadFileDto) {
+        // 从本地缓存获取下载信息，未命中时才查询Redis并打开文件
+        DownloadFileCache.Entry downloadFile = downloadFileCache.acquire(code);
+        if (null == downloadFile) {
             response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
 
-        // 使用默认分片大小如果未指定
-        if (chunkSize == null) {
-            chunkSize = Constants.CHUNK_SIZE_DOWNLOAD;
-        }
+        DownloadAdmissionComponent.Permit permit = null;
+        try {
+            // 使用默认分片大小如果未指定
+            if (chunkSize == null) {
+                chunkSize = Constants.CHUNK_SIZE_DOWNLOAD;
+            }
 
-        String filePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + downloadFileDto.getFilePath();
-        File file = new File(filePath);
-        
-        if (!file.exists()) {
-            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-            return;
-        }
+            long fileSize = downloadFile.getFileSize();
+            long startByte = (long) chunkIndex * chunkSize;
+            long endByte = Math.min(startByte + chunkSize - 1, fileSize - 1);
 
-        long fileSize = file.length();
-        long startByte = (long) chunkIndex * chunkSize;
-        long endByte = Math.min(startByte + chunkSize - 1, fileSize - 1);
+            // 验证分片索引是否有效
+            if (startByte >= fileSize) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
 
-        // 验证分片索引是否有效
-        if (startByte >= fileSize) {
-            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
-            return;
-        }
+            // 磁盘卷上的并发下载已满且排队超时，让客户端稍后重试
+            permit = downloadAdmissionComponent.tryAcquire(downloadFile.getFilePath());
+            if (permit == null) {
+                rejectDownload(response);
+                return;
+            }
 
-        // 设置响应头支持分片下载
-        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-        response.setContentType("application/octet-stream");
-        response.setHeader("Accept-Ranges", "bytes");
-        response.setHeader("Content-Range", String.format("bytes %d-%d/%d", startByte, endByte, fileSize));
-        response.setContentLengthLong(endByte - startByte + 1);
-
-        // 读取并返回指定范围的文件内容
-        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
-             OutputStream outputStream = response.getOutputStream()) {
-            
-            randomAccessFile.seek(startByte);
-            byte[] buffer = new byte[8192];
-            long bytesToRead = endByte - startByte + 1;
-            
-            while (bytesToRead > 0) {
-                int bytesRead = randomAccessFile.read(buffer, 0, (int) Math.min(buffer.length, bytesToRead));
-                if (bytesRead == -1) {
-                    break;
+            // 设置响应头支持分片下载
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setContentType("application/octet-stream");
+            response.setHeader("Accept-Ranges", "bytes");
+            response.setHeader("Content-Range", String.format("bytes %d-%d/%d", startByte, endByte, fileSize));
+            response.setContentLengthLong(endByte - startByte + 1);
+
+            // 读取并返回指定范围的文件内容，共享的FileChannel按位置读取，不影响其他分片请求
+            FileChannel fileChannel = downloadFile.getFileChannel();
+            ByteBuffer byteBuffer = null;
+            try (OutputStream outputStream = response.getOutputStream()) {
+                byteBuffer = ByteBufferPool.heap().acquire();
+                byte[] buffer = byteBuffer.array();
+                long position = startByte;
+                long bytesToRead = endByte - startByte + 1;
+
+                while (bytesToRead > 0) {
+                    byteBuffer.clear();
+                    byteBuffer.limit((int) Math.min(buffer.length, bytesToRead));
+                    int bytesRead = fileChannel.read(byteBuffer, position);
+                    if (bytesRead == -1) {
+                        break;
+                    }
+                    outputStream.write(buffer, 0, bytesRead);
+                    position += bytesRead;
+                    bytesToRead -= bytesRead;
+                }
+                outputStream.flush();
+                // 最后一个分片已发送，下载码用完，不再占用缓存和文件句柄
+                if (bytesToRead == 0 && endByte == fileSize - 1) {
+                    downloadFileCache.evict(code);
                 }
-                outputStream.write(buffer, 0, bytesRead);
-                bytesToRead -= bytesRead;
+            } catch (IOException e) {
+                logger.error("分片下载失败: " + e.getMessage(), e);
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            } finally {
+                ByteBufferPool.heap().release(byteBuffer);
             }
-            outputStream.flush();
-        } catch (IOException e) {
-            logger.error("分片下载失败: " + e.getMessage(), e);
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        } finally {
+            if (permit != null) {
+                permit.release();
+            }
+            downloadFileCache.release(downloadFile);
         }
     }
 
@@ -302,33 +438,31 @@ public class CommonFileController extends ABaseController {
     @GetMapping("/getChunkInfo/{code}")
     @ResponseBody
     protected ResponseVO getChunkInfo(@PathVariable String code) {
-        // 从Redis中获取下载信息
-        DownloadFileDto downloadFileDto = redisComponent.getDownloadCode(code);
-        if (null == downloadFileDto) {
+        // 从本地缓存获取下载信息，后续分片请求直接复用
+        DownloadFileCache.Entry downloadFile = downloadFileCache.acquire(code);
+        if (null == downloadFile) {
             throw new BusinessException(ResponseCodeEnum.CODE_600);
         }
 
-        String filePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + downloadFileDto.getFilePath();
-        File file = new File(filePath);
-        
-        if (!file.exists()) {
-            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        try {
+            DownloadFileDto downloadFileDto = downloadFile.getDownloadFileDto();
+            long fileSize = downloadFile.getFileSize();
+            int chunkSize = Constants.CHUNK_SIZE_DOWNLOAD;
+            int totalChunks = (int) Math.ceil((double) fileSize / chunkSize);
+
+            // 创建分片下载信息DTO
+            ChunkDownloadDto chunkDownloadDto = new ChunkDownloadDto();
+            chunkDownloadDto.setDownloadCode(code);
+            chunkDownloadDto.setFilePath(downloadFileDto.getFilePath());
+            chunkDownloadDto.setFileName(downloadFileDto.getFileName());
+            chunkDownloadDto.setFileSize(fileSize);
+            chunkDownloadDto.setTotalChunks(totalChunks);
+            chunkDownloadDto.setChunkSize(chunkSize);
+
+            return getSuccessResponseVO(chunkDownloadDto);
+        } finally {
+            downloadFileCache.release(downloadFile);
         }
-
-        long fileSize = file.length();
-        int chunkSize = Constants.CHUNK_SIZE_DOWNLOAD;
-        int totalChunks = (int) Math.ceil((double) fileSize / chunkSize);
-
-        // 创建分片下载信息DTO
-        ChunkDownloadDto chunkDownloadDto = new ChunkDownloadDto();
-        chunkDownloadDto.setDownloadCode(code);
-        chunkDownloadDto.setFilePath(downloadFileDto.getFilePath());
-        chunkDownloadDto.setFileName(downloadFileDto.getFileName());
-        chunkDownloadDto.setFileSize(fileSize);
-        chunkDownloadDto.setTotalChunks(totalChunks);
-        chunkDownloadDto.setChunkSize(chunkSize);
-
-        return getSuccessResponseVO(chunkDownloadDto);
     }
 
     /**
@@ -355,9 +489,25 @@ public class CommonFileController extends ABaseController {
         if (null == downloadFileDto) {
             return;
         }
+        if (!StringTools.pathIsOk(downloadFileDto.getFilePath())) {
+            return;
+        }
         String filePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + downloadFileDto.getFilePath();
         String fileName = downloadFileDto.getFileName();
-        
+
+        DownloadAdmissionComponent.Permit permit = downloadAdmissionComponent.tryAcquire(filePath);
+        if (permit == null) {
+            rejectDownload(response);
+            return;
+        }
+        try {
+            writeDownload(request, response, filePath, fileName);
+        } finally {
+            permit.release();
+        }
+    }
+
+    private void writeDownload(HttpServletRequest request, HttpServletResponse response, String filePath, String fileName) throws Exception {
         // 检查文件大小，为大文件添加分片下载建议
         File file = new File(filePath);
         if (file.exists()) {
@@ -381,7 +531,18 @@ public class CommonFileController extends ABaseController {
             fileName = new String(fileName.getBytes("UTF-8"), "ISO8859-1");
         }
         response.setHeader("Content-Disposition", "attachment;filename=\"" + fileName + "\"");
-        readFile(response, filePath);
+        // 文本文件按客户端支持的编码压缩传输
+        if (!fileCompressComponent.writeCompressed(request, response, filePath)) {
+            readFile(response, filePath);
+        }
+    }
+
+    /**
+     * 下载排队已满，返回503并告知客户端重试间隔
+     */
+    private void rejectDownload(HttpServletResponse response) {
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", String.valueOf(downloadAdmissionComponent.getRetryAfter()));
     }
 }
 
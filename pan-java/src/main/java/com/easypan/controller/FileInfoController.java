@@ -2,6 +2,7 @@ package com.easypan.controller;
 
 import com.easypan.annotation.GlobalInterceptor;
 import com.easypan.annotation.VerifyParam;
+import com.easypan.component.FileDedupComponent;
 import com.easypan.entity.dto.SessionWebUserDto;
 import com.easypan.entity.dto.UploadResultDto;
 import com.easypan.entity.enums.FileCategoryEnums;
@@ -19,6 +20,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
@@ -31,6 +33,9 @@ import java.util.List;
 @RequestMapping("/file")
 public class FileInfoController extends CommonFileController {
 
+    @Resource
+    private FileDedupComponent fileDedupComponent;
+
     /**
      * 根据条件分页查询
      */
@@ -44,7 +49,10 @@ public class FileInfoController extends CommonFileController {
         query.setUserId(getUserInfoFromSession(session).getUserId());
         query.setOrderBy("last_update_time desc");
         query.setDelFlag(FileDelFlagEnums.USING.getFlag());
-        PaginationResultVO result = fileInfoService.findListByPage(query);
+        if (!StringTools.isEmpty(query.getFileNameFuzzy()) || !StringTools.isEmpty(query.getFileNameExt())) {
+            return getSuccessResponseVO(convert2PaginationVO(fileInfoService.searchFileName(query), FileInfoVO.class));
+        }
+        PaginationResultVO result = fileListCacheComponent.getList("file", query, () -> fileInfoService.findListByPage(query));
         return getSuccessResponseVO(convert2PaginationVO(result, FileInfoVO.class));
     }
 
@@ -55,7 +63,7 @@ public class FileInfoController extends CommonFileController {
                                  MultipartFile file,
                                  @VerifyParam(required = true) String fileName,
                                  @VerifyParam(required = true) String filePid,
-                                 @VerifyParam(required = true) String fileMd5,
+                                 @VerifyParam(max = 32) String fileMd5,
                                  @VerifyParam(required = true) Integer chunkIndex,
                                  @VerifyParam(required = true) Integer chunks) {
 
@@ -64,6 +72,25 @@ public class FileInfoController extends CommonFileController {
         return getSuccessResponseVO(resultDto);
     }
 
+    /**
+     * 按文件大小和抽样指纹预查是否可能秒传，返回false时不用计算完整的md5直接上传
+     */
+    @RequestMapping("/checkFingerprint")
+    @GlobalInterceptor(checkParams = true)
+    public ResponseVO checkFingerprint(@VerifyParam(required = true) Long fileSize,
+                                       @VerifyParam(required = true, min = 32, max = 32) String fingerprint) {
+        return getSuccessResponseVO(fileDedupComponent.mightExist(fileSize, fingerprint));
+    }
+
+    /**
+     * 复制挂载目录转为后台任务时查询进度
+     */
+    @RequestMapping("/getCopyTask")
+    @GlobalInterceptor(checkParams = true)
+    public ResponseVO getCopyTask(HttpSession session, @VerifyParam(required = true) String taskId) {
+        return getSuccessResponseVO(fileInfoService.getFileCopyTask(taskId, getUserInfoFromSession(session).getUserId()));
+    }
+
 
     @RequestMapping("/getImage/{imageFolder}/{imageName}")
     public void getImage(HttpServletResponse response, @PathVariable("imageFolder") String imageFolder, @PathVariable("imageName") String imageName) {
@@ -1,10 +1,22 @@
 package com.easypan.controller;
 
+import com.easypan.annotation.GlobalInterceptor;
+import com.easypan.component.DownloadAdmissionComponent;
+import com.easypan.component.FileCleanComponent;
+import com.easypan.component.FileDedupComponent;
+import com.easypan.component.FileInfoCacheComponent;
+import com.easypan.component.FileListCacheComponent;
+import com.easypan.component.FileNameIndexComponent;
+import com.easypan.component.FilePurgeComponent;
+import com.easypan.component.UserProfileCacheComponent;
+import com.easypan.task.UserSpaceReconcileTask;
+import com.easypan.utils.ByteBufferPool;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.annotation.Resource;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -12,6 +24,33 @@ import java.util.Map;
 @RequestMapping("/api")
 public class HealthController {
 
+    @Resource
+    private DownloadAdmissionComponent downloadAdmissionComponent;
+
+    @Resource
+    private UserSpaceReconcileTask userSpaceReconcileTask;
+
+    @Resource
+    private FileInfoCacheComponent fileInfoCacheComponent;
+
+    @Resource
+    private FileListCacheComponent fileListCacheComponent;
+
+    @Resource
+    private FileDedupComponent fileDedupComponent;
+
+    @Resource
+    private FileNameIndexComponent fileNameIndexComponent;
+
+    @Resource
+    private FileCleanComponent fileCleanComponent;
+
+    @Resource
+    private FilePurgeComponent filePurgeComponent;
+
+    @Resource
+    private UserProfileCacheComponent userProfileCacheComponent;
+
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> health() {
         Map<String, Object> body = new LinkedHashMap<>();
@@ -19,4 +58,25 @@ public class HealthController {
         body.put("timestamp", System.currentTimeMillis());
         return ResponseEntity.ok(body);
     }
-}
\ No newline at end of file
+
+    /**
+     * 运行指标是内部信息，只允许管理员查看
+     */
+    @GetMapping("/metrics")
+    @GlobalInterceptor(checkLogin = true, checkAdmin = true)
+    public ResponseEntity<Map<String, Object>> metrics() {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("bufferPool", ByteBufferPool.getAllMetrics());
+        body.put("downloadAdmission", downloadAdmissionComponent.getMetrics());
+        body.put("userSpaceReconcile", userSpaceReconcileTask.getLastResult());
+        body.put("fileInfoCache", fileInfoCacheComponent.getMetrics());
+        body.put("fileListCache", fileListCacheComponent.getMetrics());
+        body.put("fileDedup", fileDedupComponent.getMetrics());
+        body.put("fileNameIndex", fileNameIndexComponent.getMetrics());
+        body.put("fileClean", fileCleanComponent.getMetrics());
+        body.put("filePurge", filePurgeComponent.getMetrics());
+        body.put("userProfileCache", userProfileCacheComponent.getMetrics());
+        body.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(body);
+    }
+}
@@ -2,6 +2,7 @@ package com.easypan.controller;
 
 import com.easypan.annotation.GlobalInterceptor;
 import com.easypan.annotation.VerifyParam;
+import com.easypan.component.FileListCacheComponent;
 import com.easypan.entity.dto.SessionWebUserDto;
 import com.easypan.entity.enums.FileDelFlagEnums;
 import com.easypan.entity.query.FileInfoQuery;
@@ -22,6 +23,9 @@ public class RecycleController extends ABaseController {
     @Resource
     private FileInfoService fileInfoService;
 
+    @Resource
+    private FileListCacheComponent fileListCacheComponent;
+
     /**
      * 根据条件分页查询
      */
@@ -34,7 +38,7 @@ public class RecycleController extends ABaseController {
         query.setUserId(getUserInfoFromSession(session).getUserId());
         query.setOrderBy("recovery_time desc");
         query.setDelFlag(FileDelFlagEnums.RECYCLE.getFlag());
-        PaginationResultVO result = fileInfoService.findListByPage(query);
+        PaginationResultVO result = fileListCacheComponent.getList("recycle", query, () -> fileInfoService.findListByPage(query));
         return getSuccessResponseVO(convert2PaginationVO(result, FileInfoVO.class));
     }
 
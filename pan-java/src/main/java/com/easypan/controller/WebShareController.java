@@ -2,14 +2,15 @@ package com.easypan.controller;
 
 import com.easypan.annotation.GlobalInterceptor;
 import com.easypan.annotation.VerifyParam;
+import com.easypan.component.UserProfileCacheComponent;
 import com.easypan.entity.constants.Constants;
 import com.easypan.entity.dto.SessionShareDto;
 import com.easypan.entity.dto.SessionWebUserDto;
+import com.easypan.entity.dto.UserProfileDto;
 import com.easypan.entity.enums.FileDelFlagEnums;
 import com.easypan.entity.enums.ResponseCodeEnum;
 import com.easypan.entity.po.FileInfo;
 import com.easypan.entity.po.FileShare;
-import com.easypan.entity.po.UserInfo;
 import com.easypan.entity.query.FileInfoQuery;
 import com.easypan.entity.vo.FileInfoVO;
 import com.easypan.entity.vo.PaginationResultVO;
@@ -18,7 +19,6 @@ import com.easypan.entity.vo.ShareInfoVO;
 import com.easypan.exception.BusinessException;
 import com.easypan.service.FileInfoService;
 import com.easypan.service.FileShareService;
-import com.easypan.service.UserInfoService;
 import com.easypan.utils.CopyTools;
 import com.easypan.utils.StringTools;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -42,7 +42,7 @@ public class WebShareController extends CommonFileController {
     private FileInfoService fileInfoService;
 
     @Resource
-    private UserInfoService userInfoService;
+    private UserProfileCacheComponent userProfileCacheComponent;
 
 
     /**
@@ -93,10 +93,13 @@ public class WebShareController extends CommonFileController {
             throw new BusinessException(ResponseCodeEnum.CODE_902.getMsg());
         }
         shareInfoVO.setFileName(fileInfo.getFileName());
-        UserInfo userInfo = userInfoService.getUserInfoByUserId(share.getUserId());
-        shareInfoVO.setNickName(userInfo.getNickName());
-        shareInfoVO.setAvatar(userInfo.getQqAvatar());
-        shareInfoVO.setUserId(userInfo.getUserId());
+        UserProfileDto profile = userProfileCacheComponent.getProfile(share.getUserId());
+        if (profile == null) {
+            throw new BusinessException(ResponseCodeEnum.CODE_902.getMsg());
+        }
+        shareInfoVO.setNickName(profile.getNickName());
+        shareInfoVO.setAvatar(profile.getAvatar());
+        shareInfoVO.setUserId(profile.getUserId());
         return shareInfoVO;
     }
 
@@ -140,7 +143,7 @@ public class WebShareController extends CommonFileController {
         query.setUserId(shareSessionDto.getShareUserId());
         query.setOrderBy("last_update_time desc");
         query.setDelFlag(FileDelFlagEnums.USING.getFlag());
-        PaginationResultVO resultVO = fileInfoService.findListByPage(query);
+        PaginationResultVO resultVO = fileListCacheComponent.getList("share", query, () -> fileInfoService.findListByPage(query));
         return getSuccessResponseVO(convert2PaginationVO(resultVO, FileInfoVO.class));
     }
 
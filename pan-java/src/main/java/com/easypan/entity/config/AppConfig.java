@@ -81,6 +81,108 @@ public class AppConfig {
     @Value("${github.url.redirect:}")
     private String githubUrlRedirect;
 
+    /**
+     * 是否使用签名下载码，默认关闭，使用可撤销的Redis下载码
+     */
+    @Value("${download.sign.enable:false}")
+    private Boolean downloadSignEnable;
+
+    /**
+     * 下载码签名密钥，多节点部署时需保持一致
+     */
+    @Value("${download.sign.secret:}")
+    private String downloadSignSecret;
+
+    /**
+     * 签名下载码有效期（秒）
+     */
+    @Value("${download.sign.expire:300}")
+    private Integer downloadSignExpire;
+
+    /**
+     * 每个磁盘卷同时传输的最大下载数
+     */
+    @Value("${download.admission.max.concurrent:32}")
+    private Integer downloadAdmissionMaxConcurrent;
+
+    /**
+     * 每个磁盘卷最多排队等待的下载数，超出直接返回503
+     */
+    @Value("${download.admission.max.queue:64}")
+    private Integer downloadAdmissionMaxQueue;
+
+    /**
+     * 排队等待的最长时间（毫秒）
+     */
+    @Value("${download.admission.queue.timeout:3000}")
+    private Integer downloadAdmissionQueueTimeout;
+
+    /**
+     * 拒绝下载时建议客户端重试的间隔（秒）
+     */
+    @Value("${download.admission.retry.after:2}")
+    private Integer downloadAdmissionRetryAfter;
+
+    /**
+     * 文本文件预览和下载是否按Accept-Encoding压缩传输
+     */
+    @Value("${file.compress.enable:true}")
+    private Boolean compressEnable;
+
+    /**
+     * 只读从库地址，多个用逗号分隔
+     */
+    @Value("${datasource.replica.urls:}")
+    private String replicaUrls;
+
+    @Value("${datasource.replica.username:}")
+    private String replicaUsername;
+
+    @Value("${datasource.replica.password:}")
+    private String replicaPassword;
+
+    /**
+     * 写操作后同一会话继续读主库的时间（毫秒）
+     */
+    @Value("${datasource.sticky.millis:3000}")
+    private Long stickyMillis;
+
+    /**
+     * 文件表分表数量，1为不分表
+     */
+    @Value("${file.shard.count:1}")
+    private Integer fileShardCount;
+
+    /**
+     * 清理回收站过期文件的分区数，按user_id哈希分区，各节点抢到分区锁后处理
+     */
+    @Value("${file.clean.partition.count:16}")
+    private Integer fileCleanPartitionCount;
+
+    /**
+     * 每个节点每秒最多清理的回收站过期文件数，0为不限制
+     */
+    @Value("${file.clean.rate:200}")
+    private Integer fileCleanRate;
+
+    /**
+     * 彻底删除的文件保留的天数，超过后从文件表移除，0为不移除
+     */
+    @Value("${file.purge.retention.days:30}")
+    private Integer filePurgeRetentionDays;
+
+    /**
+     * 移除前是否复制到归档表，false时直接删除
+     */
+    @Value("${file.purge.archive:true}")
+    private Boolean filePurgeArchive;
+
+    /**
+     * 生成ID的节点号0-63，各节点不能相同，-1为启动时从redis租用
+     */
+    @Value("${id.node:-1}")
+    private Integer idNode;
+
 
     public String getProjectFolder() {
         if (!StringTools.isEmpty(projectFolder) && !projectFolder.endsWith("/")) {
@@ -157,4 +259,76 @@ public class AppConfig {
     public String getGithubUrlRedirect() {
         return githubUrlRedirect;
     }
+
+    public Boolean getDownloadSignEnable() {
+        return downloadSignEnable;
+    }
+
+    public String getDownloadSignSecret() {
+        return downloadSignSecret;
+    }
+
+    public Integer getDownloadSignExpire() {
+        return downloadSignExpire;
+    }
+
+    public Integer getDownloadAdmissionMaxConcurrent() {
+        return downloadAdmissionMaxConcurrent;
+    }
+
+    public Integer getDownloadAdmissionMaxQueue() {
+        return downloadAdmissionMaxQueue;
+    }
+
+    public Integer getDownloadAdmissionQueueTimeout() {
+        return downloadAdmissionQueueTimeout;
+    }
+
+    public Integer getDownloadAdmissionRetryAfter() {
+        return downloadAdmissionRetryAfter;
+    }
+
+    public Boolean getCompressEnable() {
+        return compressEnable;
+    }
+
+    public String getReplicaUrls() {
+        return replicaUrls;
+    }
+
+    public String getReplicaUsername() {
+        return replicaUsername;
+    }
+
+    public String getReplicaPassword() {
+        return replicaPassword;
+    }
+
+    public Long getStickyMillis() {
+        return stickyMillis;
+    }
+
+    public Integer getFileShardCount() {
+        return fileShardCount;
+    }
+
+    public Integer getFileCleanPartitionCount() {
+        return fileCleanPartitionCount;
+    }
+
+    public Integer getFileCleanRate() {
+        return fileCleanRate;
+    }
+
+    public Integer getFilePurgeRetentionDays() {
+        return filePurgeRetentionDays;
+    }
+
+    public Boolean getFilePurgeArchive() {
+        return filePurgeArchive;
+    }
+
+    public Integer getIdNode() {
+        return idNode;
+    }
 }
@@ -0,0 +1,58 @@
+package com.easypan.entity.config;
+
+import com.easypan.utils.StringTools;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据源配置，配置了只读从库时按读写分离路由，从库连接池参数与主库相同
+ */
+@Configuration("dataSourceConfig")
+public class DataSourceConfig {
+
+    @Resource
+    private AppConfig appConfig;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource) {
+        if (StringTools.isEmpty(appConfig.getReplicaUrls())) {
+            return primaryDataSource;
+        }
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : appConfig.getReplicaUrls().split(",")) {
+            if (StringTools.isEmpty(url.trim())) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            primaryDataSource.copyStateTo(replica);
+            replica.setJdbcUrl(url.trim());
+            replica.setPoolName(primaryDataSource.getPoolName() + "-replica" + replicas.size());
+            replica.setReadOnly(true);
+            if (!StringTools.isEmpty(appConfig.getReplicaUsername())) {
+                replica.setUsername(appConfig.getReplicaUsername());
+                replica.setPassword(appConfig.getReplicaPassword());
+            }
+            replicas.add(replica);
+        }
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(primaryDataSource, replicas, appConfig.getStickyMillis());
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
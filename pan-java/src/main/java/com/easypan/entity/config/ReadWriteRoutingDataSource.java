@@ -0,0 +1,111 @@
+package com.easypan.entity.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 读写分离数据源
+ * 读写事务走主库，只读事务和事务外的查询轮询从库；写语句、指定走主库的方法和写操作后一段时间内同一会话的读请求走主库，
+ * 需要外面包一层LazyConnectionDataSourceProxy，在事务的只读标记设置后、执行第一条语句时才选择数据源
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private static final String REPLICA = "replica";
+
+    /**
+     * 会话中最后一次写操作的时间
+     */
+    private static final String SESSION_LAST_WRITE_TIME = "dataSourceLastWriteTime";
+
+    private static final ThreadLocal<Integer> PRIMARY_DEPTH = ThreadLocal.withInitial(() -> 0);
+
+    private final int replicaCount;
+
+    private final long stickyMillis;
+
+    private final AtomicInteger replicaIndex = new AtomicInteger();
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, long stickyMillis) {
+        Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targetDataSources.put(REPLICA + i, replicas.get(i));
+        }
+        setTargetDataSources(targetDataSources);
+        setDefaultTargetDataSource(primary);
+        this.replicaCount = replicas.size();
+        this.stickyMillis = stickyMillis;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicaCount == 0 || PRIMARY_DEPTH.get() > 0) {
+            return PRIMARY;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive() && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        if (isSticky()) {
+            return PRIMARY;
+        }
+        return REPLICA + Math.floorMod(replicaIndex.getAndIncrement(), replicaCount);
+    }
+
+    /**
+     * 在主库上执行，用于刚写入就要读取的异步任务和缓存加载
+     */
+    public static <T> T usePrimary(Supplier<T> supplier) {
+        enterPrimary();
+        try {
+            return supplier.get();
+        } finally {
+            exitPrimary();
+        }
+    }
+
+    /**
+     * 之后的语句走主库，必须和exitPrimary成对调用，可以嵌套
+     */
+    public static void enterPrimary() {
+        PRIMARY_DEPTH.set(PRIMARY_DEPTH.get() + 1);
+    }
+
+    public static void exitPrimary() {
+        int depth = PRIMARY_DEPTH.get() - 1;
+        if (depth <= 0) {
+            PRIMARY_DEPTH.remove();
+        } else {
+            PRIMARY_DEPTH.set(depth);
+        }
+    }
+
+    /**
+     * 记录当前会话的写操作，之后一段时间内的读请求走主库
+     */
+    public static void markWrite() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(SESSION_LAST_WRITE_TIME, System.currentTimeMillis(), RequestAttributes.SCOPE_SESSION);
+        }
+    }
+
+    private boolean isSticky() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return false;
+        }
+        Object lastWriteTime = attributes.getAttribute(SESSION_LAST_WRITE_TIME, RequestAttributes.SCOPE_SESSION);
+        return lastWriteTime instanceof Long && System.currentTimeMillis() - (Long) lastWriteTime < stickyMillis;
+    }
+}
@@ -29,6 +29,20 @@ public class Constants {
 
     public static final String FILE_FOLDER_TEMP = "/temp/";
 
+    public static final String FILE_FOLDER_COMPRESS = "/compress/";
+
+    public static final String TREE_PATH_SEPARATOR = "/";
+
+    /**
+     * 目录路径最大长度，与file_info.tree_path的列宽一致
+     */
+    public static final Integer TREE_PATH_MAX_LENGTH = 700;
+
+    /**
+     * 目录路径每层为10位文件ID加分隔符，最多能保存的层级数（含文件本身）
+     */
+    public static final Integer MAX_FOLDER_DEPTH = (TREE_PATH_MAX_LENGTH - TREE_PATH_SEPARATOR.length()) / (LENGTH_10 + TREE_PATH_SEPARATOR.length());
+
     public static final String IMAGE_PNG_SUFFIX = ".png";
 
     public static final String TS_NAME = "index.ts";
@@ -77,8 +91,139 @@ public class Constants {
 
     public static final String REDIS_KEY_USER_SPACE_USE = "easypan:user:spaceuse:";
 
+    public static final String REDIS_KEY_USER_PROFILE = "easypan:user:profile:";
+
     public static final String REDIS_KEY_USER_FILE_TEMP_SIZE = "easypan:user:file:temp:";
 
+    public static final String REDIS_KEY_FILE_COUNT = "easypan:count:file:";
+
+    public static final String REDIS_KEY_FILE_COUNT_VERSION = "easypan:count:version:";
+
+    public static final String REDIS_KEY_SHARE_COUNT = "easypan:count:share:";
+
+    public static final String REDIS_KEY_FILE_INFO = "easypan:fileinfo:data:";
+
+    public static final String REDIS_KEY_FILE_INFO_GEN = "easypan:fileinfo:gen:";
+
+    public static final String REDIS_CHANNEL_FILE_INFO_EVICT = "easypan:channel:fileinfo:evict";
+
+    public static final String REDIS_KEY_FILE_LIST = "easypan:list:file:";
+
+    public static final String REDIS_KEY_FILE_LIST_VERSION = "easypan:list:version:";
+
+    public static final String REDIS_KEY_FILE_MD5_BLOOM = "easypan:dedup:bloom";
+
+    public static final String REDIS_KEY_FILE_NAME_INDEX_GEN = "easypan:nameindex:gen:";
+
+    public static final String REDIS_CHANNEL_FILE_NAME_INDEX = "easypan:channel:nameindex";
+
+    public static final String REDIS_KEY_FILE_MD5_BLOOM_READY = "easypan:dedup:bloom:ready";
+
+    public static final String REDIS_KEY_FILE_CLEAN_LOCK = "easypan:lock:fileclean:";
+
+    public static final String REDIS_KEY_FILE_PURGE_LOCK = "easypan:lock:filepurge";
+
+    /**
+     * ID节点号的租约，值为持有节点的标识
+     */
+    public static final String REDIS_KEY_ID_NODE = "easypan:id:node:";
+
+    public static final String REDIS_KEY_ID_NODE_SEQ = "easypan:id:nodeseq";
+
+    /**
+     * 节点号已经使用到的时间片，重启时从这之后开始，避免重启前后时钟回拨生成重复的ID
+     */
+    public static final String REDIS_KEY_ID_TICK = "easypan:id:tick:";
+
+    /**
+     * ID节点号租约时间（秒），每10秒续期
+     */
+    public static final Integer ID_NODE_LEASE_SECONDS = 30;
+
+    /**
+     * 文件信息本地缓存时间（毫秒）和最大条数
+     */
+    public static final Long FILE_INFO_LOCAL_CACHE_EXPIRES = 60 * 1000L;
+
+    public static final Integer FILE_INFO_LOCAL_CACHE_MAX_SIZE = 10000;
+
+    /**
+     * 文件分表路由本地缓存时间（毫秒），迁移时切换路由后至少等待这么久
+     */
+    public static final Long FILE_SHARD_ROUTE_EXPIRES = 5 * 1000L;
+
+    /**
+     * 秒传布隆过滤器位数和哈希次数，按一千万个文件、误判率约1%设置
+     */
+    public static final Long FILE_MD5_BLOOM_BITS = 1L << 27;
+
+    public static final Integer FILE_MD5_BLOOM_HASHES = 7;
+
+    /**
+     * 内存中文件名索引的文件总数上限，超过时淘汰最久没有搜索的用户
+     */
+    public static final Integer FILE_NAME_INDEX_MAX_DOCS = 2000000;
+
+    /**
+     * 批量修改文件名时每条语句的文件数
+     */
+    public static final Integer FILE_NAME_UPDATE_BATCH_SIZE = 500;
+
+    /**
+     * 同一目录下正常文件名称的唯一索引，插入时违反该索引才自动重命名
+     */
+    public static final String FILE_NAME_UNIQUE_KEY = "uk_user_pid_using_name";
+
+    /**
+     * 插入文件时重名自动重命名的最多次数
+     */
+    public static final Integer FILE_NAME_RENAME_MAX_TIMES = 5;
+
+    /**
+     * 复制挂载目录时每批复制的文件数，每批一条插入语句
+     */
+    public static final Integer FILE_COPY_BATCH_SIZE = 1000;
+
+    /**
+     * 复制挂载目录预计复制的文件数超过这个数量时转为后台任务分批提交
+     */
+    public static final Integer FILE_COPY_ASYNC_MIN_COUNT = 5000;
+
+    /**
+     * 后台复制任务超过这个时间没有进度时由其他节点接管继续
+     */
+    public static final Long FILE_COPY_TASK_STALE_TIME = 1000 * 60 * 5L;
+
+    /**
+     * 清理回收站过期文件时每批读取的文件数
+     */
+    public static final Integer FILE_CLEAN_BATCH_SIZE = 500;
+
+    /**
+     * 清理回收站过期文件、归档彻底删除的文件时锁的过期时间（秒），每处理一批续期一次
+     */
+    public static final Integer FILE_CLEAN_LOCK_EXPIRES = REDIS_KEY_EXPIRES_ONE_MIN * 2;
+
+    /**
+     * 归档彻底删除的文件时每批读取的文件数
+     */
+    public static final Integer FILE_PURGE_BATCH_SIZE = 500;
+
+    /**
+     * 挂载目录下文件的ID为挂载目录ID和来源文件ID的拼接，不能用视频切片名中的下划线
+     */
+    public static final String MOUNT_ID_SEPARATOR = "-";
+
+    /**
+     * 挂载目录引用挂载目录时最多向下解析的层数
+     */
+    public static final Integer MOUNT_MAX_DEPTH = 5;
+
+    /**
+     * 抽样指纹每段的大小，取文件头、中、尾三段，和前端计算方式一致
+     */
+    public static final Integer FILE_FINGERPRINT_SAMPLE_SIZE = 1024 * 64;
+
     /**
      * 分片下载相关常量
      */
@@ -98,6 +243,41 @@ public class Constants {
      */
     public static final Integer MAX_RETRY_COUNT = 3;
 
+    /**
+     * 下载码本地缓存有效期 30秒
+     */
+    public static final Integer DOWNLOAD_CACHE_EXPIRES_SECONDS = 30;
+
+    /**
+     * 下载码本地缓存最大数量
+     */
+    public static final Integer DOWNLOAD_CACHE_MAX_SIZE = 1024;
+
+    /**
+     * 小于1KB的文本文件不压缩
+     */
+    public static final Integer COMPRESS_MIN_SIZE = 1024;
+
+    /**
+     * 文本文件被访问3次后在磁盘上缓存压缩版本
+     */
+    public static final Integer COMPRESS_CACHE_HITS = 3;
+
+    /**
+     * 超过200MB的文本文件只做实时压缩，不缓存压缩版本
+     */
+    public static final Long COMPRESS_CACHE_MAX_SIZE = MB * 200;
+
+    /**
+     * 压缩版本超过7天没有访问时删除
+     */
+    public static final Integer COMPRESS_CACHE_EXPIRES_DAYS = 7;
+
+    /**
+     * 压缩版本总大小超过2GB时从最久没有访问的开始删除
+     */
+    public static final Long COMPRESS_CACHE_TOTAL_SIZE = MB * 1024 * 2;
+
 /**
 * kafka消费组ID
 * */
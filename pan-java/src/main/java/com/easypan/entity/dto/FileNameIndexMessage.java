@@ -0,0 +1,71 @@
+package com.easypan.entity.dto;
+
+import com.easypan.entity.po.FileInfo;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文件名索引变化，通过redis发布到所有节点
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FileNameIndexMessage implements Serializable {
+
+    private String userId;
+
+    /**
+     * 变化后的版本号，本地索引的版本号正好小1时才能增量更新
+     */
+    private Long gen;
+
+    /**
+     * 批量变化时整个用户的索引失效
+     */
+    private Boolean reset;
+
+    private List<FileInfo> putList = new ArrayList<>();
+
+    private List<String> removeList = new ArrayList<>();
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public Long getGen() {
+        return gen;
+    }
+
+    public void setGen(Long gen) {
+        this.gen = gen;
+    }
+
+    public Boolean getReset() {
+        return reset;
+    }
+
+    public void setReset(Boolean reset) {
+        this.reset = reset;
+    }
+
+    public List<FileInfo> getPutList() {
+        return putList;
+    }
+
+    public void setPutList(List<FileInfo> putList) {
+        this.putList = putList;
+    }
+
+    public List<String> getRemoveList() {
+        return removeList;
+    }
+
+    public void setRemoveList(List<String> removeList) {
+        this.removeList = removeList;
+    }
+}
@@ -0,0 +1,36 @@
+package com.easypan.entity.dto;
+
+import java.io.Serializable;
+
+/**
+ * 列表和分享页展示用的用户信息
+ */
+public class UserProfileDto implements Serializable {
+    private String userId;
+    private String nickName;
+    private String avatar;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getNickName() {
+        return nickName;
+    }
+
+    public void setNickName(String nickName) {
+        this.nickName = nickName;
+    }
+
+    public String getAvatar() {
+        return avatar;
+    }
+
+    public void setAvatar(String avatar) {
+        this.avatar = avatar;
+    }
+}
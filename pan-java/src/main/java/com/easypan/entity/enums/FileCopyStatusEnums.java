@@ -0,0 +1,24 @@
+package com.easypan.entity.enums;
+
+
+public enum FileCopyStatusEnums {
+    RUNNING(0, "复制中"),
+    SUCCESS(1, "完成"),
+    FAIL(2, "失败");
+
+    private Integer status;
+    private String desc;
+
+    FileCopyStatusEnums(Integer status, String desc) {
+        this.status = status;
+        this.desc = desc;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public String getDesc() {
+        return desc;
+    }
+}
@@ -0,0 +1,75 @@
+package com.easypan.entity.po;
+
+import java.io.Serializable;
+
+
+/**
+ * 后台复制任务待复制下级文件的目录
+ */
+public class FileCopyFolder implements Serializable {
+
+    /**
+     * 任务ID
+     */
+    private String taskId;
+
+    /**
+     * 目录序号，按层依次复制
+     */
+    private Integer folderSeq;
+
+    /**
+     * 来源目录ID
+     */
+    private String sourceFileId;
+
+    /**
+     * 复制后的目录ID
+     */
+    private String newFileId;
+
+    /**
+     * 复制后的目录路径
+     */
+    private String newTreePath;
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(String taskId) {
+        this.taskId = taskId;
+    }
+
+    public Integer getFolderSeq() {
+        return folderSeq;
+    }
+
+    public void setFolderSeq(Integer folderSeq) {
+        this.folderSeq = folderSeq;
+    }
+
+    public String getSourceFileId() {
+        return sourceFileId;
+    }
+
+    public void setSourceFileId(String sourceFileId) {
+        this.sourceFileId = sourceFileId;
+    }
+
+    public String getNewFileId() {
+        return newFileId;
+    }
+
+    public void setNewFileId(String newFileId) {
+        this.newFileId = newFileId;
+    }
+
+    public String getNewTreePath() {
+        return newTreePath;
+    }
+
+    public void setNewTreePath(String newTreePath) {
+        this.newTreePath = newTreePath;
+    }
+}
@@ -0,0 +1,200 @@
+package com.easypan.entity.po;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.io.Serializable;
+import java.util.Date;
+
+
+/**
+ * 后台复制任务
+ */
+public class FileCopyTask implements Serializable {
+
+    /**
+     * 任务ID
+     */
+    private String taskId;
+
+    /**
+     * 保存到的用户ID
+     */
+    private String userId;
+
+    /**
+     * 来源用户ID
+     */
+    private String sourceUserId;
+
+    /**
+     * 保存到的目录ID
+     */
+    private String targetFolderId;
+
+    /**
+     * 复制挂载目录时为挂载目录ID，复制出的文件ID由其和来源文件ID生成
+     */
+    private String mountFileId;
+
+    /**
+     * 0:复制中 1:完成 2:失败
+     */
+    private Integer status;
+
+    /**
+     * 预计复制的文件数，按目录汇总估算
+     */
+    private Integer totalCount;
+
+    /**
+     * 已复制的文件数
+     */
+    private Integer copyCount;
+
+    /**
+     * 正在复制的目录序号
+     */
+    private Integer folderSeq;
+
+    /**
+     * 正在复制的目录中最后复制的来源文件ID
+     */
+    private String lastFileId;
+
+    /**
+     * 每复制一批加一，防止两个节点同时执行
+     */
+    private Integer version;
+
+    /**
+     * 失败原因
+     */
+    private String errorMsg;
+
+    /**
+     * 创建时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date createTime;
+
+    /**
+     * 最后更新时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
+    @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private Date lastUpdateTime;
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(String taskId) {
+        this.taskId = taskId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getSourceUserId() {
+        return sourceUserId;
+    }
+
+    public void setSourceUserId(String sourceUserId) {
+        this.sourceUserId = sourceUserId;
+    }
+
+    public String getTargetFolderId() {
+        return targetFolderId;
+    }
+
+    public void setTargetFolderId(String targetFolderId) {
+        this.targetFolderId = targetFolderId;
+    }
+
+    public String getMountFileId() {
+        return mountFileId;
+    }
+
+    public void setMountFileId(String mountFileId) {
+        this.mountFileId = mountFileId;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public Integer getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(Integer totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public Integer getCopyCount() {
+        return copyCount;
+    }
+
+    public void setCopyCount(Integer copyCount) {
+        this.copyCount = copyCount;
+    }
+
+    public Integer getFolderSeq() {
+        return folderSeq;
+    }
+
+    public void setFolderSeq(Integer folderSeq) {
+        this.folderSeq = folderSeq;
+    }
+
+    public String getLastFileId() {
+        return lastFileId;
+    }
+
+    public void setLastFileId(String lastFileId) {
+        this.lastFileId = lastFileId;
+    }
+
+    public Integer getVersion() {
+        return version;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public String getErrorMsg() {
+        return errorMsg;
+    }
+
+    public void setErrorMsg(String errorMsg) {
+        this.errorMsg = errorMsg;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+
+    public Date getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+
+    public void setLastUpdateTime(Date lastUpdateTime) {
+        this.lastUpdateTime = lastUpdateTime;
+    }
+}
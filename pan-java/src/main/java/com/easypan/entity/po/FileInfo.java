@@ -104,6 +104,34 @@ public class FileInfo implements Serializable {
      */
     private Integer delFlag;
 
+    /**
+     * 目录路径，从根目录到自身的文件ID，如 /A/B/
+     */
+    @JsonIgnore
+    private String treePath;
+
+    /**
+     * 目录下所有正常文件的大小，文件为0
+     */
+    private Long folderSize;
+
+    /**
+     * 目录下所有正常文件的数量，文件为0
+     */
+    private Integer folderFileCount;
+
+    /**
+     * 挂载目录引用的来源用户ID
+     */
+    @JsonIgnore
+    private String refUserId;
+
+    /**
+     * 挂载目录引用的来源目录ID，为空表示普通文件
+     */
+    @JsonIgnore
+    private String refFileId;
+
     private String nickName;
 
     public String getNickName() {
@@ -242,6 +270,46 @@ public class FileInfo implements Serializable {
         return this.delFlag;
     }
 
+    public String getTreePath() {
+        return treePath;
+    }
+
+    public void setTreePath(String treePath) {
+        this.treePath = treePath;
+    }
+
+    public Long getFolderSize() {
+        return folderSize;
+    }
+
+    public void setFolderSize(Long folderSize) {
+        this.folderSize = folderSize;
+    }
+
+    public Integer getFolderFileCount() {
+        return folderFileCount;
+    }
+
+    public void setFolderFileCount(Integer folderFileCount) {
+        this.folderFileCount = folderFileCount;
+    }
+
+    public String getRefUserId() {
+        return refUserId;
+    }
+
+    public void setRefUserId(String refUserId) {
+        this.refUserId = refUserId;
+    }
+
+    public String getRefFileId() {
+        return refFileId;
+    }
+
+    public void setRefFileId(String refFileId) {
+        this.refFileId = refFileId;
+    }
+
     @Override
     public String toString() {
         return "文件ID:" + (fileId == null ? "空" : fileId) + "，用户ID:" + (userId == null ? "空" : userId) + "，md5值，第一次上传记录:" + (fileMd5 == null ? "空" : fileMd5) + "，父级ID:" + (filePid == null ? "空" : filePid) + "，文件大小:" + (fileSize == null ? "空" : fileSize) + "，文件名称:" + (fileName == null ? "空" : fileName) + "，封面:" + (fileCover == null ? "空" : fileCover) + "，文件路径:" + (filePath == null ? "空" : filePath) + "，创建时间:" + (createTime == null ? "空" : DateUtil.format(createTime, DateTimePatternEnum.YYYY_MM_DD_HH_MM_SS.getPattern())) + "，最后更新时间:" + (lastUpdateTime == null ? "空" : DateUtil.format(lastUpdateTime, DateTimePatternEnum.YYYY_MM_DD_HH_MM_SS.getPattern())) + "，0:文件 1:目录:" + (folderType == null ? "空" : folderType) + "，1:视频 2:音频  3:图片 4:文档 5:其他:" + (fileCategory == null ? "空" : fileCategory) + "， 1:视频 2:音频  3:图片 4:pdf 5:doc 6:excel 7:txt 8:code 9:zip 10:其他:" + (fileType == null ? "空" : fileType) + "，0:转码中 1转码失败 2:转码成功:" + (status == null ? "空" : status) + "，回收站时间:" + (recoveryTime == null ? "空" : DateUtil.format(recoveryTime, DateTimePatternEnum.YYYY_MM_DD_HH_MM_SS.getPattern())) + "，删除标记 0:删除  1:回收站  2:正常:" + (delFlag == null ? "空" : delFlag);
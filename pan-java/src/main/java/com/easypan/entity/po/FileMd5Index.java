@@ -0,0 +1,115 @@
+package com.easypan.entity.po;
+
+import java.io.Serializable;
+import java.util.Date;
+
+
+/**
+ * 秒传索引
+ */
+public class FileMd5Index implements Serializable {
+
+    /**
+     * md5值
+     */
+    private String fileMd5;
+
+    /**
+     * 物理文件路径
+     */
+    private String filePath;
+
+    /**
+     * 文件大小
+     */
+    private Long fileSize;
+
+    /**
+     * 封面
+     */
+    private String fileCover;
+
+    /**
+     * 1:视频 2:音频  3:图片 4:文档 5:其他
+     */
+    private Integer fileCategory;
+
+    /**
+     * 1:视频 2:音频  3:图片 4:pdf 5:doc 6:excel 7:txt 8:code 9:zip 10:其他
+     */
+    private Integer fileType;
+
+    /**
+     * 抽样指纹
+     */
+    private String fileFingerprint;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    public String getFileMd5() {
+        return fileMd5;
+    }
+
+    public void setFileMd5(String fileMd5) {
+        this.fileMd5 = fileMd5;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getFileCover() {
+        return fileCover;
+    }
+
+    public void setFileCover(String fileCover) {
+        this.fileCover = fileCover;
+    }
+
+    public Integer getFileCategory() {
+        return fileCategory;
+    }
+
+    public void setFileCategory(Integer fileCategory) {
+        this.fileCategory = fileCategory;
+    }
+
+    public Integer getFileType() {
+        return fileType;
+    }
+
+    public void setFileType(Integer fileType) {
+        this.fileType = fileType;
+    }
+
+    public String getFileFingerprint() {
+        return fileFingerprint;
+    }
+
+    public void setFileFingerprint(String fileFingerprint) {
+        this.fileFingerprint = fileFingerprint;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+}
@@ -0,0 +1,63 @@
+package com.easypan.entity.po;
+
+import java.io.Serializable;
+import java.util.Date;
+
+
+/**
+ * 文件分表路由
+ */
+public class FileShardRoute implements Serializable {
+
+    /**
+     * 用户ID
+     */
+    private String userId;
+
+    /**
+     * 文件分表序号
+     */
+    private Integer shardNo;
+
+    /**
+     * 0:正常 1:迁移中
+     */
+    private Integer status;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public Integer getShardNo() {
+        return shardNo;
+    }
+
+    public void setShardNo(Integer shardNo) {
+        this.shardNo = shardNo;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public Date getUpdateTime() {
+        return updateTime;
+    }
+
+    public void setUpdateTime(Date updateTime) {
+        this.updateTime = updateTime;
+    }
+}
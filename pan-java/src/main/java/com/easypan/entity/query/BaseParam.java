@@ -1,11 +1,24 @@
 package com.easypan.entity.query;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 public class BaseParam {
 	private SimplePage simplePage;
 	private Integer pageNo;
 	private Integer pageSize;
 	private String orderBy;
+	/**
+	 * 游标分页的游标，不为null时按游标分页，空字符串表示第一页
+	 */
+	private String cursor;
+	/**
+	 * 游标分页时是否查询总数
+	 */
+	private Boolean queryTotal;
+	/**
+	 * 游标分页时上一页最后一条记录的位置，只能由服务端解析游标后设置，没有setter，请求参数不能绑定
+	 */
+	private SeekCursor seekCursor;
 	public SimplePage getSimplePage() {
 		return simplePage;
 	}
@@ -37,4 +50,29 @@ public class BaseParam {
 	public String getOrderBy(){
 		return this.orderBy;
 	}
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
+	public Boolean getQueryTotal() {
+		return queryTotal;
+	}
+
+	public void setQueryTotal(Boolean queryTotal) {
+		this.queryTotal = queryTotal;
+	}
+
+	@JsonIgnore
+	public SeekCursor getSeekCursor() {
+		return seekCursor;
+	}
+
+	public void seekAfter(SeekCursor seekCursor) {
+		this.seekCursor = seekCursor;
+	}
 }
@@ -122,6 +122,44 @@ public class FileInfoQuery extends BaseParam {
 
     private Boolean queryNickName;
 
+    /**
+     * 目录路径前缀，查询整个子树
+     */
+    private String treePathPrefix;
+
+    /**
+     * 文件名按前缀匹配，配合fileNameFuzzy使用
+     */
+    private Boolean fileNamePrefix;
+
+    /**
+     * 文件扩展名，不带点
+     */
+    private String fileNameExt;
+
+    public Boolean getFileNamePrefix() {
+        return fileNamePrefix;
+    }
+
+    public void setFileNamePrefix(Boolean fileNamePrefix) {
+        this.fileNamePrefix = fileNamePrefix;
+    }
+
+    public String getFileNameExt() {
+        return fileNameExt;
+    }
+
+    public void setFileNameExt(String fileNameExt) {
+        this.fileNameExt = fileNameExt;
+    }
+
+    public String getTreePathPrefix() {
+        return treePathPrefix;
+    }
+
+    public void setTreePathPrefix(String treePathPrefix) {
+        this.treePathPrefix = treePathPrefix;
+    }
 
     public Boolean getQueryNickName() {
         return queryNickName;
@@ -0,0 +1,131 @@
+package com.easypan.entity.query;
+
+import com.easypan.entity.enums.ResponseCodeEnum;
+import com.easypan.exception.BusinessException;
+import com.easypan.utils.StringTools;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 游标分页的位置，由上一页最后一条记录的排序时间和ID组成，格式为 毫秒数_ID，
+ * 不限用户的查询ID不唯一，再加上用户ID，格式为 毫秒数_ID.用户ID
+ */
+public class SeekCursor {
+
+    private static final String SEPARATOR = "_";
+
+    private static final String USER_SEPARATOR = ".";
+
+    /**
+     * 支持游标分页的排序列，拼接到SQL中的排序列只能从这里取
+     */
+    private static final Set<String> SORT_COLUMNS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "last_update_time", "recovery_time", "create_time", "share_time")));
+
+    private final String sortColumn;
+
+    private final Date sortTime;
+
+    private final String id;
+
+    private final String userId;
+
+    private SeekCursor(String sortColumn, Date sortTime, String id, String userId) {
+        this.sortColumn = sortColumn;
+        this.sortTime = sortTime;
+        this.id = id;
+        this.userId = userId;
+    }
+
+    /**
+     * 解析客户端传回的游标
+     *
+     * @param cursor   游标，为空表示第一页
+     * @param orderBy  服务端设置的排序语句，排序列必须在白名单中
+     * @param withUser 是否按用户ID区分相同ID的记录
+     * @return 第一页返回null
+     */
+    public static SeekCursor parse(String cursor, String orderBy, boolean withUser) {
+        String sortColumn = getSortColumn(orderBy);
+        if (sortColumn == null) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+        if (StringTools.isEmpty(cursor)) {
+            return null;
+        }
+        int index = cursor.indexOf(SEPARATOR);
+        if (index <= 0 || index == cursor.length() - 1) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+        String id = cursor.substring(index + 1);
+        String userId = null;
+        if (withUser) {
+            int userIndex = id.lastIndexOf(USER_SEPARATOR);
+            if (userIndex <= 0 || userIndex == id.length() - 1) {
+                throw new BusinessException(ResponseCodeEnum.CODE_600);
+            }
+            userId = id.substring(userIndex + 1);
+            id = id.substring(0, userIndex);
+        }
+        try {
+            return new SeekCursor(sortColumn, new Date(Long.parseLong(cursor.substring(0, index))), id, userId);
+        } catch (NumberFormatException e) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+    }
+
+    /**
+     * 排序时间为空的记录无法定位，不再返回下一页游标
+     */
+    public static String build(Date sortTime, String id) {
+        if (sortTime == null || id == null) {
+            return null;
+        }
+        return sortTime.getTime() + SEPARATOR + id;
+    }
+
+    public static String build(Date sortTime, String id, String userId) {
+        if (userId == null) {
+            return null;
+        }
+        String cursor = build(sortTime, id);
+        return cursor == null ? null : cursor + USER_SEPARATOR + userId;
+    }
+
+    /**
+     * 从排序语句中取出排序列，只支持白名单中的单列倒序
+     *
+     * @param orderBy 排序语句，如 last_update_time desc
+     * @return 不是单列倒序或排序列不支持时返回null
+     */
+    public static String getSortColumn(String orderBy) {
+        if (StringTools.isEmpty(orderBy)) {
+            return null;
+        }
+        String[] items = orderBy.trim().split("\\s+");
+        if (items.length != 2 || !"desc".equalsIgnoreCase(items[1])) {
+            return null;
+        }
+        return SORT_COLUMNS.contains(items[0]) ? items[0] : null;
+    }
+
+    public String getSortColumn() {
+        return sortColumn;
+    }
+
+    public Date getSortTime() {
+        return sortTime;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+}
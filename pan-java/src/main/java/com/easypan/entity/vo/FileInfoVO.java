@@ -65,6 +65,16 @@ public class FileInfoVO {
      */
     private Integer status;
 
+    /**
+     * 目录下所有正常文件的大小
+     */
+    private Long folderSize;
+
+    /**
+     * 目录下所有正常文件的数量
+     */
+    private Integer folderFileCount;
+
     public String getFileId() {
         return fileId;
     }
@@ -152,4 +162,20 @@ public class FileInfoVO {
     public void setLastUpdateTime(Date lastUpdateTime) {
         this.lastUpdateTime = lastUpdateTime;
     }
+
+    public Long getFolderSize() {
+        return folderSize;
+    }
+
+    public void setFolderSize(Long folderSize) {
+        this.folderSize = folderSize;
+    }
+
+    public Integer getFolderFileCount() {
+        return folderFileCount;
+    }
+
+    public void setFolderFileCount(Integer folderFileCount) {
+        this.folderFileCount = folderFileCount;
+    }
 }
@@ -9,6 +9,10 @@ public class PaginationResultVO<T> {
 	private Integer pageNo;
 	private Integer pageTotal;
 	private List<T> list = new ArrayList<T>();
+	/**
+	 * 游标分页的下一页游标，没有下一页时为null
+	 */
+	private String nextCursor;
 
 	public PaginationResultVO(Integer totalCount, Integer pageSize, Integer pageNo, List<T> list) {
 		this.totalCount = totalCount;
@@ -75,4 +79,12 @@ public class PaginationResultVO<T> {
     public void setPageTotal(Integer pageTotal) {
         this.pageTotal = pageTotal;
     }
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
 }
@@ -0,0 +1,37 @@
+package com.easypan.mappers;
+
+import com.easypan.entity.po.FileCopyFolder;
+import com.easypan.entity.po.FileCopyTask;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 后台复制任务
+ */
+public interface FileCopyTaskMapper {
+
+    Integer insert(@Param("bean") FileCopyTask task);
+
+    FileCopyTask selectByTaskId(@Param("taskId") String taskId);
+
+    /**
+     * 保存一批复制后的进度，版本号不一致时说明任务已被其他节点接管，返回0
+     */
+    Integer updateProgress(@Param("bean") FileCopyTask task, @Param("oldVersion") Integer oldVersion);
+
+    /**
+     * 超过staleTime没有进度的复制中任务，执行的节点可能已经停止
+     */
+    List<FileCopyTask> selectStaleList(@Param("status") Integer status, @Param("staleTime") Date staleTime, @Param("limit") Integer limit);
+
+    Integer insertFolderBatch(@Param("list") List<FileCopyFolder> list);
+
+    /**
+     * 按序号读取还没有复制完下级文件的目录
+     */
+    List<FileCopyFolder> selectFolderList(@Param("taskId") String taskId, @Param("fromSeq") Integer fromSeq);
+
+    Integer deleteFolderBefore(@Param("taskId") String taskId, @Param("beforeSeq") Integer beforeSeq);
+}
@@ -1,7 +1,9 @@
 package com.easypan.mappers;
 
 import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.po.UserInfo;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
@@ -28,7 +30,7 @@ public interface FileInfoMapper<T, P> extends BaseMapper<T, P> {
     T selectByFileIdAndUserId(@Param("fileId") String fileId, @Param("userId") String userId);
 
 
-    void updateFileStatusWithOldStatus(@Param("fileId") String fileId, @Param("userId") String userId, @Param("bean") T t,
+    Integer updateFileStatusWithOldStatus(@Param("fileId") String fileId, @Param("userId") String userId, @Param("bean") T t,
                                        @Param("oldStatus") Integer oldStatus);
 
     void updateFileDelFlagBatch(@Param("bean") FileInfo fileInfo,
@@ -43,7 +45,123 @@ public interface FileInfoMapper<T, P> extends BaseMapper<T, P> {
                       @Param("fileIdList") List<String> fileIdList,
                       @Param("oldDelFlag") Integer oldDelFlag);
 
+    /**
+     * 修改以oldTreePath开头的整个子树的目录路径
+     */
+    Integer updateTreePath(@Param("userId") String userId,
+                           @Param("oldTreePath") String oldTreePath,
+                           @Param("newTreePath") String newTreePath);
+
+    /**
+     * 以treePath开头的整个子树中最长的目录路径长度
+     */
+    Integer selectMaxTreePathLength(@Param("userId") String userId, @Param("treePath") String treePath);
+
+    /**
+     * 所选目录移动到其他目录下时，整个子树中最长的目录路径在目标目录路径之后的长度
+     */
+    Integer selectMaxSubTreePathLength(@Param("userId") String userId, @Param("fileIdList") List<String> fileIdList);
+
+    /**
+     * 一条语句把一批文件的目录路径改为treePath下，只用于没有下级的文件
+     */
+    Integer updateFileTreePathBatch(@Param("userId") String userId, @Param("treePath") String treePath, @Param("list") List<FileInfo> list);
+
+    /**
+     * 递归查询所选目录及其下删除标记为folderDelFlag的所有子目录ID
+     */
+    List<String> selectSubFolderFileIdList(@Param("userId") String userId,
+                                           @Param("fileIdList") List<String> fileIdList,
+                                           @Param("folderDelFlag") Integer folderDelFlag);
+
+    /**
+     * 一次修改所选目录下整个子树的删除标记，只沿删除标记为folderDelFlag的子目录向下
+     */
+    Integer updateSubTreeDelFlag(@Param("bean") FileInfo fileInfo,
+                                 @Param("userId") String userId,
+                                 @Param("fileIdList") List<String> fileIdList,
+                                 @Param("folderDelFlag") Integer folderDelFlag,
+                                 @Param("oldDelFlag") Integer oldDelFlag);
+
+    /**
+     * 递归查询目录下的所有文件，不包含目录本身
+     */
+    List<T> selectSubTreeList(@Param("userId") String userId, @Param("fileId") String fileId);
+
+    /**
+     * 按file_pid重建用户所有文件的目录路径
+     */
+    Integer rebuildTreePath(@Param("userId") String userId);
+
     Long selectUseSpace(@Param("userId") String userId);
 
+    /**
+     * 一条语句修改一批文件的名称，filePid不为空时同时移动到该目录
+     */
+    Integer updateFileNameBatch(@Param("userId") String userId, @Param("filePid") String filePid, @Param("list") List<FileInfo> list);
+
+    /**
+     * 按文件ID顺序分批读取目录下的直接下级文件，从lastFileId之后开始
+     */
+    List<T> selectChildBatch(@Param("userId") String userId, @Param("filePid") String filePid, @Param("delFlag") Integer delFlag,
+                             @Param("lastFileId") String lastFileId, @Param("limit") Integer limit);
+
+    /**
+     * 目录下指定删除标记的文件名称，用于批量处理重名
+     */
+    List<String> selectFileNameList(@Param("userId") String userId, @Param("filePid") String filePid, @Param("delFlag") Integer delFlag);
+
+    /**
+     * 按(user_id, file_id)顺序分批读取user_id哈希分区中回收站过期的文件，从(lastUserId, lastFileId)之后开始
+     */
+    List<T> selectExpiredRecycleBatch(@Param("delFlag") Integer delFlag, @Param("partitionCount") Integer partitionCount,
+                                      @Param("partition") Integer partition, @Param("lastUserId") String lastUserId,
+                                      @Param("lastFileId") String lastFileId, @Param("limit") Integer limit);
+
+    /**
+     * 按(user_id, file_id)顺序分批读取最后更新超过retentionDays天的文件，从(lastUserId, lastFileId)之后开始
+     */
+    List<T> selectPurgeBatch(@Param("delFlag") Integer delFlag, @Param("retentionDays") Integer retentionDays,
+                             @Param("lastUserId") String lastUserId, @Param("lastFileId") String lastFileId, @Param("limit") Integer limit);
+
+    /**
+     * 复制到归档表
+     */
+    Integer insertArchiveBatch(@Param("userId") String userId, @Param("fileIdList") List<String> fileIdList, @Param("delFlag") Integer delFlag);
+
+    /**
+     * 物理删除指定删除标记的文件
+     */
+    Integer deletePurgeBatch(@Param("userId") String userId, @Param("fileIdList") List<String> fileIdList, @Param("delFlag") Integer delFlag);
+
+    /**
+     * 挂载目录改为普通目录，已经不是挂载目录时返回0
+     */
+    Integer updateMountToFolder(@Param("userId") String userId, @Param("fileId") String fileId, @Param("folderSize") Long folderSize,
+                                @Param("folderFileCount") Integer folderFileCount);
+
+    /**
+     * 修改目录汇总，rollupList中folderSize、folderFileCount为变化量
+     */
+    Integer updateFolderRollup(@Param("userId") String userId, @Param("rollupList") List<FileInfo> rollupList);
+
+    /**
+     * 统计updateSubTreeDelFlag将要修改的文件大小，已彻底删除的不统计
+     */
+    Long selectSubTreeUseSpace(@Param("userId") String userId,
+                               @Param("fileIdList") List<String> fileIdList,
+                               @Param("folderDelFlag") Integer folderDelFlag,
+                               @Param("oldDelFlag") Integer oldDelFlag);
+
+    /**
+     * 批量统计用户实际使用的空间，用于核对user_info中的use_space
+     */
+    List<UserInfo> selectUseSpaceByUserIds(@Param("userIdList") List<String> userIdList);
+
     void deleteFileByUserId(@Param("userId") String userId);
+
+    /**
+     * 流式读取用户文件的ID、名称、父级ID和分类，用于建立文件名索引
+     */
+    void selectFileNameIndex(@Param("userId") String userId, @Param("delFlag") Integer delFlag, ResultHandler<FileInfo> handler);
 }
@@ -0,0 +1,35 @@
+package com.easypan.mappers;
+
+import com.easypan.entity.po.FileMd5Index;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 秒传索引
+ */
+public interface FileMd5IndexMapper {
+
+    FileMd5Index selectByFileMd5(@Param("fileMd5") String fileMd5);
+
+    Integer selectCountByFingerprint(@Param("fileSize") Long fileSize, @Param("fileFingerprint") String fileFingerprint);
+
+    /**
+     * 已有记录时保留原来的物理文件，只在原文件失效删除索引后才替换
+     */
+    Integer insertIgnore(@Param("bean") FileMd5Index index);
+
+    Integer updateFingerprint(@Param("fileMd5") String fileMd5, @Param("fileFingerprint") String fileFingerprint);
+
+    Integer deleteByFileMd5(@Param("fileMd5") String fileMd5, @Param("filePath") String filePath);
+
+    /**
+     * 按md5顺序分批读取，用于重建布隆过滤器
+     */
+    List<FileMd5Index> selectBatch(@Param("lastMd5") String lastMd5, @Param("limit") Integer limit);
+
+    /**
+     * 按md5顺序分批读取还没有抽样指纹的记录
+     */
+    List<FileMd5Index> selectBatchWithoutFingerprint(@Param("lastMd5") String lastMd5, @Param("limit") Integer limit);
+}
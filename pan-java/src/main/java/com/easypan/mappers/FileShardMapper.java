@@ -0,0 +1,28 @@
+package com.easypan.mappers;
+
+import com.easypan.entity.po.FileShardRoute;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 文件分表路由和用户文件迁移，表名由分表组件生成，不来自请求参数
+ */
+public interface FileShardMapper {
+
+    FileShardRoute selectRouteByUserId(@Param("userId") String userId);
+
+    /**
+     * 读取路由并加共享锁到事务结束，迁移修改路由时等待持有锁的写事务
+     */
+    FileShardRoute selectRouteForShare(@Param("userId") String userId);
+
+    Integer insertOrUpdateRoute(@Param("bean") FileShardRoute route);
+
+    Integer countUserFile(@Param("tableName") String tableName, @Param("userId") String userId);
+
+    /**
+     * 复制用户的所有文件到目标分表
+     */
+    Integer copyUserFile(@Param("sourceTable") String sourceTable, @Param("targetTable") String targetTable, @Param("userId") String userId);
+
+    Integer deleteUserFile(@Param("tableName") String tableName, @Param("userId") String userId);
+}
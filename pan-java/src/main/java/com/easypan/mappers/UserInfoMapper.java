@@ -2,6 +2,8 @@ package com.easypan.mappers;
 
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 /**
  * 用户信息 数据库操作接口
  */
@@ -80,4 +82,14 @@ public interface UserInfoMapper<T, P> extends BaseMapper<T, P> {
 
 
     Integer updateUserSpace(@Param("userId") String userId, @Param("useSpace") Long useSpace, @Param("totalSpace") Long totalSpace);
+
+    /**
+     * 增减已使用空间，不校验总空间，用于删除文件等释放空间的操作
+     */
+    Integer updateUseSpaceDelta(@Param("userId") String userId, @Param("useSpace") Long useSpace);
+
+    /**
+     * 批量查询用户的昵称和头像
+     */
+    List<T> selectProfileList(@Param("userIdList") List<String> userIdList);
 }
@@ -2,16 +2,14 @@ package com.easypan.service;
 
 import com.easypan.entity.dto.SessionWebUserDto;
 import com.easypan.entity.dto.UploadResultDto;
+import com.easypan.entity.po.FileCopyTask;
 import com.easypan.entity.po.FileInfo;
 import com.easypan.entity.query.FileInfoQuery;
 import com.easypan.entity.vo.PaginationResultVO;
 import org.apache.ibatis.annotations.Param;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.util.List;
 
 
@@ -35,6 +33,11 @@ public interface FileInfoService {
      */
     PaginationResultVO<FileInfo> findListByPage(FileInfoQuery param);
 
+    /**
+     * 按文件名搜索，结果按匹配程度排序
+     */
+    PaginationResultVO<FileInfo> searchFileName(FileInfoQuery param);
+
     /**
      * 新增
      */
@@ -82,13 +85,33 @@ public interface FileInfoService {
 
     void delFileBatch(String userId, String fileIds, Boolean adminOp);
 
+    /**
+     * 物理删除彻底删除的文件，archive为true时先复制到归档表
+     *
+     * @return 删除的条数
+     */
+    Integer purgeFileBatch(String userId, List<String> fileIdList, Boolean archive);
+
     void checkRootFilePid(String rootFilePid, String userId, String fileId);
 
     void saveShare(String shareRootFilePid, String shareFileIds, String myFolderId, String shareUserId, String cureentUserId);
 
+    /**
+     * 挂载目录下的文件先复制为自己的文件，返回复制出的文件ID
+     */
+    String materializeFileId(String userId, String fileId);
+
+    /**
+     * 查询自己的后台复制任务进度
+     */
+    FileCopyTask getFileCopyTask(String taskId, String userId);
+
+    /**
+     * 接管超时没有进度的后台复制任务
+     */
+    void resumeStaleFileCopyTask();
+
     Long getUserUseSpace(@Param("userId") String userId);
 
     void deleteFileByUserId(@Param("userId") String userId);
-
-    void downloadFile(HttpServletRequest request, HttpServletResponse response, String code) throws UnsupportedEncodingException;
 }
\ No newline at end of file
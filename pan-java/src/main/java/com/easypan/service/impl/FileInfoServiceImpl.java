@@ -1,24 +1,41 @@
 package com.easypan.service.impl;
 
+import com.easypan.annotation.PrimaryDataSource;
+import com.easypan.component.DownloadFileCache;
+import com.easypan.component.FileDedupComponent;
+import com.easypan.component.FileInfoCacheComponent;
+import com.easypan.component.FileListCacheComponent;
+import com.easypan.component.FileMountComponent;
+import com.easypan.component.FileNameIndexComponent;
+import com.easypan.component.FileShardComponent;
+import com.easypan.component.IdGeneratorComponent;
+import com.easypan.component.ListCountComponent;
 import com.easypan.component.RedisComponent;
+import com.easypan.component.UserProfileCacheComponent;
 import com.easypan.entity.config.AppConfig;
 import com.easypan.entity.constants.Constants;
 import com.easypan.entity.dto.ChunkDownloadDto;
 import com.easypan.entity.dto.DownloadFileDto;
 import com.easypan.entity.dto.SessionWebUserDto;
 import com.easypan.entity.dto.UploadResultDto;
+import com.easypan.entity.dto.UserProfileDto;
 import com.easypan.entity.dto.UserSpaceDto;
 import com.easypan.entity.enums.*;
+import com.easypan.entity.po.FileCopyFolder;
+import com.easypan.entity.po.FileCopyTask;
 import com.easypan.entity.po.FileInfo;
 import com.easypan.entity.po.UserInfo;
 import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.entity.query.SeekCursor;
 import com.easypan.entity.query.SimplePage;
 import com.easypan.entity.query.UserInfoQuery;
 import com.easypan.entity.vo.PaginationResultVO;
 import com.easypan.exception.BusinessException;
+import com.easypan.mappers.FileCopyTaskMapper;
 import com.easypan.mappers.FileInfoMapper;
 import com.easypan.mappers.UserInfoMapper;
 import com.easypan.service.FileInfoService;
+import com.easypan.utils.ByteBufferPool;
 import com.easypan.utils.DateUtil;
 import com.easypan.utils.ProcessUtils;
 import com.easypan.utils.ScaleFilter;
@@ -27,18 +44,22 @@ import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.annotation.Resource;
-import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.*;
-import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.Collator;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -52,6 +73,17 @@ public class FileInfoServiceImpl implements FileInfoService {
 
     private static final Logger logger = LoggerFactory.getLogger(FileInfoServiceImpl.class);
 
+    /**
+     * 支持游标分页的排序列
+     */
+    private static final Map<String, Function<FileInfo, Date>> SEEK_SORT_TIME = new HashMap<>();
+
+    static {
+        SEEK_SORT_TIME.put("last_update_time", FileInfo::getLastUpdateTime);
+        SEEK_SORT_TIME.put("recovery_time", FileInfo::getRecoveryTime);
+        SEEK_SORT_TIME.put("create_time", FileInfo::getCreateTime);
+    }
+
     @Resource
     @Lazy
     private FileInfoServiceImpl fileInfoService;
@@ -59,6 +91,30 @@ public class FileInfoServiceImpl implements FileInfoService {
     @Resource
     private AppConfig appConfig;
 
+    @Resource
+    private ListCountComponent listCountComponent;
+
+    @Resource
+    private FileInfoCacheComponent fileInfoCacheComponent;
+
+    @Resource
+    private FileListCacheComponent fileListCacheComponent;
+
+    @Resource
+    private FileShardComponent fileShardComponent;
+
+    @Resource
+    private FileDedupComponent fileDedupComponent;
+
+    @Resource
+    private FileNameIndexComponent fileNameIndexComponent;
+
+    @Resource
+    private FileMountComponent fileMountComponent;
+
+    @Resource
+    private IdGeneratorComponent idGeneratorComponent;
+
 
     @Resource
     private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
@@ -66,16 +122,39 @@ public class FileInfoServiceImpl implements FileInfoService {
     @Resource
     private UserInfoMapper<UserInfo, UserInfoQuery> userInfoMapper;
 
+    @Resource
+    private FileCopyTaskMapper fileCopyTaskMapper;
+
     @Resource
     private RedisComponent redisComponent;
 
+    @Resource
+    private DownloadFileCache downloadFileCache;
+
+    @Resource
+    private UserProfileCacheComponent userProfileCacheComponent;
+
 
     /**
      * 根据条件查询列表
      */
     @Override
     public List<FileInfo> findListByParam(FileInfoQuery param) {
-        return this.fileInfoMapper.selectList(param);
+        List<FileInfo> list;
+        if (!fileShardComponent.isEnabled() || param.getUserId() != null) {
+            list = this.fileInfoMapper.selectList(param);
+        } else {
+            list = findListAllShards(param);
+        }
+        if (Boolean.TRUE.equals(param.getQueryNickName()) && !list.isEmpty()) {
+            //整页的用户昵称批量从缓存读取，不在每行上做子查询
+            Map<String, UserProfileDto> profileMap = userProfileCacheComponent.getProfileMap(list.stream().map(FileInfo::getUserId).collect(Collectors.toSet()));
+            for (FileInfo item : list) {
+                UserProfileDto profile = profileMap.get(item.getUserId());
+                item.setNickName(profile == null ? null : profile.getNickName());
+            }
+        }
+        return list;
     }
 
     /**
@@ -83,7 +162,39 @@ public class FileInfoServiceImpl implements FileInfoService {
      */
     @Override
     public Integer findCountByParam(FileInfoQuery param) {
-        return this.fileInfoMapper.selectCount(param);
+        if (!fileShardComponent.isEnabled() || param.getUserId() != null) {
+            return this.fileInfoMapper.selectCount(param);
+        }
+        return fileShardComponent.countAllShards(() -> this.fileInfoMapper.selectCount(param));
+    }
+
+    /**
+     * 不限用户的查询在所有分表上执行，每个分表都取到当前页的最后一条，按排序时间合并后再截取当前页
+     */
+    private List<FileInfo> findListAllShards(FileInfoQuery param) {
+        SimplePage page = param.getSimplePage();
+        if (page != null) {
+            param.setSimplePage(new SimplePage(0, page.getStart() + page.getEnd()));
+        }
+        List<FileInfo> list;
+        try {
+            list = fileShardComponent.selectAllShards(() -> this.fileInfoMapper.selectList(param));
+        } finally {
+            param.setSimplePage(page);
+        }
+        String sortColumn = param.getOrderBy() == null ? null : SeekCursor.getSortColumn(param.getOrderBy().split(",")[0]);
+        Function<FileInfo, Date> sortTimeGetter = SEEK_SORT_TIME.get(sortColumn);
+        if (sortTimeGetter != null) {
+            //与数据库不区分大小写的排序规则一致
+            list.sort(Comparator.comparing(sortTimeGetter, Comparator.nullsLast(Comparator.reverseOrder()))
+                    .thenComparing(FileInfo::getFileId, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER.reversed()))
+                    .thenComparing(FileInfo::getUserId, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER.reversed())));
+        }
+        if (page == null) {
+            return list;
+        }
+        int start = Math.min(page.getStart(), list.size());
+        return new ArrayList<>(list.subList(start, Math.min(start + page.getEnd(), list.size())));
     }
 
     /**
@@ -91,7 +202,17 @@ public class FileInfoServiceImpl implements FileInfoService {
      */
     @Override
     public PaginationResultVO<FileInfo> findListByPage(FileInfoQuery param) {
-        int count = this.findCountByParam(param);
+        if (param.getUserId() != null && param.getFilePid() != null && !Constants.ZERO_STR.equals(param.getFilePid())) {
+            boolean mount = FileMountComponent.isVirtualId(param.getFilePid())
+                    || FileMountComponent.isMount(getFileInfoByFileIdAndUserId(param.getFilePid(), param.getUserId()));
+            if (mount) {
+                return findMountListByPage(param);
+            }
+        }
+        if (param.getCursor() != null) {
+            return findListBySeek(param);
+        }
+        int count = listCountComponent.getFileCount(param, () -> this.findCountByParam(param));
         int pageSize = param.getPageSize() == null ? PageSize.SIZE15.getSize() : param.getPageSize();
 
         SimplePage page = new SimplePage(param.getPageNo(), count, pageSize);
@@ -101,6 +222,114 @@ public class FileInfoServiceImpl implements FileInfoService {
         return result;
     }
 
+    /**
+     * 挂载目录按来源目录分页查询，查询到的文件改为挂载目录下的文件ID
+     */
+    private PaginationResultVO<FileInfo> findMountListByPage(FileInfoQuery param) {
+        String userId = param.getUserId();
+        String filePid = param.getFilePid();
+        FileMountComponent.MountNode node = fileMountComponent.resolve(userId, filePid);
+        if (node == null || node.getSourceFolderId() == null) {
+            //挂载目录已经复制，按复制出的目录查询
+            if (node != null && !filePid.equals(node.getFileInfo().getFileId())) {
+                param.setFilePid(node.getFileInfo().getFileId());
+                return findListByPage(param);
+            }
+            return new PaginationResultVO<>(0, param.getPageSize(), 1, 0, new ArrayList<>());
+        }
+        PaginationResultVO<FileInfo> result;
+        param.setUserId(node.getSourceUserId());
+        param.setFilePid(node.getSourceFolderId());
+        try {
+            result = findListByPage(param);
+        } finally {
+            param.setUserId(userId);
+            param.setFilePid(filePid);
+        }
+        for (FileInfo item : result.getList()) {
+            FileMountComponent.toView(item, userId, node.getChildIdPrefix() + Constants.MOUNT_ID_SEPARATOR + item.getFileId(), filePid);
+        }
+        return result;
+    }
+
+    /**
+     * 游标分页，按排序时间和文件ID定位上一页最后一条记录，不需要跳过前面的记录，
+     * 默认不查询总数
+     */
+    private PaginationResultVO<FileInfo> findListBySeek(FileInfoQuery param) {
+        String sortColumn = SeekCursor.getSortColumn(param.getOrderBy());
+        Function<FileInfo, Date> sortTimeGetter = SEEK_SORT_TIME.get(sortColumn);
+        if (sortTimeGetter == null) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+        Integer count = null;
+        if (Boolean.TRUE.equals(param.getQueryTotal())) {
+            count = listCountComponent.getFileCount(param, () -> this.findCountByParam(param));
+        }
+        //不限用户时文件ID不唯一，游标和排序再加上用户ID
+        boolean withUser = param.getUserId() == null;
+        param.seekAfter(SeekCursor.parse(param.getCursor(), param.getOrderBy(), withUser));
+        int pageSize = param.getPageSize() == null || param.getPageSize() <= 0 ? PageSize.SIZE15.getSize() : param.getPageSize();
+        param.setOrderBy(sortColumn + " desc, file_id desc" + (withUser ? ", user_id desc" : ""));
+        //多查一条判断是否还有下一页
+        param.setSimplePage(new SimplePage(0, pageSize + 1));
+        List<FileInfo> list = this.findListByParam(param);
+        String nextCursor = null;
+        if (list.size() > pageSize) {
+            list = new ArrayList<>(list.subList(0, pageSize));
+            FileInfo last = list.get(pageSize - 1);
+            nextCursor = withUser ? SeekCursor.build(sortTimeGetter.apply(last), last.getFileId(), last.getUserId())
+                    : SeekCursor.build(sortTimeGetter.apply(last), last.getFileId());
+        }
+        PaginationResultVO<FileInfo> result = new PaginationResultVO<>(list);
+        result.setTotalCount(count);
+        result.setPageSize(pageSize);
+        result.setNextCursor(nextCursor);
+        return result;
+    }
+
+    /**
+     * 从文件名索引取当前页排好序的文件ID再查询数据库，索引不可用时退回数据库模糊查询
+     */
+    @Override
+    public PaginationResultVO<FileInfo> searchFileName(FileInfoQuery param) {
+        int pageSize = param.getPageSize() == null || param.getPageSize() <= 0 ? PageSize.SIZE15.getSize() : param.getPageSize();
+        int pageNo = param.getPageNo() == null || param.getPageNo() <= 1 ? 1 : param.getPageNo();
+        int offset = param.getCursor() == null ? (pageNo - 1) * pageSize : 0;
+        FileNameIndexComponent.SearchResult searchResult = fileNameIndexComponent.search(param, offset, pageSize);
+        if (searchResult == null) {
+            return findListByPage(param);
+        }
+        SimplePage page = new SimplePage(pageNo, searchResult.getTotalCount(), pageSize);
+        if (param.getCursor() == null && page.getStart() != offset) {
+            searchResult = fileNameIndexComponent.search(param, page.getStart(), pageSize);
+        }
+        List<FileInfo> list = new ArrayList<>();
+        List<String> fileIdList = searchResult.getFileIdList();
+        if (!fileIdList.isEmpty()) {
+            FileInfoQuery query = new FileInfoQuery();
+            query.setUserId(param.getUserId());
+            query.setFileIdArray(fileIdList.toArray(new String[0]));
+            query.setDelFlag(FileDelFlagEnums.USING.getFlag());
+            Map<String, FileInfo> fileInfoMap = this.fileInfoMapper.selectList(query).stream()
+                    .collect(Collectors.toMap(FileInfo::getFileId, Function.identity(), (data1, data2) -> data2));
+            for (String fileId : fileIdList) {
+                FileInfo fileInfo = fileInfoMap.get(fileId);
+                if (fileInfo != null) {
+                    list.add(fileInfo);
+                }
+            }
+        }
+        if (param.getCursor() != null) {
+            PaginationResultVO<FileInfo> result = new PaginationResultVO<>(list);
+            result.setTotalCount(searchResult.getTotalCount());
+            result.setPageSize(pageSize);
+            result.setNextCursor(searchResult.getNextCursor());
+            return result;
+        }
+        return new PaginationResultVO(searchResult.getTotalCount(), page.getPageSize(), page.getPageNo(), page.getPageTotal(), list);
+    }
+
     /**
      * 新增
      */
@@ -136,7 +365,11 @@ public class FileInfoServiceImpl implements FileInfoService {
      */
     @Override
     public FileInfo getFileInfoByFileIdAndUserId(String fileId, String userId) {
-        return this.fileInfoMapper.selectByFileIdAndUserId(fileId, userId);
+        if (FileMountComponent.isVirtualId(fileId)) {
+            FileMountComponent.MountNode node = fileMountComponent.resolve(userId, fileId);
+            return node == null ? null : node.getFileInfo();
+        }
+        return fileInfoCacheComponent.get(fileId, userId, () -> this.fileInfoMapper.selectByFileIdAndUserId(fileId, userId));
     }
 
     /**
@@ -163,22 +396,24 @@ public class FileInfoServiceImpl implements FileInfoService {
         File tempFileFolder = null;
         Boolean uploadSuccess = true;
         try {
+            //抽样指纹预查为新文件时前端边上传边计算md5，最后一个分片必须带上完整的md5
+            if (chunkIndex == chunks - 1 && StringTools.isEmpty(fileMd5)) {
+                throw new BusinessException(ResponseCodeEnum.CODE_600);
+            }
+            filePid = fileInfoService.materializeFolderId(webUserDto.getUserId(), filePid);
             UploadResultDto resultDto = new UploadResultDto();
             if (StringTools.isEmpty(fileId)) {
-                fileId = StringTools.getRandomString(Constants.LENGTH_10);
+                fileId = idGeneratorComponent.nextId();
             }
             resultDto.setFileId(fileId);
             Date curDate = new Date();
             UserSpaceDto spaceDto = redisComponent.getUserSpaceUse(webUserDto.getUserId());
             if (chunkIndex == 0) {
-                FileInfoQuery infoQuery = new FileInfoQuery();
-                infoQuery.setFileMd5(fileMd5);
-                infoQuery.setSimplePage(new SimplePage(0, 1));
-                infoQuery.setStatus(FileStatusEnums.USING.getStatus());
-                List<FileInfo> dbFileList = this.fileInfoMapper.selectList(infoQuery);
+                //目录层级在第一个分片校验，不等全部分片上传完才失败
+                String treePath = buildTreePath(getFolderTreePath(filePid, webUserDto.getUserId()), fileId);
+                FileInfo dbFile = fileDedupComponent.findFile(fileMd5);
                 //秒传
-                if (!dbFileList.isEmpty()) {
-                    FileInfo dbFile = dbFileList.get(0);
+                if (dbFile != null) {
                     //判断文件状态
                     if (dbFile.getFileSize() + spaceDto.getUseSpace() > spaceDto.getTotalSpace()) {
                         throw new BusinessException(ResponseCodeEnum.CODE_904);
@@ -192,9 +427,15 @@ public class FileInfoServiceImpl implements FileInfoService {
                     dbFile.setStatus(FileStatusEnums.USING.getStatus());
                     dbFile.setDelFlag(FileDelFlagEnums.USING.getFlag());
                     dbFile.setFileMd5(fileMd5);
-                    fileName = autoRename(filePid, webUserDto.getUserId(), fileName);
+                    dbFile.setTreePath(treePath);
                     dbFile.setFileName(fileName);
-                    this.fileInfoMapper.insert(dbFile);
+                    insertWithAutoRename(dbFile);
+                    listCountComponent.fileCountChange()
+                            .add(webUserDto.getUserId(), filePid, dbFile.getFileCategory(), FileDelFlagEnums.USING.getFlag(), 1)
+                            .submit();
+                    new FolderRollupChange().addItem(dbFile, getParentTreePath(dbFile.getTreePath()), 1).submit(webUserDto.getUserId());
+                    fileListCacheComponent.fileListChange(webUserDto.getUserId()).addPath(getParentTreePath(dbFile.getTreePath())).submit();
+                    fileNameIndexComponent.fileNameChange(webUserDto.getUserId()).put(dbFile).submit();
                     resultDto.setStatus(UploadStatusEnums.UPLOAD_SECONDS.getCode());
                     //更新用户空间使用
                     updateUserSpace(webUserDto, dbFile.getFileSize());
@@ -232,8 +473,6 @@ public class FileInfoServiceImpl implements FileInfoService {
             //真实文件名
             String realFileName = currentUserFolderName + fileSuffix;
             FileTypeEnums fileTypeEnum = FileTypeEnums.getFileTypeBySuffix(fileSuffix);
-            //自动重命名
-            fileName = autoRename(filePid, webUserDto.getUserId(), fileName);
             FileInfo fileInfo = new FileInfo();
             fileInfo.setFileId(fileId);
             fileInfo.setUserId(webUserDto.getUserId());
@@ -248,9 +487,18 @@ public class FileInfoServiceImpl implements FileInfoService {
             fileInfo.setStatus(FileStatusEnums.TRANSFER.getStatus());
             fileInfo.setFolderType(FileFolderTypeEnums.FILE.getType());
             fileInfo.setDelFlag(FileDelFlagEnums.USING.getFlag());
-            this.fileInfoMapper.insert(fileInfo);
-
+            fileInfo.setTreePath(buildTreePath(getFolderTreePath(filePid, webUserDto.getUserId()), fileId));
             Long totalSize = redisComponent.getFileTempSize(webUserDto.getUserId(), fileId);
+            //先按分片大小记录，转码完成后按实际文件大小修正
+            fileInfo.setFileSize(totalSize);
+            insertWithAutoRename(fileInfo);
+            listCountComponent.fileCountChange()
+                    .add(webUserDto.getUserId(), filePid, fileInfo.getFileCategory(), FileDelFlagEnums.USING.getFlag(), 1)
+                    .submit();
+            new FolderRollupChange().addItem(fileInfo, getParentTreePath(fileInfo.getTreePath()), 1).submit(webUserDto.getUserId());
+            fileListCacheComponent.fileListChange(webUserDto.getUserId()).addPath(getParentTreePath(fileInfo.getTreePath())).submit();
+            fileNameIndexComponent.fileNameChange(webUserDto.getUserId()).put(fileInfo).submit();
+
             updateUserSpace(webUserDto, totalSize);
 
             resultDto.setStatus(UploadStatusEnums.UPLOAD_FINISH.getCode());
@@ -283,36 +531,232 @@ public class FileInfoServiceImpl implements FileInfoService {
     }
 
     private void updateUserSpace(SessionWebUserDto webUserDto, Long totalSize) {
-        Integer count = userInfoMapper.updateUserSpace(webUserDto.getUserId(), totalSize, null);
-        if (count == 0) {
-            throw new BusinessException(ResponseCodeEnum.CODE_904);
+        updateUserSpace(webUserDto.getUserId(), totalSize);
+    }
+
+    /**
+     * 按变化量修改user_info中的已使用空间，增加时校验总空间，空间不足抛出异常回滚
+     */
+    private void updateUserSpace(String userId, Long changeSpace) {
+        if (changeSpace == null || changeSpace == 0) {
+            return;
         }
-        UserSpaceDto spaceDto = redisComponent.getUserSpaceUse(webUserDto.getUserId());
-        spaceDto.setUseSpace(spaceDto.getUseSpace() + totalSize);
-        redisComponent.saveUserSpaceUse(webUserDto.getUserId(), spaceDto);
+        if (changeSpace > 0) {
+            Integer count = userInfoMapper.updateUserSpace(userId, changeSpace, null);
+            if (count == 0) {
+                throw new BusinessException(ResponseCodeEnum.CODE_904);
+            }
+        } else {
+            userInfoMapper.updateUseSpaceDelta(userId, changeSpace);
+        }
+        UserSpaceDto spaceDto = redisComponent.getUserSpaceUse(userId);
+        spaceDto.setUseSpace(Math.max(spaceDto.getUseSpace() + changeSpace, 0));
+        redisComponent.saveUserSpaceUse(userId, spaceDto);
     }
 
-    private String autoRename(String filePid, String userId, String fileName) {
-        FileInfoQuery fileInfoQuery = new FileInfoQuery();
-        fileInfoQuery.setUserId(userId);
-        fileInfoQuery.setFilePid(filePid);
-        fileInfoQuery.setDelFlag(FileDelFlagEnums.USING.getFlag());
-        fileInfoQuery.setFileName(fileName);
-        Integer count = this.fileInfoMapper.selectCount(fileInfoQuery);
-        if (count > 0) {
-            return StringTools.rename(fileName);
+    /**
+     * 获取目录的目录路径，新文件的目录路径为其后追加自身ID，根目录为 /
+     */
+    private String getFolderTreePath(String folderId, String userId) {
+        if (Constants.ZERO_STR.equals(folderId)) {
+            return Constants.TREE_PATH_SEPARATOR;
         }
+        FileInfo folder = selectWithTreePath(folderId, userId);
+        if (folder == null || folder.getTreePath() == null || !FileFolderTypeEnums.FOLDER.getType().equals(folder.getFolderType())) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+        return folder.getTreePath();
+    }
 
-        return fileName;
+    /**
+     * 查询文件，历史数据没有目录路径时先按file_pid重建该用户的目录路径
+     */
+    private FileInfo selectWithTreePath(String fileId, String userId) {
+        FileInfo fileInfo = getFileInfoByFileIdAndUserId(fileId, userId);
+        if (fileInfo != null && fileInfo.getTreePath() == null) {
+            this.fileInfoMapper.rebuildTreePath(userId);
+            fileInfo = this.fileInfoMapper.selectByFileIdAndUserId(fileId, userId);
+        }
+        return fileInfo;
+    }
+
+    /**
+     * 同一目录下正常文件的名称由唯一索引保证不重复，先直接插入，违反名称唯一索引时自动重命名后再插入，
+     * 主键冲突等其他唯一索引冲突直接抛出
+     */
+    private void insertWithAutoRename(FileInfo fileInfo) {
+        String fileName = fileInfo.getFileName();
+        for (int i = 0; ; i++) {
+            try {
+                this.fileInfoMapper.insert(fileInfo);
+                return;
+            } catch (DuplicateKeyException e) {
+                if (i >= Constants.FILE_NAME_RENAME_MAX_TIMES || !isFileNameConflict(e)) {
+                    throw e;
+                }
+                fileInfo.setFileName(StringTools.rename(fileName));
+            }
+        }
+    }
+
+    /**
+     * 是否违反了同一目录下正常文件名称的唯一索引
+     */
+    private static boolean isFileNameConflict(DuplicateKeyException e) {
+        return e.getMessage() != null && e.getMessage().contains(Constants.FILE_NAME_UNIQUE_KEY);
+    }
+
+    /**
+     * 目标目录下正常文件的名称，与唯一索引的utf8mb4_0900_ai_ci排序规则一致，不区分大小写和重音
+     */
+    private Set<String> selectUsedNames(String userId, String filePid) {
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        Set<String> usedNames = new TreeSet<>(collator);
+        usedNames.addAll(this.fileInfoMapper.selectFileNameList(userId, filePid, FileDelFlagEnums.USING.getFlag()));
+        return usedNames;
+    }
+
+    /**
+     * 在内存中处理一批文件与目标目录的重名，usedNames为目标目录下正常文件的名称，返回后包含分配给该文件的名称
+     */
+    private static String resolveFileName(Set<String> usedNames, String fileName) {
+        String newFileName = fileName;
+        while (!usedNames.add(newFileName)) {
+            newFileName = StringTools.rename(fileName);
+        }
+        return newFileName;
+    }
+
+    /**
+     * 分批修改文件名，filePid不为空时同时移动到该目录
+     */
+    private void updateFileNameBatch(String userId, String filePid, List<FileInfo> renameList) {
+        for (int i = 0; i < renameList.size(); i += Constants.FILE_NAME_UPDATE_BATCH_SIZE) {
+            this.fileInfoMapper.updateFileNameBatch(userId, filePid,
+                    renameList.subList(i, Math.min(i + Constants.FILE_NAME_UPDATE_BATCH_SIZE, renameList.size())));
+        }
+    }
+
+    /**
+     * 挂载目录的复制在调用方事务之外单独提交，调用方事务开始后还没有读取，能读到复制出的文件
+     */
+    @Override
+    @PrimaryDataSource
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public String materializeFileId(String userId, String fileId) {
+        return toRealFileId(userId, fileId, false);
+    }
+
+    /**
+     * 作为目标目录时挂载目录本身也要先复制
+     */
+    @PrimaryDataSource
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public String materializeFolderId(String userId, String folderId) {
+        return toRealFileId(userId, folderId, true);
+    }
+
+    @PrimaryDataSource
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public String materializeFileIds(String userId, String fileIds) {
+        if (!FileMountComponent.isVirtualId(fileIds)) {
+            return fileIds;
+        }
+        return Arrays.stream(fileIds.split(",")).map(fileId -> toRealFileId(userId, fileId, false)).collect(Collectors.joining(","));
+    }
+
+    /**
+     * 挂载目录下的文件ID转为复制出的文件ID，先复制路径上的挂载目录，每层单独提交
+     */
+    private String toRealFileId(String userId, String fileId, boolean folder) {
+        String realFileId = fileId;
+        while (FileMountComponent.isVirtualId(realFileId)) {
+            materializeMount(userId, FileMountComponent.getMountFileId(realFileId));
+            realFileId = FileMountComponent.getMaterializedId(realFileId);
+        }
+        if (folder) {
+            materializeMount(userId, realFileId);
+        }
+        return realFileId;
+    }
+
+    private void materializeMount(String userId, String fileId) {
+        if (Constants.ZERO_STR.equals(fileId)) {
+            return;
+        }
+        FileInfo fileInfo = getFileInfoByFileIdAndUserId(fileId, userId);
+        if (FileMountComponent.isMount(fileInfo) && !fileInfoService.copyMount(fileInfo)) {
+            throw new BusinessException("文件较多，正在后台复制，请稍后再试");
+        }
+    }
+
+    /**
+     * 挂载目录改为普通目录并复制来源目录下的文件，文件较多时转为后台任务。
+     * 目录汇总和占用空间改为来源目录当前的汇总
+     *
+     * @return 是否已全部复制
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Exception.class)
+    public boolean copyMount(FileInfo mount) {
+        String userId = mount.getUserId();
+        FileInfo source = fileMountComponent.getSource(mount);
+        long folderSize = source == null ? 0L : getRollupSize(source);
+        int folderFileCount = source == null || source.getFolderFileCount() == null ? 0 : source.getFolderFileCount();
+        //已经由其他请求复制
+        if (this.fileInfoMapper.updateMountToFolder(userId, mount.getFileId(), folderSize, folderFileCount) == 0) {
+            return true;
+        }
+        int oldFileCount = mount.getFolderFileCount() == null ? 0 : mount.getFolderFileCount();
+        if (FileDelFlagEnums.USING.getFlag().equals(mount.getDelFlag())) {
+            new FolderRollupChange().add(getParentTreePath(mount.getTreePath()), folderSize - getRollupSize(mount), folderFileCount - oldFileCount)
+                    .submit(userId);
+        }
+        updateUserSpace(userId, folderSize - getRollupSize(mount));
+        boolean finished = true;
+        if (source != null) {
+            FileCopyState state = new FileCopyState();
+            state.mountFileId = mount.getFileId();
+            //来源用户修改前复制回收站中的挂载目录时，复制出的文件随挂载目录标记为已删除
+            state.delFlag = getCopyDelFlag(mount);
+            FileCopyFolder folder = new FileCopyFolder();
+            folder.setFolderSeq(state.nextSeq++);
+            folder.setSourceFileId(source.getFileId());
+            folder.setNewFileId(mount.getFileId());
+            folder.setNewTreePath(mount.getTreePath());
+            state.folderQueue.add(folder);
+            state.newFolderList.add(folder);
+            Date curDate = new Date();
+            if (folderFileCount > Constants.FILE_COPY_ASYNC_MIN_COUNT) {
+                //文件较多时由后台任务分批复制，每批单独提交
+                String taskId = createFileCopyTask(state, source.getUserId(), userId, mount.getFileId(), folderFileCount, curDate);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        fileInfoService.runFileCopyTask(taskId);
+                    }
+                });
+                finished = false;
+            } else {
+                while (!state.folderQueue.isEmpty()) {
+                    copyNextBatch(state, source.getUserId(), userId, curDate);
+                }
+            }
+        }
+        listCountComponent.fileCountChange().addTree(userId).submit();
+        fileListCacheComponent.fileListChange(userId).addTree().submit();
+        fileNameIndexComponent.fileNameChange(userId).reset().submit();
+        return finished;
     }
 
     @Async
+    @PrimaryDataSource
     public void transferFile(String fileId, SessionWebUserDto webUserDto) {
         Boolean transferSuccess = true;
         String targetFilePath = null;
         String cover = null;
         FileTypeEnums fileTypeEnum = null;
-        FileInfo fileInfo = fileInfoMapper.selectByFileIdAndUserId(fileId, webUserDto.getUserId());
+        FileInfo fileInfo = getFileInfoByFileIdAndUserId(fileId, webUserDto.getUserId());
         try {
             if (fileInfo == null || !FileStatusEnums.TRANSFER.getStatus().equals(fileInfo.getStatus())) {
                 return;
@@ -364,7 +808,29 @@ public class FileInfoServiceImpl implements FileInfoService {
             updateInfo.setFileSize(new File(targetFilePath).length());
             updateInfo.setFileCover(cover);
             updateInfo.setStatus(transferSuccess ? FileStatusEnums.USING.getStatus() : FileStatusEnums.TRANSFER_FAIL.getStatus());
-            fileInfoMapper.updateFileStatusWithOldStatus(fileId, webUserDto.getUserId(), updateInfo, FileStatusEnums.TRANSFER.getStatus());
+            Integer count = fileInfoMapper.updateFileStatusWithOldStatus(fileId, webUserDto.getUserId(), updateInfo, FileStatusEnums.TRANSFER.getStatus());
+            if (count != null && count > 0) {
+                fileListCacheComponent.fileListChange(webUserDto.getUserId()).addPath(getParentTreePath(fileInfo.getTreePath())).submit();
+            }
+            //上传时按分片大小计入了已使用空间，按实际文件大小修正
+            if (count != null && count > 0 && fileInfo.getFileSize() != null && !fileInfo.getFileSize().equals(updateInfo.getFileSize())) {
+                long changeSize = updateInfo.getFileSize() - fileInfo.getFileSize();
+                userInfoMapper.updateUseSpaceDelta(webUserDto.getUserId(), changeSize);
+                redisComponent.resetUserSpaceUse(webUserDto.getUserId());
+                if (fileInfo.getTreePath() != null) {
+                    new FolderRollupChange().add(getParentTreePath(fileInfo.getTreePath()), changeSize, 0).submit(webUserDto.getUserId());
+                }
+            }
+            if (transferSuccess && count != null && count > 0) {
+                FileInfo dedupInfo = new FileInfo();
+                dedupInfo.setFileMd5(fileInfo.getFileMd5());
+                dedupInfo.setFilePath(fileInfo.getFilePath());
+                dedupInfo.setFileSize(updateInfo.getFileSize());
+                dedupInfo.setFileCover(cover);
+                dedupInfo.setFileCategory(fileInfo.getFileCategory());
+                dedupInfo.setFileType(fileInfo.getFileType());
+                fileDedupComponent.register(dedupInfo);
+            }
         }
     }
 
@@ -375,34 +841,34 @@ public class FileInfoServiceImpl implements FileInfoService {
         }
         File fileList[] = dir.listFiles();
         File targetFile = new File(toFilePath);
-        RandomAccessFile writeFile = null;
+        FileChannel writeChannel = null;
+        ByteBuffer buffer = ByteBufferPool.direct().acquire();
         try {
-            writeFile = new RandomAccessFile(targetFile, "rw");
-            byte[] b = new byte[1024 * 10];
+            writeChannel = FileChannel.open(targetFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
             for (int i = 0; i < fileList.length; i++) {
-                int len = -1;
                 //创建读块文件的对象
                 File chunkFile = new File(dirPath + File.separator + i);
-                RandomAccessFile readFile = null;
-                try {
-                    readFile = new RandomAccessFile(chunkFile, "r");
-                    while ((len = readFile.read(b)) != -1) {
-                        writeFile.write(b, 0, len);
+                try (FileChannel readChannel = FileChannel.open(chunkFile.toPath(), StandardOpenOption.READ)) {
+                    while (readChannel.read(buffer) != -1) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            writeChannel.write(buffer);
+                        }
+                        buffer.clear();
                     }
                 } catch (Exception e) {
                     logger.error("合并分片失败", e);
                     throw new BusinessException("合并文件失败");
-                } finally {
-                    readFile.close();
                 }
             }
         } catch (Exception e) {
             logger.error("合并文件:{}失败", fileName, e);
             throw new BusinessException("合并文件" + fileName + "出错了");
         } finally {
+            ByteBufferPool.direct().release(buffer);
             try {
-                if (null != writeFile) {
-                    writeFile.close();
+                if (null != writeChannel) {
+                    writeChannel.close();
                 }
             } catch (IOException e) {
                 logger.error("关闭流失败", e);
@@ -460,6 +926,7 @@ public class FileInfoServiceImpl implements FileInfoService {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public FileInfo rename(String fileId, String userId, String fileName) {
+        fileId = fileInfoService.materializeFileId(userId, fileId);
         FileInfo fileInfo = this.fileInfoMapper.selectByFileIdAndUserId(fileId, userId);
         if (fileInfo == null) {
             throw new BusinessException("文件不存在");
@@ -468,7 +935,6 @@ public class FileInfoServiceImpl implements FileInfoService {
             return fileInfo;
         }
         String filePid = fileInfo.getFilePid();
-        checkFileName(filePid, userId, fileName, fileInfo.getFolderType());
         //文件获取后缀
         if (FileFolderTypeEnums.FILE.getType().equals(fileInfo.getFolderType())) {
             fileName = fileName + StringTools.getFileSuffix(fileInfo.getFileName());
@@ -477,42 +943,27 @@ public class FileInfoServiceImpl implements FileInfoService {
         FileInfo dbInfo = new FileInfo();
         dbInfo.setFileName(fileName);
         dbInfo.setLastUpdateTime(curDate);
-        this.fileInfoMapper.updateByFileIdAndUserId(dbInfo, fileId, userId);
-
-        FileInfoQuery fileInfoQuery = new FileInfoQuery();
-        fileInfoQuery.setFilePid(filePid);
-        fileInfoQuery.setUserId(userId);
-        fileInfoQuery.setFileName(fileName);
-        fileInfoQuery.setDelFlag(FileDelFlagEnums.USING.getFlag());
-        Integer count = this.fileInfoMapper.selectCount(fileInfoQuery);
-        if (count > 1) {
+        try {
+            this.fileInfoMapper.updateByFileIdAndUserId(dbInfo, fileId, userId);
+        } catch (DuplicateKeyException e) {
             throw new BusinessException("文件名" + fileName + "已经存在");
         }
+        fileListCacheComponent.fileListChange(userId).addPath(getParentTreePath(fileInfo.getTreePath())).submit();
         fileInfo.setFileName(fileName);
         fileInfo.setLastUpdateTime(curDate);
+        fileNameIndexComponent.fileNameChange(userId).put(fileInfo).submit();
         return fileInfo;
     }
 
-    private void checkFileName(String filePid, String userId, String fileName, Integer folderType) {
-        FileInfoQuery fileInfoQuery = new FileInfoQuery();
-        fileInfoQuery.setFolderType(folderType);
-        fileInfoQuery.setFileName(fileName);
-        fileInfoQuery.setFilePid(filePid);
-        fileInfoQuery.setUserId(userId);
-        fileInfoQuery.setDelFlag(FileDelFlagEnums.USING.getFlag());
-        Integer count = this.fileInfoMapper.selectCount(fileInfoQuery);
-        if (count > 0) {
-            throw new BusinessException("此目录下已存在同名文件，请修改名称");
-        }
-    }
-
     @Override
     @Transactional(rollbackFor = Exception.class)
     public FileInfo newFolder(String filePid, String userId, String folderName) {
-        checkFileName(filePid, userId, folderName, FileFolderTypeEnums.FOLDER.getType());
+        filePid = fileInfoService.materializeFolderId(userId, filePid);
+        String folderTreePath = getFolderTreePath(filePid, userId);
         Date curDate = new Date();
         FileInfo fileInfo = new FileInfo();
-        fileInfo.setFileId(StringTools.getRandomString(Constants.LENGTH_10));
+        fileInfo.setFileId(idGeneratorComponent.nextId());
+        fileInfo.setTreePath(buildTreePath(folderTreePath, fileInfo.getFileId()));
         fileInfo.setUserId(userId);
         fileInfo.setFilePid(filePid);
         fileInfo.setFileName(folderName);
@@ -521,65 +972,104 @@ public class FileInfoServiceImpl implements FileInfoService {
         fileInfo.setLastUpdateTime(curDate);
         fileInfo.setStatus(FileStatusEnums.USING.getStatus());
         fileInfo.setDelFlag(FileDelFlagEnums.USING.getFlag());
-        this.fileInfoMapper.insert(fileInfo);
-
-        FileInfoQuery fileInfoQuery = new FileInfoQuery();
-        fileInfoQuery.setFilePid(filePid);
-        fileInfoQuery.setUserId(userId);
-        fileInfoQuery.setFileName(folderName);
-        fileInfoQuery.setFolderType(FileFolderTypeEnums.FOLDER.getType());
-        fileInfoQuery.setDelFlag(FileDelFlagEnums.USING.getFlag());
-        Integer count = this.fileInfoMapper.selectCount(fileInfoQuery);
-        if (count > 1) {
-            throw new BusinessException("文件夹" + folderName + "已经存在");
+        try {
+            this.fileInfoMapper.insert(fileInfo);
+        } catch (DuplicateKeyException e) {
+            throw new BusinessException("此目录下已存在同名文件，请修改名称");
         }
+        listCountComponent.fileCountChange().add(userId, filePid, null, FileDelFlagEnums.USING.getFlag(), 1).submit();
+        fileListCacheComponent.fileListChange(userId).addPath(folderTreePath).submit();
         fileInfo.setFileName(folderName);
         fileInfo.setLastUpdateTime(curDate);
+        fileNameIndexComponent.fileNameChange(userId).put(fileInfo).submit();
         return fileInfo;
     }
 
     @Transactional(rollbackFor = Exception.class)
     public void changeFileFolder(String fileIds, String filePid, String userId) {
+        filePid = fileInfoService.materializeFolderId(userId, filePid);
+        fileIds = fileInfoService.materializeFileIds(userId, fileIds);
         if (fileIds.equals(filePid)) {
             throw new BusinessException(ResponseCodeEnum.CODE_600);
         }
+        String folderTreePath = Constants.TREE_PATH_SEPARATOR;
         if (!Constants.ZERO_STR.equals(filePid)) {
             FileInfo fileInfo = fileInfoService.getFileInfoByFileIdAndUserId(filePid, userId);
             if (fileInfo == null || !FileDelFlagEnums.USING.getFlag().equals(fileInfo.getDelFlag())) {
                 throw new BusinessException(ResponseCodeEnum.CODE_600);
             }
+            folderTreePath = getFolderTreePath(filePid, userId);
         }
         String[] fileIdArray = fileIds.split(",");
-
-        FileInfoQuery query = new FileInfoQuery();
-        query.setFilePid(filePid);
-        query.setUserId(userId);
-        List<FileInfo> dbFileList = fileInfoService.findListByParam(query);
-
-        Map<String, FileInfo> dbFileNameMap = dbFileList.stream().collect(Collectors.toMap(FileInfo::getFileName, Function.identity(), (file1, file2) -> file2));
+        //目标目录下已有的名称，所选文件的重名在内存中一次处理
+        Set<String> usedNames = selectUsedNames(userId, filePid);
         //查询选中的文件
-        query = new FileInfoQuery();
+        FileInfoQuery query = new FileInfoQuery();
         query.setUserId(userId);
         query.setFileIdArray(fileIdArray);
         List<FileInfo> selectFileList = fileInfoService.findListByParam(query);
+        if (selectFileList.stream().anyMatch(item -> item.getTreePath() == null)) {
+            this.fileInfoMapper.rebuildTreePath(userId);
+            selectFileList = this.fileInfoMapper.selectList(query);
+        }
 
-        //将所选文件重命名
+        ListCountComponent.FileCountChange countChange = listCountComponent.fileCountChange();
+        FolderRollupChange rollupChange = new FolderRollupChange();
+        FileListCacheComponent.FileListChange listChange = fileListCacheComponent.fileListChange(userId).addPath(folderTreePath);
+        FileNameIndexComponent.FileNameChange nameChange = fileNameIndexComponent.fileNameChange(userId);
+        List<FileInfo> moveList = new ArrayList<>();
         for (FileInfo item : selectFileList) {
-            FileInfo rootFileInfo = dbFileNameMap.get(item.getFileName());
-            //文件名已经存在，重命名被还原的文件名
-            FileInfo updateInfo = new FileInfo();
-            if (rootFileInfo != null) {
-                String fileName = StringTools.rename(item.getFileName());
-                updateInfo.setFileName(fileName);
+            //不能移动到自身或自身的子目录下
+            if (folderTreePath.startsWith(item.getTreePath())) {
+                throw new BusinessException(ResponseCodeEnum.CODE_600);
             }
-            updateInfo.setFilePid(filePid);
-            this.fileInfoMapper.updateByFileIdAndUserId(updateInfo, item.getFileId(), userId);
+            //已经在目标目录下
+            if (!filePid.equals(item.getFilePid())) {
+                moveList.add(item);
+            }
+        }
+        List<FileInfo> moveFolderList = moveList.stream().filter(item -> FileFolderTypeEnums.FOLDER.getType().equals(item.getFolderType()))
+                .collect(Collectors.toList());
+        checkSubTreeDepth(userId, moveFolderList, folderTreePath);
+        //文件的目录路径一条语句更新，目录按子树逐个更新
+        updateFileTreePath(userId, moveList, folderTreePath);
+        for (FileInfo item : moveFolderList) {
+            this.fileInfoMapper.updateTreePath(userId, item.getTreePath(), buildTreePath(folderTreePath, item.getFileId()));
+        }
+        List<FileInfo> renameList = new ArrayList<>();
+        for (FileInfo item : moveList) {
+            //文件名已经存在，重命名移动的文件
+            FileInfo renameInfo = new FileInfo();
+            renameInfo.setFileId(item.getFileId());
+            renameInfo.setFileName(resolveFileName(usedNames, item.getFileName()));
+            renameList.add(renameInfo);
+            countChange.add(userId, item.getFilePid(), item.getFileCategory(), item.getDelFlag(), -1)
+                    .add(userId, filePid, item.getFileCategory(), item.getDelFlag(), 1);
+            rollupChange.addItem(item, getParentTreePath(item.getTreePath()), -1)
+                    .addItem(item, folderTreePath, 1);
+            listChange.addPath(getParentTreePath(item.getTreePath()));
+            if (FileDelFlagEnums.USING.getFlag().equals(item.getDelFlag())) {
+                item.setFilePid(filePid);
+                item.setFileName(renameInfo.getFileName());
+                nameChange.put(item);
+            }
+        }
+        //移动和重命名一次更新，并发写入的同名文件违反唯一索引
+        try {
+            updateFileNameBatch(userId, filePid, renameList);
+        } catch (DuplicateKeyException e) {
+            throw new BusinessException("目标目录下已存在同名文件，请重试");
         }
+        countChange.submit();
+        rollupChange.submit(userId);
+        listChange.submit();
+        nameChange.submit();
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void removeFile2RecycleBatch(String userId, String fileIds) {
+        fileIds = fileInfoService.materializeFileIds(userId, fileIds);
         String[] fileIdArray = fileIds.split(",");
         FileInfoQuery query = new FileInfoQuery();
         query.setUserId(userId);
@@ -589,15 +1079,13 @@ public class FileInfoServiceImpl implements FileInfoService {
         if (fileInfoList.isEmpty()) {
             return;
         }
-        List<String> delFilePidList = new ArrayList<>();
-        for (FileInfo fileInfo : fileInfoList) {
-            findAllSubFolderFileIdList(delFilePidList, userId, fileInfo.getFileId(), FileDelFlagEnums.USING.getFlag());
-        }
+        List<String> delFolderIdList = findFolderIdList(fileInfoList);
         //将目录下的所有文件更新为已删除
-        if (!delFilePidList.isEmpty()) {
+        if (!delFolderIdList.isEmpty()) {
             FileInfo updateInfo = new FileInfo();
             updateInfo.setDelFlag(FileDelFlagEnums.DEL.getFlag());
-            this.fileInfoMapper.updateFileDelFlagBatch(updateInfo, userId, delFilePidList, null, FileDelFlagEnums.USING.getFlag());
+            this.fileInfoMapper.updateSubTreeDelFlag(updateInfo, userId, delFolderIdList, FileDelFlagEnums.USING.getFlag(),
+                    FileDelFlagEnums.USING.getFlag());
         }
 
         //将选中的文件更新为回收站
@@ -606,20 +1094,42 @@ public class FileInfoServiceImpl implements FileInfoService {
         fileInfo.setRecoveryTime(new Date());
         fileInfo.setDelFlag(FileDelFlagEnums.RECYCLE.getFlag());
         this.fileInfoMapper.updateFileDelFlagBatch(fileInfo, userId, null, delFileIdList, FileDelFlagEnums.USING.getFlag());
+
+        ListCountComponent.FileCountChange countChange = listCountComponent.fileCountChange();
+        //放入回收站的文件从上级目录的汇总中减去，自身和子目录的汇总保留，还原后不需要重新统计
+        FolderRollupChange rollupChange = new FolderRollupChange();
+        FileListCacheComponent.FileListChange listChange = fileListCacheComponent.fileListChange(userId);
+        //目录下的文件没有逐个查出，整个用户的文件名索引失效
+        FileNameIndexComponent.FileNameChange nameChange = fileNameIndexComponent.fileNameChange(userId);
+        if (!delFolderIdList.isEmpty()) {
+            countChange.addTree(userId);
+            listChange.addTree();
+            nameChange.reset();
+        }
+        for (FileInfo item : fileInfoList) {
+            nameChange.remove(item.getFileId());
+            countChange.add(userId, item.getFilePid(), item.getFileCategory(), FileDelFlagEnums.USING.getFlag(), -1)
+                    .add(userId, item.getFilePid(), item.getFileCategory(), FileDelFlagEnums.RECYCLE.getFlag(), 1);
+            rollupChange.addItem(item, getParentTreePath(item.getTreePath()), -1);
+            listChange.addPath(getParentTreePath(item.getTreePath()));
+        }
+        countChange.submit();
+        rollupChange.submit(userId);
+        listChange.submit();
+        nameChange.submit();
     }
 
 
-    private void findAllSubFolderFileIdList(List<String> fileIdList, String userId, String fileId, Integer delFlag) {
-        fileIdList.add(fileId);
-        FileInfoQuery query = new FileInfoQuery();
-        query.setUserId(userId);
-        query.setFilePid(fileId);
-        query.setDelFlag(delFlag);
-        query.setFolderType(FileFolderTypeEnums.FOLDER.getType());
-        List<FileInfo> fileInfoList = this.fileInfoMapper.selectList(query);
-        for (FileInfo fileInfo : fileInfoList) {
-            findAllSubFolderFileIdList(fileIdList, userId, fileInfo.getFileId(), delFlag);
-        }
+    /**
+     * 所选文件中的目录，子树下的文件由递归查询一次更新。
+     * 删除标记只沿状态相同的子目录向下，单独放入回收站的子目录及其下的文件不受上级目录还原或删除的影响，
+     * 因此不按目录路径前缀更新
+     */
+    private List<String> findFolderIdList(List<FileInfo> fileInfoList) {
+        return fileInfoList.stream()
+                .filter(item -> FileFolderTypeEnums.FOLDER.getType().equals(item.getFolderType()))
+                .map(FileInfo::getFileId)
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -632,28 +1142,30 @@ public class FileInfoServiceImpl implements FileInfoService {
         query.setDelFlag(FileDelFlagEnums.RECYCLE.getFlag());
         List<FileInfo> fileInfoList = this.fileInfoMapper.selectList(query);
 
-        List<String> delFileSubFolderFileIdList = new ArrayList<>();
-        //找到所选文件子目录文件ID
-        for (FileInfo fileInfo : fileInfoList) {
-            if (FileFolderTypeEnums.FOLDER.getType().equals(fileInfo.getFolderType())) {
-                findAllSubFolderFileIdList(delFileSubFolderFileIdList, userId, fileInfo.getFileId(), FileDelFlagEnums.DEL.getFlag());
+        //所选目录
+        List<String> delFolderIdList = findFolderIdList(fileInfoList);
+        //根目录下已有的名称
+        Set<String> usedNames = selectUsedNames(userId, Constants.ZERO_STR);
+        //还原到根目录时重名的先在回收站中改名，再更新为正常，避免违反同名唯一索引
+        List<FileInfo> renameList = new ArrayList<>();
+        for (FileInfo item : fileInfoList) {
+            String fileName = resolveFileName(usedNames, item.getFileName());
+            if (!fileName.equals(item.getFileName())) {
+                FileInfo renameInfo = new FileInfo();
+                renameInfo.setFileId(item.getFileId());
+                renameInfo.setFileName(fileName);
+                renameList.add(renameInfo);
             }
         }
-        //查询所有跟目录的文件
-        query = new FileInfoQuery();
-        query.setUserId(userId);
-        query.setDelFlag(FileDelFlagEnums.USING.getFlag());
-        query.setFilePid(Constants.ZERO_STR);
-        List<FileInfo> allRootFileList = this.fileInfoMapper.selectList(query);
+        updateFileNameBatch(userId, null, renameList);
+        Map<String, String> renameMap = renameList.stream().collect(Collectors.toMap(FileInfo::getFileId, FileInfo::getFileName));
 
-        Map<String, FileInfo> rootFileMap = allRootFileList.stream().collect(Collectors.toMap(FileInfo::getFileName, Function.identity(), (file1, file2) -> file2));
-
-        //查询所有所选文件
         //将目录下的所有删除的文件更新为正常
-        if (!delFileSubFolderFileIdList.isEmpty()) {
+        if (!delFolderIdList.isEmpty()) {
             FileInfo fileInfo = new FileInfo();
             fileInfo.setDelFlag(FileDelFlagEnums.USING.getFlag());
-            this.fileInfoMapper.updateFileDelFlagBatch(fileInfo, userId, delFileSubFolderFileIdList, null, FileDelFlagEnums.DEL.getFlag());
+            this.fileInfoMapper.updateSubTreeDelFlag(fileInfo, userId, delFolderIdList, FileDelFlagEnums.DEL.getFlag(),
+                    FileDelFlagEnums.DEL.getFlag());
         }
         //将选中的文件更新为正常,且父级目录到跟目录
         List<String> delFileIdList = Arrays.asList(fileIdArray);
@@ -661,19 +1173,44 @@ public class FileInfoServiceImpl implements FileInfoService {
         fileInfo.setDelFlag(FileDelFlagEnums.USING.getFlag());
         fileInfo.setFilePid(Constants.ZERO_STR);
         fileInfo.setLastUpdateTime(new Date());
-        this.fileInfoMapper.updateFileDelFlagBatch(fileInfo, userId, null, delFileIdList, FileDelFlagEnums.RECYCLE.getFlag());
+        //并发写入的同名文件违反唯一索引
+        try {
+            this.fileInfoMapper.updateFileDelFlagBatch(fileInfo, userId, null, delFileIdList, FileDelFlagEnums.RECYCLE.getFlag());
+        } catch (DuplicateKeyException e) {
+            throw new BusinessException("根目录下已存在同名文件，请重试");
+        }
 
-        //将所选文件重命名
+        ListCountComponent.FileCountChange countChange = listCountComponent.fileCountChange();
+        FileNameIndexComponent.FileNameChange nameChange = fileNameIndexComponent.fileNameChange(userId);
+        if (!delFolderIdList.isEmpty()) {
+            countChange.addTree(userId);
+            nameChange.reset();
+        }
         for (FileInfo item : fileInfoList) {
-            FileInfo rootFileInfo = rootFileMap.get(item.getFileName());
-            //文件名已经存在，重命名被还原的文件名
-            if (rootFileInfo != null) {
-                String fileName = StringTools.rename(item.getFileName());
-                FileInfo updateInfo = new FileInfo();
-                updateInfo.setFileName(fileName);
-                this.fileInfoMapper.updateByFileIdAndUserId(updateInfo, item.getFileId(), userId);
+            countChange.add(userId, item.getFilePid(), item.getFileCategory(), FileDelFlagEnums.RECYCLE.getFlag(), -1)
+                    .add(userId, Constants.ZERO_STR, item.getFileCategory(), FileDelFlagEnums.USING.getFlag(), 1);
+            item.setFileName(renameMap.getOrDefault(item.getFileId(), item.getFileName()));
+            item.setFilePid(Constants.ZERO_STR);
+            nameChange.put(item);
+        }
+        //还原到根目录，文件的目录路径一条语句更新，目录按子树逐个更新
+        List<FileInfo> treePathList = fileInfoList.stream().filter(item -> item.getTreePath() != null).collect(Collectors.toList());
+        updateFileTreePath(userId, treePathList, Constants.TREE_PATH_SEPARATOR);
+        for (FileInfo item : treePathList) {
+            if (FileFolderTypeEnums.FOLDER.getType().equals(item.getFolderType())) {
+                this.fileInfoMapper.updateTreePath(userId, item.getTreePath(), buildTreePath(Constants.TREE_PATH_SEPARATOR, item.getFileId()));
             }
         }
+        if (fileInfoList.stream().anyMatch(item -> item.getTreePath() == null)) {
+            this.fileInfoMapper.rebuildTreePath(userId);
+        }
+        countChange.submit();
+        FileListCacheComponent.FileListChange listChange = fileListCacheComponent.fileListChange(userId).addPath(Constants.TREE_PATH_SEPARATOR);
+        if (!delFolderIdList.isEmpty()) {
+            listChange.addTree();
+        }
+        listChange.submit();
+        nameChange.submit();
     }
 
     @Override
@@ -688,31 +1225,67 @@ public class FileInfoServiceImpl implements FileInfoService {
             query.setDelFlag(FileDelFlagEnums.RECYCLE.getFlag());
         }
         List<FileInfo> fileInfoList = this.fileInfoMapper.selectList(query);
-        List<String> delFileSubFolderFileIdList = new ArrayList<>();
-        //找到所选文件子目录文件ID
-        for (FileInfo fileInfo : fileInfoList) {
-            if (FileFolderTypeEnums.FOLDER.getType().equals(fileInfo.getFolderType())) {
-                findAllSubFolderFileIdList(delFileSubFolderFileIdList, userId, fileInfo.getFileId(), FileDelFlagEnums.DEL.getFlag());
-            }
-        }
-
+        //所选目录
+        List<String> delFolderIdList = findFolderIdList(fileInfoList);
+
+        //释放的空间，已彻底删除的文件之前已经释放，挂载目录按引用时的汇总占用
+        long releaseSpace = fileInfoList.stream()
+                .filter(item -> !FileDelFlagEnums.DEL_REAL.getFlag().equals(item.getDelFlag()))
+                .mapToLong(item -> FileMountComponent.isMount(item) ? getRollupSize(item) : (item.getFileSize() == null ? 0L : item.getFileSize()))
+                .sum();
         //删除所选文件，子目录中的文件
-        if (!delFileSubFolderFileIdList.isEmpty()) {
-            this.fileInfoMapper.delFileBatch(userId, delFileSubFolderFileIdList, null, adminOp ? null : FileDelFlagEnums.DEL.getFlag());
+        if (!delFolderIdList.isEmpty()) {
+            releaseSpace += this.fileInfoMapper.selectSubTreeUseSpace(userId, delFolderIdList, FileDelFlagEnums.DEL.getFlag(),
+                    adminOp ? null : FileDelFlagEnums.DEL.getFlag());
+            FileInfo updateInfo = new FileInfo();
+            updateInfo.setDelFlag(FileDelFlagEnums.DEL_REAL.getFlag());
+            //彻底删除的时间，超过保留期后归档
+            updateInfo.setLastUpdateTime(new Date());
+            this.fileInfoMapper.updateSubTreeDelFlag(updateInfo, userId, delFolderIdList, FileDelFlagEnums.DEL.getFlag(),
+                    adminOp ? null : FileDelFlagEnums.DEL.getFlag());
         }
         //删除所选文件
         this.fileInfoMapper.delFileBatch(userId, null, Arrays.asList(fileIdArray), adminOp ? null : FileDelFlagEnums.RECYCLE.getFlag());
+        ListCountComponent.FileCountChange countChange = listCountComponent.fileCountChange();
+        //回收站中的文件已经从上级目录的汇总中减去，管理员直接删除正常文件时才需要修改
+        FolderRollupChange rollupChange = new FolderRollupChange();
+        FileListCacheComponent.FileListChange listChange = fileListCacheComponent.fileListChange(userId);
+        //回收站中的文件已经不在文件名索引中，管理员删除正常目录时子树无法逐个列出
+        FileNameIndexComponent.FileNameChange nameChange = fileNameIndexComponent.fileNameChange(userId);
+        if (!delFolderIdList.isEmpty()) {
+            countChange.addTree(userId);
+            listChange.addTree();
+            if (adminOp) {
+                nameChange.reset();
+            }
+        }
+        for (FileInfo item : fileInfoList) {
+            countChange.add(userId, item.getFilePid(), item.getFileCategory(), item.getDelFlag(), -1);
+            rollupChange.addItem(item, getParentTreePath(item.getTreePath()), -1);
+            if (FileDelFlagEnums.USING.getFlag().equals(item.getDelFlag())) {
+                listChange.addPath(getParentTreePath(item.getTreePath()));
+                nameChange.remove(item.getFileId());
+            }
+        }
+        countChange.submit();
+        rollupChange.submit(userId);
+        listChange.submit();
+        nameChange.submit();
 
-        Long useSpace = this.fileInfoMapper.selectUseSpace(userId);
-        UserInfo userInfo = new UserInfo();
-        userInfo.setUseSpace(useSpace);
-        this.userInfoMapper.updateByUserId(userInfo, userId);
+        updateUserSpace(userId, -releaseSpace);
 
-        //设置缓存
-        UserSpaceDto userSpaceDto = redisComponent.getUserSpaceUse(userId);
-        userSpaceDto.setUseSpace(useSpace);
-        redisComponent.saveUserSpaceUse(userId, userSpaceDto);
+    }
 
+    /**
+     * 彻底删除的文件已经释放空间、不在任何列表和汇总中，直接从文件表移除
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Integer purgeFileBatch(String userId, List<String> fileIdList, Boolean archive) {
+        if (archive) {
+            this.fileInfoMapper.insertArchiveBatch(userId, fileIdList, FileDelFlagEnums.DEL_REAL.getFlag());
+        }
+        return this.fileInfoMapper.deletePurgeBatch(userId, fileIdList, FileDelFlagEnums.DEL_REAL.getFlag());
     }
 
     @Override
@@ -720,84 +1293,460 @@ public class FileInfoServiceImpl implements FileInfoService {
         if (StringTools.isEmpty(fileId)) {
             throw new BusinessException(ResponseCodeEnum.CODE_600);
         }
+        //挂载目录下的文件校验挂载目录，其下的每一层在查询时校验
+        if (FileMountComponent.isVirtualId(fileId)) {
+            fileId = FileMountComponent.getMountFileId(fileId);
+        }
         if (rootFilePid.equals(fileId)) {
             return;
         }
         checkFilePid(rootFilePid, fileId, userId);
     }
 
+    /**
+     * 校验fileId在rootFilePid目录下，目录路径中包含rootFilePid即可
+     */
     private void checkFilePid(String rootFilePid, String fileId, String userId) {
-        FileInfo fileInfo = this.fileInfoMapper.selectByFileIdAndUserId(fileId, userId);
-        if (fileInfo == null) {
+        FileInfo fileInfo = selectWithTreePath(fileId, userId);
+        if (fileInfo == null || fileInfo.getTreePath() == null) {
             throw new BusinessException(ResponseCodeEnum.CODE_600);
         }
-        if (Constants.ZERO_STR.equals(fileInfo.getFilePid())) {
+        if (!fileInfo.getTreePath().contains(Constants.TREE_PATH_SEPARATOR + rootFilePid + Constants.TREE_PATH_SEPARATOR)) {
             throw new BusinessException(ResponseCodeEnum.CODE_600);
         }
-        if (fileInfo.getFilePid().equals(rootFilePid)) {
-            return;
-        }
-        checkFilePid(rootFilePid, fileInfo.getFilePid(), userId);
     }
 
+    /**
+     * 保存分享时目录只插入一条挂载目录，引用分享者的目录，修改时才复制，文件直接复制一条记录
+     */
     @Override
-    @Transactional
+    @Transactional(rollbackFor = Exception.class)
     public void saveShare(String shareRootFilePid, String shareFileIds, String myFolderId, String shareUserId, String cureentUserId) {
+        myFolderId = fileInfoService.materializeFolderId(cureentUserId, myFolderId);
         String[] shareFileIdArray = shareFileIds.split(",");
-        //目标目录文件列表
-        FileInfoQuery fileInfoQuery = new FileInfoQuery();
-        fileInfoQuery.setUserId(cureentUserId);
-        fileInfoQuery.setFilePid(myFolderId);
-        List<FileInfo> currentFileList = this.fileInfoMapper.selectList(fileInfoQuery);
-        Map<String, FileInfo> currentFileMap = currentFileList.stream().collect(Collectors.toMap(FileInfo::getFileName, Function.identity(), (file1, file2) -> file2));
-        //选择的文件
-        fileInfoQuery = new FileInfoQuery();
-        fileInfoQuery.setUserId(shareUserId);
-        fileInfoQuery.setFileIdArray(shareFileIdArray);
-        List<FileInfo> shareFileList = this.fileInfoMapper.selectList(fileInfoQuery);
-        //重命名选择的文件
-        List<FileInfo> copyFileList = new ArrayList<>();
+        //目标目录下已有的名称
+        Set<String> usedNames = selectUsedNames(cureentUserId, myFolderId);
+        //选择的文件，分享者挂载目录下的文件取来源文件
+        List<FileInfo> shareFileList = new ArrayList<>();
+        String[] plainFileIdArray = Arrays.stream(shareFileIdArray).filter(item -> !FileMountComponent.isVirtualId(item)).toArray(String[]::new);
+        if (plainFileIdArray.length > 0) {
+            FileInfoQuery fileInfoQuery = new FileInfoQuery();
+            fileInfoQuery.setUserId(shareUserId);
+            fileInfoQuery.setFileIdArray(plainFileIdArray);
+            shareFileList.addAll(this.fileInfoMapper.selectList(fileInfoQuery));
+        }
+        for (String fileId : shareFileIdArray) {
+            if (FileMountComponent.isVirtualId(fileId)) {
+                FileMountComponent.MountNode node = fileMountComponent.resolve(shareUserId, fileId);
+                if (node == null) {
+                    throw new BusinessException(ResponseCodeEnum.CODE_600);
+                }
+                shareFileList.add(node.getSource() == null ? node.getFileInfo() : node.getSource());
+            }
+        }
+        String myFolderTreePath = getFolderTreePath(myFolderId, cureentUserId);
+        //挂载目录按来源目录的汇总占用空间
+        long copySpace = shareFileList.stream().mapToLong(FileInfoServiceImpl::getRollupSize).sum();
+        UserSpaceDto spaceDto = redisComponent.getUserSpaceUse(cureentUserId);
+        if (spaceDto.getUseSpace() + copySpace > spaceDto.getTotalSpace()) {
+            throw new BusinessException(ResponseCodeEnum.CODE_904);
+        }
+        ListCountComponent.FileCountChange countChange = listCountComponent.fileCountChange();
+        FolderRollupChange rollupChange = new FolderRollupChange();
+        FileNameIndexComponent.FileNameChange nameChange = fileNameIndexComponent.fileNameChange(cureentUserId);
+        FileCopyState state = new FileCopyState();
         Date curDate = new Date();
+        List<FileInfo> copyList = new ArrayList<>();
         for (FileInfo item : shareFileList) {
-            FileInfo haveFile = currentFileMap.get(item.getFileName());
-            if (haveFile != null) {
-                item.setFileName(StringTools.rename(item.getFileName()));
+            countChange.add(cureentUserId, myFolderId, item.getFileCategory(), FileDelFlagEnums.USING.getFlag(), 1);
+            rollupChange.addItem(item, myFolderTreePath, 1);
+            item.setFileName(resolveFileName(usedNames, item.getFileName()));
+            //来源本身是挂载目录时引用同一个来源
+            if (FileFolderTypeEnums.FOLDER.getType().equals(item.getFolderType()) && !FileMountComponent.isMount(item)) {
+                //挂载目录修改时按来源的层级复制，保存时就要能放得下
+                if (item.getTreePath() != null) {
+                    checkSubTreeDepth(item.getUserId(), item.getTreePath(), myFolderTreePath + item.getFileId() + Constants.TREE_PATH_SEPARATOR);
+                }
+                item.setRefUserId(item.getUserId());
+                item.setRefFileId(item.getFileId());
             }
-            findAllSubFile(copyFileList, item, shareUserId, cureentUserId, curDate, myFolderId);
+            copyList.add(copyFileInfo(item, state, cureentUserId, curDate, myFolderId, myFolderTreePath));
+        }
+        //并发写入的同名文件违反唯一索引
+        try {
+            this.fileInfoMapper.insertBatch(copyList);
+        } catch (DuplicateKeyException e) {
+            throw new BusinessException("此目录下已存在同名文件，请重试");
         }
-        this.fileInfoMapper.insertBatch(copyFileList);
+        copyList.stream().filter(item -> FileDelFlagEnums.USING.getFlag().equals(item.getDelFlag())).forEach(nameChange::put);
+        countChange.submit();
+        rollupChange.submit(cureentUserId);
+        fileListCacheComponent.fileListChange(cureentUserId).addPath(myFolderTreePath).submit();
+        nameChange.submit();
+
+        //更新空间，超出总空间时回滚
+        updateUserSpace(cureentUserId, copySpace);
+    }
 
-        //更新空间
-        Long useSpace = this.fileInfoMapper.selectUseSpace(cureentUserId);
-        UserInfo dbUserInfo = this.userInfoMapper.selectByUserId(cureentUserId);
-        if (useSpace > dbUserInfo.getTotalSpace()) {
-            throw new BusinessException(ResponseCodeEnum.CODE_904);
+    @Override
+    public FileCopyTask getFileCopyTask(String taskId, String userId) {
+        FileCopyTask task = fileCopyTaskMapper.selectByTaskId(taskId);
+        if (task == null || !task.getUserId().equals(userId)) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+        return task;
+    }
+
+    private String createFileCopyTask(FileCopyState state, String sourceUserId, String userId, String targetFolderId, int totalCount,
+                                      Date curDate) {
+        FileCopyTask task = new FileCopyTask();
+        task.setTaskId(idGeneratorComponent.nextId());
+        task.setUserId(userId);
+        task.setSourceUserId(sourceUserId);
+        task.setTargetFolderId(targetFolderId);
+        task.setMountFileId(state.mountFileId);
+        task.setStatus(FileCopyStatusEnums.RUNNING.getStatus());
+        task.setTotalCount(totalCount);
+        task.setCopyCount(state.copyCount);
+        task.setFolderSeq(state.getCurrentSeq());
+        task.setVersion(0);
+        task.setCreateTime(curDate);
+        task.setLastUpdateTime(curDate);
+        fileCopyTaskMapper.insert(task);
+        saveNewCopyFolder(task.getTaskId(), state);
+        return task.getTaskId();
+    }
+
+    /**
+     * 执行后台复制任务，每批单独提交并保存进度，中断后由定时任务从进度处继续
+     */
+    @Async
+    public void runFileCopyTask(String taskId) {
+        FileCopyTask task = fileCopyTaskMapper.selectByTaskId(taskId);
+        if (task == null || !FileCopyStatusEnums.RUNNING.getStatus().equals(task.getStatus())) {
+            return;
+        }
+        FileCopyState state = new FileCopyState();
+        state.folderQueue.addAll(fileCopyTaskMapper.selectFolderList(taskId, task.getFolderSeq()));
+        state.nextSeq = state.folderQueue.isEmpty() ? task.getFolderSeq() : state.folderQueue.getLast().getFolderSeq() + 1;
+        state.lastFileId = task.getLastFileId();
+        state.copyCount = task.getCopyCount();
+        state.mountFileId = task.getMountFileId();
+        state.delFlag = getCopyDelFlag(this.fileInfoMapper.selectByFileIdAndUserId(task.getTargetFolderId(), task.getUserId()));
+        long startTime = System.currentTimeMillis();
+        try {
+            while (!fileInfoService.copyFileTaskBatch(task, state)) {
+                logger.debug("复制任务{}进度:{}/{}", taskId, state.copyCount, task.getTotalCount());
+            }
+            logger.info("复制任务{}完成,文件数:{},耗时:{}ms", taskId, state.copyCount, System.currentTimeMillis() - startTime);
+        } catch (BusinessException e) {
+            logger.error("复制任务{}失败", taskId, e);
+            fileInfoService.failFileCopyTask(taskId, e.getMessage());
+        } catch (Exception e) {
+            //保持复制中，超时后由其他节点从进度处继续
+            logger.error("复制任务{}中断,进度:{}/{}", taskId, state.copyCount, task.getTotalCount(), e);
+        }
+    }
+
+    /**
+     * 复制一批文件并保存进度
+     *
+     * @return 是否已全部复制
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean copyFileTaskBatch(FileCopyTask task, FileCopyState state) {
+        List<FileInfo> copyList = copyNextBatch(state, task.getSourceUserId(), task.getUserId(), task.getCreateTime());
+        saveNewCopyFolder(task.getTaskId(), state);
+        boolean finished = state.folderQueue.isEmpty();
+        Integer oldVersion = task.getVersion();
+        task.setStatus(finished ? FileCopyStatusEnums.SUCCESS.getStatus() : FileCopyStatusEnums.RUNNING.getStatus());
+        task.setCopyCount(state.copyCount);
+        task.setFolderSeq(state.getCurrentSeq());
+        task.setLastFileId(state.lastFileId);
+        task.setVersion(oldVersion + 1);
+        task.setLastUpdateTime(new Date());
+        if (fileCopyTaskMapper.updateProgress(task, oldVersion) == 0) {
+            throw new IllegalStateException("复制任务" + task.getTaskId() + "已由其他节点执行");
+        }
+        fileCopyTaskMapper.deleteFolderBefore(task.getTaskId(), task.getFolderSeq());
+        //只修改这一批写入的目录，不让整个用户的缓存和文件名索引失效
+        ListCountComponent.FileCountChange countChange = listCountComponent.fileCountChange();
+        FileListCacheComponent.FileListChange listChange = fileListCacheComponent.fileListChange(task.getUserId());
+        FileNameIndexComponent.FileNameChange nameChange = fileNameIndexComponent.fileNameChange(task.getUserId());
+        for (FileInfo item : copyList) {
+            countChange.add(task.getUserId(), item.getFilePid(), item.getFileCategory(), item.getDelFlag(), 1);
+            listChange.addPath(getParentTreePath(item.getTreePath()));
+            if (FileDelFlagEnums.USING.getFlag().equals(item.getDelFlag())) {
+                nameChange.put(item);
+            }
+        }
+        countChange.submit();
+        listChange.submit();
+        nameChange.submit();
+        return finished;
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    public void failFileCopyTask(String taskId, String errorMsg) {
+        FileCopyTask task = fileCopyTaskMapper.selectByTaskId(taskId);
+        if (task == null || !FileCopyStatusEnums.RUNNING.getStatus().equals(task.getStatus())) {
+            return;
+        }
+        Integer oldVersion = task.getVersion();
+        task.setStatus(FileCopyStatusEnums.FAIL.getStatus());
+        task.setErrorMsg(StringTools.isEmpty(errorMsg) ? null : errorMsg.substring(0, Math.min(errorMsg.length(), 200)));
+        task.setVersion(oldVersion + 1);
+        task.setLastUpdateTime(new Date());
+        fileCopyTaskMapper.updateProgress(task, oldVersion);
+        fileCopyTaskMapper.deleteFolderBefore(taskId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 先递增版本号再接管，原节点恢复后保存进度失败自动停止
+     */
+    @Override
+    public void resumeStaleFileCopyTask() {
+        Date staleTime = new Date(System.currentTimeMillis() - Constants.FILE_COPY_TASK_STALE_TIME);
+        List<FileCopyTask> taskList = fileCopyTaskMapper.selectStaleList(FileCopyStatusEnums.RUNNING.getStatus(), staleTime, 10);
+        for (FileCopyTask task : taskList) {
+            Integer oldVersion = task.getVersion();
+            task.setVersion(oldVersion + 1);
+            task.setLastUpdateTime(new Date());
+            if (fileCopyTaskMapper.updateProgress(task, oldVersion) > 0) {
+                logger.info("接管复制任务{},进度:{}/{}", task.getTaskId(), task.getCopyCount(), task.getTotalCount());
+                fileInfoService.runFileCopyTask(task.getTaskId());
+            }
+        }
+    }
+
+    private void saveNewCopyFolder(String taskId, FileCopyState state) {
+        List<FileCopyFolder> folderList = state.newFolderList;
+        for (int i = 0; i < folderList.size(); i += Constants.FILE_COPY_BATCH_SIZE) {
+            List<FileCopyFolder> batch = folderList.subList(i, Math.min(i + Constants.FILE_COPY_BATCH_SIZE, folderList.size()));
+            batch.forEach(item -> item.setTaskId(taskId));
+            fileCopyTaskMapper.insertFolderBatch(batch);
         }
-        UserInfo userInfo = new UserInfo();
-        userInfo.setUseSpace(useSpace);
-        this.userInfoMapper.updateByUserId(userInfo, cureentUserId);
-        //设置缓存
-        UserSpaceDto userSpaceDto = redisComponent.getUserSpaceUse(cureentUserId);
-        userSpaceDto.setUseSpace(useSpace);
-        redisComponent.saveUserSpaceUse(cureentUserId, userSpaceDto);
+        state.newFolderList = new ArrayList<>();
     }
 
-    private void findAllSubFile(List<FileInfo> copyFileList, FileInfo fileInfo, String sourceUserId, String currentUserId, Date curDate, String newFilePid) {
+    /**
+     * 按队列顺序复制目录的直接下级，凑满一批后一条语句插入，复制出的目录加入队尾，整棵树按层复制，返回这一批复制出的文件
+     */
+    private List<FileInfo> copyNextBatch(FileCopyState state, String sourceUserId, String userId, Date curDate) {
+        List<FileInfo> copyList = new ArrayList<>();
+        while (copyList.size() < Constants.FILE_COPY_BATCH_SIZE && !state.folderQueue.isEmpty()) {
+            FileCopyFolder folder = state.folderQueue.peek();
+            int limit = Constants.FILE_COPY_BATCH_SIZE - copyList.size();
+            List<FileInfo> childList = this.fileInfoMapper.selectChildBatch(sourceUserId, folder.getSourceFileId(), FileDelFlagEnums.USING.getFlag(),
+                    state.lastFileId, limit);
+            for (FileInfo child : childList) {
+                state.lastFileId = child.getFileId();
+                copyList.add(copyFileInfo(child, state, userId, curDate, folder.getNewFileId(), folder.getNewTreePath()));
+            }
+            if (childList.size() < limit) {
+                state.folderQueue.poll();
+                state.lastFileId = null;
+            }
+        }
+        if (!copyList.isEmpty()) {
+            this.fileInfoMapper.insertBatch(copyList);
+        }
+        return copyList;
+    }
+
+    /**
+     * 把来源文件改为保存到的用户的新文件，目录放入待复制队列，挂载目录只复制自身
+     */
+    private FileInfo copyFileInfo(FileInfo fileInfo, FileCopyState state, String currentUserId, Date curDate, String newFilePid,
+                                  String parentTreePath) {
         String sourceFileId = fileInfo.getFileId();
         fileInfo.setCreateTime(curDate);
         fileInfo.setLastUpdateTime(curDate);
         fileInfo.setFilePid(newFilePid);
         fileInfo.setUserId(currentUserId);
-        String newFileId = StringTools.getRandomString(Constants.LENGTH_10);
+        String newFileId = state.mountFileId == null ? idGeneratorComponent.nextId()
+                : FileMountComponent.getMaterializedId(state.mountFileId, sourceFileId);
         fileInfo.setFileId(newFileId);
-        copyFileList.add(fileInfo);
+        fileInfo.setTreePath(buildTreePath(parentTreePath, newFileId));
+        if (state.delFlag != null) {
+            fileInfo.setDelFlag(state.delFlag);
+        }
+        if (FileMountComponent.isMount(fileInfo)) {
+            return fileInfo;
+        }
         if (FileFolderTypeEnums.FOLDER.getType().equals(fileInfo.getFolderType())) {
-            FileInfoQuery query = new FileInfoQuery();
-            query.setFilePid(sourceFileId);
-            query.setUserId(sourceUserId);
-            List<FileInfo> sourceFileList = this.fileInfoMapper.selectList(query);
-            for (FileInfo item : sourceFileList) {
-                findAllSubFile(copyFileList, item, sourceUserId, currentUserId, curDate, newFileId);
+            FileCopyFolder folder = new FileCopyFolder();
+            folder.setFolderSeq(state.nextSeq++);
+            folder.setSourceFileId(sourceFileId);
+            folder.setNewFileId(newFileId);
+            folder.setNewTreePath(fileInfo.getTreePath());
+            state.folderQueue.add(folder);
+            state.newFolderList.add(folder);
+        } else {
+            state.copyCount++;
+        }
+        return fileInfo;
+    }
+
+    /**
+     * 复制进度，folderQueue为还没有复制完下级文件的目录，lastFileId为队首目录中最后复制的来源文件，
+     * mountFileId不为空时复制出的文件ID由挂载目录ID和来源文件ID生成
+     */
+    static class FileCopyState {
+
+        private String mountFileId;
+
+        /**
+         * 复制出的下级文件的删除标记，为空时与来源文件相同
+         */
+        private Integer delFlag;
+
+        private final LinkedList<FileCopyFolder> folderQueue = new LinkedList<>();
+
+        private List<FileCopyFolder> newFolderList = new ArrayList<>();
+
+        private int nextSeq;
+
+        private String lastFileId;
+
+        private int copyCount;
+
+        int getCurrentSeq() {
+            return folderQueue.isEmpty() ? nextSeq : folderQueue.peek().getFolderSeq();
+        }
+    }
+
+    /**
+     * 挂载目录复制出的下级文件的删除标记，挂载目录不是正常状态时为已删除，还原时随挂载目录一起还原
+     */
+    private static Integer getCopyDelFlag(FileInfo mount) {
+        return mount == null || FileDelFlagEnums.USING.getFlag().equals(mount.getDelFlag())
+                ? FileDelFlagEnums.USING.getFlag() : FileDelFlagEnums.DEL.getFlag();
+    }
+
+    /**
+     * 文件计入上级目录汇总的大小，目录为其汇总大小
+     */
+    private static long getRollupSize(FileInfo fileInfo) {
+        Long size = FileFolderTypeEnums.FOLDER.getType().equals(fileInfo.getFolderType()) ? fileInfo.getFolderSize() : fileInfo.getFileSize();
+        return size == null ? 0L : size;
+    }
+
+    /**
+     * 目录下文件的目录路径，超出列宽时数据库保存不下，按目录层级过多提示
+     */
+    private static String buildTreePath(String parentTreePath, String fileId) {
+        String treePath = parentTreePath + fileId + Constants.TREE_PATH_SEPARATOR;
+        checkTreePathLength(treePath.length());
+        return treePath;
+    }
+
+    private static void checkTreePathLength(long length) {
+        if (length > Constants.TREE_PATH_MAX_LENGTH) {
+            throw new BusinessException("目录层级过多，最多" + Constants.MAX_FOLDER_DEPTH + "层");
+        }
+    }
+
+    /**
+     * 一批目录移动到目录路径为folderTreePath的目录下后，整个子树最深的目录路径不能超出列宽，一条语句查询
+     */
+    private void checkSubTreeDepth(String userId, List<FileInfo> folderList, String folderTreePath) {
+        int folderPathLength = Constants.LENGTH_10 + Constants.TREE_PATH_SEPARATOR.length();
+        //都没有变深时不用查询
+        if (folderList.stream().allMatch(item -> item.getTreePath().length() >= folderTreePath.length() + folderPathLength)) {
+            return;
+        }
+        Integer maxLength = this.fileInfoMapper.selectMaxSubTreePathLength(userId,
+                folderList.stream().map(FileInfo::getFileId).collect(Collectors.toList()));
+        checkTreePathLength(folderTreePath.length() + (maxLength == null ? folderPathLength : maxLength));
+    }
+
+    /**
+     * 一批文件移动到目录路径为folderTreePath的目录下，文件本身的目录路径一条语句更新，目录的下级由调用方按子树更新
+     */
+    private void updateFileTreePath(String userId, List<FileInfo> fileInfoList, String folderTreePath) {
+        List<FileInfo> fileList = fileInfoList.stream()
+                .filter(item -> FileFolderTypeEnums.FILE.getType().equals(item.getFolderType()))
+                .collect(Collectors.toList());
+        for (int i = 0; i < fileList.size(); i += Constants.FILE_NAME_UPDATE_BATCH_SIZE) {
+            this.fileInfoMapper.updateFileTreePathBatch(userId, folderTreePath,
+                    fileList.subList(i, Math.min(i + Constants.FILE_NAME_UPDATE_BATCH_SIZE, fileList.size())));
+        }
+    }
+
+    /**
+     * 目录路径为treePath的目录改为newTreePath后，整个子树最深的目录路径不能超出列宽
+     */
+    private void checkSubTreeDepth(String userId, String treePath, String newTreePath) {
+        if (newTreePath.length() <= treePath.length()) {
+            return;
+        }
+        Integer maxLength = this.fileInfoMapper.selectMaxTreePathLength(userId, treePath);
+        checkTreePathLength((maxLength == null ? treePath.length() : maxLength) - treePath.length() + newTreePath.length());
+    }
+
+    /**
+     * 上级目录的目录路径，/A/B/ 返回 /A/
+     */
+    private static String getParentTreePath(String treePath) {
+        if (treePath == null) {
+            return null;
+        }
+        return treePath.substring(0, treePath.lastIndexOf(Constants.TREE_PATH_SEPARATOR, treePath.length() - 2) + 1);
+    }
+
+    /**
+     * 目录汇总的变化量，一次操作中的变化先按目录合并，最后一条语句写入，减少对上级目录行的重复加锁
+     */
+    private class FolderRollupChange {
+
+        private final Map<String, long[]> deltaMap = new TreeMap<>();
+
+        /**
+         * 正常状态的文件计入目录路径上的所有目录
+         *
+         * @param fileInfo       文件
+         * @param folderTreePath 文件所在目录的目录路径
+         * @param sign           1加入 -1移出
+         */
+        FolderRollupChange addItem(FileInfo fileInfo, String folderTreePath, int sign) {
+            if (!FileDelFlagEnums.USING.getFlag().equals(fileInfo.getDelFlag())) {
+                return this;
+            }
+            boolean folder = FileFolderTypeEnums.FOLDER.getType().equals(fileInfo.getFolderType());
+            long count = folder ? (fileInfo.getFolderFileCount() == null ? 0 : fileInfo.getFolderFileCount()) : 1;
+            return add(folderTreePath, sign * getRollupSize(fileInfo), sign * count);
+        }
+
+        FolderRollupChange add(String folderTreePath, long size, long count) {
+            if (folderTreePath == null) {
+                return this;
+            }
+            for (String folderId : folderTreePath.split(Constants.TREE_PATH_SEPARATOR)) {
+                if (folderId.isEmpty()) {
+                    continue;
+                }
+                long[] delta = deltaMap.computeIfAbsent(folderId, key -> new long[2]);
+                delta[0] += size;
+                delta[1] += count;
+            }
+            return this;
+        }
+
+        void submit(String userId) {
+            List<FileInfo> rollupList = new ArrayList<>();
+            for (Map.Entry<String, long[]> entry : deltaMap.entrySet()) {
+                if (entry.getValue()[0] == 0 && entry.getValue()[1] == 0) {
+                    continue;
+                }
+                FileInfo rollup = new FileInfo();
+                rollup.setFileId(entry.getKey());
+                rollup.setFolderSize(entry.getValue()[0]);
+                rollup.setFolderFileCount((int) entry.getValue()[1]);
+                rollupList.add(rollup);
+            }
+            if (!rollupList.isEmpty()) {
+                fileInfoMapper.updateFolderRollup(userId, rollupList);
             }
         }
     }
@@ -810,33 +1759,14 @@ public class FileInfoServiceImpl implements FileInfoService {
     @Override
     public void deleteFileByUserId(String userId) {
         this.fileInfoMapper.deleteFileByUserId(userId);
-    }
-
-    @Override
-    public void downloadFile(HttpServletRequest request, HttpServletResponse response, String code) throws UnsupportedEncodingException {
-        // 从Redis中获取下载信息
-        DownloadFileDto downloadFileDto = redisComponent.getDownloadCode(code);
-        if (null == downloadFileDto) {
-            return;
-        }
-        String filePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + downloadFileDto.getFilePath();
-        String fileName = downloadFileDto.getFileName();
-        response.setContentType("application/x-msdownload; charset=UTF-8");
-
-        // 根据浏览器类型处理文件名编码
-        if (request.getHeader("User-Agent").toLowerCase().indexOf("msie") > 0) {
-            // IE浏览器
-            fileName = URLEncoder.encode(fileName, "UTF-8");
-        } else {
-            fileName = new String(fileName.getBytes("UTF-8"), "ISO8859-1");
-        }
-        response.setHeader("Content-Disposition", "attachment;filename=\"" + fileName + "\"");
-        readFile(response, filePath);
+        listCountComponent.fileCountChange().addTree(userId).submit();
+        fileListCacheComponent.fileListChange(userId).addTree().submit();
+        fileNameIndexComponent.fileNameChange(userId).reset().submit();
     }
 
     /**
      * 验证分片下载请求的合法性
-     * 检查分片索引范围和下载码有效性，复用现有的安全验证逻辑
+     * 检查分片索引范围和下载码有效性，下载码解析结果走本地缓存，同一下载任务不重复查询Redis和stat文件
      * 
      * @param code 下载码
      * @param chunkIndex 分片索引
@@ -844,6 +1774,7 @@ public class FileInfoServiceImpl implements FileInfoService {
      * @return boolean 验证结果
      */
     public boolean validateChunkRequest(String code, Integer chunkIndex, Integer totalChunks) {
+        DownloadFileCache.Entry downloadFile = null;
         try {
             // 验证参数不为空
             if (StringTools.isEmpty(code) || chunkIndex == null || totalChunks == null) {
@@ -851,10 +1782,10 @@ public class FileInfoServiceImpl implements FileInfoService {
                 return false;
             }
             
-            // 验证下载码有效性（复用现有的Redis缓存验证逻辑）
-            DownloadFileDto downloadFileDto = redisComponent.getDownloadCode(code);
-            if (downloadFileDto == null) {
-                logger.error("下载码无效或已过期: {}", code);
+            // 验证下载码有效性、文件路径合法性及文件是否存在
+            downloadFile = downloadFileCache.acquire(code);
+            if (downloadFile == null) {
+                logger.error("下载码无效、已过期或文件不存在: {}", code);
                 return false;
             }
             
@@ -870,21 +1801,8 @@ public class FileInfoServiceImpl implements FileInfoService {
                 return false;
             }
             
-            // 验证文件是否存在（复用现有的安全验证逻辑）
-            String filePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + downloadFileDto.getFilePath();
-            if (!StringTools.pathIsOk(filePath)) {
-                logger.error("文件路径不合法: {}", filePath);
-                return false;
-            }
-            
-            File file = new File(filePath);
-            if (!file.exists()) {
-                logger.error("文件不存在: {}", filePath);
-                return false;
-            }
-            
             // 验证分片数量与文件大小的一致性
-            long fileSize = file.length();
+            long fileSize = downloadFile.getFileSize();
             int expectedTotalChunks = (int) Math.ceil((double) fileSize / Constants.CHUNK_SIZE_DOWNLOAD);
             if (!totalChunks.equals(expectedTotalChunks)) {
                 logger.error("分片数量与文件大小不匹配: expected={}, actual={}, fileSize={}", 
@@ -898,32 +1816,29 @@ public class FileInfoServiceImpl implements FileInfoService {
         } catch (Exception e) {
             logger.error("分片请求验证异常: code={}, chunkIndex={}, totalChunks={}", code, chunkIndex, totalChunks, e);
             return false;
+        } finally {
+            downloadFileCache.release(downloadFile);
         }
     }
 
     /**
      * 获取文件分片下载信息
-     * 计算文件总分片数和每个分片的大小，集成现有的Redis缓存机制
+     * 计算文件总分片数和每个分片的大小，下载码解析结果走本地缓存
      * 
      * @param code 下载码
      * @return ChunkDownloadDto 分片下载信息
      */
     public ChunkDownloadDto getChunkDownloadInfo(String code) {
+        DownloadFileCache.Entry downloadFile = null;
         try {
-            DownloadFileDto downloadFileDto = redisComponent.getDownloadCode(code);
-            if (downloadFileDto == null) {
-                logger.error("下载码无效或已过期: {}", code);
-                return null;
-            }
-            
-            String filePath = appConfig.getProjectFolder() + Constants.FILE_FOLDER_FILE + downloadFileDto.getFilePath();
-            File file = new File(filePath);
-            if (!file.exists()) {
-                logger.error("文件不存在: {}", filePath);
+            downloadFile = downloadFileCache.acquire(code);
+            if (downloadFile == null) {
+                logger.error("下载码无效、已过期或文件不存在: {}", code);
                 return null;
             }
             
-            long fileSize = file.length();
+            DownloadFileDto downloadFileDto = downloadFile.getDownloadFileDto();
+            long fileSize = downloadFile.getFileSize();
             int chunkSize = Constants.CHUNK_SIZE_DOWNLOAD;
             int totalChunks = (int) Math.ceil((double) fileSize / chunkSize);
             
@@ -944,6 +1859,8 @@ public class FileInfoServiceImpl implements FileInfoService {
         } catch (Exception e) {
             logger.error("获取分片下载信息异常: code={}", code, e);
             return null;
+        } finally {
+            downloadFileCache.release(downloadFile);
         }
     }
 
@@ -964,7 +1881,7 @@ public class FileInfoServiceImpl implements FileInfoService {
         
         RandomAccessFile randomAccessFile = null;
         OutputStream out = null;
-        BufferedOutputStream bufferedOut = null;
+        ByteBuffer buffer = null;
         
         try {
             File file = new File(filePath);
@@ -992,12 +1909,9 @@ public class FileInfoServiceImpl implements FileInfoService {
             randomAccessFile.seek(start);
             
             out = response.getOutputStream();
-            // 使用缓冲输出流提高性能
-            bufferedOut = new BufferedOutputStream(out, 8192);
-            
-            // 根据分片大小选择最优的缓冲区大小
-            int bufferSize = calculateOptimalBufferSize(chunkSize);
-            byte[] buffer = new byte[bufferSize];
+            // 使用缓冲区池中的缓冲区直接写出，输出流自带缓冲，不再额外包装
+            buffer = ByteBufferPool.heap().acquire();
+            byte[] bytes = buffer.array();
             long remaining = chunkSize;
             
             // 性能监控
@@ -1005,44 +1919,31 @@ public class FileInfoServiceImpl implements FileInfoService {
             long totalBytesRead = 0;
             
             while (remaining > 0) {
-                int bytesToRead = (int) Math.min(buffer.length, remaining);
-                int bytesRead = randomAccessFile.read(buffer, 0, bytesToRead);
+                int bytesToRead = (int) Math.min(bytes.length, remaining);
+                int bytesRead = randomAccessFile.read(bytes, 0, bytesToRead);
                 
                 if (bytesRead == -1) {
                     break;
                 }
                 
-                bufferedOut.write(buffer, 0, bytesRead);
+                out.write(bytes, 0, bytesRead);
                 remaining -= bytesRead;
                 totalBytesRead += bytesRead;
-                
-                // 定期刷新缓冲区，避免内存积累过多
-                if (totalBytesRead % (bufferSize * 4) == 0) {
-                    bufferedOut.flush();
-                }
             }
             
-            bufferedOut.flush();
+            out.flush();
             
             // 记录性能指标
             long endTime = System.currentTimeMillis();
             long duration = endTime - startTime;
-            double throughput = totalBytesRead / (duration / 1000.0) / 1024 / 1024; // MB/s
             
-            logger.debug("分片下载完成: start={}, end={}, size={}bytes, duration={}ms, throughput={:.2f}MB/s", 
-                start, end, totalBytesRead, duration, throughput);
+            logger.debug("分片下载完成: start={}, end={}, size={}bytes, duration={}ms", start, end, totalBytesRead, duration);
             
         } catch (Exception e) {
             logger.error("分片读取文件异常: filePath={}, start={}, end={}", filePath, start, end, e);
         } finally {
+            ByteBufferPool.heap().release(buffer);
             // 按顺序关闭资源
-            if (bufferedOut != null) {
-                try {
-                    bufferedOut.close();
-                } catch (IOException e) {
-                    logger.error("关闭缓冲输出流异常", e);
-                }
-            }
             if (out != null) {
                 try {
                     out.close();
@@ -1059,67 +1960,4 @@ public class FileInfoServiceImpl implements FileInfoService {
             }
         }
     }
-    
-    /**
-     * 计算最优缓冲区大小
-     * 根据分片大小动态调整缓冲区，平衡内存使用和I/O性能
-     * 
-     * @param chunkSize 分片大小
-     * @return 最优缓冲区大小
-     */
-    private int calculateOptimalBufferSize(long chunkSize) {
-        // 基础缓冲区大小
-        int baseBufferSize = 8192; // 8KB
-        
-        if (chunkSize <= 64 * 1024) {
-            // 小分片（<=64KB）：使用较小的缓冲区
-            return Math.max(1024, (int) chunkSize / 4);
-        } else if (chunkSize <= 1024 * 1024) {
-            // 中等分片（<=1MB）：使用标准缓冲区
-            return baseBufferSize;
-        } else {
-            // 大分片（>1MB）：使用较大的缓冲区
-            return Math.min(65536, baseBufferSize * 4); // 最大64KB
-        }
-    }
-
-    protected void readFile(HttpServletResponse response, String filePath) {
-        if (!StringTools.pathIsOk(filePath)) {
-            return;
-        }
-        OutputStream out = null;
-        FileInputStream in = null;
-        try {
-            File file = new File(filePath);
-            if (!file.exists()) {
-                return;
-            }
-            in = new FileInputStream(file);
-            byte[] byteData = new byte[1024];
-            out = response.getOutputStream();
-            int len = 0;
-            while ((len = in.read(byteData)) != -1) {
-                out.write(byteData, 0, len);
-            }
-            out.flush();
-        } catch (Exception e) {
-            logger.error("读取文件异常", e);
-        } finally {
-            if (out != null) {
-                try {
-                    out.close();
-                } catch (IOException e) {
-                    logger.error("IO异常", e);
-                }
-            }
-            if (in != null) {
-                try {
-                    in.close();
-                } catch (IOException e) {
-                    logger.error("IO异常", e);
-                }
-            }
-        }
-    }
-
-}
\ No newline at end of file
+}
@@ -1,5 +1,8 @@
 package com.easypan.service.impl;
 
+import com.easypan.component.FileMountComponent;
+import com.easypan.component.IdGeneratorComponent;
+import com.easypan.component.ListCountComponent;
 import com.easypan.entity.constants.Constants;
 import com.easypan.entity.dto.SessionShareDto;
 import com.easypan.entity.enums.PageSize;
@@ -7,10 +10,12 @@ import com.easypan.entity.enums.ResponseCodeEnum;
 import com.easypan.entity.enums.ShareValidTypeEnums;
 import com.easypan.entity.po.FileShare;
 import com.easypan.entity.query.FileShareQuery;
+import com.easypan.entity.query.SeekCursor;
 import com.easypan.entity.query.SimplePage;
 import com.easypan.entity.vo.PaginationResultVO;
 import com.easypan.exception.BusinessException;
 import com.easypan.mappers.FileShareMapper;
+import com.easypan.service.FileInfoService;
 import com.easypan.service.FileShareService;
 import com.easypan.utils.DateUtil;
 import com.easypan.utils.StringTools;
@@ -20,8 +25,12 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.Resource;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 
 /**
@@ -30,9 +39,27 @@ import java.util.List;
 @Service("fileShareService")
 public class FileShareServiceImpl implements FileShareService {
 
+    /**
+     * 支持游标分页的排序列
+     */
+    private static final Map<String, Function<FileShare, Date>> SEEK_SORT_TIME = new HashMap<>();
+
+    static {
+        SEEK_SORT_TIME.put("share_time", FileShare::getShareTime);
+    }
+
     @Resource
     private FileShareMapper<FileShare, FileShareQuery> fileShareMapper;
 
+    @Resource
+    private ListCountComponent listCountComponent;
+
+    @Resource
+    private FileInfoService fileInfoService;
+
+    @Resource
+    private IdGeneratorComponent idGeneratorComponent;
+
     /**
      * 根据条件查询列表
      */
@@ -54,7 +81,10 @@ public class FileShareServiceImpl implements FileShareService {
      */
     @Override
     public PaginationResultVO<FileShare> findListByPage(FileShareQuery param) {
-        int count = this.findCountByParam(param);
+        if (param.getCursor() != null) {
+            return findListBySeek(param);
+        }
+        int count = listCountComponent.getShareCount(param, () -> this.findCountByParam(param));
         int pageSize = param.getPageSize() == null ? PageSize.SIZE15.getSize() : param.getPageSize();
 
         SimplePage page = new SimplePage(param.getPageNo(), count, pageSize);
@@ -64,6 +94,39 @@ public class FileShareServiceImpl implements FileShareService {
         return result;
     }
 
+    /**
+     * 游标分页，按排序时间和分享ID定位上一页最后一条记录，不需要跳过前面的记录，
+     * 默认不查询总数
+     */
+    private PaginationResultVO<FileShare> findListBySeek(FileShareQuery param) {
+        String sortColumn = SeekCursor.getSortColumn(param.getOrderBy());
+        Function<FileShare, Date> sortTimeGetter = SEEK_SORT_TIME.get(sortColumn);
+        if (sortTimeGetter == null) {
+            throw new BusinessException(ResponseCodeEnum.CODE_600);
+        }
+        Integer count = null;
+        if (Boolean.TRUE.equals(param.getQueryTotal())) {
+            count = listCountComponent.getShareCount(param, () -> this.findCountByParam(param));
+        }
+        param.seekAfter(SeekCursor.parse(param.getCursor(), param.getOrderBy(), false));
+        int pageSize = param.getPageSize() == null || param.getPageSize() <= 0 ? PageSize.SIZE15.getSize() : param.getPageSize();
+        param.setOrderBy(sortColumn + " desc, s.share_id desc");
+        //多查一条判断是否还有下一页
+        param.setSimplePage(new SimplePage(0, pageSize + 1));
+        List<FileShare> list = this.findListByParam(param);
+        String nextCursor = null;
+        if (list.size() > pageSize) {
+            list = new ArrayList<>(list.subList(0, pageSize));
+            FileShare last = list.get(pageSize - 1);
+            nextCursor = SeekCursor.build(sortTimeGetter.apply(last), last.getShareId());
+        }
+        PaginationResultVO<FileShare> result = new PaginationResultVO<>(list);
+        result.setTotalCount(count);
+        result.setPageSize(pageSize);
+        result.setNextCursor(nextCursor);
+        return result;
+    }
+
     /**
      * 新增
      */
@@ -127,13 +190,19 @@ public class FileShareServiceImpl implements FileShareService {
         if (typeEnum != ShareValidTypeEnums.FOREVER) {
             share.setExpireTime(DateUtil.getAfterDate(typeEnum.getDays()));
         }
+        //分享记录的是自己的文件，挂载目录下的文件先复制
+        if (FileMountComponent.isVirtualId(share.getFileId())) {
+            share.setFileId(fileInfoService.materializeFileId(share.getUserId(), share.getFileId()));
+        }
         Date curDate = new Date();
         share.setShareTime(curDate);
         if (StringTools.isEmpty(share.getCode())) {
             share.setCode(StringTools.getRandomString(Constants.LENGTH_5));
         }
-        share.setShareId(StringTools.getRandomString(Constants.LENGTH_20));
+        //分享链接中的ID，按时间递增的ID后接随机串，不能按顺序猜出其他分享
+        share.setShareId(idGeneratorComponent.nextId() + StringTools.getRandomString(Constants.LENGTH_10));
         this.fileShareMapper.insert(share);
+        listCountComponent.changeShareCount(share.getUserId(), 1);
     }
 
     @Override
@@ -143,6 +212,7 @@ public class FileShareServiceImpl implements FileShareService {
         if (count != shareIdArray.length) {
             throw new BusinessException(ResponseCodeEnum.CODE_600);
         }
+        listCountComponent.changeShareCount(userId, -count);
     }
 
     @Override
@@ -1,6 +1,8 @@
 package com.easypan.service.impl;
 
+import com.easypan.component.IdGeneratorComponent;
 import com.easypan.component.RedisComponent;
+import com.easypan.component.UserProfileCacheComponent;
 import com.easypan.entity.config.AppConfig;
 import com.easypan.entity.constants.Constants;
 import com.easypan.entity.dto.GitHubInfoDto;
@@ -65,6 +67,12 @@ public class UserInfoServiceImpl implements UserInfoService {
     @Resource
     private RedisComponent redisComponent;
 
+    @Resource
+    private IdGeneratorComponent idGeneratorComponent;
+
+    @Resource
+    private UserProfileCacheComponent userProfileCacheComponent;
+
     private static final Logger logger = LoggerFactory.getLogger(UserInfoServiceImpl.class);
 
     /**
@@ -142,7 +150,9 @@ public class UserInfoServiceImpl implements UserInfoService {
      */
     @Override
     public Integer updateUserInfoByUserId(UserInfo bean, String userId) {
-        return this.userInfoMapper.updateByUserId(bean, userId);
+        Integer count = this.userInfoMapper.updateByUserId(bean, userId);
+        userProfileCacheComponent.evict(userId);
+        return count;
     }
 
     /**
@@ -150,7 +160,9 @@ public class UserInfoServiceImpl implements UserInfoService {
      */
     @Override
     public Integer deleteUserInfoByUserId(String userId) {
-        return this.userInfoMapper.deleteByUserId(userId);
+        Integer count = this.userInfoMapper.deleteByUserId(userId);
+        userProfileCacheComponent.evict(userId);
+        return count;
     }
 
     /**
@@ -247,7 +259,7 @@ public class UserInfoServiceImpl implements UserInfoService {
         }
         // 用户空间
         UserSpaceDto userSpaceDto = new UserSpaceDto();
-        userSpaceDto.setUseSpace(fileInfoService.getUserUseSpace(userInfo.getUserId()));
+        userSpaceDto.setUseSpace(userInfo.getUseSpace());
         userSpaceDto.setTotalSpace(userInfo.getTotalSpace());
         redisComponent.saveUserSpaceUse(userInfo.getUserId(), userSpaceDto);
         return sessionWebUserDto;
@@ -266,7 +278,7 @@ public class UserInfoServiceImpl implements UserInfoService {
         }
         // 校验邮箱验证码
         emailCodeService.checkCode(email, emailCode);
-        String userId = StringTools.getRandomNumber(Constants.LENGTH_10);
+        String userId = idGeneratorComponent.nextId();
         userInfo = new UserInfo();
         userInfo.setUserId(userId);
         userInfo.setNickName(nickName);
@@ -330,7 +342,7 @@ public class UserInfoServiceImpl implements UserInfoService {
             user.setJoinTime(curDate);
             user.setNickName(nickName);
             user.setQqAvatar(avatar);
-            user.setUserId(StringTools.getRandomString(Constants.LENGTH_10));
+            user.setUserId(idGeneratorComponent.nextId());
             user.setLastLoginTime(curDate);
             user.setStatus(UserStatusEnum.ENABLE.getStatus());
             user.setUseSpace(0L);
@@ -358,7 +370,7 @@ public class UserInfoServiceImpl implements UserInfoService {
         }
 
         UserSpaceDto userSpaceDto = new UserSpaceDto();
-        userSpaceDto.setUseSpace(fileInfoService.getUserUseSpace(user.getUserId()));
+        userSpaceDto.setUseSpace(user.getUseSpace());
         userSpaceDto.setTotalSpace(user.getTotalSpace());
         redisComponent.saveUserSpaceUse(user.getUserId(), userSpaceDto);
         return sessionWebUserDto;
@@ -471,7 +483,7 @@ public class UserInfoServiceImpl implements UserInfoService {
             user.setNickName(nickName);
             user.setQqAvatar(githubInfo.getAvatar_url());
             user.setEmail(githubInfo.getEmail());
-            user.setUserId(StringTools.getRandomString(Constants.LENGTH_10));
+            user.setUserId(idGeneratorComponent.nextId());
             user.setLastLoginTime(new Date());
             user.setStatus(UserStatusEnum.ENABLE.getStatus());
             user.setUseSpace(0L);
@@ -497,7 +509,7 @@ public class UserInfoServiceImpl implements UserInfoService {
                 user.getEmail() == null ? "" : user.getEmail()));
 
         UserSpaceDto userSpaceDto = new UserSpaceDto(); // 创建存储用户空间信息的UserSpaceDto对象
-        userSpaceDto.setUseSpace(fileInfoService.getUserUseSpace(user.getUserId()));
+        userSpaceDto.setUseSpace(user.getUseSpace());
         userSpaceDto.setTotalSpace(user.getTotalSpace());
         redisComponent.saveUserSpaceUse(user.getUserId(), userSpaceDto);
         return sessionWebUserDto; // 返回用户信息
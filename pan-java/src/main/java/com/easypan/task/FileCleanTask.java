@@ -1,33 +1,30 @@
 package com.easypan.task;
 
-import com.easypan.entity.enums.FileDelFlagEnums;
-import com.easypan.entity.po.FileInfo;
-import com.easypan.entity.query.FileInfoQuery;
-import com.easypan.service.FileInfoService;
+import com.easypan.component.FileCleanComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
+/**
+ * 清理回收站中超过10天的文件，各节点按分区锁分担
+ */
 @Component
 public class FileCleanTask {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileCleanTask.class);
+
     @Resource
-    private FileInfoService fileInfoService;
+    private FileCleanComponent fileCleanComponent;
 
     @Scheduled(fixedDelay = 1000 * 60 * 3)
     public void execute() {
-        FileInfoQuery fileInfoQuery = new FileInfoQuery();
-        fileInfoQuery.setDelFlag(FileDelFlagEnums.RECYCLE.getFlag());
-        fileInfoQuery.setQueryExpire(true);
-        List<FileInfo> fileInfoList = fileInfoService.findListByParam(fileInfoQuery);
-        Map<String, List<FileInfo>> fileInfoMap = fileInfoList.stream().collect(Collectors.groupingBy(FileInfo::getUserId));
-        for (Map.Entry<String, List<FileInfo>> entry : fileInfoMap.entrySet()) {
-            List<String> fileIds = entry.getValue().stream().map(p -> p.getFileId()).collect(Collectors.toList());
-            fileInfoService.delFileBatch(entry.getKey(), String.join(",", fileIds), false);
+        try {
+            fileCleanComponent.cleanExpired();
+        } catch (Exception e) {
+            logger.error("清理回收站过期文件失败", e);
         }
     }
 }
@@ -0,0 +1,30 @@
+package com.easypan.task;
+
+import com.easypan.component.FileCompressComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 清理磁盘上缓存的压缩版本
+ */
+@Component
+public class FileCompressCleanTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileCompressCleanTask.class);
+
+    @Resource
+    private FileCompressComponent fileCompressComponent;
+
+    @Scheduled(fixedDelay = 1000 * 60 * 60)
+    public void execute() {
+        try {
+            fileCompressComponent.cleanCache();
+        } catch (Exception e) {
+            logger.error("清理压缩文件失败", e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.easypan.task;
+
+import com.easypan.service.FileInfoService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 执行后台复制任务的节点停止后，由其他节点从保存的进度处继续
+ */
+@Component
+public class FileCopyResumeTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileCopyResumeTask.class);
+
+    @Resource
+    private FileInfoService fileInfoService;
+
+    @Scheduled(fixedDelay = 1000 * 60)
+    public void execute() {
+        try {
+            fileInfoService.resumeStaleFileCopyTask();
+        } catch (Exception e) {
+            logger.error("接管后台复制任务失败", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.easypan.task;
+
+import com.easypan.component.FileDedupComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 秒传布隆过滤器不存在时从索引表重建，已存在时只检查一次redis；同时补齐升级前登记的文件的抽样指纹
+ */
+@Component
+public class FileMd5BloomTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileMd5BloomTask.class);
+
+    @Resource
+    private FileDedupComponent fileDedupComponent;
+
+    @Scheduled(fixedDelay = 1000 * 60 * 5)
+    public void execute() {
+        try {
+            fileDedupComponent.rebuildBloomIfAbsent();
+        } catch (Exception e) {
+            logger.error("重建秒传布隆过滤器失败", e);
+        }
+        try {
+            fileDedupComponent.fillFingerprint();
+        } catch (Exception e) {
+            logger.error("补齐秒传索引抽样指纹失败", e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.easypan.task;
+
+import com.easypan.component.FilePurgeComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+
+/**
+ * 彻底删除超过保留期的文件从文件表移除
+ */
+@Component
+public class FilePurgeTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilePurgeTask.class);
+
+    @Resource
+    private FilePurgeComponent filePurgeComponent;
+
+    @Scheduled(fixedDelay = 1000 * 60 * 60)
+    public void execute() {
+        try {
+            filePurgeComponent.purgeDeleted();
+        } catch (Exception e) {
+            logger.error("归档彻底删除的文件失败", e);
+        }
+    }
+}
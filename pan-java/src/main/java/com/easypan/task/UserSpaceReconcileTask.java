@@ -0,0 +1,94 @@
+package com.easypan.task;
+
+import com.easypan.annotation.PrimaryDataSource;
+import com.easypan.component.FileShardComponent;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.po.UserInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.entity.query.SimplePage;
+import com.easypan.entity.query.UserInfoQuery;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.mappers.UserInfoMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 已使用空间核对
+ * user_info.use_space由各写操作按变化量维护，每天按用户分批与文件实际大小之和核对，只记录偏差不修改
+ */
+@Component
+public class UserSpaceReconcileTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSpaceReconcileTask.class);
+
+    private static final int BATCH_SIZE = 200;
+
+    @Resource
+    private UserInfoMapper<UserInfo, UserInfoQuery> userInfoMapper;
+
+    @Resource
+    private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
+
+    @Resource
+    private FileShardComponent fileShardComponent;
+
+    private volatile Map<String, Object> lastResult = new LinkedHashMap<>();
+
+    @Scheduled(cron = "0 0 4 * * ?")
+    @PrimaryDataSource
+    public void execute() {
+        long startTime = System.currentTimeMillis();
+        int userCount = 0;
+        int driftCount = 0;
+        long driftSpace = 0;
+        for (int start = 0; ; start += BATCH_SIZE) {
+            UserInfoQuery query = new UserInfoQuery();
+            query.setOrderBy("user_id");
+            query.setSimplePage(new SimplePage(start, BATCH_SIZE));
+            List<UserInfo> userList = userInfoMapper.selectList(query);
+            if (userList.isEmpty()) {
+                break;
+            }
+            List<String> userIdList = userList.stream().map(UserInfo::getUserId).collect(Collectors.toList());
+            // 分表后同一批用户分布在不同分表上，各分表的结果按用户相加
+            Map<String, Long> realSpaceMap = fileShardComponent.selectAllShards(() -> fileInfoMapper.selectUseSpaceByUserIds(userIdList)).stream()
+                    .collect(Collectors.toMap(UserInfo::getUserId, UserInfo::getUseSpace, Long::sum));
+            for (UserInfo userInfo : userList) {
+                long useSpace = userInfo.getUseSpace() == null ? 0L : userInfo.getUseSpace();
+                long realSpace = realSpaceMap.getOrDefault(userInfo.getUserId(), 0L);
+                if (useSpace != realSpace) {
+                    driftCount++;
+                    driftSpace += Math.abs(useSpace - realSpace);
+                    logger.warn("用户已使用空间与文件实际大小不一致,userId:{},useSpace:{},realSpace:{}", userInfo.getUserId(), useSpace, realSpace);
+                }
+            }
+            userCount += userList.size();
+            if (userList.size() < BATCH_SIZE) {
+                break;
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("userCount", userCount);
+        result.put("driftCount", driftCount);
+        result.put("driftSpace", driftSpace);
+        result.put("finishTime", System.currentTimeMillis());
+        result.put("costMillis", System.currentTimeMillis() - startTime);
+        lastResult = result;
+        logger.info("已使用空间核对完成,用户数:{},偏差用户数:{}", userCount, driftCount);
+    }
+
+    /**
+     * 最近一次核对结果
+     */
+    public Map<String, Object> getLastResult() {
+        return lastResult;
+    }
+}
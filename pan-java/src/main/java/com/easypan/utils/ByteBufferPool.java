@@ -0,0 +1,134 @@
+package com.easypan.utils;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文件读写缓冲区池
+ * 所有缓冲区大小相同，每个线程缓存一个，其余放在有界的全局队列中，
+ * 队列为空时临时分配，归还时队列已满则直接丢弃交给GC回收。
+ * 文件之间的拷贝（分片合并）使用直接内存缓冲区，配合FileChannel读写时不需要再经过堆内存；
+ * 写入Servlet输出流只能传byte[]，这类场景使用堆缓冲区，避免直接内存到数组的额外拷贝
+ */
+public class ByteBufferPool {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int MAX_POOL_SIZE = 256;
+
+    private static final ByteBufferPool DIRECT_POOL = new ByteBufferPool("direct", true, BUFFER_SIZE, MAX_POOL_SIZE);
+
+    private static final ByteBufferPool HEAP_POOL = new ByteBufferPool("heap", false, BUFFER_SIZE, MAX_POOL_SIZE);
+
+    private final String name;
+
+    private final boolean direct;
+
+    private final int bufferSize;
+
+    private final ArrayBlockingQueue<ByteBuffer> pool;
+
+    private final ThreadLocal<ByteBuffer> threadCache = new ThreadLocal<>();
+
+    private final AtomicLong acquireCount = new AtomicLong();
+
+    private final AtomicLong threadCacheHitCount = new AtomicLong();
+
+    private final AtomicLong poolHitCount = new AtomicLong();
+
+    private final AtomicLong allocateCount = new AtomicLong();
+
+    private final AtomicLong discardCount = new AtomicLong();
+
+    private final AtomicInteger inUseCount = new AtomicInteger();
+
+    ByteBufferPool(String name, boolean direct, int bufferSize, int maxPoolSize) {
+        this.name = name;
+        this.direct = direct;
+        this.bufferSize = bufferSize;
+        this.pool = new ArrayBlockingQueue<>(maxPoolSize);
+    }
+
+    /**
+     * 直接内存缓冲区池，用于FileChannel之间的读写
+     */
+    public static ByteBufferPool direct() {
+        return DIRECT_POOL;
+    }
+
+    /**
+     * 堆缓冲区池，用于需要byte[]的流式读写，通过array()取得底层数组
+     */
+    public static ByteBufferPool heap() {
+        return HEAP_POOL;
+    }
+
+    /**
+     * 获取缓冲区，使用完后必须调用release归还
+     *
+     * @return 已clear的缓冲区
+     */
+    public ByteBuffer acquire() {
+        acquireCount.incrementAndGet();
+        inUseCount.incrementAndGet();
+        ByteBuffer buffer = threadCache.get();
+        if (buffer != null) {
+            threadCache.remove();
+            threadCacheHitCount.incrementAndGet();
+        } else {
+            buffer = pool.poll();
+            if (buffer != null) {
+                poolHitCount.incrementAndGet();
+            } else {
+                allocateCount.incrementAndGet();
+                buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+            }
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize || buffer.isDirect() != direct) {
+            return;
+        }
+        inUseCount.decrementAndGet();
+        if (threadCache.get() == null) {
+            threadCache.set(buffer);
+            return;
+        }
+        if (!pool.offer(buffer)) {
+            discardCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 缓冲区池使用情况
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long acquire = acquireCount.get();
+        long allocate = allocateCount.get();
+        metrics.put("bufferSize", bufferSize);
+        metrics.put("acquireCount", acquire);
+        metrics.put("threadCacheHitCount", threadCacheHitCount.get());
+        metrics.put("poolHitCount", poolHitCount.get());
+        metrics.put("allocateCount", allocate);
+        metrics.put("discardCount", discardCount.get());
+        metrics.put("inUseCount", inUseCount.get());
+        metrics.put("pooledCount", pool.size());
+        metrics.put("hitRate", acquire == 0 ? 0D : (double) (acquire - allocate) / acquire);
+        return metrics;
+    }
+
+    public static Map<String, Object> getAllMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put(DIRECT_POOL.name, DIRECT_POOL.getMetrics());
+        metrics.put(HEAP_POOL.name, HEAP_POOL.getMetrics());
+        return metrics;
+    }
+}
@@ -0,0 +1,159 @@
+package com.easypan.benchmark;
+
+import com.easypan.utils.ByteBufferPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件读写缓冲区基准测试
+ * 对比每次请求新建byte[]与使用缓冲区池时的吞吐量和分配速率，
+ * 运行main方法，结果中的gc.alloc.rate.norm即每次操作分配的字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ByteBufferPoolBenchmark {
+
+    private static final int CHUNK_COUNT = 8;
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+
+    private File chunkDir;
+
+    private File sourceFile;
+
+    @Setup
+    public void setup() throws IOException {
+        chunkDir = Files.createTempDirectory("easypan_bench").toFile();
+        byte[] data = new byte[CHUNK_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            Files.write(new File(chunkDir, String.valueOf(i)).toPath(), data);
+        }
+        sourceFile = new File(chunkDir, "0");
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = chunkDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        chunkDir.delete();
+    }
+
+    @Benchmark
+    public void unionWithNewArray() throws IOException {
+        File target = File.createTempFile("union", ".tmp", chunkDir);
+        try (RandomAccessFile writeFile = new RandomAccessFile(target, "rw")) {
+            byte[] b = new byte[1024 * 10];
+            for (int i = 0; i < CHUNK_COUNT; i++) {
+                try (RandomAccessFile readFile = new RandomAccessFile(new File(chunkDir, String.valueOf(i)), "r")) {
+                    int len;
+                    while ((len = readFile.read(b)) != -1) {
+                        writeFile.write(b, 0, len);
+                    }
+                }
+            }
+        } finally {
+            target.delete();
+        }
+    }
+
+    @Benchmark
+    public void unionWithPooledDirectBuffer() throws IOException {
+        File target = File.createTempFile("union", ".tmp", chunkDir);
+        ByteBuffer buffer = ByteBufferPool.direct().acquire();
+        try (FileChannel writeChannel = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+            for (int i = 0; i < CHUNK_COUNT; i++) {
+                try (FileChannel readChannel = FileChannel.open(new File(chunkDir, String.valueOf(i)).toPath(), StandardOpenOption.READ)) {
+                    while (readChannel.read(buffer) != -1) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            writeChannel.write(buffer);
+                        }
+                        buffer.clear();
+                    }
+                }
+            }
+        } finally {
+            ByteBufferPool.direct().release(buffer);
+            target.delete();
+        }
+    }
+
+    @Benchmark
+    public void streamWithNewArray(Blackhole blackhole) throws IOException {
+        OutputStream out = new BlackholeOutputStream(blackhole);
+        try (FileInputStream in = new FileInputStream(sourceFile)) {
+            byte[] byteData = new byte[1024];
+            int len;
+            while ((len = in.read(byteData)) != -1) {
+                out.write(byteData, 0, len);
+            }
+        }
+    }
+
+    @Benchmark
+    public void streamWithPooledHeapBuffer(Blackhole blackhole) throws IOException {
+        OutputStream out = new BlackholeOutputStream(blackhole);
+        ByteBuffer buffer = ByteBufferPool.heap().acquire();
+        try (FileInputStream in = new FileInputStream(sourceFile)) {
+            byte[] byteData = buffer.array();
+            int len;
+            while ((len = in.read(byteData)) != -1) {
+                out.write(byteData, 0, len);
+            }
+        } finally {
+            ByteBufferPool.heap().release(buffer);
+        }
+    }
+
+    private static class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ByteBufferPoolBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,203 @@
+package com.easypan.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 目录子树查询基准测试
+ * 对比逐层按file_pid查询（N+1）、递归CTE和目录路径前缀三种方式查出整个子树的耗时，
+ * deep为单链深目录，wide为每层多个子目录的宽目录。
+ * 需要MySQL 8，通过-Dbench.jdbc.url、-Dbench.jdbc.user、-Dbench.jdbc.password指定数据库，
+ * 测试数据使用单独的用户ID，结束后删除
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileTreeQueryBenchmark {
+
+    private static final String USER_ID = "benchtree";
+
+    private static final String ROOT_ID = "b000000000";
+
+    /**
+     * 每个目录下的文件数
+     */
+    private static final int FILES_PER_FOLDER = 5;
+
+    /**
+     * 深目录层数，受tree_path长度限制
+     */
+    private static final int DEEP_LEVEL = 60;
+
+    /**
+     * 宽目录每层子目录数和层数
+     */
+    private static final int WIDE_FOLDERS = 12;
+
+    private static final int WIDE_LEVEL = 3;
+
+    @Param({"deep", "wide"})
+    private String shape;
+
+    private Connection connection;
+
+    private int idSeq;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:mysql://127.0.0.1:3306/easypan"),
+                System.getProperty("bench.jdbc.user", "root"),
+                System.getProperty("bench.jdbc.password", "root"));
+        clean();
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(
+                "insert into file_info(file_id, user_id, file_pid, file_name, folder_type, del_flag, tree_path) values(?,?,?,?,?,2,?)")) {
+            addRow(ps, ROOT_ID, "0", 1, "/" + ROOT_ID + "/");
+            if ("deep".equals(shape)) {
+                String pid = ROOT_ID;
+                String treePath = "/" + ROOT_ID + "/";
+                for (int level = 0; level < DEEP_LEVEL; level++) {
+                    addFiles(ps, pid, treePath);
+                    String folderId = nextId();
+                    treePath = treePath + folderId + "/";
+                    addRow(ps, folderId, pid, 1, treePath);
+                    pid = folderId;
+                }
+            } else {
+                addWide(ps, ROOT_ID, "/" + ROOT_ID + "/", 0);
+            }
+            ps.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        clean();
+        connection.close();
+    }
+
+    @Benchmark
+    public void recursiveQuery(Blackhole blackhole) throws SQLException {
+        List<String> fileIdList = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(
+                "select file_id, folder_type from file_info where user_id = ? and file_pid = ?")) {
+            findAllSubFile(ps, fileIdList, ROOT_ID);
+        }
+        blackhole.consume(fileIdList);
+    }
+
+    @Benchmark
+    public void recursiveCte(Blackhole blackhole) throws SQLException {
+        String sql = "WITH RECURSIVE sub_file AS ("
+                + " SELECT * FROM file_info WHERE user_id = ? AND file_pid = ?"
+                + " UNION ALL"
+                + " SELECT f.* FROM file_info f JOIN sub_file s ON f.file_pid = s.file_id AND s.folder_type = 1 WHERE f.user_id = ?"
+                + ") SELECT file_id FROM sub_file";
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setString(1, USER_ID);
+            ps.setString(2, ROOT_ID);
+            ps.setString(3, USER_ID);
+            blackhole.consume(readIds(ps));
+        }
+    }
+
+    @Benchmark
+    public void treePathPrefix(Blackhole blackhole) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "select file_id from file_info where user_id = ? and tree_path like concat(?, '%') and file_id != ?")) {
+            ps.setString(1, USER_ID);
+            ps.setString(2, "/" + ROOT_ID + "/");
+            ps.setString(3, ROOT_ID);
+            blackhole.consume(readIds(ps));
+        }
+    }
+
+    private void findAllSubFile(PreparedStatement ps, List<String> fileIdList, String filePid) throws SQLException {
+        List<String> folderIdList = new ArrayList<>();
+        ps.setString(1, USER_ID);
+        ps.setString(2, filePid);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                fileIdList.add(rs.getString(1));
+                if (rs.getInt(2) == 1) {
+                    folderIdList.add(rs.getString(1));
+                }
+            }
+        }
+        for (String folderId : folderIdList) {
+            findAllSubFile(ps, fileIdList, folderId);
+        }
+    }
+
+    private List<String> readIds(PreparedStatement ps) throws SQLException {
+        List<String> fileIdList = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                fileIdList.add(rs.getString(1));
+            }
+        }
+        return fileIdList;
+    }
+
+    private void addWide(PreparedStatement ps, String pid, String treePath, int level) throws SQLException {
+        addFiles(ps, pid, treePath);
+        if (level >= WIDE_LEVEL) {
+            return;
+        }
+        for (int i = 0; i < WIDE_FOLDERS; i++) {
+            String folderId = nextId();
+            addRow(ps, folderId, pid, 1, treePath + folderId + "/");
+            addWide(ps, folderId, treePath + folderId + "/", level + 1);
+        }
+    }
+
+    private void addFiles(PreparedStatement ps, String pid, String treePath) throws SQLException {
+        for (int i = 0; i < FILES_PER_FOLDER; i++) {
+            String fileId = nextId();
+            addRow(ps, fileId, pid, 0, treePath + fileId + "/");
+        }
+    }
+
+    private void addRow(PreparedStatement ps, String fileId, String pid, int folderType, String treePath) throws SQLException {
+        ps.setString(1, fileId);
+        ps.setString(2, USER_ID);
+        ps.setString(3, pid);
+        ps.setString(4, fileId);
+        ps.setInt(5, folderType);
+        ps.setString(6, treePath);
+        ps.addBatch();
+    }
+
+    private String nextId() {
+        return String.format("b%09d", ++idSeq);
+    }
+
+    private void clean() throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("delete from file_info where user_id = ?")) {
+            ps.setString(1, USER_ID);
+            ps.executeUpdate();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FileTreeQueryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,119 @@
+package com.easypan.benchmark;
+
+import com.easypan.component.IdGeneratorComponent;
+import com.easypan.entity.constants.Constants;
+import com.easypan.utils.StringTools;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 文件ID插入基准测试
+ * 对比随机ID与按时间递增的ID批量插入file_info的吞吐量，随着表变大随机ID插入主键中间导致页分裂，递增ID追加在末尾；
+ * generate只比较生成ID本身的耗时和分配，加上-prof gc看gc.alloc.rate.norm。
+ * 插入需要MySQL，通过-Dbench.jdbc.url、-Dbench.jdbc.user、-Dbench.jdbc.password指定数据库，
+ * 测试数据使用单独的用户ID，结束后删除
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IdInsertBenchmark {
+
+    private static final String USER_ID = "benchid";
+
+    /**
+     * 每次操作在一个事务中插入的行数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * 开始测量前预先插入的行数，表足够大时页分裂的差别才明显
+     */
+    private static final int PRELOAD_ROWS = 200000;
+
+    @Param({"random", "ordered"})
+    private String idType;
+
+    private final IdGeneratorComponent idGeneratorComponent = new IdGeneratorComponent();
+
+    private Connection connection;
+
+    @Setup
+    public void setup() throws SQLException {
+        idGeneratorComponent.setNode(1);
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url", "jdbc:mysql://127.0.0.1:3306/easypan?rewriteBatchedStatements=true"),
+                System.getProperty("bench.jdbc.user", "root"),
+                System.getProperty("bench.jdbc.password", "root"));
+        clean();
+        connection.setAutoCommit(false);
+        for (int i = 0; i < PRELOAD_ROWS / BATCH_SIZE; i++) {
+            insertBatch();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.setAutoCommit(true);
+        clean();
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insert() throws SQLException {
+        insertBatch();
+    }
+
+    @Benchmark
+    public String generate() {
+        return nextId();
+    }
+
+    private void insertBatch() throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(
+                "insert into file_info(file_id, user_id, file_pid, file_name, folder_type, del_flag, create_time, last_update_time)"
+                        + " values(?,?,'0',?,0,2,now(),now())")) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                String fileId = nextId();
+                ps.setString(1, fileId);
+                ps.setString(2, USER_ID);
+                ps.setString(3, fileId);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        connection.commit();
+    }
+
+    private String nextId() {
+        return "random".equals(idType) ? StringTools.getRandomString(Constants.LENGTH_10) : idGeneratorComponent.nextId();
+    }
+
+    private void clean() throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("delete from file_info where user_id = ?")) {
+            ps.setString(1, USER_ID);
+            ps.executeUpdate();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(IdInsertBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,76 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+
+/**
+ * 下载准入控制单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class DownloadAdmissionComponentTest {
+
+    @Mock
+    private AppConfig appConfig;
+
+    @InjectMocks
+    private DownloadAdmissionComponent downloadAdmissionComponent;
+
+    @TempDir
+    File tempDir;
+
+    private String filePath;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(appConfig.getDownloadAdmissionMaxConcurrent()).thenReturn(1);
+        lenient().when(appConfig.getDownloadAdmissionMaxQueue()).thenReturn(0);
+        lenient().when(appConfig.getDownloadAdmissionQueueTimeout()).thenReturn(10);
+        lenient().when(appConfig.getDownloadAdmissionRetryAfter()).thenReturn(2);
+        filePath = new File(tempDir, "test.txt").getPath();
+    }
+
+    @Test
+    void testRejectWhenQueueFull() {
+        DownloadAdmissionComponent.Permit permit = downloadAdmissionComponent.tryAcquire(filePath);
+        assertNotNull(permit, "未达到并发上限时应该直接放行");
+
+        assertNull(downloadAdmissionComponent.tryAcquire(filePath), "并发已满且不允许排队时应该拒绝");
+
+        permit.release();
+        permit.release();
+        DownloadAdmissionComponent.Permit next = downloadAdmissionComponent.tryAcquire(filePath);
+        assertNotNull(next, "释放后应该可以再次下载");
+        assertNull(downloadAdmissionComponent.tryAcquire(filePath), "重复释放不应该多出许可");
+        next.release();
+    }
+
+    @Test
+    void testQueueTimeout() {
+        lenient().when(appConfig.getDownloadAdmissionMaxQueue()).thenReturn(1);
+        DownloadAdmissionComponent.Permit permit = downloadAdmissionComponent.tryAcquire(filePath);
+
+        assertNull(downloadAdmissionComponent.tryAcquire(filePath), "排队超时应该拒绝");
+
+        Map<String, Object> metrics = downloadAdmissionComponent.getMetrics();
+        assertEquals(1, metrics.size());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> volume = (Map<String, Object>) metrics.values().iterator().next();
+        assertEquals(1, volume.get("active"));
+        assertEquals(1L, volume.get("queuedCount"));
+        assertEquals(1L, volume.get("rejectCount"));
+        assertEquals(0, volume.get("waiting"));
+        permit.release();
+    }
+}
@@ -0,0 +1,135 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.DownloadFileDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 下载码本地缓存单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class DownloadFileCacheTest {
+
+    private static final String CODE = "code1";
+
+    @Mock
+    private RedisComponent redisComponent;
+
+    @Mock
+    private AppConfig appConfig;
+
+    @InjectMocks
+    private DownloadFileCache downloadFileCache;
+
+    @TempDir
+    File tempDir;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        File file = new File(tempDir, Constants.FILE_FOLDER_FILE + "202401/a.txt");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), new byte[100]);
+        DownloadFileDto downloadFileDto = new DownloadFileDto();
+        downloadFileDto.setDownloadCode(CODE);
+        downloadFileDto.setFilePath("202401/a.txt");
+        lenient().when(appConfig.getProjectFolder()).thenReturn(tempDir.getAbsolutePath());
+        lenient().when(redisComponent.getDownloadCode(CODE)).thenReturn(downloadFileDto);
+    }
+
+    @Test
+    void testHit() {
+        DownloadFileCache.Entry first = downloadFileCache.acquire(CODE);
+        DownloadFileCache.Entry second = downloadFileCache.acquire(CODE);
+        assertSame(first, second);
+        assertEquals(100, first.getFileSize());
+        verify(redisComponent, times(1)).getDownloadCode(CODE);
+        downloadFileCache.release(first);
+        downloadFileCache.release(second);
+        //缓存自身仍持有引用
+        assertTrue(first.getFileChannel().isOpen());
+
+        assertNull(downloadFileCache.acquire("missing"));
+        assertNull(downloadFileCache.acquire("missing"));
+        verify(redisComponent, times(2)).getDownloadCode("missing");
+    }
+
+    @Test
+    void testExpiry() {
+        DownloadFileCache.Entry first = downloadFileCache.acquire(CODE);
+        ReflectionTestUtils.setField(first, "expireTime", System.currentTimeMillis() - 1);
+        DownloadFileCache.Entry second = downloadFileCache.acquire(CODE);
+        assertNotSame(first, second);
+        verify(redisComponent, times(2)).getDownloadCode(CODE);
+        //过期的缓存在最后一个使用者释放后关闭
+        assertTrue(first.getFileChannel().isOpen());
+        downloadFileCache.release(first);
+        assertFalse(first.getFileChannel().isOpen());
+
+        downloadFileCache.release(second);
+        ReflectionTestUtils.setField(second, "expireTime", System.currentTimeMillis() - 1);
+        downloadFileCache.evictExpired();
+        assertFalse(second.getFileChannel().isOpen());
+    }
+
+    @Test
+    void testEvict() {
+        DownloadFileCache.Entry first = downloadFileCache.acquire(CODE);
+        downloadFileCache.evict(CODE);
+        assertTrue(first.getFileChannel().isOpen(), "正在读取的分片不受影响");
+        downloadFileCache.release(first);
+        assertFalse(first.getFileChannel().isOpen());
+
+        DownloadFileCache.Entry second = downloadFileCache.acquire(CODE);
+        assertNotSame(first, second);
+        downloadFileCache.release(second);
+        downloadFileCache.destroy();
+        assertFalse(second.getFileChannel().isOpen());
+    }
+
+    @Test
+    void testConcurrentLoadOnce() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        DownloadFileDto downloadFileDto = redisComponent.getDownloadCode(CODE);
+        reset(redisComponent);
+        when(redisComponent.getDownloadCode(CODE)).thenAnswer(invocation -> {
+            loading.countDown();
+            proceed.await(5, TimeUnit.SECONDS);
+            return downloadFileDto;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<DownloadFileCache.Entry>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> downloadFileCache.acquire(CODE)));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 3; i++) {
+            futures.add(executor.submit(() -> downloadFileCache.acquire(CODE)));
+        }
+        //加载在map之外进行，加载期间其他下载码不受影响
+        assertNull(downloadFileCache.acquire("missing"));
+        proceed.countDown();
+        DownloadFileCache.Entry entry = futures.get(0).get(5, TimeUnit.SECONDS);
+        for (Future<DownloadFileCache.Entry> future : futures) {
+            assertSame(entry, future.get(5, TimeUnit.SECONDS));
+            downloadFileCache.release(entry);
+        }
+        executor.shutdown();
+        verify(redisComponent, times(1)).getDownloadCode(CODE);
+    }
+}
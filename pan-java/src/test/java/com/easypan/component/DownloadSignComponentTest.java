@@ -0,0 +1,119 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.dto.DownloadFileDto;
+import com.easypan.entity.enums.FileFolderTypeEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.service.FileInfoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+
+/**
+ * 签名下载码单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class DownloadSignComponentTest {
+
+    @Mock
+    private AppConfig appConfig;
+
+    @Mock
+    private FileInfoService fileInfoService;
+
+    @InjectMocks
+    private DownloadSignComponent downloadSignComponent;
+
+    private FileInfo fileInfo;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(appConfig.getDownloadSignEnable()).thenReturn(true);
+        lenient().when(appConfig.getDownloadSignSecret()).thenReturn("test_secret_0123456789");
+        lenient().when(appConfig.getDownloadSignExpire()).thenReturn(300);
+
+        fileInfo = new FileInfo();
+        fileInfo.setFileId("f1");
+        fileInfo.setUserId("u1");
+        fileInfo.setFolderType(FileFolderTypeEnums.FILE.getType());
+        fileInfo.setFilePath("202401/12345abcde.txt");
+        fileInfo.setFileName("测试 文件.txt");
+        lenient().when(fileInfoService.getFileInfoByFileIdAndUserId("f1", "u1")).thenReturn(fileInfo);
+    }
+
+    @Test
+    void testSignAndVerify() {
+        String code = downloadSignComponent.sign("f1", "u1");
+
+        assertTrue(downloadSignComponent.isSignedCode(code));
+        DownloadFileDto result = downloadSignComponent.verify(code);
+        assertNotNull(result, "签名下载码应该校验通过");
+        assertEquals(fileInfo.getFilePath(), result.getFilePath(), "文件路径应该从服务端查询");
+        assertEquals(fileInfo.getFileName(), result.getFileName());
+        assertEquals(code, result.getDownloadCode());
+    }
+
+    @Test
+    void testVerify_FileGoneOrUnsafePath() {
+        String code = downloadSignComponent.sign("f1", "u1");
+        fileInfo.setFilePath("../../etc/passwd");
+        assertNull(downloadSignComponent.verify(code), "不合法的文件路径应该校验失败");
+
+        lenient().when(fileInfoService.getFileInfoByFileIdAndUserId("f1", "u1")).thenReturn(null);
+        assertNull(downloadSignComponent.verify(code), "文件不存在时应该校验失败");
+    }
+
+    @Test
+    void testVerify_TamperedPayload() {
+        String code = downloadSignComponent.sign("f1", "u1");
+        String tampered = "A" + code.substring(1);
+
+        assertNull(downloadSignComponent.verify(tampered), "篡改后的下载码应该校验失败");
+    }
+
+    @Test
+    void testVerify_WrongSecret() {
+        String code = downloadSignComponent.sign("f1", "u1");
+
+        DownloadSignComponent otherNode = new DownloadSignComponent();
+        AppConfig otherConfig = org.mockito.Mockito.mock(AppConfig.class);
+        lenient().when(otherConfig.getDownloadSignEnable()).thenReturn(true);
+        lenient().when(otherConfig.getDownloadSignSecret()).thenReturn("other_secret_0123456789");
+        org.springframework.test.util.ReflectionTestUtils.setField(otherNode, "appConfig", otherConfig);
+
+        assertNull(otherNode.verify(code), "密钥不一致的节点应该校验失败");
+    }
+
+    @Test
+    void testVerify_Expired() {
+        lenient().when(appConfig.getDownloadSignExpire()).thenReturn(-1);
+        String code = downloadSignComponent.sign("f1", "u1");
+
+        assertNull(downloadSignComponent.verify(code), "过期的下载码应该校验失败");
+    }
+
+    @Test
+    void testRedisCodeIsNotSigned() {
+        assertFalse(downloadSignComponent.isSignedCode("abcdefghijABCDEFGHIJ0123456789abcdefghijABCDEFGHIJ"));
+        assertNull(downloadSignComponent.verify("not.base64!"));
+    }
+
+    @Test
+    void testInit_RequiresSecret() {
+        downloadSignComponent.init();
+
+        lenient().when(appConfig.getDownloadSignSecret()).thenReturn("");
+        assertThrows(IllegalStateException.class, () -> downloadSignComponent.init(), "启用签名但未配置密钥时应该启动失败");
+        lenient().when(appConfig.getDownloadSignSecret()).thenReturn("easypan_download_sign_secret");
+        assertThrows(IllegalStateException.class, () -> downloadSignComponent.init(), "不能使用随配置文件发布过的密钥");
+
+        lenient().when(appConfig.getDownloadSignEnable()).thenReturn(false);
+        downloadSignComponent.init();
+    }
+}
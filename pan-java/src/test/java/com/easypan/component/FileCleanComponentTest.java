@@ -0,0 +1,111 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.service.FileInfoService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 回收站过期文件清理单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class FileCleanComponentTest {
+
+    @Mock
+    private AppConfig appConfig;
+
+    @Mock
+    private RedisUtils<Object> redisUtils;
+
+    @Mock
+    private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
+
+    @Mock
+    private FileShardComponent fileShardComponent;
+
+    @Mock
+    private FileInfoService fileInfoService;
+
+    @InjectMocks
+    private FileCleanComponent fileCleanComponent;
+
+    @BeforeEach
+    void setUp() {
+        when(appConfig.getFileCleanPartitionCount()).thenReturn(1);
+        when(appConfig.getFileCleanRate()).thenReturn(0);
+        when(fileShardComponent.selectAllShards(any(), any(), anyInt())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(redisUtils.renewLock(anyString(), any(), anyLong())).thenReturn(true);
+    }
+
+    private static FileInfo file(String userId, String fileId) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setUserId(userId);
+        fileInfo.setFileId(fileId);
+        return fileInfo;
+    }
+
+    @Test
+    void testSkipLockedPartition() {
+        when(redisUtils.setnx(anyString(), any(), anyLong())).thenReturn(false);
+        fileCleanComponent.cleanExpired();
+        verifyNoInteractions(fileInfoMapper, fileInfoService);
+        assertEquals(1L, fileCleanComponent.getMetrics().get("lockSkipCount"));
+    }
+
+    @Test
+    void testCleanByCursorAndUser() {
+        when(redisUtils.setnx(eq(Constants.REDIS_KEY_FILE_CLEAN_LOCK + 0), any(), anyLong())).thenReturn(true);
+        List<FileInfo> first = new ArrayList<>();
+        for (int i = 0; i < Constants.FILE_CLEAN_BATCH_SIZE; i++) {
+            first.add(file(i < 2 ? "u1" : "u2", String.format("f%04d", i)));
+        }
+        when(fileInfoMapper.selectExpiredRecycleBatch(anyInt(), eq(1), eq(0), isNull(), isNull(), anyInt())).thenReturn(first);
+        when(fileInfoMapper.selectExpiredRecycleBatch(anyInt(), eq(1), eq(0), eq("u2"), eq(String.format("f%04d", Constants.FILE_CLEAN_BATCH_SIZE - 1)), anyInt()))
+                .thenReturn(Collections.singletonList(file("u3", "g0001")));
+
+        fileCleanComponent.cleanExpired();
+
+        verify(fileInfoService).delFileBatch("u1", "f0000,f0001", false);
+        verify(fileInfoService).delFileBatch(eq("u2"), anyString(), eq(false));
+        verify(fileInfoService).delFileBatch("u3", "g0001", false);
+        verify(redisUtils).renewLock(eq(Constants.REDIS_KEY_FILE_CLEAN_LOCK + 0), any(), anyLong());
+        verify(redisUtils).unlock(eq(Constants.REDIS_KEY_FILE_CLEAN_LOCK + 0), any());
+        assertEquals((long) Constants.FILE_CLEAN_BATCH_SIZE + 1, fileCleanComponent.getMetrics().get("cleanFileCount"));
+        assertEquals(2L, fileCleanComponent.getMetrics().get("batchCount"));
+    }
+
+    @Test
+    void testFailedUserDoesNotStopBatch() {
+        when(redisUtils.setnx(anyString(), any(), anyLong())).thenReturn(true);
+        when(fileInfoMapper.selectExpiredRecycleBatch(anyInt(), anyInt(), anyInt(), any(), any(), anyInt()))
+                .thenReturn(Arrays.asList(file("u1", "a"), file("u2", "b")));
+        doThrow(new RuntimeException("db")).when(fileInfoService).delFileBatch("u1", "a", false);
+
+        fileCleanComponent.cleanExpired();
+
+        verify(fileInfoService).delFileBatch("u2", "b", false);
+        assertEquals(1L, fileCleanComponent.getMetrics().get("failUserCount"));
+        assertEquals(1L, fileCleanComponent.getMetrics().get("cleanFileCount"));
+    }
+}
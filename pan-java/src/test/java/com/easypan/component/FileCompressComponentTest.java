@@ -0,0 +1,158 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.lenient;
+
+/**
+ * 文本文件压缩传输单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class FileCompressComponentTest {
+
+    @Mock
+    private AppConfig appConfig;
+
+    @InjectMocks
+    private FileCompressComponent fileCompressComponent;
+
+    @TempDir
+    File tempDir;
+
+    private File textFile;
+
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        lenient().when(appConfig.getCompressEnable()).thenReturn(true);
+        lenient().when(appConfig.getProjectFolder()).thenReturn(tempDir.getPath());
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            builder.append("2024-01-01 00:00:00 INFO line ").append(i).append('\n');
+        }
+        content = builder.toString().getBytes(StandardCharsets.UTF_8);
+        File folder = new File(tempDir, Constants.FILE_FOLDER_FILE + "202401");
+        folder.mkdirs();
+        textFile = new File(folder, "test.txt");
+        Files.write(textFile.toPath(), content);
+    }
+
+    @Test
+    void testGzip() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "gzip, deflate, br");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(fileCompressComponent.writeCompressed(request, response, textFile.getPath()));
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertTrue(response.getContentAsByteArray().length < content.length, "压缩后应该更小");
+        assertArrayEquals(content, gunzip(response.getContentAsByteArray()));
+    }
+
+    @Test
+    void testDeflateOnly() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "gzip;q=0, deflate");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(fileCompressComponent.writeCompressed(request, response, textFile.getPath()));
+        assertEquals("deflate", response.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    void testRangeFallbackToIdentity() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "gzip");
+        request.addHeader("Range", "bytes=0-99");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(fileCompressComponent.writeCompressed(request, response, textFile.getPath()), "Range请求应该按原文件返回");
+        assertNull(response.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    void testNotCompressible() throws IOException {
+        File imageFile = new File(textFile.getParentFile(), "test.png");
+        Files.write(imageFile.toPath(), content);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(fileCompressComponent.writeCompressed(request, response, imageFile.getPath()));
+    }
+
+    @Test
+    void testVideoSegmentNotCompressed() throws IOException {
+        File tsFile = new File(textFile.getParentFile(), "u1abc_0001.ts");
+        Files.write(tsFile.toPath(), content);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Accept-Encoding", "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(fileCompressComponent.writeCompressed(request, response, tsFile.getPath()), ".ts同时是视频切片的后缀，不压缩");
+        assertNull(response.getHeader("Content-Encoding"));
+    }
+
+    @Test
+    void testCleanCache() throws IOException {
+        File cacheFolder = new File(tempDir, Constants.FILE_FOLDER_COMPRESS + "202401");
+        cacheFolder.mkdirs();
+        long now = System.currentTimeMillis();
+        File cacheFile = new File(cacheFolder, "test.txt.gz");
+        Files.write(cacheFile.toPath(), new byte[]{1});
+        cacheFile.setLastModified(now);
+        File expiredFile = new File(cacheFolder, "old.txt.gz");
+        Files.write(expiredFile.toPath(), new byte[]{1});
+        expiredFile.setLastModified(now - TimeUnit.DAYS.toMillis(Constants.COMPRESS_CACHE_EXPIRES_DAYS + 1));
+        File orphanFile = new File(cacheFolder, "deleted.txt.gz");
+        Files.write(orphanFile.toPath(), new byte[]{1});
+        File staleFile = new File(cacheFolder, "stale.txt.gz");
+        Files.write(staleFile.toPath(), new byte[]{1});
+        staleFile.setLastModified(now - 60000);
+        File changedFile = new File(textFile.getParentFile(), "stale.txt");
+        Files.write(changedFile.toPath(), content);
+        changedFile.setLastModified(now);
+
+        fileCompressComponent.cleanCache();
+
+        assertTrue(cacheFile.exists());
+        assertFalse(expiredFile.exists(), "超过有效期没有访问的删除");
+        assertFalse(orphanFile.exists(), "原文件已删除的删除");
+        assertFalse(staleFile.exists(), "原文件已修改的删除");
+    }
+
+    private byte[] gunzip(byte[] data) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[1024];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+}
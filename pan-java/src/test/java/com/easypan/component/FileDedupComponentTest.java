@@ -0,0 +1,116 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.po.FileMd5Index;
+import com.easypan.mappers.FileMd5IndexMapper;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 秒传索引单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class FileDedupComponentTest {
+
+    private static final String MD5 = "d41d8cd98f00b204e9800998ecf8427e";
+
+    @Mock
+    private RedisUtils<Object> redisUtils;
+
+    @Mock
+    private FileMd5IndexMapper fileMd5IndexMapper;
+
+    @Mock
+    private AppConfig appConfig;
+
+    @InjectMocks
+    private FileDedupComponent fileDedupComponent;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testBloomRejectSkipsDatabase() {
+        when(redisUtils.execute(any(), anyList(), any())).thenReturn(0L);
+        assertNull(fileDedupComponent.findFile(MD5));
+        verifyNoInteractions(fileMd5IndexMapper);
+        assertEquals(1L, fileDedupComponent.getMetrics().get("bloomRejectCount"));
+    }
+
+    @Test
+    void testFindFileAndRemoveStale() throws Exception {
+        when(redisUtils.execute(any(), anyList(), any())).thenReturn(1L);
+        when(appConfig.getProjectFolder()).thenReturn(tempDir.toString());
+        FileMd5Index index = new FileMd5Index();
+        index.setFileMd5(MD5);
+        index.setFilePath("202301/a.txt");
+        index.setFileSize(10L);
+        when(fileMd5IndexMapper.selectByFileMd5(MD5)).thenReturn(index);
+
+        assertNull(fileDedupComponent.findFile(MD5));
+        verify(fileMd5IndexMapper).deleteByFileMd5(MD5, "202301/a.txt");
+
+        File file = tempDir.resolve("file/202301/a.txt").toFile();
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), new byte[10]);
+        FileInfo fileInfo = fileDedupComponent.findFile(MD5);
+        assertEquals("202301/a.txt", fileInfo.getFilePath());
+        assertEquals(10L, fileInfo.getFileSize());
+    }
+
+    @Test
+    void testFingerprint() throws Exception {
+        byte[] small = new byte[1000];
+        new Random(1).nextBytes(small);
+        File smallFile = Files.write(tempDir.resolve("small"), small).toFile();
+        assertEquals(DigestUtils.md5Hex(small), FileDedupComponent.computeFingerprint(smallFile));
+
+        int sample = 64 * 1024;
+        byte[] large = new byte[sample * 5 + 7];
+        new Random(2).nextBytes(large);
+        File largeFile = Files.write(tempDir.resolve("large"), large).toFile();
+        int middle = (large.length - sample) / 2;
+        byte[] samples = new byte[sample * 3];
+        System.arraycopy(large, 0, samples, 0, sample);
+        System.arraycopy(large, middle, samples, sample, sample);
+        System.arraycopy(large, large.length - sample, samples, sample * 2, sample);
+        assertEquals(DigestUtils.md5Hex(samples), FileDedupComponent.computeFingerprint(largeFile));
+    }
+
+    @Test
+    void testFingerprintPreCheck() {
+        when(redisUtils.execute(any(), anyList(), any())).thenReturn(0L, 1L);
+        assertFalse(fileDedupComponent.mightExist(100L, MD5));
+        verifyNoInteractions(fileMd5IndexMapper);
+        when(fileMd5IndexMapper.selectCountByFingerprint(100L, MD5)).thenReturn(1);
+        assertTrue(fileDedupComponent.mightExist(100L, MD5.toUpperCase()));
+    }
+
+    @Test
+    void testBitOffsets() {
+        Object[] offsets = FileDedupComponent.getBitOffsets(MD5);
+        assertEquals(7, offsets.length);
+        assertEquals(7, new HashSet<>(Arrays.asList(offsets)).size());
+        assertArrayEquals(offsets, FileDedupComponent.getBitOffsets(MD5.toUpperCase()));
+        for (Object offset : FileDedupComponent.getBitOffsets("not-a-md5")) {
+            assertTrue((Long) offset >= 0 && (Long) offset < (1L << 27));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.easypan.component;
+
+import com.easypan.entity.po.FileInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 文件信息缓存单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class FileInfoCacheComponentTest {
+
+    @Mock
+    private RedisUtils<Object> redisUtils;
+
+    @InjectMocks
+    private FileInfoCacheComponent fileInfoCacheComponent;
+
+    @Test
+    void testReadThrough() {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFileId("f1");
+        fileInfo.setUserId("u1");
+        fileInfo.setTreePath("/f1/");
+
+        FileInfo result = fileInfoCacheComponent.get("f1", "u1", () -> fileInfo);
+        assertEquals("/f1/", result.getTreePath());
+        verify(redisUtils).setex(eq("easypan:fileinfo:data:u1:0.0:f1"), contains("/f1/"), anyLong());
+
+        // 本地缓存命中，返回的是副本
+        result.setFileName("changed");
+        FileInfo cached = fileInfoCacheComponent.get("f1", "u1", () -> fail("命中缓存时不应该查询数据库"));
+        assertNull(cached.getFileName());
+        assertEquals(1L, fileInfoCacheComponent.getMetrics().get("localHitCount"));
+    }
+
+    @Test
+    void testRedisHit() {
+        lenient().when(redisUtils.get("easypan:fileinfo:data:u1:0.0:f1")).thenReturn("{\"fileId\":\"f1\",\"userId\":\"u1\",\"treePath\":\"/f1/\"}");
+        FileInfo result = fileInfoCacheComponent.get("f1", "u1", () -> fail("命中缓存时不应该查询数据库"));
+        assertEquals("/f1/", result.getTreePath());
+        assertEquals(1L, fileInfoCacheComponent.getMetrics().get("redisHitCount"));
+    }
+
+    @Test
+    void testEvict() {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFileId("f1");
+        fileInfoCacheComponent.get("f1", "u1", () -> fileInfo);
+
+        fileInfoCacheComponent.evict("f1", "u1");
+        verify(redisUtils).delete("easypan:fileinfo:data:u1:0.0:f1");
+        verify(redisUtils).publish(anyString(), eq("f:u1:f1"));
+        assertEquals(2, fileInfoCacheComponent.get("f1", "u1", () -> {
+            fileInfo.setFileCategory(2);
+            return fileInfo;
+        }).getFileCategory());
+
+        // 按用户失效后使用新版本号的key
+        when(redisUtils.incr("easypan:fileinfo:gen:u1")).thenReturn(1L);
+        fileInfoCacheComponent.evictUser("u1");
+        verify(redisUtils).publish(anyString(), eq("u:u1:1"));
+        fileInfoCacheComponent.get("f1", "u1", () -> fileInfo);
+        verify(redisUtils).setex(eq("easypan:fileinfo:data:u1:1.0:f1"), anyString(), anyLong());
+    }
+}
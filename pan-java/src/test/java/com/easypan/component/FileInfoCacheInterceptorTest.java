@@ -0,0 +1,85 @@
+package com.easypan.component;
+
+import com.easypan.entity.po.FileInfo;
+import com.easypan.mappers.FileInfoMapper;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 文件信息缓存拦截器单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class FileInfoCacheInterceptorTest {
+
+    @Mock
+    private FileInfoCacheComponent fileInfoCacheComponent;
+
+    @InjectMocks
+    private FileInfoCacheInterceptor fileInfoCacheInterceptor;
+
+    private static MappedStatement statement(String method, SqlCommandType type) {
+        return new MappedStatement.Builder(new Configuration(), FileInfoMapper.class.getName() + "." + method,
+                parameterObject -> null, type).build();
+    }
+
+    private static FileInfo fileInfo(String fileId) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFileId(fileId);
+        return fileInfo;
+    }
+
+    private void evict(String method, SqlCommandType type, Map<String, Object> paramMap) {
+        ReflectionTestUtils.invokeMethod(fileInfoCacheInterceptor, "evict", statement(method, type), paramMap);
+    }
+
+    @Test
+    void testListWithoutUserId() {
+        Map<String, Object> paramMap = new HashMap<>();
+        paramMap.put("userId", "u1");
+        paramMap.put("filePid", "p1");
+        paramMap.put("list", Arrays.asList(fileInfo("f1"), fileInfo("f2")));
+        evict("updateFileNameBatch", SqlCommandType.UPDATE, paramMap);
+        //列表中没有用户ID时取语句的用户ID逐条删除
+        verify(fileInfoCacheComponent).evict("f1", "u1");
+        verify(fileInfoCacheComponent).evict("f2", "u1");
+        verify(fileInfoCacheComponent, never()).evictUser(any());
+        verify(fileInfoCacheComponent, never()).evictAll();
+    }
+
+    @Test
+    void testFolderRollup() {
+        Map<String, Object> paramMap = new HashMap<>();
+        paramMap.put("userId", "u1");
+        paramMap.put("rollupList", Arrays.asList(fileInfo("d1"), fileInfo("d2")));
+        evict("updateFolderRollup", SqlCommandType.UPDATE, paramMap);
+        verify(fileInfoCacheComponent).evict("d1", "u1");
+        verify(fileInfoCacheComponent).evict("d2", "u1");
+        verify(fileInfoCacheComponent, never()).evictUser(any());
+    }
+
+    @Test
+    void testInsertAndUnknownUser() {
+        Map<String, Object> paramMap = new HashMap<>();
+        paramMap.put("list", Arrays.asList(fileInfo("f1")));
+        evict("insertBatch", SqlCommandType.INSERT, paramMap);
+        verifyNoInteractions(fileInfoCacheComponent);
+
+        //确定不了用户时全部失效
+        evict("insertOrUpdateBatch", SqlCommandType.INSERT, paramMap);
+        verify(fileInfoCacheComponent).evictAll();
+    }
+}
@@ -0,0 +1,81 @@
+package com.easypan.component;
+
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.entity.vo.PaginationResultVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 目录列表缓存单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class FileListCacheComponentTest {
+
+    @Mock
+    private RedisUtils<Object> redisUtils;
+
+    @InjectMocks
+    private FileListCacheComponent fileListCacheComponent;
+
+    @Test
+    void testFolderListCache() {
+        FileInfoQuery query = new FileInfoQuery();
+        query.setUserId("u1");
+        query.setFilePid("p1");
+        query.setDelFlag(2);
+        query.setOrderBy("last_update_time desc");
+        query.setPageNo(1);
+
+        when(redisUtils.multiGet(Arrays.asList("easypan:list:version:u1:p1", "easypan:list:version:u1:tree"))).thenReturn(Arrays.asList(3, null));
+        String cacheKey = "easypan:list:file:u1:p1:3.0.:null:2:last_update_time desc:1:null";
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFileId("f1");
+        PaginationResultVO<FileInfo> result = new PaginationResultVO<>(1, 15, 1, 1, Collections.singletonList(fileInfo));
+        assertSame(result, fileListCacheComponent.getList("file", query, () -> result));
+
+        ArgumentCaptor<Object> value = ArgumentCaptor.forClass(Object.class);
+        verify(redisUtils).setex(eq(cacheKey), value.capture(), anyLong());
+        when(redisUtils.get(cacheKey)).thenReturn(value.getValue());
+        PaginationResultVO<FileInfo> cached = fileListCacheComponent.getList("file", query, () -> fail("命中缓存时不应该查询数据库"));
+        assertEquals(1, cached.getTotalCount());
+        assertEquals("f1", cached.getList().get(0).getFileId());
+
+        Map<String, Object> metrics = (Map<String, Object>) fileListCacheComponent.getMetrics().get("file");
+        assertEquals(1L, metrics.get("hitCount"));
+        assertEquals(1L, metrics.get("missCount"));
+    }
+
+    @Test
+    void testFilterSkipCache() {
+        FileInfoQuery query = new FileInfoQuery();
+        query.setUserId("u1");
+        query.setDelFlag(2);
+        query.setFileNameFuzzy("abc");
+        PaginationResultVO<FileInfo> result = new PaginationResultVO<>();
+        assertSame(result, fileListCacheComponent.getList("file", query, () -> result));
+        verifyNoInteractions(redisUtils);
+    }
+
+    @Test
+    void testChangeVersion() {
+        fileListCacheComponent.fileListChange("u1").addPath("/a/b/").submit();
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        verify(redisUtils).execute(any(), keys.capture(), any());
+        assertEquals(Arrays.asList("easypan:list:version:u1:all", "easypan:list:version:u1:0", "easypan:list:version:u1:a",
+                "easypan:list:version:u1:b"), keys.getValue());
+    }
+}
@@ -0,0 +1,128 @@
+package com.easypan.component;
+
+import com.easypan.entity.enums.FileDelFlagEnums;
+import com.easypan.entity.enums.FileFolderTypeEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.mappers.FileInfoMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 挂载目录单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class FileMountComponentTest {
+
+    @Mock
+    private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
+
+    @InjectMocks
+    private FileMountComponent fileMountComponent;
+
+    private static FileInfo folder(String fileId, String userId, String filePid, String treePath) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFileId(fileId);
+        fileInfo.setUserId(userId);
+        fileInfo.setFilePid(filePid);
+        fileInfo.setTreePath(treePath);
+        fileInfo.setFileName(fileId);
+        fileInfo.setFolderType(FileFolderTypeEnums.FOLDER.getType());
+        fileInfo.setDelFlag(FileDelFlagEnums.USING.getFlag());
+        return fileInfo;
+    }
+
+    private static FileInfo mount(String fileId, String userId, String refUserId, String refFileId) {
+        FileInfo fileInfo = folder(fileId, userId, "0", "/" + fileId + "/");
+        fileInfo.setRefUserId(refUserId);
+        fileInfo.setRefFileId(refFileId);
+        return fileInfo;
+    }
+
+    @Test
+    void testMaterializedId() {
+        String fileId = FileMountComponent.getMaterializedId("mount00001", "source0001");
+        assertEquals(10, fileId.length());
+        assertTrue(fileId.matches("[0-9A-Za-z]+"));
+        assertEquals(fileId, FileMountComponent.getMaterializedId("mount00001", "source0001"));
+        assertNotEquals(fileId, FileMountComponent.getMaterializedId("mount00002", "source0001"));
+        assertEquals(fileId + "-c", FileMountComponent.getMaterializedId("mount00001-source0001-c"));
+        assertEquals("M", FileMountComponent.getMountFileId("M-a-b"));
+        assertFalse(FileMountComponent.isVirtualId("abc"));
+    }
+
+    @Test
+    void testResolveMountChildren() {
+        when(fileInfoMapper.selectByFileIdAndUserId("M", "u1")).thenReturn(mount("M", "u1", "u2", "S"));
+        when(fileInfoMapper.selectByFileIdAndUserId("S", "u2")).thenReturn(folder("S", "u2", "0", "/S/"));
+        when(fileInfoMapper.selectByFileIdAndUserId("B", "u2")).thenReturn(folder("B", "u2", "A", "/S/A/B/"));
+
+        FileMountComponent.MountNode root = fileMountComponent.resolve("u1", "M");
+        assertEquals("S", root.getSourceFolderId());
+        assertEquals("M", root.getChildIdPrefix());
+
+        FileMountComponent.MountNode node = fileMountComponent.resolve("u1", "M-B");
+        assertEquals("M-B", node.getFileInfo().getFileId());
+        assertEquals("M-A", node.getFileInfo().getFilePid());
+        assertEquals("u1", node.getFileInfo().getUserId());
+        assertNull(node.getFileInfo().getTreePath());
+        assertEquals("B", node.getSourceFolderId());
+        assertEquals("u2", node.getSource().getUserId());
+        assertEquals("M", node.getChildIdPrefix());
+    }
+
+    @Test
+    void testResolveRejectsOutsideSource() {
+        when(fileInfoMapper.selectByFileIdAndUserId("M", "u1")).thenReturn(mount("M", "u1", "u2", "S"));
+        when(fileInfoMapper.selectByFileIdAndUserId("S", "u2")).thenReturn(folder("S", "u2", "0", "/S/"));
+        when(fileInfoMapper.selectByFileIdAndUserId("X", "u2")).thenReturn(folder("X", "u2", "0", "/X/"));
+        FileInfo deleted = folder("D", "u2", "S", "/S/D/");
+        deleted.setDelFlag(FileDelFlagEnums.RECYCLE.getFlag());
+        when(fileInfoMapper.selectByFileIdAndUserId("D", "u2")).thenReturn(deleted);
+
+        assertNull(fileMountComponent.resolve("u1", "M-X"));
+        assertNull(fileMountComponent.resolve("u1", "M-D"));
+        //中间一层不是挂载目录
+        when(fileInfoMapper.selectByFileIdAndUserId("A", "u2")).thenReturn(folder("A", "u2", "S", "/S/A/"));
+        assertNull(fileMountComponent.resolve("u1", "M-A-X"));
+    }
+
+    @Test
+    void testResolveMaterialized() {
+        String copyId = FileMountComponent.getMaterializedId("M", "A");
+        when(fileInfoMapper.selectByFileIdAndUserId("M", "u1")).thenReturn(folder("M", "u1", "0", "/M/"));
+        when(fileInfoMapper.selectByFileIdAndUserId(copyId, "u1")).thenReturn(folder(copyId, "u1", "M", "/M/" + copyId + "/"));
+
+        FileMountComponent.MountNode node = fileMountComponent.resolve("u1", "M-A");
+        assertEquals(copyId, node.getFileInfo().getFileId());
+        assertNull(node.getSourceFolderId());
+        verify(fileInfoMapper, never()).selectByFileIdAndUserId("A", "u2");
+    }
+
+    @Test
+    void testSourceChangedAfterMount() {
+        FileInfo mount = mount("M", "u1", "u2", "S");
+        mount.setFolderSize(100L);
+        mount.setFolderFileCount(2);
+        FileInfo source = folder("S", "u2", "0", "/S/");
+        source.setFolderSize(100L);
+        source.setFolderFileCount(2);
+        when(fileInfoMapper.selectByFileIdAndUserId("S", "u2")).thenReturn(source);
+        assertSame(source, fileMountComponent.getSource(mount));
+
+        //来源目录在挂载后有变化，读取来源目录的最新内容
+        source.setFolderFileCount(3);
+        assertSame(source, fileMountComponent.getSource(mount));
+
+        //来源目录删除后挂载目录为空
+        source.setDelFlag(FileDelFlagEnums.RECYCLE.getFlag());
+        assertNull(fileMountComponent.getSource(mount));
+        assertNull(fileMountComponent.resolve("u1", "M-B"), "挂载目录下的文件不能再访问");
+    }
+}
@@ -0,0 +1,132 @@
+package com.easypan.component;
+
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.FileNameIndexMessage;
+import com.easypan.entity.enums.FileFolderTypeEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.utils.JsonUtils;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 文件名索引单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class FileNameIndexComponentTest {
+
+    private static final String USER_ID = "u1";
+
+    @Mock
+    private RedisUtils<Object> redisUtils;
+
+    @Mock
+    private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
+
+    @InjectMocks
+    private FileNameIndexComponent fileNameIndexComponent;
+
+    @SuppressWarnings("unchecked")
+    private void mockFiles(FileInfo... files) {
+        doAnswer(invocation -> {
+            ResultHandler<FileInfo> handler = invocation.getArgument(2);
+            for (FileInfo file : files) {
+                ResultContext<FileInfo> context = mock(ResultContext.class);
+                when(context.getResultObject()).thenReturn(file);
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(fileInfoMapper).selectFileNameIndex(eq(USER_ID), any(), any());
+    }
+
+    private static FileInfo file(String fileId, String fileName, String filePid) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setFileId(fileId);
+        fileInfo.setFileName(fileName);
+        fileInfo.setFilePid(filePid);
+        fileInfo.setFolderType(FileFolderTypeEnums.FILE.getType());
+        return fileInfo;
+    }
+
+    private static FileInfoQuery query(String keyword) {
+        FileInfoQuery query = new FileInfoQuery();
+        query.setUserId(USER_ID);
+        query.setFileNameFuzzy(keyword);
+        return query;
+    }
+
+    @Test
+    void testRankAndFilter() {
+        when(redisUtils.get(Constants.REDIS_KEY_FILE_NAME_INDEX_GEN + USER_ID)).thenReturn(null);
+        mockFiles(file("f1", "my report.doc", "0"), file("f2", "Report.pdf", "0"), file("f3", "annualreport.pdf", "d1"),
+                file("f4", "report.pdf", "d1"), file("f5", "notes.txt", "0"));
+
+        assertEquals(Arrays.asList("f2", "f4", "f1", "f3"), fileNameIndexComponent.search(query("REPORT"), 0, 10).getFileIdList());
+
+        FileInfoQuery prefix = query("rep");
+        prefix.setFileNamePrefix(true);
+        assertEquals(Arrays.asList("f2", "f4"), fileNameIndexComponent.search(prefix, 0, 10).getFileIdList());
+
+        FileInfoQuery ext = query("report");
+        ext.setFileNameExt("pdf");
+        ext.setFilePid("d1");
+        assertEquals(Arrays.asList("f4", "f3"), fileNameIndexComponent.search(ext, 0, 10).getFileIdList());
+
+        assertEquals(0, fileNameIndexComponent.search(query("xyz"), 0, 10).getTotalCount());
+        verify(fileInfoMapper, times(1)).selectFileNameIndex(eq(USER_ID), any(), any());
+    }
+
+    @Test
+    void testCursorPaging() {
+        when(redisUtils.get(Constants.REDIS_KEY_FILE_NAME_INDEX_GEN + USER_ID)).thenReturn(3L);
+        mockFiles(file("a", "log1.txt", "0"), file("b", "log2.txt", "0"), file("c", "log3.txt", "0"));
+
+        FileInfoQuery query = query("log");
+        query.setCursor("");
+        FileNameIndexComponent.SearchResult first = fileNameIndexComponent.search(query, 0, 2);
+        assertEquals(Arrays.asList("a", "b"), first.getFileIdList());
+        assertEquals(3, first.getTotalCount());
+        query.setCursor(first.getNextCursor());
+        FileNameIndexComponent.SearchResult second = fileNameIndexComponent.search(query, 0, 2);
+        assertEquals(Arrays.asList("c"), second.getFileIdList());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void testApplyDelta() {
+        when(redisUtils.get(Constants.REDIS_KEY_FILE_NAME_INDEX_GEN + USER_ID)).thenReturn(1L, 2L, 2L, 5L);
+        mockFiles(file("a", "old.txt", "0"));
+        assertEquals(1, fileNameIndexComponent.search(query("old"), 0, 10).getTotalCount());
+
+        FileNameIndexMessage message = new FileNameIndexMessage();
+        message.setUserId(USER_ID);
+        message.setGen(2L);
+        message.getPutList().add(file("a", "new.txt", "0"));
+        String json = JsonUtils.convertObj2Json(message);
+        when(redisUtils.deserialize(any())).thenReturn(json);
+        fileNameIndexComponent.onMessage(new DefaultMessage(new byte[0], new byte[0]), null);
+
+        assertEquals(0, fileNameIndexComponent.search(query("old"), 0, 10).getTotalCount());
+        List<String> fileIdList = fileNameIndexComponent.search(query("new"), 0, 10).getFileIdList();
+        assertEquals(Arrays.asList("a"), fileIdList);
+        verify(fileInfoMapper, times(1)).selectFileNameIndex(eq(USER_ID), any(), any());
+
+        //版本号不连续时重新加载
+        fileNameIndexComponent.search(query("new"), 0, 10);
+        verify(fileInfoMapper, times(2)).selectFileNameIndex(eq(USER_ID), any(), any());
+    }
+}
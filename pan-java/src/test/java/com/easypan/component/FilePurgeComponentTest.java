@@ -0,0 +1,94 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.enums.FileFolderTypeEnums;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.mappers.FileInfoMapper;
+import com.easypan.service.FileInfoService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 彻底删除的文件归档单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class FilePurgeComponentTest {
+
+    @Mock
+    private AppConfig appConfig;
+
+    @Mock
+    private RedisUtils<Object> redisUtils;
+
+    @Mock
+    private FileInfoMapper<FileInfo, FileInfoQuery> fileInfoMapper;
+
+    @Mock
+    private FileShardComponent fileShardComponent;
+
+    @Mock
+    private FileInfoService fileInfoService;
+
+    @InjectMocks
+    private FilePurgeComponent filePurgeComponent;
+
+    private static FileInfo file(String userId, String fileId, Integer folderType, Long fileSize) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setUserId(userId);
+        fileInfo.setFileId(fileId);
+        fileInfo.setFolderType(folderType);
+        fileInfo.setFileSize(fileSize);
+        return fileInfo;
+    }
+
+    @Test
+    void testDisabled() {
+        when(appConfig.getFilePurgeRetentionDays()).thenReturn(0);
+        filePurgeComponent.purgeDeleted();
+        verifyNoInteractions(redisUtils, fileInfoMapper, fileInfoService);
+    }
+
+    @Test
+    void testPurgeByUser() {
+        when(appConfig.getFilePurgeRetentionDays()).thenReturn(30);
+        when(appConfig.getFilePurgeArchive()).thenReturn(true);
+        when(redisUtils.setnx(eq(Constants.REDIS_KEY_FILE_PURGE_LOCK), any(), anyLong())).thenReturn(true);
+        when(fileShardComponent.selectAllShards(any(), any(), anyInt())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        FileInfo mount = file("u1", "m", FileFolderTypeEnums.FOLDER.getType(), null);
+        mount.setRefFileId("s");
+        when(fileInfoMapper.selectPurgeBatch(anyInt(), eq(30), isNull(), isNull(), anyInt())).thenReturn(Arrays.asList(
+                file("u1", "a", FileFolderTypeEnums.FILE.getType(), 100L), mount, file("u2", "b", FileFolderTypeEnums.FILE.getType(), 20L)));
+        when(fileInfoService.purgeFileBatch("u1", Arrays.asList("a", "m"), true)).thenReturn(2);
+        when(fileInfoService.purgeFileBatch("u2", Collections.singletonList("b"), true)).thenReturn(1);
+
+        filePurgeComponent.purgeDeleted();
+
+        assertEquals(3L, filePurgeComponent.getMetrics().get("purgeRowCount"));
+        assertEquals(120L, filePurgeComponent.getMetrics().get("purgeFileSize"));
+        verify(redisUtils).unlock(eq(Constants.REDIS_KEY_FILE_PURGE_LOCK), any());
+        //不足一批时不再读取
+        verify(fileInfoMapper, times(1)).selectPurgeBatch(anyInt(), anyInt(), any(), any(), anyInt());
+    }
+
+    @Test
+    void testSkipWhenLocked() {
+        when(appConfig.getFilePurgeRetentionDays()).thenReturn(30);
+        when(redisUtils.setnx(anyString(), any(), anyLong())).thenReturn(false);
+        filePurgeComponent.purgeDeleted();
+        verifyNoInteractions(fileInfoMapper, fileInfoService);
+        assertEquals(1L, filePurgeComponent.getMetrics().get("lockSkipCount"));
+    }
+}
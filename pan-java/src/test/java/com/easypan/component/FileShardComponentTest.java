@@ -0,0 +1,131 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.po.FileInfo;
+import com.easypan.entity.po.FileShardRoute;
+import com.easypan.exception.BusinessException;
+import com.easypan.mappers.FileShardMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 文件表分表单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class FileShardComponentTest {
+
+    @Mock
+    private AppConfig appConfig;
+
+    @Mock
+    private FileShardMapper fileShardMapper;
+
+    @InjectMocks
+    private FileShardComponent fileShardComponent;
+
+    @Test
+    void testRouteByHashAndOverride() {
+        when(appConfig.getFileShardCount()).thenReturn(4);
+        assertEquals(Math.floorMod("u1".hashCode(), 4), fileShardComponent.getShard("u1"));
+
+        FileShardRoute route = new FileShardRoute();
+        route.setShardNo(3);
+        route.setStatus(1);
+        when(fileShardMapper.selectRouteByUserId("u2")).thenReturn(route);
+        assertEquals(3, fileShardComponent.getShard("u2"));
+        assertThrows(BusinessException.class, () -> fileShardComponent.checkWritable("u2"));
+        fileShardComponent.checkWritable("u1");
+        //路由有本地缓存
+        fileShardComponent.getShard("u2");
+        verify(fileShardMapper, times(1)).selectRouteByUserId("u2");
+    }
+
+    @Test
+    void testRewriteSql() {
+        assertEquals("select * from file_info_2 f left join user_info u on f.user_id = u.user_id",
+                fileShardComponent.rewriteSql("select * from file_info f left join user_info u on f.user_id = u.user_id", 2));
+        assertEquals("update file_info_1 set file_name = ?", fileShardComponent.rewriteSql("update file_info_1 set file_name = ?", 0));
+    }
+
+    @Test
+    void testSelectAllShards() {
+        when(appConfig.getFileShardCount()).thenReturn(3);
+        List<Integer> shards = fileShardComponent.selectAllShards(() -> Collections.singletonList(FileShardComponent.getForceShard()));
+        assertEquals(Arrays.asList(0, 1, 2), shards);
+        assertNull(FileShardComponent.getForceShard());
+        assertEquals(6, fileShardComponent.countAllShards(() -> 2));
+    }
+
+    @Test
+    void testSelectAllShardsMerged() {
+        when(appConfig.getFileShardCount()).thenReturn(2);
+        List<FileInfo> merged = fileShardComponent.selectAllShards(() -> FileShardComponent.getForceShard() == 0
+                        ? Arrays.asList(file("b", "1"), file("c", "1")) : Arrays.asList(file("A", "2"), file("a", "1")),
+                FileShardComponent.USER_FILE_ID_ORDER, 3);
+        assertEquals(Arrays.asList("a1", "A2", "b1"), merged.stream().map(item -> item.getUserId() + item.getFileId()).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testLockWritableInTransaction() {
+        when(appConfig.getFileShardCount()).thenReturn(4);
+        FileShardRoute route = new FileShardRoute();
+        route.setShardNo(2);
+        route.setStatus(0);
+        when(fileShardMapper.selectRouteForShare("u1")).thenReturn(route);
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            fileShardComponent.lockWritable("u1");
+            fileShardComponent.lockWritable("u1");
+            //同一个事务只锁一次，以锁定时读到的路由为准
+            verify(fileShardMapper, times(1)).selectRouteForShare("u1");
+            assertEquals(2, fileShardComponent.getShard("u1"));
+            verify(fileShardMapper, never()).selectRouteByUserId("u1");
+
+            FileShardRoute migrating = new FileShardRoute();
+            migrating.setShardNo(1);
+            migrating.setStatus(1);
+            when(fileShardMapper.selectRouteForShare("u2")).thenReturn(migrating);
+            assertThrows(BusinessException.class, () -> fileShardComponent.lockWritable("u2"));
+        } finally {
+            TransactionSynchronizationManager.getSynchronizations().forEach(item -> item.afterCompletion(0));
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        assertTrue(TransactionSynchronizationManager.getResourceMap().isEmpty());
+    }
+
+    @Test
+    void testMigrateUserRejected() {
+        when(appConfig.getFileShardCount()).thenReturn(2);
+        assertThrows(BusinessException.class, () -> fileShardComponent.migrateUser("u1", 2));
+        FileShardRoute route = new FileShardRoute();
+        route.setShardNo(1);
+        route.setStatus(1);
+        when(fileShardMapper.selectRouteByUserId("u1")).thenReturn(route);
+        assertThrows(BusinessException.class, () -> fileShardComponent.migrateUser("u1", 0));
+        verify(fileShardMapper, never()).insertOrUpdateRoute(any());
+        //已经在目标分表时不复制
+        assertEquals(0, fileShardComponent.migrate("u1", 1));
+    }
+
+    private static FileInfo file(String userId, String fileId) {
+        FileInfo fileInfo = new FileInfo();
+        fileInfo.setUserId(userId);
+        fileInfo.setFileId(fileId);
+        return fileInfo;
+    }
+}
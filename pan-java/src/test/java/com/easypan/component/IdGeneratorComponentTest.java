@@ -0,0 +1,137 @@
+package com.easypan.component;
+
+import com.easypan.entity.config.AppConfig;
+import com.easypan.entity.constants.Constants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 按时间递增的ID单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class IdGeneratorComponentTest {
+
+    @Mock
+    private AppConfig appConfig;
+
+    @Mock
+    private RedisUtils<Object> redisUtils;
+
+    @InjectMocks
+    private IdGeneratorComponent idGeneratorComponent;
+
+    @Test
+    void testOrderedAndFixedLength() {
+        when(appConfig.getIdNode()).thenReturn(3);
+        idGeneratorComponent.init();
+        long startTime = System.currentTimeMillis();
+        String last = "";
+        //超过一个时间片的序号数，借用后面的时间片
+        for (int i = 0; i < 5000; i++) {
+            String id = idGeneratorComponent.nextId();
+            assertTrue(id.matches("[0-9a-z]{10}"), id);
+            assertTrue(id.compareTo(last) > 0);
+            last = id;
+        }
+        assertTrue(Math.abs(IdGeneratorComponent.getTimestamp(last) - startTime) < 60 * 1000);
+        assertEquals("0000000000", IdGeneratorComponent.encode(0));
+        assertEquals("000000000z", IdGeneratorComponent.encode(35));
+    }
+
+    @Test
+    void testUniqueAcrossThreadsAndNodes() throws Exception {
+        when(appConfig.getIdNode()).thenReturn(1);
+        idGeneratorComponent.init();
+        IdGeneratorComponent other = new IdGeneratorComponent();
+        other.setNode(2);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            IdGeneratorComponent generator = t % 2 == 0 ? idGeneratorComponent : other;
+            futures.add(executor.submit(() -> {
+                List<String> ids = new ArrayList<>();
+                for (int i = 0; i < 10000; i++) {
+                    ids.add(generator.nextId());
+                }
+                return ids;
+            }));
+        }
+        Set<String> all = new HashSet<>();
+        for (Future<List<String>> future : futures) {
+            all.addAll(future.get());
+        }
+        executor.shutdown();
+        assertEquals(40000, all.size());
+    }
+
+    @Test
+    void testNodeRange() {
+        when(appConfig.getIdNode()).thenReturn(IdGeneratorComponent.MAX_NODE + 1);
+        assertThrows(IllegalArgumentException.class, () -> idGeneratorComponent.init());
+        verifyNoInteractions(redisUtils);
+    }
+
+    @Test
+    void testConfiguredNodeWithoutLease() {
+        //配置了节点号时不租用，redis不可用也能启动
+        when(appConfig.getIdNode()).thenReturn(7);
+        when(redisUtils.get(Constants.REDIS_KEY_ID_TICK + 7)).thenThrow(new IllegalStateException("redis down"));
+        idGeneratorComponent.init();
+        assertNotNull(idGeneratorComponent.nextId());
+        verify(redisUtils, never()).setnx(anyString(), any(), anyLong());
+
+        idGeneratorComponent.renew();
+        verify(redisUtils, never()).renewLock(anyString(), any(), anyLong());
+        verify(redisUtils).set(eq(Constants.REDIS_KEY_ID_TICK + 7), any());
+
+        idGeneratorComponent.destroy();
+        verify(redisUtils, never()).unlock(anyString(), any());
+    }
+
+    @Test
+    void testLeaseFreeNode() {
+        when(appConfig.getIdNode()).thenReturn(-1);
+        when(redisUtils.incr(Constants.REDIS_KEY_ID_NODE_SEQ)).thenReturn(64L, 65L);
+        when(redisUtils.setnx(eq(Constants.REDIS_KEY_ID_NODE + 0), anyString(), anyLong())).thenReturn(false);
+        when(redisUtils.setnx(eq(Constants.REDIS_KEY_ID_NODE + 1), anyString(), anyLong())).thenReturn(true);
+        idGeneratorComponent.init();
+        assertNotNull(idGeneratorComponent.nextId());
+        verify(redisUtils).get(Constants.REDIS_KEY_ID_TICK + 1);
+
+        when(redisUtils.renewLock(eq(Constants.REDIS_KEY_ID_NODE + 1), anyString(), anyLong())).thenReturn(true);
+        idGeneratorComponent.renew();
+        verify(redisUtils).set(eq(Constants.REDIS_KEY_ID_TICK + 1), any());
+
+        idGeneratorComponent.destroy();
+        verify(redisUtils).unlock(eq(Constants.REDIS_KEY_ID_NODE + 1), anyString());
+    }
+
+    @Test
+    void testAllNodesLeased() {
+        when(appConfig.getIdNode()).thenReturn(-1);
+        when(redisUtils.incr(Constants.REDIS_KEY_ID_NODE_SEQ)).thenReturn(1L);
+        when(redisUtils.setnx(anyString(), anyString(), anyLong())).thenReturn(false);
+        assertThrows(IllegalStateException.class, () -> idGeneratorComponent.init());
+    }
+
+    @Test
+    void testResumeAfterSavedTick() {
+        //上次运行时时钟快了一分钟，重启后不能生成更早时间片的ID
+        long savedTime = System.currentTimeMillis() + 60 * 1000;
+        long savedTick = (savedTime - IdGeneratorComponent.getTimestamp(IdGeneratorComponent.encode(0))) / 10;
+        when(appConfig.getIdNode()).thenReturn(5);
+        when(redisUtils.get(Constants.REDIS_KEY_ID_TICK + 5)).thenReturn(savedTick);
+        idGeneratorComponent.init();
+        assertTrue(IdGeneratorComponent.getTimestamp(idGeneratorComponent.nextId()) > savedTime - 10);
+    }
+}
@@ -0,0 +1,105 @@
+package com.easypan.component;
+
+import com.easypan.entity.query.FileInfoQuery;
+import com.easypan.entity.query.FileShareQuery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 列表总数缓存单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class ListCountComponentTest {
+
+    @Mock
+    private RedisUtils<Object> redisUtils;
+
+    @InjectMocks
+    private ListCountComponent listCountComponent;
+
+    @Test
+    void testFileCountCache() {
+        FileInfoQuery query = new FileInfoQuery();
+        query.setUserId("u1");
+        query.setFilePid("0");
+        query.setDelFlag(2);
+        query.setPageNo(3);
+
+        when(redisUtils.get("easypan:count:version:u1")).thenReturn(3);
+        when(redisUtils.get("easypan:count:file:u1:3:0:all:2")).thenReturn(null);
+        assertEquals(7, listCountComponent.getFileCount(query, () -> 7));
+        verify(redisUtils).setex(eq("easypan:count:file:u1:3:0:all:2"), eq(7), anyLong());
+
+        when(redisUtils.get("easypan:count:file:u1:3:0:all:2")).thenReturn(7);
+        assertEquals(7, listCountComponent.getFileCount(query, () -> fail("命中缓存时不应该查询数据库")));
+    }
+
+    @Test
+    void testFilterSkipCache() {
+        FileInfoQuery query = new FileInfoQuery();
+        query.setUserId("u1");
+        query.setDelFlag(2);
+        query.setFileNameFuzzy("abc");
+        assertEquals(3, listCountComponent.getFileCount(query, () -> 3));
+
+        FileShareQuery shareQuery = new FileShareQuery();
+        shareQuery.setUserId("u1");
+        shareQuery.setCodeFuzzy("a");
+        assertEquals(2, listCountComponent.getShareCount(shareQuery, () -> 2));
+        verifyNoInteractions(redisUtils);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFileCountChangeMerged() {
+        when(redisUtils.multiGet(Arrays.asList("easypan:count:version:u1", "easypan:count:version:all"))).thenReturn(Arrays.<Object>asList(2, null));
+        listCountComponent.fileCountChange()
+                .add("u1", "p1", 3, 2, -1)
+                .add("u1", "p2", 3, 2, 1)
+                .submit();
+
+        ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<Object> argsCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(redisUtils).execute(any(), keysCaptor.capture(), argsCaptor.capture());
+        List<String> keys = keysCaptor.getValue();
+        // 同一用户内移动，不限父目录的计数增减抵消后不再提交
+        assertTrue(keys.contains("easypan:count:file:u1:2:p1:3:2"));
+        assertTrue(keys.contains("easypan:count:file:all:0:p2:all:2"));
+        assertFalse(keys.contains("easypan:count:file:u1:2:all:all:2"));
+        assertFalse(keys.contains("easypan:count:file:all:0:all:3:2"));
+        assertEquals(8, keys.size());
+        assertEquals(8, argsCaptor.getAllValues().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFileCountChangeTree() {
+        when(redisUtils.multiGet(Collections.singletonList("easypan:count:version:u2"))).thenReturn(Collections.<Object>singletonList(null));
+        listCountComponent.fileCountChange()
+                .add("u1", "p1", 3, 2, -1)
+                .add("u2", "p2", 3, 2, 1)
+                .addTree("u1")
+                .submit();
+
+        ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+        verify(redisUtils, times(2)).execute(any(), keysCaptor.capture(), any());
+        // 子树批量修改时递增用户和全局的版本号，这两个范围内的计数不再逐个修改
+        assertEquals(Arrays.asList("easypan:count:version:u1", "easypan:count:version:all"), keysCaptor.getAllValues().get(0));
+        List<String> keys = keysCaptor.getAllValues().get(1);
+        assertTrue(keys.contains("easypan:count:file:u2:0:p2:3:2"));
+        assertTrue(keys.stream().allMatch(key -> key.startsWith("easypan:count:file:u2:")));
+        assertEquals(4, keys.size());
+    }
+}
@@ -0,0 +1,78 @@
+package com.easypan.component;
+
+import com.easypan.entity.constants.Constants;
+import com.easypan.entity.dto.UserProfileDto;
+import com.easypan.entity.po.UserInfo;
+import com.easypan.entity.query.UserInfoQuery;
+import com.easypan.mappers.UserInfoMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 用户昵称和头像缓存单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+public class UserProfileCacheComponentTest {
+
+    @Mock
+    private RedisUtils<Object> redisUtils;
+
+    @Mock
+    private UserInfoMapper<UserInfo, UserInfoQuery> userInfoMapper;
+
+    @InjectMocks
+    private UserProfileCacheComponent userProfileCacheComponent;
+
+    @Test
+    void testBatchLoadMissing() {
+        UserProfileDto cached = new UserProfileDto();
+        cached.setUserId("u1");
+        cached.setNickName("cached");
+        when(redisUtils.multiGet(Arrays.asList(Constants.REDIS_KEY_USER_PROFILE + "u1", Constants.REDIS_KEY_USER_PROFILE + "u2",
+                Constants.REDIS_KEY_USER_PROFILE + "u3"))).thenReturn(Arrays.<Object>asList(cached, null, null));
+        UserInfo userInfo = new UserInfo();
+        userInfo.setUserId("u2");
+        userInfo.setNickName("loaded");
+        userInfo.setQqAvatar("avatar");
+        when(userInfoMapper.selectProfileList(Arrays.asList("u2", "u3"))).thenReturn(Collections.singletonList(userInfo));
+
+        Map<String, UserProfileDto> profileMap = userProfileCacheComponent.getProfileMap(Arrays.asList("u1", "u2", "u1", "u3", null));
+
+        assertEquals("cached", profileMap.get("u1").getNickName());
+        assertEquals("loaded", profileMap.get("u2").getNickName());
+        assertEquals("avatar", profileMap.get("u2").getAvatar());
+        assertFalse(profileMap.containsKey("u3"));
+        verify(redisUtils).setex(eq(Constants.REDIS_KEY_USER_PROFILE + "u2"), any(UserProfileDto.class), eq((long) Constants.REDIS_KEY_EXPIRES_DAY));
+        assertEquals(2L, userProfileCacheComponent.getMetrics().get("missCount"));
+    }
+
+    @Test
+    void testAllCached() {
+        UserProfileDto cached = new UserProfileDto();
+        cached.setUserId("u1");
+        when(redisUtils.multiGet(anyList())).thenReturn(Collections.<Object>singletonList(cached));
+        assertSame(cached, userProfileCacheComponent.getProfile("u1"));
+        verifyNoInteractions(userInfoMapper);
+        assertTrue(userProfileCacheComponent.getProfileMap(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    void testRedisFailureFallsBackToDatabase() {
+        when(redisUtils.multiGet(anyList())).thenThrow(new RuntimeException("redis down"));
+        UserInfo userInfo = new UserInfo();
+        userInfo.setUserId("u1");
+        when(userInfoMapper.selectProfileList(Collections.singletonList("u1"))).thenReturn(Collections.singletonList(userInfo));
+        assertEquals("u1", userProfileCacheComponent.getProfile("u1").getUserId());
+    }
+}
@@ -0,0 +1,89 @@
+package com.easypan.entity.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 读写分离数据源单元测试，主从库用Mock数据源代替
+ */
+public class ReadWriteRoutingDataSourceTest {
+
+    private final Connection primaryConnection = mock(Connection.class);
+
+    private final Connection replica0Connection = mock(Connection.class);
+
+    private final Connection replica1Connection = mock(Connection.class);
+
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        routingDataSource = new ReadWriteRoutingDataSource(mockDataSource(primaryConnection),
+                Arrays.asList(mockDataSource(replica0Connection), mockDataSource(replica1Connection)), 60000L);
+        routingDataSource.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void testReadRoundRobin() throws SQLException {
+        assertSame(replica0Connection, routingDataSource.getConnection());
+        assertSame(replica1Connection, routingDataSource.getConnection());
+        assertSame(replica0Connection, routingDataSource.getConnection());
+        assertSame(primaryConnection, ReadWriteRoutingDataSource.usePrimary(this::getConnection));
+    }
+
+    @Test
+    void testTransaction() throws SQLException {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        assertSame(primaryConnection, routingDataSource.getConnection());
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertSame(replica0Connection, routingDataSource.getConnection());
+    }
+
+    @Test
+    void testStickyAfterWrite() throws SQLException {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertSame(replica0Connection, routingDataSource.getConnection());
+
+        ReadWriteRoutingDataSource.markWrite();
+        assertSame(primaryConnection, routingDataSource.getConnection());
+
+        // 其他会话不受影响
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertSame(replica1Connection, routingDataSource.getConnection());
+    }
+
+    private Connection getConnection() {
+        try {
+            return routingDataSource.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static DataSource mockDataSource(Connection connection) throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        return dataSource;
+    }
+}
@@ -0,0 +1,79 @@
+package com.easypan.entity.query;
+
+import com.easypan.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.web.bind.WebDataBinder;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 游标分页游标单元测试
+ */
+public class SeekCursorTest {
+
+    @Test
+    void testBuildAndParse() {
+        Date time = new Date(1700000000123L);
+        String cursor = SeekCursor.build(time, "a_b12");
+        assertEquals("1700000000123_a_b12", cursor);
+
+        SeekCursor seekCursor = SeekCursor.parse(cursor, "last_update_time desc", false);
+        assertEquals("last_update_time", seekCursor.getSortColumn());
+        assertEquals(time, seekCursor.getSortTime());
+        assertEquals("a_b12", seekCursor.getId(), "ID中的分隔符应该保留");
+        assertNull(seekCursor.getUserId());
+
+        assertNull(SeekCursor.parse("", "share_time desc", false), "空游标表示第一页");
+        assertNull(SeekCursor.build(null, "a"));
+    }
+
+    @Test
+    void testBuildAndParseWithUser() {
+        Date time = new Date(1700000000123L);
+        String cursor = SeekCursor.build(time, "a_b12", "u1");
+        assertEquals("1700000000123_a_b12.u1", cursor);
+
+        SeekCursor seekCursor = SeekCursor.parse(cursor, "create_time desc", true);
+        assertEquals("a_b12", seekCursor.getId());
+        assertEquals("u1", seekCursor.getUserId());
+        assertThrows(BusinessException.class, () -> SeekCursor.parse("1700000000123_a_b12", "create_time desc", true));
+    }
+
+    @Test
+    void testInvalidCursor() {
+        assertThrows(BusinessException.class, () -> SeekCursor.parse("abc_1", "last_update_time desc", false));
+        assertThrows(BusinessException.class, () -> SeekCursor.parse("123", "last_update_time desc", false));
+        assertThrows(BusinessException.class, () -> SeekCursor.parse("123_", "last_update_time desc", false));
+        assertThrows(BusinessException.class, () -> SeekCursor.parse("123_a", "file_id desc", false), "排序列不在白名单中");
+    }
+
+    @Test
+    void testSortColumn() {
+        assertEquals("last_update_time", SeekCursor.getSortColumn("last_update_time desc"));
+        assertNull(SeekCursor.getSortColumn("last_update_time asc"));
+        assertNull(SeekCursor.getSortColumn("field(file_id,\"a\",\"b\")"));
+        assertNull(SeekCursor.getSortColumn("(select 1) desc"));
+        assertNull(SeekCursor.getSortColumn(null));
+    }
+
+    @Test
+    void testRequestCannotBindSeekCursor() {
+        FileInfoQuery query = new FileInfoQuery();
+        MutablePropertyValues values = new MutablePropertyValues();
+        values.add("seekColumn", "(select 1)");
+        values.add("seekCursor", "1");
+        values.add("cursor", "1700000000123_a");
+        new WebDataBinder(query).bind(values);
+        assertNull(query.getSeekCursor());
+        assertEquals("1700000000123_a", query.getCursor());
+
+        FileInfoQuery nestedQuery = new FileInfoQuery();
+        MutablePropertyValues nestedValues = new MutablePropertyValues();
+        nestedValues.add("seekCursor.sortColumn", "(select 1)");
+        assertThrows(RuntimeException.class, () -> new WebDataBinder(nestedQuery).bind(nestedValues));
+        assertNull(nestedQuery.getSeekCursor());
+    }
+}
@@ -4,6 +4,7 @@ import com.easypan.entity.constants.Constants;
 import com.easypan.entity.dto.ChunkDownloadDto;
 import com.easypan.entity.dto.DownloadFileDto;
 import com.easypan.service.impl.FileInfoServiceImpl;
+import com.easypan.component.DownloadFileCache;
 import com.easypan.component.RedisComponent;
 import com.easypan.entity.config.AppConfig;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,6 +14,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -72,6 +74,12 @@ public class FileInfoServiceChunkDownloadTest {
         
         when(appConfig.getProjectFolder()).thenReturn(tempDir.toString());
         when(redisComponent.getDownloadCode(testCode)).thenReturn(downloadFileDto);
+
+        // 下载码本地缓存使用同一组Mock对象
+        DownloadFileCache downloadFileCache = new DownloadFileCache();
+        ReflectionTestUtils.setField(downloadFileCache, "redisComponent", redisComponent);
+        ReflectionTestUtils.setField(downloadFileCache, "appConfig", appConfig);
+        ReflectionTestUtils.setField(fileInfoService, "downloadFileCache", downloadFileCache);
     }
 
     @Test
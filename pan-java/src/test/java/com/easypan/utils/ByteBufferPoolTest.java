@@ -0,0 +1,67 @@
+package com.easypan.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓冲区池单元测试
+ */
+public class ByteBufferPoolTest {
+
+    @Test
+    void testThreadCacheReuse() {
+        ByteBufferPool pool = new ByteBufferPool("test", true, 1024, 2);
+        ByteBuffer buffer = pool.acquire();
+        assertTrue(buffer.isDirect());
+        assertEquals(1024, buffer.capacity());
+        buffer.put((byte) 1);
+        pool.release(buffer);
+
+        ByteBuffer reused = pool.acquire();
+        assertSame(buffer, reused, "同一线程应该复用缓存的缓冲区");
+        assertEquals(0, reused.position(), "复用的缓冲区应该已经clear");
+        pool.release(reused);
+
+        Map<String, Object> metrics = pool.getMetrics();
+        assertEquals(2L, metrics.get("acquireCount"));
+        assertEquals(1L, metrics.get("threadCacheHitCount"));
+        assertEquals(1L, metrics.get("allocateCount"));
+        assertEquals(0, metrics.get("inUseCount"));
+    }
+
+    @Test
+    void testBoundedPool() {
+        ByteBufferPool pool = new ByteBufferPool("test", false, 1024, 1);
+        ByteBuffer first = pool.acquire();
+        ByteBuffer second = pool.acquire();
+        ByteBuffer third = pool.acquire();
+        assertFalse(first.isDirect());
+        assertEquals(3, pool.getMetrics().get("inUseCount"));
+
+        // 第一个进入线程缓存，第二个进入全局队列，第三个超出上限被丢弃
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+
+        Map<String, Object> metrics = pool.getMetrics();
+        assertEquals(1, metrics.get("pooledCount"));
+        assertEquals(1L, metrics.get("discardCount"));
+
+        assertSame(first, pool.acquire());
+        assertSame(second, pool.acquire());
+        assertEquals(1L, pool.getMetrics().get("poolHitCount"));
+    }
+
+    @Test
+    void testReleaseForeignBuffer() {
+        ByteBufferPool pool = new ByteBufferPool("test", false, 1024, 1);
+        pool.release(ByteBuffer.allocate(16));
+        pool.release(null);
+
+        assertEquals(0, pool.getMetrics().get("pooledCount"));
+    }
+}